@@ -0,0 +1,42 @@
+#!/usr/bin/env bash
+# Mede tempo até a primeira requisição atendida (readiness UP) e RSS da JVM, jar comum vs. perfil cds.
+#
+# Uso: scripts/startup-benchmark.sh [execuções] [porta]
+#   Antes: mvn -DskipTests package           (jar comum em target/)
+#          mvn -Pcds -DskipTests package     (jar extraído + application.jsa em target/cds/)
+# As variáveis de ambiente do app (banco, credenciais Vertex AI) precisam estar exportadas.
+set -euo pipefail
+
+RUNS="${1:-5}"
+PORT="${2:-8080}"
+JAR_NAME="$(cd target && ls api-fereformada-*.jar | grep -v original | head -n1)"
+PLAIN_CMD=(java -jar "target/${JAR_NAME}")
+CDS_CMD=(java -XX:SharedArchiveFile=target/cds/application.jsa -Dspring.aot.enabled=true -jar "target/cds/${JAR_NAME}")
+
+now_ms() { date +%s%3N; }
+
+measure() {
+  local label="$1"; shift
+  local start pid ready rss
+  start="$(now_ms)"
+  "$@" --server.port="${PORT}" > "target/startup-${label}.log" 2>&1 &
+  pid=$!
+  # Primeira requisição atendida: o readiness só fica UP depois do warm-up (StartupWarmup)
+  until curl -sf "http://localhost:${PORT}/actuator/health/readiness" > /dev/null; do
+    if ! kill -0 "${pid}" 2> /dev/null; then
+      echo "${label}: a aplicação saiu antes de ficar pronta (ver target/startup-${label}.log)" >&2
+      exit 1
+    fi
+    sleep 0.05
+  done
+  ready="$(( $(now_ms) - start ))"
+  rss="$(awk '/VmRSS/ {print $2}' "/proc/${pid}/status")"
+  kill "${pid}"; wait "${pid}" 2> /dev/null || true
+  echo "${label},${ready},$(( rss / 1024 ))"
+}
+
+echo "modo,ms_ate_primeira_requisicao,rss_mb"
+for _ in $(seq "${RUNS}"); do
+  measure plain "${PLAIN_CMD[@]}"
+  measure cds "${CDS_CMD[@]}"
+done
@@ -0,0 +1,124 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.dto.ContextItem;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmarks do trabalho de CPU do QueryService que roda em toda requisição: keywords, score de FTS,
+ * boosts, reranking, balanceamento de fontes e montagem do prompt ({@code mvn -Pjmh test}, ver docs/benchmarks.md).
+ * <p>
+ * Cada operação processa uma requisição inteira daquela etapa (ex: todos os candidatos do FTS de uma pergunta),
+ * alternando entre requisições pré-montadas, então ops/s ≈ requisições por segundo que a etapa aguenta numa thread.
+ * O QueryService é criado sem repositórios: estes métodos não tocam banco nem LLM.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class QueryServiceScoringBenchmark {
+
+    private static final int REQUESTS = 64;
+
+    /**
+     * Candidatos por ramo (vetor e FTS); o pipeline pede 10 a 20 de cada.
+     */
+    @Param({"10", "20"})
+    int candidates;
+
+    private QueryService service;
+    private List<ScoringFixtures.Request> requests;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        QueryTracer tracer = new QueryTracer(registry, new QueryTraceLog(null, null, registry, 0, 1, 1, 1), false, 0);
+        service = new QueryService(null, null, null, null, null, null, null, null, null, null, null, null,
+                false, tracer, null);
+        requests = ScoringFixtures.load().requests(service, REQUESTS, candidates, 42);
+    }
+
+    private ScoringFixtures.Request nextRequest() {
+        ScoringFixtures.Request request = requests.get(next);
+        next = (next + 1) % REQUESTS;
+        return request;
+    }
+
+    @Benchmark
+    public Object extractImportantKeywords() {
+        return service.extractImportantKeywords(nextRequest().question(), ScoringFixtures.SYNONYMS);
+    }
+
+    @Benchmark
+    public void calculateEnhancedKeywordScore(Blackhole blackhole) {
+        ScoringFixtures.Request request = nextRequest();
+        for (ContextItem item : request.ftsResults()) {
+            blackhole.consume(service.calculateEnhancedKeywordScore(item.content(), request.keywords(), ""));
+        }
+    }
+
+    @Benchmark
+    public void applySmartBoosts(Blackhole blackhole) {
+        ScoringFixtures.Request request = nextRequest();
+        for (ContextItem item : request.vectorResults()) {
+            blackhole.consume(service.applySmartBoosts(item, request.question()));
+        }
+    }
+
+    @Benchmark
+    public void countBiblicalReferences(Blackhole blackhole) {
+        for (ContextItem item : nextRequest().vectorResults()) {
+            blackhole.consume(service.countBiblicalReferences(item.content()));
+        }
+    }
+
+    /**
+     * Comparação pergunta do catecismo x pergunta do usuário, como no boost de pergunta/resposta.
+     */
+    @Benchmark
+    public void calculateSimilarity(Blackhole blackhole) {
+        ScoringFixtures.Request request = nextRequest();
+        String question = request.question().toLowerCase();
+        for (ContextItem item : request.ftsResults()) {
+            if (item.hasQuestion()) {
+                blackhole.consume(service.calculateSimilarity(item.question().toLowerCase(), question));
+            }
+        }
+    }
+
+    @Benchmark
+    public Object combineTwoResults() {
+        ScoringFixtures.Request request = nextRequest();
+        return service.combineTwoResults(request.vectorResults(), request.ftsResults(), request.question());
+    }
+
+    @Benchmark
+    public Object ensureBalancedSources() {
+        return service.ensureBalancedSources(nextRequest().rankedResults());
+    }
+
+    @Benchmark
+    public Object buildOptimizedPrompt() {
+        ScoringFixtures.Request request = nextRequest();
+        return service.buildOptimizedPrompt(request.question(), request.promptItems(), List.of());
+    }
+}
@@ -0,0 +1,196 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.dto.ContextItem;
+import br.com.fereformada.api.model.ContentChunk;
+import br.com.fereformada.api.model.StudyNote;
+import br.com.fereformada.api.model.Work;
+import br.com.fereformada.api.model.enums.PdfSource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Dados dos benchmarks tirados dos textos embutidos: trechos da Confissão de Westminster e dos dois catecismos
+ * (mesma extração e chunking do DatabaseSeeder) e notas da Bíblia de Genebra, montados como os
+ * {@link ContextItem} que as buscas vetorial e FTS devolvem, com scores sorteados por semente fixa.
+ */
+final class ScoringFixtures {
+
+    /**
+     * O que uma requisição leva para o reranking: pergunta, keywords e os candidatos de cada ramo
+     * (metade do FTS repete itens do vetor, como acontece nas buscas reais).
+     */
+    record Request(String question, Set<String> keywords, List<ContextItem> vectorResults,
+                   List<ContextItem> ftsResults, List<ContextItem> rankedResults, List<ContextItem> promptItems) {
+    }
+
+    static final List<String> QUESTIONS = List.of(
+            "O que é a justificação pela fé segundo a Confissão de Westminster?",
+            "Qual o fim principal do homem?",
+            "Como o Espírito Santo aplica a redenção comprada por Cristo?",
+            "O que a Escritura ensina sobre a providência de Deus sobre todas as criaturas?",
+            "Qual a diferença entre justificação e santificação?",
+            "O que são os sacramentos do Novo Testamento e quem pode administrá-los?",
+            "O que é a adoção e quais os privilégios dos filhos de Deus?",
+            "Por que a lei de Deus continua obrigando os crentes depois da conversão?",
+            "O que Deus exige de nós para escaparmos da sua ira e maldição?",
+            "Como devemos orar e qual a regra que Deus nos deu para nos dirigir na oração?");
+
+    static final Map<String, List<String>> SYNONYMS = Map.of(
+            "justificação", List.of("justificado", "imputação", "declarar justo", "absolvição"),
+            "santificação", List.of("santificado", "mortificação", "vivificação"),
+            "providência", List.of("governo", "sustento", "preservação"),
+            "sacramentos", List.of("batismo", "ceia do senhor", "sinais e selos"),
+            "adoção", List.of("filhos de deus", "herdeiros", "adotados"),
+            "oração", List.of("orar", "súplica", "pai nosso"),
+            "lei", List.of("mandamentos", "decálogo", "lei moral"),
+            "redenção", List.of("resgate", "remidos", "expiação"));
+
+    private static final String[] NOTE_BOOKS = {"nt/Romanos.txt", "nt/Efésios.txt", "nt/Hebreus.txt", "ot/Salmos.txt"};
+    private static final Pattern NOTE_SPLIT = Pattern.compile("\\*\\s+(?=\\d)");
+    private static final Pattern NOTE_REFERENCE = Pattern.compile("^(\\d+)[.:](\\d+)\\s+(.*)", Pattern.DOTALL);
+
+    final List<ContextItem> chunks;
+    final List<ContextItem> notes;
+
+    private ScoringFixtures(List<ContextItem> chunks, List<ContextItem> notes) {
+        this.chunks = chunks;
+        this.notes = notes;
+    }
+
+    static ScoringFixtures load() throws IOException {
+        DefaultResourceLoader resourceLoader = new DefaultResourceLoader();
+        Path cacheDir = Files.createTempDirectory("jmh-pdf-cache");
+        PdfTextExtractor extractor = new PdfTextExtractor(resourceLoader, cacheDir.toString(), 24, 0);
+        ChunkingService chunkingService = new ChunkingService();
+
+        List<ContextItem> chunks = new ArrayList<>();
+        long nextId = 1;
+        for (PdfSource source : List.of(PdfSource.CONFESSION, PdfSource.LARGER_CATECHISM, PdfSource.SHORTER_CATECHISM)) {
+            PdfTextExtractor.Extraction extraction = extractor.extract(source.resourcePath(), source.startPage(), source.endPage());
+            String text = Files.readString(extraction.textFile(), StandardCharsets.UTF_8);
+            Work work = work(nextId++, source);
+
+            if (source.isCatechism()) {
+                List<ChunkingService.ParsedQuestionChunk> parsed = source == PdfSource.LARGER_CATECHISM
+                        ? chunkingService.parseWestminsterLargerCatechism(text)
+                        : chunkingService.parseWestminsterShorterCatechism(text);
+                for (ChunkingService.ParsedQuestionChunk question : parsed) {
+                    ContentChunk chunk = chunk(nextId++, work, question.answer());
+                    chunk.setQuestion(question.question());
+                    chunk.setSectionNumber(question.questionNumber());
+                    chunks.add(ContextItem.from(chunk, 0, work.getTitle() + " - Pergunta " + question.questionNumber(), work));
+                }
+            } else {
+                for (ChunkingService.ParsedChunk section : chunkingService.parseWestminsterConfession(text)) {
+                    ContentChunk chunk = chunk(nextId++, work, section.content());
+                    chunk.setChapterTitle(section.chapterTitle());
+                    chunk.setSectionTitle(section.sectionTitle());
+                    chunk.setChapterNumber(section.chapterNumber());
+                    chunk.setSectionNumber(section.sectionNumber());
+                    chunks.add(ContextItem.from(chunk, 0, work.getTitle() + " - " + section.chapterTitle(), work));
+                }
+            }
+        }
+
+        List<ContextItem> notes = new ArrayList<>();
+        for (String file : NOTE_BOOKS) {
+            String book = file.substring(3, file.length() - 4);
+            for (String block : NOTE_SPLIT.split(read(resourceLoader.getResource("classpath:data-content/bible-notes/" + file)))) {
+                Matcher matcher = NOTE_REFERENCE.matcher(block.strip());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                StudyNote note = new StudyNote();
+                note.setId(nextId++);
+                note.setSource(GenevaNotesLoader.SOURCE_NAME);
+                note.setBook(book);
+                note.setStartChapter(Integer.parseInt(matcher.group(1)));
+                note.setStartVerse(Integer.parseInt(matcher.group(2)));
+                note.setEndChapter(note.getStartChapter());
+                note.setEndVerse(note.getStartVerse());
+                note.setNoteContent(matcher.group(3).strip());
+                notes.add(ContextItem.from(note, 0));
+            }
+        }
+        if (chunks.isEmpty() || notes.isEmpty()) {
+            throw new IllegalStateException("Fixtures vazias: " + chunks.size() + " trechos, " + notes.size() + " notas");
+        }
+        return new ScoringFixtures(chunks, notes);
+    }
+
+    /**
+     * Monta {@code count} requisições com {@code candidates} resultados por ramo. As listas ranqueada e do prompt
+     * vêm do próprio QueryService, para os benchmarks de cada etapa receberem o que a etapa anterior produz.
+     */
+    List<Request> requests(QueryService service, int count, int candidates, long seed) {
+        Random random = new Random(seed);
+        List<Request> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String question = QUESTIONS.get(i % QUESTIONS.size());
+            Set<String> keywords = service.extractImportantKeywords(question, SYNONYMS);
+
+            List<ContextItem> vector = new ArrayList<>(candidates);
+            for (int c = 0; c < candidates; c++) {
+                // Busca vetorial traz trechos e notas (ramos separados, juntados antes do rerank)
+                List<ContextItem> pool = c % 3 == 2 ? notes : chunks;
+                vector.add(pool.get(random.nextInt(pool.size())).withAdjustedScore(0.55 + random.nextDouble() * 0.35));
+            }
+            List<ContextItem> fts = new ArrayList<>(candidates);
+            for (int c = 0; c < candidates; c++) {
+                ContextItem item = c % 2 == 0 ? vector.get(random.nextInt(vector.size()))
+                        : chunks.get(random.nextInt(chunks.size()));
+                fts.add(item.withAdjustedScore(0.05 + random.nextDouble() * 0.45));
+            }
+
+            List<ContextItem> ranked = new ArrayList<>(vector.size() + fts.size());
+            vector.forEach(item -> ranked.add(service.applySmartBoosts(item, question)));
+            fts.forEach(item -> ranked.add(service.applySmartBoosts(item, question)));
+            ranked.sort(Comparator.comparing(ContextItem::similarityScore).reversed());
+
+            requests.add(new Request(question, keywords, List.copyOf(vector), List.copyOf(fts), List.copyOf(ranked),
+                    service.combineTwoResults(vector, fts, question)));
+        }
+        return requests;
+    }
+
+    // --- Métodos Helper ---
+
+    private static Work work(long id, PdfSource source) {
+        Work work = new Work();
+        work.setId(id);
+        work.setTitle(source.workTitle());
+        work.setAcronym(source.acronym());
+        work.setType(source.workType());
+        work.setPublicationYear(source.publicationYear());
+        work.setBoostPriority(2);
+        return work;
+    }
+
+    private static ContentChunk chunk(long id, Work work, String content) {
+        ContentChunk chunk = new ContentChunk();
+        chunk.setId(id);
+        chunk.setWork(work);
+        chunk.setContent(content);
+        return chunk;
+    }
+
+    private static String read(Resource resource) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
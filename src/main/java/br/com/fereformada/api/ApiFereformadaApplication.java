@@ -1,13 +1,18 @@
 package br.com.fereformada.api;
 
+import br.com.fereformada.api.config.AppRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableAsync
 @EnableCaching
+@EnableScheduling
+@ImportRuntimeHints(AppRuntimeHints.class)
 public class ApiFereformadaApplication {
 
     public static void main(String[] args) {
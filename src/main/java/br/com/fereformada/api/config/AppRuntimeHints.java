@@ -0,0 +1,138 @@
+package br.com.fereformada.api.config;
+
+import br.com.fereformada.api.dto.ChunkData;
+import br.com.fereformada.api.dto.ChunkImportDTO;
+import br.com.fereformada.api.dto.ChunkProjection;
+import br.com.fereformada.api.dto.ChunkTopicProjection;
+import br.com.fereformada.api.dto.ContentCountByWorkDTO;
+import br.com.fereformada.api.dto.FeedbackResponseDTO;
+import br.com.fereformada.api.dto.MetadataFilter;
+import br.com.fereformada.api.dto.QueryRouterResponse;
+import br.com.fereformada.api.dto.ReaderChunkDTO;
+import br.com.fereformada.api.dto.ReaderNoteDTO;
+import br.com.fereformada.api.dto.SourceReference;
+import br.com.fereformada.api.dto.StudyNoteProjection;
+import br.com.fereformada.api.dto.StudyNoteRequestDTO;
+import br.com.fereformada.api.dto.StudyNoteSourceDTO;
+import br.com.fereformada.api.model.Author;
+import br.com.fereformada.api.model.ChatFeedback;
+import br.com.fereformada.api.model.ContentChunk;
+import br.com.fereformada.api.model.Conversa;
+import br.com.fereformada.api.model.EmbeddingOutboxEntry;
+import br.com.fereformada.api.model.EmbeddingStoreEntry;
+import br.com.fereformada.api.model.ImportTask;
+import br.com.fereformada.api.model.ImportTaskPayload;
+import br.com.fereformada.api.model.Mensagem;
+import br.com.fereformada.api.model.QueryTraceLogEntry;
+import br.com.fereformada.api.model.StudyNote;
+import br.com.fereformada.api.model.TheologicalSynonym;
+import br.com.fereformada.api.model.Topic;
+import br.com.fereformada.api.model.Work;
+import br.com.fereformada.api.model.enums.PdfSource;
+import br.com.fereformada.api.repository.VectorBackfillRow;
+import br.com.fereformada.api.service.QueryExplain;
+import br.com.fereformada.api.service.QueryTrace;
+import br.com.fereformada.api.util.SourceReferenceConverter;
+import com.pgvector.PGvector;
+import org.springframework.aop.SpringProxy;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.core.DecoratingProxy;
+import org.springframework.data.projection.TargetAware;
+
+/**
+ * Hints para o processamento AOT (perfis Maven {@code cds} e {@code native}): o que é criado por reflexão
+ * fora do alcance da análise do Spring.
+ * <p>
+ * - PGvector: o driver do PostgreSQL instancia o tipo "vector" por reflexão (PGobject com construtor vazio);
+ * - entidades JPA (getters/setters do Lombok) e converters: o Hibernate cria {@link PGvectorConverter} e
+ *   {@link SourceReferenceConverter} por reflexão e acessa os campos das entidades;
+ * - projeções das consultas: DTOs de {@code SELECT new ...} (construtor via reflexão) e
+ *   {@link VectorBackfillRow}, proxy JDK montado pelo Spring Data sobre as linhas das queries nativas;
+ * - JSON lido/gravado pelo nosso ObjectMapper (fontes das mensagens, roteador, filtros, entradas das tarefas);
+ * - JJWT: o {@code Jwts} cria parser, builder e claims por nome e acha o (de)serializador Jackson via ServiceLoader;
+ * - PDFBox: glyph lists, fontes AFM, perfis de cor e CMaps lidos do classpath;
+ * - opções dos modelos Vertex AI, serializadas pelo Spring AI (por nome: só existem com os starters no classpath);
+ * - arquivos em data-content e os scripts SQL, lidos via classpath.
+ */
+public class AppRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final String[] VERTEX_AI_TYPES = {
+            "org.springframework.ai.vertexai.gemini.VertexAiGeminiChatOptions",
+            "org.springframework.ai.vertexai.embedding.text.VertexAiTextEmbeddingOptions",
+            "org.springframework.ai.vertexai.embedding.multimodal.VertexAiMultimodalEmbeddingOptions"
+    };
+
+    private static final Class<?>[] ENTITIES = {
+            Author.class, ChatFeedback.class, ContentChunk.class, Conversa.class, EmbeddingOutboxEntry.class,
+            EmbeddingStoreEntry.class, ImportTask.class, ImportTaskPayload.class, Mensagem.class,
+            QueryTraceLogEntry.class, StudyNote.class, TheologicalSynonym.class, Topic.class, Work.class
+    };
+
+    private static final Class<?>[] QUERY_PROJECTIONS = {
+            ChunkProjection.class, ChunkTopicProjection.class, StudyNoteProjection.class, ReaderChunkDTO.class,
+            ReaderNoteDTO.class, ContentCountByWorkDTO.class, FeedbackResponseDTO.class, StudyNoteSourceDTO.class
+    };
+
+    private static final String[] JJWT_TYPES = {
+            "io.jsonwebtoken.impl.DefaultJwtParserBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtParser",
+            "io.jsonwebtoken.impl.DefaultJwtBuilder",
+            "io.jsonwebtoken.impl.DefaultClaims",
+            "io.jsonwebtoken.impl.DefaultHeader",
+            "io.jsonwebtoken.impl.DefaultJwsHeader",
+            "io.jsonwebtoken.impl.compression.DefaultCompressionCodecResolver",
+            "io.jsonwebtoken.impl.crypto.MacProvider",
+            "io.jsonwebtoken.jackson.io.JacksonSerializer",
+            "io.jsonwebtoken.jackson.io.JacksonDeserializer"
+    };
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.reflection().registerType(PGvector.class,
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        hints.reflection().registerType(PGvectorConverter.class,
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        hints.reflection().registerType(SourceReferenceConverter.class,
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+        for (Class<?> entity : ENTITIES) {
+            hints.reflection().registerType(entity,
+                    MemberCategory.DECLARED_FIELDS, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                    MemberCategory.INVOKE_DECLARED_METHODS);
+        }
+        for (Class<?> projection : QUERY_PROJECTIONS) {
+            hints.reflection().registerType(projection,
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+        hints.reflection().registerType(VectorBackfillRow.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+        hints.proxies().registerJdkProxy(VectorBackfillRow.class, TargetAware.class, SpringProxy.class,
+                DecoratingProxy.class);
+
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                SourceReference.class, QueryRouterResponse.class, MetadataFilter.class,
+                ChunkImportDTO.class, ChunkData.class, StudyNoteRequestDTO.class, PdfSource.class,
+                QueryTrace.LlmUsage.class, QueryExplain.Candidate.class, QueryExplain.Boost.class);
+
+        for (String type : VERTEX_AI_TYPES) {
+            hints.reflection().registerType(TypeReference.of(type),
+                    MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS,
+                    MemberCategory.DECLARED_FIELDS);
+        }
+
+        for (String type : JJWT_TYPES) {
+            hints.reflection().registerType(TypeReference.of(type),
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+        hints.resources().registerPattern("META-INF/services/io.jsonwebtoken.*");
+
+        hints.resources().registerPattern("org/apache/pdfbox/resources/**");
+        hints.resources().registerPattern("org/apache/fontbox/**");
+
+        hints.resources().registerPattern("data-content/**");
+        hints.resources().registerPattern("data-*.sql");
+    }
+}
@@ -8,7 +8,8 @@ import br.com.fereformada.api.model.Topic;
 import br.com.fereformada.api.model.Work;
 import br.com.fereformada.api.repository.*;
 import br.com.fereformada.api.service.ChunkingService;
-import br.com.fereformada.api.service.StudyNoteBatchService;
+import br.com.fereformada.api.service.GeminiGovernor;
+import br.com.fereformada.api.service.GenevaNotesLoader;
 import br.com.fereformada.api.service.TaggingService;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -21,11 +22,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import br.com.fereformada.api.service.GeminiApiClient;
-import br.com.fereformada.api.model.StudyNote;
-import br.com.fereformada.api.repository.StudyNoteRepository;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -33,15 +33,6 @@ import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import java.io.FileWriter;
-import java.io.PrintWriter;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.stream.Collectors;
 
 @Component
 public class DatabaseSeeder implements CommandLineRunner {
@@ -49,14 +40,19 @@ public class DatabaseSeeder implements CommandLineRunner {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseSeeder.class);
 
 
-    private PrintWriter notesLogWriter;
-
     private static final java.util.Set<String> SINGLE_CHAPTER_BOOKS = java.util.Set.of(
             "Obadias", "Filemom", "2 João", "3 João", "Judas"
     );
 
-    private final StudyNoteBatchService studyNoteBatchService;
-    private static final int BATCH_SIZE = 50;
+    private final GenevaNotesLoader genevaNotesLoader;
+    private final JdbcTemplate jdbcTemplate;
+    private final StartupTimings startupTimings;
+
+    private static final String CONFESSION_TITLE = "Confissão de Fé de Westminster";
+    private static final String LARGER_CATECHISM_TITLE = "Catecismo Maior de Westminster";
+    private static final String SHORTER_CATECHISM_TITLE = "Breve Catecismo de Westminster";
+    private static final String INSTITUTES_TITLE = "Institutas da Religião Cristã";
+    private static final String SYSTEMATIC_THEOLOGY_TITLE = "Teologia Sistemática";
     private final AuthorRepository authorRepository;
     private final WorkRepository workRepository;
     private final TopicRepository topicRepository;
@@ -65,12 +61,12 @@ public class DatabaseSeeder implements CommandLineRunner {
     private final ChunkingService chunkingService;
     private final TaggingService taggingService;
     private final GeminiApiClient geminiApiClient;
-    private final StudyNoteRepository studyNoteRepository;
 
     public DatabaseSeeder(AuthorRepository authorRepository, WorkRepository workRepository,
                           TopicRepository topicRepository, ContentChunkRepository contentChunkRepository,
                           ResourceLoader resourceLoader, ChunkingService chunkingService,
-                          TaggingService taggingService, GeminiApiClient geminiApiClient, StudyNoteRepository studyNoteRepository, StudyNoteBatchService studyNoteBatchService) {
+                          TaggingService taggingService, GeminiApiClient geminiApiClient, GenevaNotesLoader genevaNotesLoader,
+                          JdbcTemplate jdbcTemplate, StartupTimings startupTimings) {
         this.authorRepository = authorRepository;
         this.workRepository = workRepository;
         this.topicRepository = topicRepository;
@@ -79,8 +75,9 @@ public class DatabaseSeeder implements CommandLineRunner {
         this.chunkingService = chunkingService;
         this.taggingService = taggingService;
         this.geminiApiClient = geminiApiClient;
-        this.studyNoteRepository = studyNoteRepository;
-        this.studyNoteBatchService = studyNoteBatchService;
+        this.genevaNotesLoader = genevaNotesLoader;
+        this.jdbcTemplate = jdbcTemplate;
+        this.startupTimings = startupTimings;
 
     }
 
@@ -89,7 +86,9 @@ public class DatabaseSeeder implements CommandLineRunner {
         logger.info("🔍 Verificando status do banco de dados...");
 
         // Verificar o que já existe
+        long startNanos = System.nanoTime();
         DatabaseStatus status = checkDatabaseStatus();
+        startupTimings.record("seeder: status do banco", (System.nanoTime() - startNanos) / 1_000_000);
         logDatabaseStatus(status);
 
         if (status.isComplete()) {
@@ -100,49 +99,67 @@ public class DatabaseSeeder implements CommandLineRunner {
         logger.info("📦 Carregando dados faltantes...");
 
         // Garantir que tópicos e autores existem
-        ensureTopicsAndAuthorsExist();
+        startupTimings.time("seeder: tópicos e autores", this::ensureTopicsAndAuthorsExist);
 
         logger.info("✅ DatabaseSeeder: Dependências prontas. Catalogação de conteúdo pulada (será feita via Painel Admin).");
     }
 
-    private DatabaseStatus checkDatabaseStatus() {
+    /**
+     * Status do conteúdo numa única consulta (antes eram até 11): chunks por obra conhecida + notas de Genebra.
+     * Obra ausente = sem linha no resultado.
+     */
+    DatabaseStatus checkDatabaseStatus() {
         DatabaseStatus status = new DatabaseStatus();
         final int TOTAL_BIBLE_BOOKS = 66; // 39 AT + 27 NT
 
-        // Verificar obras existentes
-        status.hasConfession = workRepository.findByTitle("Confissão de Fé de Westminster").isPresent();
-        status.hasLargerCatechism = workRepository.findByTitle("Catecismo Maior de Westminster").isPresent();
-        status.hasShorterCatechism = workRepository.findByTitle("Breve Catecismo de Westminster").isPresent();
-        status.hasInstitutes = workRepository.findByTitle("Institutas da Religião Cristã").isPresent();
-
-        // Contar chunks por obra
-        if (status.hasConfession) {
-            status.confessionChunks = contentChunkRepository.countByWorkTitle("Confissão de Fé de Westminster");
-        }
-        if (status.hasLargerCatechism) {
-            status.largerCatechismChunks = contentChunkRepository.countByWorkTitle("Catecismo Maior de Westminster");
-        }
-        if (status.hasShorterCatechism) {
-            status.shorterCatechismChunks = contentChunkRepository.countByWorkTitle("Breve Catecismo de Westminster");
-        }
-        if (status.hasInstitutes) {
-            status.institutesChunks = contentChunkRepository.countByWorkTitle("Institutas da Religião Cristã");
-        }
-
-        if (status.hasSystematicTheology) {
-            status.systematicTheologyChunks = contentChunkRepository.countByWorkTitle("Teologia Sistemática");
-        }
-
-        // --- CORREÇÃO APLICADA AQUI ---
-
-        // 1. ADICIONE ESTA LINHA para buscar a contagem de livros distintos
-        long processedBooksCount = studyNoteRepository.countDistinctBookBySource("Bíblia de Genebra");
-
-        // Esta linha é para o log, então a mantemos
-        status.genevaNotesCount = studyNoteRepository.countBySource("Bíblia de Genebra");
-
-        // 2. USE a variável que acabamos de criar para a verificação
-        status.hasGenevaNotes = (processedBooksCount >= TOTAL_BIBLE_BOOKS);
+        jdbcTemplate.query("""
+                        SELECT 'work' AS kind, w.title AS name, COUNT(c.id) AS total
+                        FROM works w LEFT JOIN content_chunks c ON c.work_id = w.id
+                        WHERE w.title IN (?, ?, ?, ?, ?)
+                        GROUP BY w.title
+                        UNION ALL
+                        SELECT 'notes', 'notes', COUNT(*) FROM study_notes WHERE source = ?
+                        UNION ALL
+                        SELECT 'notes', 'books', COUNT(DISTINCT book) FROM study_notes WHERE source = ?
+                        """,
+                rs -> {
+                    String name = rs.getString("name");
+                    long total = rs.getLong("total");
+                    if ("notes".equals(rs.getString("kind"))) {
+                        if ("notes".equals(name)) {
+                            status.genevaNotesCount = total;
+                        } else {
+                            status.hasGenevaNotes = total >= TOTAL_BIBLE_BOOKS;
+                        }
+                        return;
+                    }
+                    switch (name) {
+                        case CONFESSION_TITLE -> {
+                            status.hasConfession = true;
+                            status.confessionChunks = total;
+                        }
+                        case LARGER_CATECHISM_TITLE -> {
+                            status.hasLargerCatechism = true;
+                            status.largerCatechismChunks = total;
+                        }
+                        case SHORTER_CATECHISM_TITLE -> {
+                            status.hasShorterCatechism = true;
+                            status.shorterCatechismChunks = total;
+                        }
+                        case INSTITUTES_TITLE -> {
+                            status.hasInstitutes = true;
+                            status.institutesChunks = total;
+                        }
+                        case SYSTEMATIC_THEOLOGY_TITLE -> {
+                            status.hasSystematicTheology = true;
+                            status.systematicTheologyChunks = total;
+                        }
+                        default -> {
+                        }
+                    }
+                },
+                CONFESSION_TITLE, LARGER_CATECHISM_TITLE, SHORTER_CATECHISM_TITLE, INSTITUTES_TITLE,
+                SYSTEMATIC_THEOLOGY_TITLE, GenevaNotesLoader.SOURCE_NAME, GenevaNotesLoader.SOURCE_NAME);
 
         return status;
     }
@@ -256,7 +273,7 @@ public class DatabaseSeeder implements CommandLineRunner {
     }
 
     // Classe auxiliar para status
-    private static class DatabaseStatus {
+    static class DatabaseStatus {
         boolean hasConfession = false;
         boolean hasLargerCatechism = false;
         boolean hasShorterCatechism = false;
@@ -310,7 +327,7 @@ public class DatabaseSeeder implements CommandLineRunner {
 
             // Gera o embedding
             try {
-                PGvector vector = geminiApiClient.generateEmbedding(cleanedContent);
+                PGvector vector = generateSeedEmbedding(cleanedContent);
                 chunk.setContentVector(convertPGvectorToFloatArray(vector));
                 logger.debug("Embedding gerado com sucesso para chunk {}/{}", processedChunks, totalChunks);
             } catch (Exception e) {
@@ -367,7 +384,7 @@ public class DatabaseSeeder implements CommandLineRunner {
             // Gera o embedding para a combinação da pergunta e resposta.
             try {
                 String textToEmbed = parsedChunk.question() + "\n" + cleanedAnswer;
-                PGvector vector = geminiApiClient.generateEmbedding(textToEmbed);
+                PGvector vector = generateSeedEmbedding(textToEmbed);
                 chunk.setContentVector(convertPGvectorToFloatArray(vector));
                 logger.debug("Embedding gerado com sucesso para pergunta {}/{}", processedChunks, totalChunks);
             } catch (Exception e) {
@@ -424,7 +441,7 @@ public class DatabaseSeeder implements CommandLineRunner {
             // Gera o embedding para a combinação da pergunta e resposta.
             try {
                 String textToEmbed = parsedChunk.question() + "\n" + cleanedAnswer;
-                PGvector vector = geminiApiClient.generateEmbedding(textToEmbed);
+                PGvector vector = generateSeedEmbedding(textToEmbed);
                 chunk.setContentVector(convertPGvectorToFloatArray(vector));
                 logger.debug("Embedding gerado com sucesso para pergunta {}/{}", processedChunks, totalChunks);
             } catch (Exception e) {
@@ -485,7 +502,7 @@ public class DatabaseSeeder implements CommandLineRunner {
 
             // Gera o embedding para o conteúdo da seção.
             try {
-                PGvector vector = geminiApiClient.generateEmbedding(cleanedContent);
+                PGvector vector = generateSeedEmbedding(cleanedContent);
                 chunk.setContentVector(convertPGvectorToFloatArray(vector));
                 logger.debug("Embedding gerado com sucesso para seção {}/{}", processedChunks, totalChunks);
             } catch (Exception e) {
@@ -511,6 +528,13 @@ public class DatabaseSeeder implements CommandLineRunner {
         logger.info("'{}' carregado e salvo no banco. Total: {} chunks", WORK_TITLE, processedChunks);
     }
 
+    /**
+     * Embedding de carga: faixa BATCH do governador, para não competir com o chat dos usuários.
+     */
+    private PGvector generateSeedEmbedding(String text) {
+        return GeminiGovernor.runInBatchLane(() -> geminiApiClient.generateEmbedding(text));
+    }
+
     private float[] convertPGvectorToFloatArray(PGvector pgVector) {
         if (pgVector == null) {
             return null;
@@ -595,9 +619,7 @@ public class DatabaseSeeder implements CommandLineRunner {
     }
 
     private String cleanChunkText(String rawChunkContent) {
-        String cleaned = rawChunkContent.replaceAll("(?m)^\\s*\\d+\\s*$", "");
-        cleaned = cleaned.replaceAll("[“”]", "\"");
-        return cleaned.replaceAll(" +", " ").trim();
+        return chunkingService.cleanChunkText(rawChunkContent);
     }
 
     private String extractTextFromPdf(String resourcePath, int startPage, int endPage) throws IOException {
@@ -613,256 +635,8 @@ public class DatabaseSeeder implements CommandLineRunner {
     }
 
     private void loadGenevaStudyNotes() {
-        final String SOURCE_NAME = "Bíblia de Genebra";
-        logger.info("Verificando e carregando notas da '{}' livro por livro...", SOURCE_NAME);
-
-        // Inicializar o arquivo de log
-        try {
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-            String logFileName = "notes_processing_log_" + timestamp + ".txt";
-            notesLogWriter = new PrintWriter(new FileWriter(logFileName, true));
-            notesLogWriter.println("=== LOG DE PROCESSAMENTO DE NOTAS BÍBLICAS ===");
-            notesLogWriter.println("Iniciado em: " + LocalDateTime.now());
-            notesLogWriter.println("================================================\n");
-            notesLogWriter.flush();
-            logger.info("📝 Arquivo de log criado: {}", logFileName);
-        } catch (IOException e) {
-            logger.error("Erro ao criar arquivo de log: {}", e.getMessage());
-        }
-
-        List<String> otBooks = List.of(
-                "Gênesis", "Êxodo", "Levítico", "Números", "Deuteronômio", "Josué", "Juízes", "Rute",
-                "1_Samuel", "2_Samuel", "1_Reis", "2_Reis", "1_Crônicas", "2_Crônicas", "Esdras",
-                "Neemias", "Ester", "Jó", "Salmos", "Provérbios", "Eclesiastes", "Cantares_de_salomão",
-                "Isaías", "Jeremias", "Lamentações_de_jeremias", "Ezequiel", "Daniel", "Oséias",
-                "Joel", "Amós", "Obadias", "Jonas", "Miquéias", "Naum", "Habacuque", "Sofonias",
-                "Ageu", "Zacarias", "Malaquias"
-        );
-
-        List<String> ntBooks = List.of(
-                "Mateus", "Marcos", "Lucas", "João", "Atos", "Romanos", "1_Coríntios", "2_Coríntios",
-                "Gálatas", "Efésios", "Filipenses", "Colossenses", "1_Tessalonicenses",
-                "2_Tessalonicenses", "1_Timóteo", "2_Timóteo", "Tito", "Filemom", "Hebreus",
-                "Tiago", "1_Pedro", "2_Pedro", "1_João", "2_João", "3_João", "Judas", "Apocalipse"
-        );
-
-        int totalNotesLoaded = 0;
-        int totalNotesSkipped = 0;
-        int booksSkipped = 0;
-
-        // Processar OT
-        for (String bookFileName : otBooks) {
-            String bookName = bookFileName.replace('_', ' ');
-
-            String filePath = "classpath:data-content/bible-notes/ot/" + bookFileName + ".txt";
-            int[] results = processStudyNoteFile(filePath, bookName, SOURCE_NAME);
-            totalNotesLoaded += results[0];
-            totalNotesSkipped += results[1];
-        }
-
-        // Processar NT
-        for (String bookFileName : ntBooks) {
-            String bookName = bookFileName.replace('_', ' ');
-            if (studyNoteRepository.countByBook(bookName) > 0) {
-                logger.info("⏭️ Notas para '{}' já existem no banco. Pulando.", bookName);
-                booksSkipped++;
-                continue;
-            }
-            String filePath = "classpath:data-content/bible-notes/nt/" + bookFileName + ".txt";
-            int[] results = processStudyNoteFile(filePath, bookName, SOURCE_NAME);
-            totalNotesLoaded += results[0];
-            totalNotesSkipped += results[1];
-        }
-
-        // Finalizar log
-        if (notesLogWriter != null) {
-            notesLogWriter.println("\n=== RESUMO FINAL ===");
-            notesLogWriter.println("Total de notas processadas: " + totalNotesLoaded);
-            notesLogWriter.println("Total de notas puladas: " + totalNotesSkipped);
-            notesLogWriter.println("Total de livros pulados: " + booksSkipped);
-            notesLogWriter.println("Finalizado em: " + LocalDateTime.now());
-            notesLogWriter.close();
-        }
-
-        logger.info("Carregamento das notas finalizado. {} livros pulados, {} notas carregadas, {} notas puladas.",
-                booksSkipped, totalNotesLoaded, totalNotesSkipped);
-    }
-
-
-    private int[] processStudyNoteFile(String filePath, String bookName, String sourceName) {
-
-        Set<String> existingKeys = studyNoteRepository.findExistingNoteKeysByBook(bookName);
-        if (!existingKeys.isEmpty()) {
-            logger.info("Retomando processamento de '{}'. {} notas já existem e serão puladas.", bookName, existingKeys.size());
-        } else {
-            logger.info("Iniciando processamento de '{}' do zero.", bookName);
-        }
-
-        logger.info("Processando notas para '{}' do arquivo {}...", bookName, filePath);
-
-        // Log no arquivo
-        if (notesLogWriter != null) {
-            notesLogWriter.println("\n--- LIVRO: " + bookName + " ---");
-            notesLogWriter.println("Arquivo: " + filePath);
-            notesLogWriter.flush();
-        }
-
-        String rawText;
-        try {
-            rawText = extractTextFromTxt(filePath);
-        } catch (IOException e) {
-            logger.error("ERRO: Não foi possível ler o arquivo '{}'. Verifique se ele existe. Pulando.", filePath);
-            if (notesLogWriter != null) {
-                notesLogWriter.println("ERRO: Arquivo não encontrado!");
-                notesLogWriter.flush();
-            }
-            return new int[]{0, 0};
-        }
-
-        String cleanedText = rawText.trim();
-        if (cleanedText.startsWith(bookName)) {
-            cleanedText = cleanedText.substring(bookName.length()).trim();
-        }
-
-        String[] noteBlocks = cleanedText.split("\\*\\s+(?=[\\d])");
-
-        int processedCount = 0;
-        int skippedCount = existingKeys.size();
-
-        // Uma única lista para acumular as notas para processamento e salvamento
-        List<StudyNote> notesBatch = new java.util.ArrayList<>(BATCH_SIZE);
-
-        for (String block : noteBlocks) {
-            if (block.trim().isEmpty()) {
-                continue;
-            }
-
-            try {
-                StudyNote note = parseNoteBlock(block.trim(), bookName, sourceName);
-                if (note != null) {
-                    String noteKey = note.getStartChapter() + ":" + note.getStartVerse();
-                    if (existingKeys.contains(noteKey)) {
-                        continue; // Pula nota já existente
-                    }
-
-                    // 1. Adiciona a nota (ainda sem vetor) a um lote temporário
-                    notesBatch.add(note);
-                    processedCount++;
-
-                    // 2. Quando o lote estiver cheio, processe-o de uma vez
-                    if (notesBatch.size() >= BATCH_SIZE) {
-                        logger.info("Processando lote de {} notas para '{}'. Gerando embeddings...", notesBatch.size(), bookName);
-
-                        // 3. Extrai apenas os textos para enviar à API
-                        List<String> textsToEmbed = notesBatch.stream()
-                                .map(StudyNote::getNoteContent)
-                                .collect(Collectors.toList());
-
-                        // 4. Faz UMA ÚNICA chamada à API para o lote inteiro
-                        List<PGvector> vectors = geminiApiClient.generateEmbeddingsInBatch(textsToEmbed);
-
-                        // 5. Atribui os vetores de volta às notas correspondentes no lote
-                        if (vectors.size() == notesBatch.size()) {
-                            for (int i = 0; i < notesBatch.size(); i++) {
-                                notesBatch.get(i).setNoteVector(convertPGvectorToFloatArray(vectors.get(i)));
-                            }
-                        } else {
-                            logger.error("Erro de contagem de vetores para o lote de {}. Esperado: {}, Recebido: {}", bookName, notesBatch.size(), vectors.size());
-                        }
-
-                        // 6. Salva o lote de notas (agora completo) no banco de dados
-                        studyNoteBatchService.saveBatch(notesBatch);
-                        notesBatch.clear(); // Limpa o lote para o próximo ciclo
-                    }
-                } else {
-                    logSkippedNote(bookName, block);
-                }
-            } catch (Exception e) {
-                // ... (lógica de erro continua igual)
-            }
-        }
-
-        // 7. IMPORTANTE: Processa e salva o último lote residual que sobrou
-        if (!notesBatch.isEmpty()) {
-            logger.info("Processando lote final de {} notas para '{}'. Gerando embeddings...", notesBatch.size(), bookName);
-
-            List<String> textsToEmbed = notesBatch.stream()
-                    .map(StudyNote::getNoteContent)
-                    .collect(Collectors.toList());
-            List<PGvector> vectors = geminiApiClient.generateEmbeddingsInBatch(textsToEmbed);
-
-            if (vectors.size() == notesBatch.size()) {
-                for (int i = 0; i < notesBatch.size(); i++) {
-                    notesBatch.get(i).setNoteVector(convertPGvectorToFloatArray(vectors.get(i)));
-                }
-            } else {
-                logger.error("Erro de contagem de vetores para o lote final de {}. Esperado: {}, Recebido: {}", bookName, notesBatch.size(), vectors.size());
-            }
-
-            studyNoteBatchService.saveBatch(notesBatch);
-        }
-
-        if (skippedCount > 0) {
-            logger.info("✔ {} novas notas processadas para '{}'. Total de {} notas já existentes foram puladas.", processedCount, bookName, skippedCount);
-        } else {
-            logger.info("✔ Sucesso! {} notas processadas para {}.", processedCount, bookName);
-        }
-
-        return new int[]{processedCount, skippedCount};
-    }
-
-    private void logSkippedNote(String bookName, String block) {
-        if (notesLogWriter != null) {
-            String preview = block.substring(0, Math.min(100, block.length()));
-            if (block.length() > 100) preview += "...";
-            notesLogWriter.println("  [PULADA] " + bookName + ": " + preview.replaceAll("\\s+", " "));
-            notesLogWriter.flush();
-        }
-    }
-
-    private StudyNote parseNoteBlock(String block, String bookName, String sourceName) {
-        // Regex mais flexível para capturar diferentes formatos de referência
-        // Aceita: "1.1", "1:1", "1.1-3", "1:1-3", "1", "1-3", etc.
-        Pattern pattern = Pattern.compile("^([\\d]+[.:,]?[\\d]*[\\-—]?[\\d]*[.:,]?[\\d]*)\\s+(.*)", Pattern.DOTALL);
-        Matcher matcher = pattern.matcher(block);
-
-        if (!matcher.find()) {
-            logger.warn("Formato de nota não reconhecido para {}: {}", bookName,
-                    block.substring(0, Math.min(50, block.length())));
-            return null;
-        }
-
-        String reference = matcher.group(1).trim();
-        String noteContent = matcher.group(2).trim();
-
-        // Se o conteúdo da nota estiver vazio ou muito curto, pular
-        if (noteContent.length() < 10) {
-            logger.debug("Nota muito curta ou vazia para {}: {}", bookName, reference);
-            return null;
-        }
-
-        StudyNote note = new StudyNote();
-        note.setSource(sourceName);
-        note.setBook(bookName);
-        note.setNoteContent(cleanChunkText(noteContent));
-
-        // Parse da referência melhorado
-        try {
-            int[] parsedRef = parseReferenceForStudyNotes(reference, bookName);
-            note.setStartChapter(parsedRef[0]);
-            note.setStartVerse(parsedRef[1]);
-            note.setEndChapter(parsedRef[2]);
-            note.setEndVerse(parsedRef[3]);
-        } catch (Exception e) {
-            logger.warn("Erro ao fazer parse da referência '{}' para {}: {}", reference, bookName, e.getMessage());
-            // Para notas sem referência específica, usar valores padrão
-            note.setStartChapter(1);
-            note.setStartVerse(1);
-            note.setEndChapter(1);
-            note.setEndVerse(1);
-        }
-
-        return note;
+        // Livros em paralelo, vetores em lote e um commit por livro (ver GenevaNotesLoader)
+        genevaNotesLoader.loadAll();
     }
 
     private void loadSystematicTheology(Author author, List<Topic> availableTopics) throws IOException {
@@ -905,7 +679,7 @@ public class DatabaseSeeder implements CommandLineRunner {
 
             // Gere o embedding
             try {
-                PGvector vector = geminiApiClient.generateEmbedding(data.getContent());
+                PGvector vector = generateSeedEmbedding(data.getContent());
                 chunk.setContentVector(convertPGvectorToFloatArray(vector));
             } catch (Exception e) {
                 logger.error("Erro ao gerar embedding para chunk {}/{}: {}", processedChunks, totalChunks, e.getMessage());
@@ -926,106 +700,6 @@ public class DatabaseSeeder implements CommandLineRunner {
         logger.info("'{}' carregado e salvo no banco. Total: {} chunks", WORK_TITLE, processedChunks);
     }
 
-    private int[] parseReferenceForStudyNotes(String reference, String bookName) {
-        int startChapter = 1, startVerse = 1;
-        int endChapter = 1, endVerse = 1;
-
-        try {
-            // Remover espaços e caracteres não numéricos exceto . : , -
-            String cleanRef = reference.replaceAll("\\s+", "")
-                    .replace("—", "-")  // hífen longo
-                    .replace("–", "-"); // hífen médio
-
-            // Detectar se a referência usa formato capítulo.versículo ou capítulo:versículo
-            if (cleanRef.contains(".") || cleanRef.contains(":")) {
-                // Formato com capítulo e versículo: "5.21", "5:21", "5.21-23", etc.
-                String[] parts;
-                if (cleanRef.contains("-")) {
-                    // Range: "5.21-23" ou "5.21-6.1"
-                    parts = cleanRef.split("-");
-                    String startRef = parts[0];
-                    String endRef = parts.length > 1 ? parts[1] : startRef;
-
-                    // Parse início
-                    String[] startParts = startRef.split("[.:]");
-                    startChapter = Integer.parseInt(startParts[0]);
-                    startVerse = startParts.length > 1 ? Integer.parseInt(startParts[1]) : 1;
-
-                    // Parse fim
-                    if (endRef.contains(".") || endRef.contains(":")) {
-                        String[] endParts = endRef.split("[.:]");
-                        endChapter = Integer.parseInt(endParts[0]);
-                        endVerse = endParts.length > 1 ? Integer.parseInt(endParts[1]) : 1;
-                    } else {
-                        // Se o fim é apenas um número, assumir que é versículo do mesmo capítulo
-                        endChapter = startChapter;
-                        endVerse = Integer.parseInt(endRef);
-                    }
-                } else if (cleanRef.contains(",")) {
-                    // Lista: "5.21,22" - tratar como range
-                    parts = cleanRef.split(",");
-                    String[] startParts = parts[0].split("[.:]");
-                    startChapter = Integer.parseInt(startParts[0]);
-                    startVerse = startParts.length > 1 ? Integer.parseInt(startParts[1]) : 1;
-
-                    // Para o fim, pegar o último item da lista
-                    String lastRef = parts[parts.length - 1];
-                    if (lastRef.contains(".") || lastRef.contains(":")) {
-                        String[] endParts = lastRef.split("[.:]");
-                        endChapter = Integer.parseInt(endParts[0]);
-                        endVerse = endParts.length > 1 ? Integer.parseInt(endParts[1]) : 1;
-                    } else {
-                        endChapter = startChapter;
-                        endVerse = Integer.parseInt(lastRef);
-                    }
-                } else {
-                    // Versículo único: "5.21" ou "5:21"
-                    parts = cleanRef.split("[.:]");
-                    startChapter = Integer.parseInt(parts[0]);
-                    startVerse = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
-                    endChapter = startChapter;
-                    endVerse = startVerse;
-                }
-            } else {
-                // Formato sem capítulo (para livros de capítulo único ou referências só de versículo)
-                if (SINGLE_CHAPTER_BOOKS.contains(bookName)) {
-                    startChapter = 1;
-                    endChapter = 1;
-
-                    if (cleanRef.contains("-")) {
-                        // Range: "1-3", "7-11"
-                        String[] parts = cleanRef.split("-");
-                        startVerse = Integer.parseInt(parts[0]);
-                        endVerse = parts.length > 1 && !parts[1].isEmpty() ?
-                                Integer.parseInt(parts[1]) : startVerse;
-                    } else if (cleanRef.contains(",")) {
-                        // Lista: "12,13"
-                        String[] parts = cleanRef.split(",");
-                        startVerse = Integer.parseInt(parts[0]);
-                        endVerse = Integer.parseInt(parts[parts.length - 1]);
-                    } else {
-                        // Versículo único: "1", "7"
-                        startVerse = Integer.parseInt(cleanRef);
-                        endVerse = startVerse;
-                    }
-                } else {
-                    // Para outros livros, número sozinho pode ser capítulo
-                    startChapter = Integer.parseInt(cleanRef.replaceAll("[^\\d]", ""));
-                    endChapter = startChapter;
-                    startVerse = 1;
-                    endVerse = 999; // Indicador de "capítulo inteiro"
-                }
-            }
-
-        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
-            logger.debug("Usando valores padrão para referência complexa: {}", reference);
-            // Valores padrão já definidos no início
-        }
-
-        return new int[]{startChapter, startVerse, endChapter, endVerse};
-    }
-
-
     /**
      * Novo método auxiliar para ler arquivos de texto do classpath.
      */
@@ -0,0 +1,33 @@
+package br.com.fereformada.api.config;
+
+import br.com.fereformada.api.service.QueryTracer;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code /actuator/ragtrace}: p50/p95/p99 de cada etapa do pipeline RAG (por rota e resultado de cache)
+ * e os traces das últimas requisições. Os mesmos timers ({@code rag.stage}, {@code rag.request}) também
+ * aparecem em {@code /actuator/metrics}.
+ */
+@Component
+@Endpoint(id = "ragtrace")
+public class QueryTraceEndpoint {
+
+    private final QueryTracer queryTracer;
+
+    public QueryTraceEndpoint(QueryTracer queryTracer) {
+        this.queryTracer = queryTracer;
+    }
+
+    @ReadOperation
+    public Map<String, Object> traces() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("stages", queryTracer.getStageSummary());
+        body.put("recent", queryTracer.getRecentTraces());
+        return body;
+    }
+}
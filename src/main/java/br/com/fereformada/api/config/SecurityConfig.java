@@ -34,6 +34,7 @@ public class SecurityConfig {
                 .authorizeHttpRequests(authz -> authz
                         // Swagger e Health Check (público)
                         .requestMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()
+                        .requestMatchers("/actuator/health/**").permitAll()
 
                         // Permite OPTIONS (Preflight CORS)
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
@@ -49,6 +50,7 @@ public class SecurityConfig {
 
                         // 👑 ENDPOINTS DE ADMIN (requer role ADMIN ou MODERATOR)
                         .requestMatchers("/api/admin/**").hasAnyRole("ADMIN", "MODERATOR")
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
 
                         // Qualquer outra rota exige autenticação
                         .anyRequest().authenticated()
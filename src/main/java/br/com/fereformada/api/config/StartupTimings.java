@@ -0,0 +1,57 @@
+package br.com.fereformada.api.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tempo de cada fase da subida (contexto, seeder, warm-up), na ordem em que terminaram.
+ * O relatório vai para o log quando a instância fica pronta e para o performance-stats do painel admin.
+ */
+@Component
+public class StartupTimings {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupTimings.class);
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private volatile Long readyAtUptimeMillis;
+
+    public synchronized void record(String phase, long millis) {
+        phases.put(phase, millis);
+    }
+
+    /**
+     * Executa e cronometra uma fase.
+     */
+    public void time(String phase, Runnable body) {
+        long startNanos = System.nanoTime();
+        try {
+            body.run();
+        } finally {
+            record(phase, (System.nanoTime() - startNanos) / 1_000_000);
+        }
+    }
+
+    /**
+     * Marca a instância como pronta para tráfego e escreve o relatório.
+     */
+    public void markReady() {
+        readyAtUptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        StringBuilder report = new StringBuilder();
+        synchronized (this) {
+            phases.forEach((phase, millis) -> report.append(String.format("%n  • %-28s %6d ms", phase, millis)));
+        }
+        logger.info("⏱️ Subida concluída: pronta para tráfego {} ms após o início da JVM.{}", readyAtUptimeMillis, report);
+    }
+
+    public synchronized Map<String, Object> getReport() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("phasesMillis", new LinkedHashMap<>(phases));
+        report.put("readyAtUptimeMillis", readyAtUptimeMillis);
+        return report;
+    }
+}
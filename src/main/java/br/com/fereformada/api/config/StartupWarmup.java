@@ -0,0 +1,83 @@
+package br.com.fereformada.api.config;
+
+import br.com.fereformada.api.repository.TopicRepository;
+import br.com.fereformada.api.service.QueryService;
+import br.com.fereformada.api.service.TaggingService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Warm-up em segundo plano: o que antes rodava no construtor do QueryService (catálogo de obras, regex de
+ * busca direta) e os caches de primeira consulta saem do caminho da subida.
+ * <p>
+ * O contexto sobe e responde ao liveness logo; o readiness (grupo {@code readiness} do actuator, que inclui
+ * este indicador) fica OUT_OF_SERVICE até o warm-up terminar, então o balanceador só manda tráfego
+ * para a réplica nova quando ela já está quente. Se uma consulta chegar antes, cada serviço monta o que
+ * precisa sob demanda.
+ */
+@Component
+public class StartupWarmup implements HealthIndicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupWarmup.class);
+
+    private final QueryService queryService;
+    private final TaggingService taggingService;
+    private final TopicRepository topicRepository;
+    private final StartupTimings startupTimings;
+
+    private volatile boolean done;
+    private volatile Throwable failure;
+
+    public StartupWarmup(QueryService queryService,
+                         TaggingService taggingService,
+                         TopicRepository topicRepository,
+                         StartupTimings startupTimings) {
+        this.queryService = queryService;
+        this.taggingService = taggingService;
+        this.topicRepository = topicRepository;
+        this.startupTimings = startupTimings;
+    }
+
+    @EventListener
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        if (event.getTimeTaken() != null) {
+            startupTimings.record("contexto + runners", event.getTimeTaken().toMillis());
+        }
+        Thread.ofPlatform().name("startup-warmup").daemon().start(this::warmUp);
+    }
+
+    @Override
+    public Health health() {
+        if (done) {
+            return Health.up().build();
+        }
+        if (failure != null) {
+            // Falha no warm-up não derruba a réplica: os serviços montam o que falta sob demanda
+            return Health.up().withDetail("warmUpError", String.valueOf(failure.getMessage())).build();
+        }
+        return Health.outOfService().withDetail("warmUp", "em andamento").build();
+    }
+
+    private void warmUp() {
+        logger.info("🔥 Warm-up iniciado (readiness fora de serviço até terminar)...");
+        try {
+            startupTimings.time("warm-up: catálogo de obras", queryService::warmUp);
+            startupTimings.time("warm-up: sinônimos", queryService::getSynonymMap);
+            startupTimings.time("warm-up: regras de tagging", () -> {
+                if (!taggingService.hasRules()) {
+                    taggingService.initializeRules(topicRepository.findAll());
+                }
+            });
+            done = true;
+        } catch (RuntimeException e) {
+            failure = e;
+            logger.error("⚠️ Warm-up falhou; os serviços vão montar o que falta sob demanda: {}", e.getMessage(), e);
+        }
+        startupTimings.markReady();
+    }
+}
@@ -1,21 +1,51 @@
 package br.com.fereformada.api.controller;
 
+import br.com.fereformada.api.config.StartupTimings;
+import br.com.fereformada.api.dto.ChatRequest;
 import br.com.fereformada.api.dto.ImportTaskDTO;
+import br.com.fereformada.api.dto.QueryRequest;
+import br.com.fereformada.api.dto.QueryServiceResult;
 import br.com.fereformada.api.model.ImportTask;
+import br.com.fereformada.api.model.enums.PdfSource;
 import br.com.fereformada.api.model.enums.TaskStatus;
+import br.com.fereformada.api.model.enums.TaskType;
 import br.com.fereformada.api.repository.ContentChunkRepository;
 import br.com.fereformada.api.repository.ImportTaskRepository;
-import br.com.fereformada.api.service.AsyncBackfillService;
+import br.com.fereformada.api.service.BulkEmbeddingExecutor;
+import br.com.fereformada.api.service.EmbeddingMicroBatcher;
+import br.com.fereformada.api.service.EmbeddingOutboxDispatcher;
+import br.com.fereformada.api.service.EmbeddingStore;
+import br.com.fereformada.api.service.GeminiGovernor;
+import br.com.fereformada.api.service.JobQueueWorker;
+import br.com.fereformada.api.service.LlmResilience;
+import br.com.fereformada.api.service.LlmUsageTracker;
+import br.com.fereformada.api.service.PdfIngestionPipeline;
+import br.com.fereformada.api.service.PgCopyBulkLoader;
+import br.com.fereformada.api.service.QueryCoalescer;
+import br.com.fereformada.api.service.QueryService;
+import br.com.fereformada.api.service.QueryTrace;
+import br.com.fereformada.api.service.QueryTraceLog;
+import br.com.fereformada.api.service.QueryTracer;
+import br.com.fereformada.api.service.RetrievalCache;
 import br.com.fereformada.api.service.TaskCreationService; // 🚀 IMPORTAR
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 // import org.springframework.transaction.annotation.Transactional; // 🚀 REMOVER
 
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/admin/utils")
 public class AdminUtilityController {
@@ -23,13 +53,116 @@ public class AdminUtilityController {
     private static final Logger logger = LoggerFactory.getLogger(AdminUtilityController.class);
 
     // 🚀 REMOVIDOS REPOSITÓRIOS DESNECESSÁRIOS
-    private final AsyncBackfillService asyncBackfillService;
     private final TaskCreationService taskCreationService; // 🚀 INJETAR NOVO SERVIÇO
+    private final RetrievalCache retrievalCache;
+    private final QueryCoalescer queryCoalescer;
+    private final GeminiGovernor geminiGovernor;
+    private final LlmResilience llmResilience;
+    private final EmbeddingMicroBatcher embeddingMicroBatcher;
+    private final BulkEmbeddingExecutor bulkEmbeddingExecutor;
+    private final PgCopyBulkLoader bulkLoader;
+    private final EmbeddingStore embeddingStore;
+    private final EmbeddingOutboxDispatcher embeddingOutboxDispatcher;
+    private final JobQueueWorker jobQueueWorker;
+    private final PdfIngestionPipeline pdfIngestionPipeline;
+    private final StartupTimings startupTimings;
+    private final QueryTracer queryTracer;
+    private final LlmUsageTracker llmUsageTracker;
+    private final QueryTraceLog queryTraceLog;
+    private final QueryService queryService;
 
-    public AdminUtilityController(AsyncBackfillService asyncBackfillService,
-                                  TaskCreationService taskCreationService) {
-        this.asyncBackfillService = asyncBackfillService;
+    public AdminUtilityController(TaskCreationService taskCreationService,
+                                  RetrievalCache retrievalCache,
+                                  QueryCoalescer queryCoalescer,
+                                  GeminiGovernor geminiGovernor,
+                                  LlmResilience llmResilience,
+                                  EmbeddingMicroBatcher embeddingMicroBatcher,
+                                  BulkEmbeddingExecutor bulkEmbeddingExecutor,
+                                  PgCopyBulkLoader bulkLoader,
+                                  EmbeddingStore embeddingStore,
+                                  EmbeddingOutboxDispatcher embeddingOutboxDispatcher,
+                                  JobQueueWorker jobQueueWorker,
+                                  PdfIngestionPipeline pdfIngestionPipeline,
+                                  StartupTimings startupTimings,
+                                  QueryTracer queryTracer,
+                                  LlmUsageTracker llmUsageTracker,
+                                  QueryTraceLog queryTraceLog,
+                                  QueryService queryService) {
         this.taskCreationService = taskCreationService;
+        this.retrievalCache = retrievalCache;
+        this.queryCoalescer = queryCoalescer;
+        this.geminiGovernor = geminiGovernor;
+        this.llmResilience = llmResilience;
+        this.embeddingMicroBatcher = embeddingMicroBatcher;
+        this.bulkEmbeddingExecutor = bulkEmbeddingExecutor;
+        this.bulkLoader = bulkLoader;
+        this.embeddingStore = embeddingStore;
+        this.embeddingOutboxDispatcher = embeddingOutboxDispatcher;
+        this.jobQueueWorker = jobQueueWorker;
+        this.pdfIngestionPipeline = pdfIngestionPipeline;
+        this.startupTimings = startupTimings;
+        this.queryTracer = queryTracer;
+        this.llmUsageTracker = llmUsageTracker;
+        this.queryTraceLog = queryTraceLog;
+        this.queryService = queryService;
+    }
+
+    /**
+     * Snapshot dos caches, do single-flight e do governador do Gemini (para o painel admin).
+     */
+    @GetMapping("/performance-stats")
+    public ResponseEntity<Map<String, Object>> getPerformanceStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("retrievalCache", retrievalCache.getStats());
+        stats.put("queryCoalescing", queryCoalescer.getStats());
+        stats.put("geminiGovernor", geminiGovernor.getStats());
+        stats.put("llmResilience", llmResilience.getStats());
+        stats.put("embeddingMicroBatch", embeddingMicroBatcher.getStats());
+        stats.put("bulkEmbedding", bulkEmbeddingExecutor.getStats());
+        stats.put("bulkLoad", bulkLoader.getStats());
+        stats.put("embeddingStore", embeddingStore.getStats());
+        stats.put("embeddingOutbox", embeddingOutboxDispatcher.getStats());
+        stats.put("jobQueue", jobQueueWorker.getStats());
+        stats.put("pdfIngestion", pdfIngestionPipeline.getStats());
+        stats.put("startup", startupTimings.getReport());
+        stats.put("queryStages", queryTracer.getStats());
+        stats.put("llmUsage", llmUsageTracker.getStats());
+        stats.put("queryTraceLog", queryTraceLog.getStats());
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * Refaz a pergunta (sem caches, sem single-flight, sem salvar mensagem) e devolve o detalhe da recuperação:
+     * rota, filtro, ragQuery, candidatos e scores de cada ramo, boosts, ordem final, tempos por etapa e uso do LLM.
+     * O replay também vai para o log de traces (endpoint "explain").
+     */
+    @PostMapping("/explain")
+    public ResponseEntity<Map<String, Object>> explainQuery(@RequestBody QueryRequest request, Authentication authentication) {
+        if (request.question() == null || request.question().isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        logger.info("Explain da pergunta '{}' solicitado.", request.question());
+
+        QueryTrace trace = queryTracer.beginReplay("explain", (String) authentication.getPrincipal());
+        QueryServiceResult result;
+        try {
+            result = queryService.query(new ChatRequest(request.question(), null));
+        } finally {
+            queryTracer.end(trace);
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>(trace.toMap());
+        body.put("answer", result.answer());
+        body.put("references", result.references());
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Últimos traces amostrados gravados no log (mais recentes primeiro).
+     */
+    @GetMapping("/query-traces")
+    public ResponseEntity<List<Map<String, Object>>> getQueryTraces(@RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(queryTraceLog.findRecent(limit));
     }
 
     /**
@@ -39,28 +172,65 @@ public class AdminUtilityController {
     @PostMapping("/backfill-question-vectors")
     // @Transactional // 🚀 REMOVIDO
     public ResponseEntity<ImportTaskDTO> backfillQuestionVectors() {
-        logger.info("Recebida requisição de backfill de question_vectors...");
+        return startBackfill(TaskType.BACKFILL_QUESTION_VECTORS);
+    }
+
+    /**
+     * Preenche content_vector dos chunks que ficaram sem vetor (ex: falhas na importação).
+     */
+    @PostMapping("/backfill-content-vectors")
+    public ResponseEntity<ImportTaskDTO> backfillContentVectors() {
+        return startBackfill(TaskType.BACKFILL_CONTENT_VECTORS);
+    }
+
+    /**
+     * Preenche note_vector das notas de estudo que ficaram sem vetor.
+     */
+    @PostMapping("/backfill-note-vectors")
+    public ResponseEntity<ImportTaskDTO> backfillNoteVectors() {
+        return startBackfill(TaskType.BACKFILL_NOTE_VECTORS);
+    }
+
+    /**
+     * Enfileira a ingestão de um dos PDFs embutidos (CONFESSION, LARGER_CATECHISM, SHORTER_CATECHISM, INSTITUTES).
+     * Acompanhe por /api/admin/import-tasks/{id} (ou o stream SSE); o log final traz a vazão de cada estágio.
+     */
+    @PostMapping("/ingest-pdf/{source}")
+    public ResponseEntity<ImportTaskDTO> ingestPdf(@PathVariable PdfSource source) {
+        logger.info("Recebida requisição de ingestão de PDF ({})...", source);
+        ImportTask savedTask = taskCreationService.createPdfIngestionTask(source);
+
+        if (savedTask.getId() == null) {
+            ImportTaskDTO dto = new ImportTaskDTO(
+                    0L, TaskStatus.COMPLETED, null, null, 0, 0,
+                    "'" + source.workTitle() + "' já está carregada. Nada a fazer.", null, null
+            );
+            return ResponseEntity.ok(dto);
+        }
+
+        logger.info("Tarefa de ingestão de PDF {} enfileirada. Retornando recibo.", savedTask.getId());
+        return ResponseEntity.accepted().body(new ImportTaskDTO(savedTask));
+    }
+
+    private ResponseEntity<ImportTaskDTO> startBackfill(TaskType target) {
+        logger.info("Recebida requisição de backfill ({})...", target);
 
         // 1. Chama o serviço que CRIA E COMITA a tarefa.
-        ImportTask savedTask = taskCreationService.createBackfillTask();
+        ImportTask savedTask = taskCreationService.createBackfillTask(target);
 
         // 2. Verifica se a tarefa "dummy" foi retornada (nada a fazer)
         if (savedTask.getTotalItems() == 0) {
-            logger.info("Nenhum chunk precisando de backfill. Nada a fazer.");
+            logger.info("Nenhum registro precisando de backfill ({}). Nada a fazer.", target);
             ImportTaskDTO dto = new ImportTaskDTO(
                     0L, TaskStatus.COMPLETED, null, null, 0, 0,
-                    "Nenhum chunk precisava de atualização.", null
+                    "Nenhum registro precisava de atualização.", null, null
             );
             return ResponseEntity.ok(dto);
         }
 
-        logger.info("Enfileirando tarefa de backfill para {} chunks.", savedTask.getTotalItems());
-
-        // 3. Chama o serviço assíncrono.
-        asyncBackfillService.processBackfill(savedTask.getId());
-
-        // 4. Retorna o "recibo" (ImportTaskDTO) imediatamente para o frontend
+        // 3. A tarefa já está na fila (PENDING): o JobQueueWorker de alguma instância a reserva.
+        //    Retorna o "recibo" (ImportTaskDTO) imediatamente para o frontend
         logger.info("Tarefa de backfill {} enfileirada. Retornando recibo.", savedTask.getId());
         return ResponseEntity.ok(new ImportTaskDTO(savedTask));
     }
-}
\ No newline at end of file
+}
@@ -4,6 +4,9 @@ import br.com.fereformada.api.dto.*;
 import br.com.fereformada.api.model.Conversa;
 import br.com.fereformada.api.service.QueryService;
 import br.com.fereformada.api.service.HistoricoService;
+import br.com.fereformada.api.service.QueryTrace;
+import br.com.fereformada.api.service.QueryTracer;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -18,30 +21,40 @@ public class ChatController {
 
     private final QueryService queryService;
     private final HistoricoService historicoService;
+    private final QueryTracer queryTracer;
 
-    public ChatController(QueryService queryService, HistoricoService historicoService) {
+    public ChatController(QueryService queryService, HistoricoService historicoService, QueryTracer queryTracer) {
         this.queryService = queryService;
         this.historicoService = historicoService;
+        this.queryTracer = queryTracer;
     }
 
     @PostMapping
-    public ChatApiResponse handleChat(@Valid @RequestBody ChatRequest request, Authentication authentication) {
+    public ChatApiResponse handleChat(@Valid @RequestBody ChatRequest request, Authentication authentication,
+                                      @RequestHeader(value = QueryTracer.DEBUG_HEADER, required = false) String debugTrace,
+                                      HttpServletResponse response) {
         UUID userId = UUID.fromString((String) authentication.getPrincipal());
+        QueryTrace trace = queryTracer.begin("chat", userId.toString());
+        try {
+            // 1. Salva a pergunta do usuário
+            Conversa conversa = queryTracer.stage("persistence",
+                    () -> historicoService.salvarMensagemUsuario(userId, request.question(), request.chatId()));
 
-        // 1. Salva a pergunta do usuário
-        Conversa conversa = historicoService.salvarMensagemUsuario(userId, request.question(), request.chatId());
+            // 2. Chama o QueryService (conversa nova = sem histórico, pode ser coalescida)
+            ChatRequest updatedRequest = new ChatRequest(request.question(), conversa.getId());
+            QueryServiceResult queryResult = queryService.query(updatedRequest, request.chatId() == null);
 
-        // 2. Chama o QueryService
-        ChatRequest updatedRequest = new ChatRequest(request.question(), conversa.getId());
-        QueryServiceResult queryResult = queryService.query(updatedRequest);
-
-        // 3. Retorna a resposta COM O ID DA MENSAGEM
-        return new ChatApiResponse(
-                queryResult.answer(),
-                queryResult.references(),
-                conversa.getId(),
-                queryResult.messageId()
-        );
+            // 3. Retorna a resposta COM O ID DA MENSAGEM
+            return new ChatApiResponse(
+                    queryResult.answer(),
+                    queryResult.references(),
+                    conversa.getId(),
+                    queryResult.messageId()
+            );
+        } finally {
+            queryTracer.end(trace);
+            queryTracer.writeDebugHeader(trace, debugTrace, response);
+        }
     }
 
     @GetMapping
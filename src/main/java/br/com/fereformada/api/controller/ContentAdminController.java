@@ -3,8 +3,8 @@ package br.com.fereformada.api.controller;
 import br.com.fereformada.api.dto.*;
 import br.com.fereformada.api.model.Author;
 import br.com.fereformada.api.model.Topic;
-import br.com.fereformada.api.service.AsyncImportService;
 import br.com.fereformada.api.service.ContentAdminService; // Removido Repos
+import br.com.fereformada.api.service.TaskProgressStream;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
@@ -12,12 +12,17 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -30,11 +35,11 @@ public class ContentAdminController {
     private static final Logger logger = LoggerFactory.getLogger(ContentAdminController.class);
     // Removemos os repositórios, o Serviço agora lida com tudo
 
-    private final AsyncImportService asyncImportService;
+    private final TaskProgressStream taskProgressStream;
 
-    public ContentAdminController(ContentAdminService adminService, AsyncImportService asyncImportService) {
+    public ContentAdminController(ContentAdminService adminService, TaskProgressStream taskProgressStream) {
         this.adminService = adminService;
-        this.asyncImportService = asyncImportService;
+        this.taskProgressStream = taskProgressStream;
     }
 
     // === Endpoints de Obras (Works) ===
@@ -188,17 +193,47 @@ public class ContentAdminController {
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ImportTaskDTO> bulkImportChunks(@RequestBody List<ChunkImportDTO> dtoList) {
         try {
-            // 3. ETAPA 1: Criar a tarefa (Isso é uma transação completa que faz commit)
+            // 3. Criar a tarefa + entrada persistida (uma transação completa que faz commit).
+            //    A tarefa fica PENDING na fila; o JobQueueWorker de alguma instância a executa.
             ImportTaskDTO taskDTO = adminService.createImportTask(dtoList);
 
-            // 4. ETAPA 2: Chamar o método @Async (AGORA a tarefa já existe no DB)
-            asyncImportService.processImport(taskDTO.id(), dtoList);
+            // 4. Retornar HTTP 202 (Accepted) com o ID da tarefa
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(taskDTO);
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(null); // Simplificado
+        }
+    }
 
-            // 5. Retornar HTTP 202 (Accepted) com o ID da tarefa
+    /**
+     * Importação de arquivo grande (array JSON ou NDJSON): o upload vai para disco, é lido em streaming
+     * para a entrada persistida da tarefa e o arquivo temporário é apagado em seguida.
+     */
+    @PostMapping(value = "/chunks/bulk-import/file", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ImportTaskDTO> bulkImportChunksFile(@RequestParam("file") MultipartFile file) {
+        Path staged = null;
+        try {
+            staged = adminService.stageImportFile(file);
+            ImportTaskDTO taskDTO = adminService.createFileImportTask(staged);
             return ResponseEntity.status(HttpStatus.ACCEPTED).body(taskDTO);
 
         } catch (Exception e) {
+            logger.warn("Importação de arquivo rejeitada: {}", e.getMessage());
             return ResponseEntity.badRequest().body(null); // Simplificado
+        } finally {
+            deleteQuietly(staged);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // arquivo temporário: o SO limpa depois
         }
     }
 
@@ -221,6 +256,18 @@ public class ContentAdminController {
         }
     }
 
+    /**
+     * Progresso ao vivo da tarefa (SSE, evento "progress"): processados, falhas, itens/s e ETA.
+     * O stream termina sozinho quando a tarefa chega em COMPLETED/FAILED.
+     */
+    @GetMapping(value = "/import-tasks/{taskId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<SseEmitter> streamImportTask(@PathVariable Long taskId) {
+        return taskProgressStream.subscribe(taskId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
     @DeleteMapping("/chunks/bulk-delete")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Void> bulkDeleteChunks(@RequestBody IdListDTO idListDTO) {
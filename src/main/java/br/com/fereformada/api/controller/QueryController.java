@@ -4,8 +4,13 @@ import br.com.fereformada.api.dto.*;
 import br.com.fereformada.api.service.QueryService;
 import com.pgvector.PGvector;
 import br.com.fereformada.api.service.GeminiApiClient;
+import br.com.fereformada.api.service.QueryTrace;
+import br.com.fereformada.api.service.QueryTracer;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -19,20 +24,31 @@ public class QueryController {
 
     private final QueryService queryService;
     private final GeminiApiClient geminiApiClient; // (Este GeminiApiClient provavelmente não é mais necessário aqui se o QueryService o gerencia)
+    private final QueryTracer queryTracer;
 
-    public QueryController(QueryService queryService, GeminiApiClient geminiApiClient) {
+    public QueryController(QueryService queryService, GeminiApiClient geminiApiClient, QueryTracer queryTracer) {
         this.queryService = queryService;
         this.geminiApiClient = geminiApiClient;
+        this.queryTracer = queryTracer;
     }
 
     @PostMapping
-    public QueryResponse askQuestion(@RequestBody QueryRequest request) {
+    public QueryResponse askQuestion(@RequestBody QueryRequest request, Authentication authentication,
+                                     @RequestHeader(value = QueryTracer.DEBUG_HEADER, required = false) String debugTrace,
+                                     HttpServletResponse response) {
 
         // 1. Cria o ChatRequest (como você já fez)
         ChatRequest chatRequest = new ChatRequest(request.question(), null);
 
         // 2. Chama o QueryService, que retorna o NOVO DTO
-        QueryServiceResult result = queryService.query(chatRequest);
+        QueryTrace trace = queryTracer.begin("query", (String) authentication.getPrincipal());
+        QueryServiceResult result;
+        try {
+            result = queryService.query(chatRequest);
+        } finally {
+            queryTracer.end(trace);
+            queryTracer.writeDebugHeader(trace, debugTrace, response);
+        }
 
         // 3. Converte a lista de SourceReference (objetos) em uma lista de String (nomes)
         List<String> sourceNames = result.references().stream()
@@ -1,5 +1,6 @@
 package br.com.fereformada.api.controller;
 
+import br.com.fereformada.api.dto.ImportTaskDTO;
 import br.com.fereformada.api.dto.StudyNoteProjection;
 import br.com.fereformada.api.dto.StudyNoteRequestDTO;
 import br.com.fereformada.api.dto.StudyNoteSourceDTO;
@@ -90,19 +91,20 @@ public class StudyNoteAdminController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Enfileira a importação em lote (tarefa IMPORT_STUDY_NOTES). O progresso é acompanhado
+     * pelo id da tarefa, como nas importações de chunks.
+     */
     @PostMapping("/batch")
-    public ResponseEntity<String> importBatchNotes(@RequestBody List<StudyNoteRequestDTO> dtos) {
+    public ResponseEntity<ImportTaskDTO> importBatchNotes(@RequestBody List<StudyNoteRequestDTO> dtos) {
         if (dtos == null || dtos.isEmpty()) {
-            return ResponseEntity.badRequest().body("Lista vazia.");
+            return ResponseEntity.badRequest().body(null);
         }
 
-        // Dispara o processo em outra thread (Fire-and-forget)
-        studyNoteAdminService.importBatchAsync(dtos);
+        // Cria a tarefa + entrada persistida; alguma instância a executa em segundo plano
+        ImportTaskDTO task = studyNoteAdminService.createImportTask(dtos);
 
         // Responde na hora para o usuário não ficar esperando
-        return ResponseEntity.accepted()
-                .body("Importação iniciada em segundo plano! " +
-                        "São " + dtos.size() + " itens. " +
-                        "Acompanhe os logs do servidor para ver o progresso.");
+        return ResponseEntity.accepted().body(task);
     }
 }
\ No newline at end of file
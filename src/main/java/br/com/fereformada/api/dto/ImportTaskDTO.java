@@ -12,7 +12,8 @@ public record ImportTaskDTO(
         Integer totalItems,
         Integer processedItems,
         String currentLog,
-        String errorMessage
+        String errorMessage,
+        String failedItems
 ) {
     // Construtor de conveniência para mapear da Entidade
     public ImportTaskDTO(ImportTask task) {
@@ -24,7 +25,8 @@ public record ImportTaskDTO(
                 task.getTotalItems(),
                 task.getProcessedItems(),
                 task.getCurrentLog(),
-                task.getErrorMessage()
+                task.getErrorMessage(),
+                task.getFailedItems()
         );
     }
 }
\ No newline at end of file
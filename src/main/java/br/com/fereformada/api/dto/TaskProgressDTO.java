@@ -0,0 +1,30 @@
+package br.com.fereformada.api.dto;
+
+import br.com.fereformada.api.model.enums.TaskStatus;
+import br.com.fereformada.api.model.enums.TaskType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Evento de progresso de uma tarefa (stream SSE do painel admin).
+ * live = true quando vem do registro em memória da instância que executa a tarefa;
+ * false quando vem do banco (tarefa em outra instância, na fila ou já encerrada).
+ */
+public record TaskProgressDTO(
+        Long taskId,
+        TaskType taskType,
+        TaskStatus status,
+        Integer totalItems,
+        long processedItems,
+        long failedItems,
+        double itemsPerSecond,
+        Long etaSeconds,
+        String currentLog,
+        String node,
+        boolean live,
+        LocalDateTime updatedAt
+) {
+    public boolean isFinished() {
+        return status == TaskStatus.COMPLETED || status == TaskStatus.FAILED;
+    }
+}
@@ -0,0 +1,19 @@
+package br.com.fereformada.api.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * O provedor de IA (Gemini) não pôde ser chamado: fila de espera excedida,
+ * timeout ou circuito aberto. Quem chama pode degradar (ex: resposta extrativa).
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE) // Retorna 503 Service Unavailable
+public class LlmUnavailableException extends RuntimeException {
+    public LlmUnavailableException(String message) {
+        super(message);
+    }
+
+    public LlmUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
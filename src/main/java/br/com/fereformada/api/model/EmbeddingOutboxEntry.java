@@ -0,0 +1,52 @@
+package br.com.fereformada.api.model;
+
+import br.com.fereformada.api.model.enums.OutboxStatus;
+import br.com.fereformada.api.model.enums.VectorTarget;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Pedido de vetorização gravado na MESMA transação do save do admin.
+ * O texto não é copiado: o despachante lê o texto atual do alvo na hora de vetorizar.
+ * Lido/gravado via JDBC pelo {@code EmbeddingOutbox}; a entidade existe para o schema.
+ */
+@Entity
+@Table(name = "embedding_outbox",
+        indexes = @Index(name = "idx_embedding_outbox_status", columnList = "status, id"))
+@Getter
+@Setter
+public class EmbeddingOutboxEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "target", nullable = false, length = 30)
+    private VectorTarget target;
+
+    @Column(name = "target_id", nullable = false)
+    private Long targetId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private OutboxStatus status;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+}
@@ -0,0 +1,42 @@
+package br.com.fereformada.api.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Vetor já calculado para um texto exato, por modelo de embedding.
+ * A chave é (modelo, SHA-256 do texto enviado); o texto em si não é guardado.
+ * Lido/gravado via JDBC pelo {@code EmbeddingStore}; a entidade existe para o schema.
+ */
+@Entity
+@Table(name = "embedding_store",
+        uniqueConstraints = @UniqueConstraint(name = "uk_embedding_store_model_hash", columnNames = {"model_id", "text_hash"}),
+        indexes = @Index(name = "idx_embedding_store_last_used", columnList = "last_used_at"))
+@Getter
+@Setter
+public class EmbeddingStoreEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "model_id", nullable = false, length = 100)
+    private String modelId;
+
+    @Column(name = "text_hash", nullable = false, length = 64)
+    private String textHash;
+
+    @Column(name = "embedding", columnDefinition = "vector(768)", nullable = false)
+    @Basic(fetch = FetchType.LAZY)
+    private float[] embedding;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Atualizado (no máximo uma vez por dia) quando o vetor é reaproveitado; base do GC
+    @Column(name = "last_used_at", nullable = false)
+    private LocalDateTime lastUsedAt;
+}
@@ -1,6 +1,7 @@
 package br.com.fereformada.api.model;
 
 import br.com.fereformada.api.model.enums.TaskStatus;
+import br.com.fereformada.api.model.enums.TaskType;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
@@ -20,6 +21,10 @@ public class ImportTask {
     @Column(nullable = false)
     private TaskStatus status;
 
+    @Enumerated(EnumType.STRING)
+    @Column(length = 40)
+    private TaskType taskType;
+
     @Column(nullable = false)
     private LocalDateTime startTime;
 
@@ -38,9 +43,32 @@ public class ImportTask {
     @Column(columnDefinition = "TEXT") // Espaço para mensagens de erro completas
     private String errorMessage;
 
+    // Itens que não foram gravados (índice no arquivo + motivo), um por linha
+    @Column(columnDefinition = "TEXT")
+    private String failedItems;
+
+    // Checkpoint: último id gravado (backfill) ou índice do próximo item a ler (importações)
+    @Column
+    private Long lastProcessedId;
+
+    // --- Fila de tarefas (JobQueue): qual instância está com a tarefa e até quando ---
+    @Column(length = 120)
+    private String leaseOwner;
+
+    @Column
+    private LocalDateTime leaseExpiresAt;
+
+    @Column
+    private LocalDateTime heartbeatAt;
+
+    // Quantas vezes a tarefa foi reservada (retomadas após crash contam)
+    @Column
+    private Integer attempts;
+
     // Construtor padrão
     public ImportTask() {
         this.processedItems = 0;
+        this.attempts = 0;
         this.status = TaskStatus.PENDING;
         this.startTime = LocalDateTime.now();
     }
@@ -0,0 +1,45 @@
+package br.com.fereformada.api.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Página da entrada de uma tarefa (NDJSON, um item por linha), gravada junto com a tarefa.
+ * Assim qualquer instância consegue executar ou retomar a tarefa, e nada depende de memória
+ * ou de disco local da instância que recebeu o upload. Apagada quando a tarefa termina.
+ */
+@Entity
+@Table(name = "import_task_payloads",
+        uniqueConstraints = @UniqueConstraint(name = "uk_import_task_payload_page", columnNames = {"task_id", "seq"}))
+@Getter
+@Setter
+public class ImportTaskPayload {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "task_id", nullable = false)
+    private Long taskId;
+
+    // Ordem da página dentro da tarefa (0, 1, 2...)
+    @Column(name = "seq", nullable = false)
+    private Integer seq;
+
+    @Column(name = "item_count", nullable = false)
+    private Integer itemCount;
+
+    @Column(name = "body", nullable = false, columnDefinition = "TEXT")
+    private String body;
+
+    public ImportTaskPayload() {
+    }
+
+    public ImportTaskPayload(Long taskId, Integer seq, Integer itemCount, String body) {
+        this.taskId = taskId;
+        this.seq = seq;
+        this.itemCount = itemCount;
+        this.body = body;
+    }
+}
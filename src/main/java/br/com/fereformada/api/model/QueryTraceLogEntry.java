@@ -0,0 +1,57 @@
+package br.com.fereformada.api.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Trace de uma consulta amostrada: resumo em colunas (para filtrar/ordenar) e o detalhe completo em JSON
+ * (filtro, ragQuery, candidatos por ramo, boosts, ordem final, tempos por etapa).
+ * Gravado em lote via JDBC pelo {@code QueryTraceLog}; a entidade existe para o schema.
+ */
+@Entity
+@Table(name = "query_trace_log",
+        indexes = @Index(name = "idx_query_trace_log_created_at", columnList = "created_at"))
+@Getter
+@Setter
+public class QueryTraceLogEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "trace_id", nullable = false, length = 36)
+    private String traceId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "endpoint", nullable = false, length = 30)
+    private String endpoint;
+
+    @Column(name = "user_id", length = 64)
+    private String userId;
+
+    @Column(name = "route", length = 30)
+    private String route;
+
+    @Column(name = "cache_outcome", length = 30)
+    private String cacheOutcome;
+
+    @Column(name = "total_ms", nullable = false)
+    private Long totalMs;
+
+    @Column(name = "llm_calls", nullable = false)
+    private Integer llmCalls;
+
+    @Column(name = "total_tokens", nullable = false)
+    private Long totalTokens;
+
+    @Column(name = "question", columnDefinition = "TEXT")
+    private String question;
+
+    @Column(name = "details", columnDefinition = "TEXT")
+    private String details;
+}
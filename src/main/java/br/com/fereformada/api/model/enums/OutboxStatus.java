@@ -0,0 +1,8 @@
+package br.com.fereformada.api.model.enums;
+
+public enum OutboxStatus {
+    PENDING,    // Aguardando o despachante
+    PROCESSING, // Reservado por um despachante (reserva expira se ele morrer)
+    DONE,       // Vetor gravado (ou alvo não existe mais)
+    FAILED      // Esgotou as tentativas; o backfill do alvo ainda pode resolver
+}
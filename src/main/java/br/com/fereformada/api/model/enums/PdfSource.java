@@ -0,0 +1,83 @@
+package br.com.fereformada.api.model.enums;
+
+/**
+ * PDFs embutidos que podem ser ingeridos pelo pipeline de PDF (mesmos arquivos, páginas e metadados
+ * que o DatabaseSeeder usava). Caminho e páginas vêm daqui, nunca da requisição.
+ */
+public enum PdfSource {
+    CONFESSION("Confissão de Fé de Westminster", "CFW", "CONFISSAO", 1646, "Assembleia de Westminster",
+            "classpath:data-content/pdf/confissao_westminster.pdf", 3, 21, 20),
+    LARGER_CATECHISM("Catecismo Maior de Westminster", "CM", "CATECISMO", 1648, "Assembleia de Westminster",
+            "classpath:data-content/pdf/catecismo_maior_westminster.pdf", 1, Integer.MAX_VALUE, 10),
+    SHORTER_CATECHISM("Breve Catecismo de Westminster", "BC", "CATECISMO", 1647, "Assembleia de Westminster",
+            "classpath:data-content/pdf/breve_catecismo_westminster.pdf", 1, Integer.MAX_VALUE, 10),
+    INSTITUTES("Institutas da Religião Cristã", "ICR", "LIVRO", 1536, "João Calvino",
+            "classpath:data-content/pdf/Institutas da Religiao Crista - Joao Calvino.pdf", 36, 367, 100);
+
+    private final String workTitle;
+    private final String acronym;
+    private final String workType;
+    private final int publicationYear;
+    private final String authorName;
+    private final String resourcePath;
+    private final int startPage;
+    private final int endPage;
+    // Trechos mais curtos que isto (após a limpeza) são ruído de cabeçalho/rodapé
+    private final int minContentLength;
+
+    PdfSource(String workTitle, String acronym, String workType, int publicationYear, String authorName,
+              String resourcePath, int startPage, int endPage, int minContentLength) {
+        this.workTitle = workTitle;
+        this.acronym = acronym;
+        this.workType = workType;
+        this.publicationYear = publicationYear;
+        this.authorName = authorName;
+        this.resourcePath = resourcePath;
+        this.startPage = startPage;
+        this.endPage = endPage;
+        this.minContentLength = minContentLength;
+    }
+
+    public String workTitle() {
+        return workTitle;
+    }
+
+    public String acronym() {
+        return acronym;
+    }
+
+    public String workType() {
+        return workType;
+    }
+
+    public int publicationYear() {
+        return publicationYear;
+    }
+
+    public String authorName() {
+        return authorName;
+    }
+
+    public String resourcePath() {
+        return resourcePath;
+    }
+
+    public int startPage() {
+        return startPage;
+    }
+
+    /**
+     * Última página a extrair ({@link Integer#MAX_VALUE} = até o fim do documento).
+     */
+    public int endPage() {
+        return endPage;
+    }
+
+    public int minContentLength() {
+        return minContentLength;
+    }
+
+    public boolean isCatechism() {
+        return this == LARGER_CATECHISM || this == SHORTER_CATECHISM;
+    }
+}
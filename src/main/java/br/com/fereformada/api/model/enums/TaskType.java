@@ -0,0 +1,10 @@
+package br.com.fereformada.api.model.enums;
+
+public enum TaskType {
+    IMPORT_CHUNKS,             // Importação de chunks (JSON)
+    IMPORT_STUDY_NOTES,        // Importação de notas de estudo em lote (JSON)
+    IMPORT_PDF,                // Ingestão de um PDF embutido (extração -> parse -> tags -> vetores -> gravação)
+    BACKFILL_QUESTION_VECTORS, // Preenche content_chunks.question_vector
+    BACKFILL_CONTENT_VECTORS,  // Preenche content_chunks.content_vector
+    BACKFILL_NOTE_VECTORS      // Preenche study_notes.note_vector
+}
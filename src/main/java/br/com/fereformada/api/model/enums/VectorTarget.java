@@ -0,0 +1,40 @@
+package br.com.fereformada.api.model.enums;
+
+/**
+ * Coluna vetorial a ser (re)calculada. Tabela e coluna vêm daqui, nunca da requisição.
+ */
+public enum VectorTarget {
+    CHUNK_CONTENT("content_chunks", "content_vector"),   // content_chunks.content_vector
+    CHUNK_QUESTION("content_chunks", "question_vector"), // content_chunks.question_vector
+    STUDY_NOTE("study_notes", "note_vector");            // study_notes.note_vector
+
+    private final String table;
+    private final String column;
+
+    VectorTarget(String table, String column) {
+        this.table = table;
+        this.column = column;
+    }
+
+    public String table() {
+        return table;
+    }
+
+    public String column() {
+        return column;
+    }
+
+    /**
+     * Alvo correspondente a uma tarefa de backfill (tarefas antigas sem tipo são de question_vector).
+     */
+    public static VectorTarget forBackfill(TaskType taskType) {
+        if (taskType == null) {
+            return CHUNK_QUESTION;
+        }
+        return switch (taskType) {
+            case BACKFILL_CONTENT_VECTORS -> CHUNK_CONTENT;
+            case BACKFILL_NOTE_VECTORS -> STUDY_NOTE;
+            default -> CHUNK_QUESTION;
+        };
+    }
+}
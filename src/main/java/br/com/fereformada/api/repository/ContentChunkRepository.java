@@ -15,6 +15,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -100,6 +101,19 @@ public interface ContentChunkRepository extends JpaRepository<ContentChunk, Long
             @Param("secao") Integer secao
     );
 
+    // Reidratação em lote do RetrievalCache: mesmo formato de linha da busca vetorial
+    // (o score é reaplicado pelo QueryService a partir do cache).
+    @Query(nativeQuery = true, value = """
+            SELECT
+                c.id, c.content, c.question, c.section_title, c.chapter_title,
+                c.chapter_number, c.section_number, c.work_id,
+                c.subsection_title, c.sub_subsection_title,
+                0.0 AS similarity_score
+            FROM content_chunks c
+            WHERE c.id IN (:ids)
+            """)
+    List<Object[]> findChunkRowsByIds(@Param("ids") Collection<Long> ids);
+
     @Query("SELECT new br.com.fereformada.api.dto.ChunkProjection(" +
             "  c.id, c.content, c.question, c.sectionTitle, c.chapterTitle, " +
             "  c.chapterNumber, c.sectionNumber, c.subsectionTitle, " +
@@ -305,25 +319,51 @@ public interface ContentChunkRepository extends JpaRepository<ContentChunk, Long
     );
 
     /**
-     * Encontra todos os chunks que ainda não têm um question_vector,
+     * Página (keyset por id) de chunks que ainda não têm question_vector,
      * mas que TÊM um texto de 'question' para ser vetorizado.
-     *
-     * 🚀 MODIFICADO: Retorna uma Projeção leve (id, question) para evitar
-     * o bug do Hibernate ao carregar a entidade inteira com campos float[].
+     * Retorna uma Projeção leve (id, texto) para não carregar os campos float[].
      */
-    @Query("SELECT c.id as id, c.question as question FROM ContentChunk c " +
-            "WHERE c.questionVector IS NULL AND c.question IS NOT NULL AND c.question != ''")
-    List<ChunkBackfillProjection> findChunksNeedingQuestionVectorBackfill();
+    @Query(nativeQuery = true, value = """
+            SELECT c.id AS id, c.question AS text
+            FROM content_chunks c
+            WHERE c.question_vector IS NULL
+              AND c.question IS NOT NULL AND c.question <> ''
+              AND c.id > :afterId
+            ORDER BY c.id
+            LIMIT :limit
+            """)
+    List<VectorBackfillRow> findQuestionVectorBackfillPage(@Param("afterId") long afterId, @Param("limit") int limit);
 
     /**
-     * 🚀 NOVO MÉTODO:
-     * Atualiza o question_vector de um único chunk via query nativa.
-     * É mais seguro e rápido para o backfill do que salvar a entidade.
+     * Página (keyset por id) de chunks sem content_vector.
      */
-    @Modifying
-    @Query(value = "UPDATE content_chunks SET question_vector = CAST(:vectorStr AS vector) WHERE id = :id", nativeQuery = true)
-    void setQuestionVector(@Param("id") Long id, @Param("vectorStr") String vectorStr);
+    @Query(nativeQuery = true, value = """
+            SELECT c.id AS id, c.content AS text
+            FROM content_chunks c
+            WHERE c.content_vector IS NULL
+              AND c.content IS NOT NULL AND c.content <> ''
+              AND c.id > :afterId
+            ORDER BY c.id
+            LIMIT :limit
+            """)
+    List<VectorBackfillRow> findContentVectorBackfillPage(@Param("afterId") long afterId, @Param("limit") int limit);
 
+    /**
+     * Textos atuais (pergunta / conteúdo) de chunks específicos, para o outbox de embeddings.
+     */
+    @Query(nativeQuery = true, value = """
+            SELECT c.id AS id, c.question AS text
+            FROM content_chunks c
+            WHERE c.id IN (:ids)
+            """)
+    List<VectorBackfillRow> findQuestionTextsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query(nativeQuery = true, value = """
+            SELECT c.id AS id, c.content AS text
+            FROM content_chunks c
+            WHERE c.id IN (:ids)
+            """)
+    List<VectorBackfillRow> findContentTextsByIds(@Param("ids") Collection<Long> ids);
 
     /**
      * Conta quantos chunks se encaixam na regra de backfill.
@@ -332,6 +372,9 @@ public interface ContentChunkRepository extends JpaRepository<ContentChunk, Long
     @Query("SELECT COUNT(c) FROM ContentChunk c WHERE c.questionVector IS NULL AND c.question IS NOT NULL AND c.question != ''")
     long countChunksNeedingQuestionVectorBackfill();
 
+    @Query("SELECT COUNT(c) FROM ContentChunk c WHERE c.contentVector IS NULL AND c.content IS NOT NULL AND c.content != ''")
+    long countChunksNeedingContentVectorBackfill();
+
     @Query("""
         SELECT new br.com.fereformada.api.dto.ReaderChunkDTO(
             c.id, 
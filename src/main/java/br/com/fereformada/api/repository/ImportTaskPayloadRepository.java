@@ -0,0 +1,28 @@
+package br.com.fereformada.api.repository;
+
+import br.com.fereformada.api.model.ImportTaskPayload;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ImportTaskPayloadRepository extends JpaRepository<ImportTaskPayload, Long> {
+
+    /**
+     * Quantidade de itens de cada página, em ordem (sem carregar os corpos).
+     */
+    @Query("SELECT p.itemCount FROM ImportTaskPayload p WHERE p.taskId = :taskId ORDER BY p.seq")
+    List<Integer> findItemCounts(@Param("taskId") Long taskId);
+
+    @Query("SELECT p.body FROM ImportTaskPayload p WHERE p.taskId = :taskId AND p.seq = :seq")
+    Optional<String> findBody(@Param("taskId") Long taskId, @Param("seq") Integer seq);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ImportTaskPayload p WHERE p.taskId = :taskId")
+    int deleteByTaskId(@Param("taskId") Long taskId);
+}
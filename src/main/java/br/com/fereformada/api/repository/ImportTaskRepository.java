@@ -1,8 +1,24 @@
 package br.com.fereformada.api.repository;
 
 import br.com.fereformada.api.model.ImportTask;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Optional;
+
+/**
+ * Progresso, checkpoint e leases das tarefas são gravados via JDBC pelo {@code JobQueue}
+ * (condicionados ao dono do lease).
+ */
 public interface ImportTaskRepository extends JpaRepository<ImportTask, Long> {
-    // Spring Data JPA cuida de tudo
-}
\ No newline at end of file
+
+    /**
+     * Trava a linha da tarefa (usado para gravar o estado final só se a tarefa ainda é desta instância).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM ImportTask t WHERE t.id = :id")
+    Optional<ImportTask> findByIdForUpdate(@Param("id") Long id);
+}
@@ -4,6 +4,7 @@ import br.com.fereformada.api.dto.ReaderNoteDTO;
 import br.com.fereformada.api.dto.StudyNoteProjection;
 import br.com.fereformada.api.dto.StudyNoteSourceDTO;
 import br.com.fereformada.api.model.StudyNote;
+import br.com.fereformada.api.util.EmbeddingTexts;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -12,6 +13,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -43,8 +45,10 @@ public interface StudyNoteRepository extends JpaRepository<StudyNote, Long> {
                 FROM
                     study_notes
                 WHERE
+                    -- Notas com vetor pendente (outbox) ficam só na busca FTS até serem vetorizadas
+                    note_vector IS NOT NULL
                     -- Filtros dinâmicos (serão NULL se não usados)
-                    (:livroBiblico IS NULL OR book = :livroBiblico)
+                    AND (:livroBiblico IS NULL OR book = :livroBiblico)
                     AND (:capitulo IS NULL OR start_chapter = :capitulo)
                     -- Filtra versículo se fornecido
                     AND (:versiculo IS NULL OR 
@@ -61,6 +65,24 @@ public interface StudyNoteRepository extends JpaRepository<StudyNote, Long> {
             @Param("versiculo") Integer versiculo     // NOVO
     );
 
+    // Reidratação em lote do RetrievalCache (mesmo formato de linha de findSimilarNotesRaw)
+    @Query(nativeQuery = true, value = """
+                SELECT
+                    id,
+                    book,
+                    start_chapter,
+                    start_verse,
+                    end_chapter,
+                    end_verse,
+                    note_content,
+                    0.0 AS similarity_score
+                FROM
+                    study_notes
+                WHERE
+                    id IN (:ids)
+            """)
+    List<Object[]> findNoteRowsByIds(@Param("ids") Collection<Long> ids);
+
     @Query(value = """
             SELECT 
                 s.id, s.book, s.start_chapter, s.start_verse, s.end_chapter, s.end_verse, s.note_content,
@@ -265,6 +287,25 @@ public interface StudyNoteRepository extends JpaRepository<StudyNote, Long> {
 
     long countByNoteVectorIsNull();
 
+    /**
+     * Página (keyset por id) de notas sem note_vector. O texto segue o mesmo formato
+     * usado na criação da nota: "Livro cap:vers\nconteúdo" ({@link EmbeddingTexts#noteWithReference}).
+     */
+    @Query(nativeQuery = true, value = "SELECT n.id AS id, " + EmbeddingTexts.NOTE_WITH_REFERENCE_SQL + " AS text " +
+            "FROM study_notes n " +
+            "WHERE n.note_vector IS NULL AND n.id > :afterId " +
+            "ORDER BY n.id " +
+            "LIMIT :limit")
+    List<VectorBackfillRow> findNoteVectorBackfillPage(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * Textos atuais (mesmo formato do backfill) de notas específicas, para o outbox de embeddings.
+     */
+    @Query(nativeQuery = true, value = "SELECT n.id AS id, " + EmbeddingTexts.NOTE_WITH_REFERENCE_SQL + " AS text " +
+            "FROM study_notes n " +
+            "WHERE n.id IN (:ids)")
+    List<VectorBackfillRow> findNoteTextsByIds(@Param("ids") Collection<Long> ids);
+
     @Query("""
         SELECT new br.com.fereformada.api.dto.ReaderNoteDTO(
             n.id,
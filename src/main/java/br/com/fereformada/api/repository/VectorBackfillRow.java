@@ -0,0 +1,10 @@
+package br.com.fereformada.api.repository;
+
+/**
+ * Projeção leve usada pelo backfill de vetores: o id e o texto que será vetorizado.
+ * Nunca carrega colunas vector (evita o bug do Hibernate com float[]).
+ */
+public interface VectorBackfillRow {
+    Long getId();
+    String getText();
+}
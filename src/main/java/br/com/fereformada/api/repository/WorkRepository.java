@@ -4,6 +4,8 @@ import br.com.fereformada.api.model.Work;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -17,5 +19,6 @@ public interface WorkRepository extends JpaRepository<Work, Long> {
      */
     Optional<Work> findByTitle(String title);
     Optional<Work> findByAcronym(String acronym);
+    List<Work> findByAcronymIn(Collection<String> acronyms);
 
 }
\ No newline at end of file
@@ -2,129 +2,198 @@ package br.com.fereformada.api.service;
 
 import br.com.fereformada.api.model.ImportTask;
 import br.com.fereformada.api.model.enums.TaskStatus;
-import br.com.fereformada.api.repository.ChunkBackfillProjection;
+import br.com.fereformada.api.model.enums.TaskType;
+import br.com.fereformada.api.model.enums.VectorTarget;
 import br.com.fereformada.api.repository.ContentChunkRepository;
 import br.com.fereformada.api.repository.ImportTaskRepository;
-import com.pgvector.PGvector;
+import br.com.fereformada.api.repository.StudyNoteRepository;
+import br.com.fereformada.api.repository.VectorBackfillRow;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-// 🚀 REMOVA OS IMPORTS TRAN SACIONAIS DAQUI
-// import org.springframework.transaction.annotation.Propagation;
-// import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Backfill de vetores em pipeline:
+ * lê uma página (keyset por id) -> vetoriza a página N+1 enquanto grava a página N
+ * -> grava com um único UPDATE ... FROM (VALUES ...) e o checkpoint (último id) na mesma transação.
+ * <p>
+ * O cache de recuperação é invalidado uma vez, quando o backfill termina (ou falha depois de gravar algo).
+ * <p>
+ * Executado pela {@link JobQueue}: uma tarefa interrompida (crash/restart) volta para a fila quando o lease
+ * expira e é retomada do checkpoint por qualquer instância.
+ */
 @Service
-public class AsyncBackfillService {
+public class AsyncBackfillService implements JobHandler {
+
+    private static final EnumSet<TaskType> BACKFILL_TYPES = EnumSet.of(
+            TaskType.BACKFILL_QUESTION_VECTORS, TaskType.BACKFILL_CONTENT_VECTORS, TaskType.BACKFILL_NOTE_VECTORS);
 
     private final ImportTaskRepository importTaskRepository;
     private final ContentChunkRepository contentChunkRepository;
-    private final GeminiApiClient geminiApiClient;
-    private final AsyncBackfillWorker backfillWorker; // 🚀 1. INJETAR O NOVO WORKER
-
-    private static final int EMBEDDING_BATCH_SIZE = 10;
+    private final StudyNoteRepository studyNoteRepository;
+    private final BulkEmbeddingExecutor bulkEmbeddingExecutor;
+    private final VectorBackfillWriter backfillWriter;
+    private final JobQueue jobQueue;
+    private final TransactionTemplate transactionTemplate;
+    private final RetrievalCache retrievalCache;
+
+    // Vetoriza a próxima página em paralelo com a gravação da atual
+    private final ExecutorService embeddingPipeline = Executors.newVirtualThreadPerTaskExecutor();
+
+    private static final int PAGE_SIZE = 500;
+    private static final long PROGRESS_INTERVAL_MS = 2000;
     private static final Logger logger = LoggerFactory.getLogger(AsyncBackfillService.class);
 
+    private record EmbeddedPage(List<VectorBackfillRow> rows, BulkEmbeddingExecutor.BulkEmbeddingResult embeddings) {
+        long lastId() {
+            return rows.get(rows.size() - 1).getId();
+        }
+    }
+
     public AsyncBackfillService(ImportTaskRepository importTaskRepository,
                                 ContentChunkRepository contentChunkRepository,
-                                GeminiApiClient geminiApiClient,
-                                AsyncBackfillWorker backfillWorker) { // 🚀 2. INJETAR AQUI
+                                StudyNoteRepository studyNoteRepository,
+                                BulkEmbeddingExecutor bulkEmbeddingExecutor,
+                                VectorBackfillWriter backfillWriter,
+                                JobQueue jobQueue,
+                                TransactionTemplate transactionTemplate,
+                                RetrievalCache retrievalCache) {
         this.importTaskRepository = importTaskRepository;
         this.contentChunkRepository = contentChunkRepository;
-        this.geminiApiClient = geminiApiClient;
-        this.backfillWorker = backfillWorker; // 🚀 3. ATRIBUIR
+        this.studyNoteRepository = studyNoteRepository;
+        this.bulkEmbeddingExecutor = bulkEmbeddingExecutor;
+        this.backfillWriter = backfillWriter;
+        this.jobQueue = jobQueue;
+        this.transactionTemplate = transactionTemplate;
+        this.retrievalCache = retrievalCache;
+    }
+
+    @Override
+    public boolean supports(TaskType taskType) {
+        return BACKFILL_TYPES.contains(taskType);
     }
 
     /**
-     * Este é o método de trabalho assíncrono para o backfill.
+     * Executa (ou retoma, a partir do checkpoint) o backfill da tarefa reservada.
+     * O alvo (question/content/note) vem do taskType da tarefa.
      */
-    @Async
-    public void processBackfill(Long taskId) {
-        // 1. Buscar a tarefa
-        ImportTask task = importTaskRepository.findById(taskId)
-                .orElseThrow(() -> new RuntimeException("Tarefa de backfill não encontrada: " + taskId));
+    @Override
+    public void execute(ImportTask task, TaskProgress progress) {
+        Long taskId = task.getId();
+        TaskType target = task.getTaskType() != null ? task.getTaskType() : TaskType.BACKFILL_QUESTION_VECTORS;
+        long checkpoint = task.getLastProcessedId() != null ? task.getLastProcessedId() : 0L;
+        int processed = task.getProcessedItems() != null ? task.getProcessedItems() : 0;
+        int failedTotal = 0;
+        int vectorsWritten = 0;
 
         try {
-            // 2. Marcar a tarefa como "Em Processamento"
-            task.setStatus(TaskStatus.PROCESSING);
-            task.setCurrentLog("Buscando chunks que precisam de backfill...");
-            importTaskRepository.save(task);
-
-            // 3. Buscar os chunks que precisam ser corrigidos
-            List<ChunkBackfillProjection> chunksToFix = contentChunkRepository.findChunksNeedingQuestionVectorBackfill();
-            int totalChunks = chunksToFix.size();
-
-            if (totalChunks == 0) {
-                task.setCurrentLog("Nenhum chunk precisava de atualização.");
-                task.setStatus(TaskStatus.COMPLETED);
-                task.setEndTime(LocalDateTime.now());
-                importTaskRepository.save(task);
-                return;
-            }
-
-            logger.info("[Backfill] Encontrados {} chunks para atualizar.", totalChunks);
-            task.setTotalItems(totalChunks); // Atualiza o total
-            importTaskRepository.save(task);
-
-            // --- 4. Processamento em Lotes (igual ao seu AsyncImportService) ---
-            for (int i = 0; i < totalChunks; i += EMBEDDING_BATCH_SIZE) {
-                int end = Math.min(i + EMBEDDING_BATCH_SIZE, totalChunks);
-
-                // 4.1 Atualizar o Log da Tarefa
-                int batchNum = (i / EMBEDDING_BATCH_SIZE) + 1;
-                int totalBatches = (int) Math.ceil((double) totalChunks / EMBEDDING_BATCH_SIZE);
-                String logMessage = "Processando lote " + batchNum + " de " + totalBatches + " (chunks " + i + "-" + end + ")";
-
-                logger.info("[Backfill] " + logMessage);
-                task.setCurrentLog(logMessage);
-                importTaskRepository.save(task); // Salva o progresso
-
-                // 4.2 Preparar o lote
-                List<ChunkBackfillProjection> chunkBatch = chunksToFix.subList(i, end);
-
-                List<String> textBatch = chunkBatch.stream()
-                        .map(ChunkBackfillProjection::getQuestion)
-                        .collect(Collectors.toList());
-
-                // 4.3 Chamar a API em lote
-                List<PGvector> vectorBatch = geminiApiClient.generateEmbeddingsInBatch(textBatch);
-
-                if (vectorBatch.size() != chunkBatch.size()) {
-                    throw new RuntimeException("Falha no backfill: contagens de lote não correspondem.");
-                }
-
-                // 4.4 🚀 MODIFICADO: Chamar o WORKER externo
-                try {
-                    // Chama o método no BEAN injetado
-                    backfillWorker.updateBatchInTransaction(chunkBatch, vectorBatch); // 🚀 4. CHAMAR O WORKER
-                } catch (Exception e) {
-                    logger.error("Falha ao salvar o lote {} (chunks {}-{}): {}", batchNum, i, end, e.getMessage(), e); // 🚀 Adicionado ", e" para stack trace
-                    // Vamos continuar
+            // 2. Registrar o início (ou a retomada)
+            progress.log(checkpoint > 0
+                    ? "Retomando backfill a partir do id " + checkpoint + "..."
+                    : "Buscando registros que precisam de backfill...");
+
+            logger.info("[Backfill] Tarefa {} ({}) iniciando após o id {}.", taskId, target, checkpoint);
+
+            // 3. Pipeline: a página N+1 é vetorizada enquanto a página N é gravada
+            List<VectorBackfillRow> firstPage = fetchPage(target, checkpoint);
+            CompletableFuture<EmbeddedPage> inFlight = firstPage.isEmpty() ? null : embedAsync(firstPage);
+            long lastProgressAt = 0;
+
+            while (inFlight != null) {
+                JobHandler.throwIfInterrupted();
+                EmbeddedPage current = inFlight.join();
+
+                List<VectorBackfillRow> nextPage = fetchPage(target, current.lastId());
+                inFlight = nextPage.isEmpty() ? null : embedAsync(nextPage);
+
+                // 4. Vetores + checkpoint numa transação: se o lease foi perdido, a página é desfeita
+                List<Long> ids = current.rows().stream().map(VectorBackfillRow::getId).toList();
+                int pageProcessed = processed + current.rows().size();
+                Integer written = transactionTemplate.execute(status -> {
+                    int updated = backfillWriter.writeVectors(VectorTarget.forBackfill(target), ids,
+                            current.embeddings().vectors());
+                    jobQueue.checkpoint(taskId, pageProcessed, current.lastId());
+                    return updated;
+                });
+
+                vectorsWritten += written != null ? written : 0;
+                processed = pageProcessed;
+                failedTotal += current.embeddings().failedCount();
+                checkpoint = current.lastId();
+
+                // 5. Progresso em memória a cada página (taxa/ETA ficam no stream); log com throttling
+                progress.setProcessed(processed);
+                progress.log("Processados " + processed + " registros (até o id " + checkpoint + ")");
+                long now = System.currentTimeMillis();
+                if (inFlight == null || now - lastProgressAt >= PROGRESS_INTERVAL_MS) {
+                    lastProgressAt = now;
+                    logger.info("[Backfill {}] {}", taskId, progress.currentLog());
                 }
-
-                // 4.6 Atualizar progresso
-                task.setProcessedItems(end);
-                importTaskRepository.save(task);
             }
 
-            // --- 5. Concluir ---
+            // --- 6. Concluir ---
+            task = importTaskRepository.findById(taskId).orElse(task);
             task.setStatus(TaskStatus.COMPLETED);
-            task.setCurrentLog("Backfill concluído com sucesso.");
+            task.setProcessedItems(processed);
+            task.setLastProcessedId(checkpoint);
+            task.setCurrentLog(failedTotal > 0
+                    ? "Backfill concluído. " + failedTotal + " registros não puderam ser vetorizados."
+                    : "Backfill concluído com sucesso.");
             task.setEndTime(LocalDateTime.now());
 
         } catch (Exception e) {
-            // --- 6. Tratar Falha ---
+            // --- 7. Tratar Falha (o checkpoint já gravado permite retomar depois) ---
             logger.error("Falha na tarefa de backfill " + taskId, e);
+            task = importTaskRepository.findById(taskId).orElse(task);
             task.setStatus(TaskStatus.FAILED);
             task.setErrorMessage(e.getMessage());
             task.setEndTime(LocalDateTime.now());
         } finally {
-            // Garantir que o estado final (COMPLETED ou FAILED) seja salvo
-            importTaskRepository.save(task);
+            // Estado final (COMPLETED ou FAILED), descartado se a tarefa já foi assumida por outra instância
+            jobQueue.finish(task);
+            if (vectorsWritten > 0) {
+                // Novos vetores mudam o resultado da busca vetorial
+                retrievalCache.bumpCorpusVersion("vectorBackfill");
+            }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Conta o que falta para o alvo (usado na criação da tarefa).
+     */
+    public long countPending(TaskType target) {
+        return switch (target) {
+            case BACKFILL_CONTENT_VECTORS -> contentChunkRepository.countChunksNeedingContentVectorBackfill();
+            case BACKFILL_NOTE_VECTORS -> studyNoteRepository.countByNoteVectorIsNull();
+            default -> contentChunkRepository.countChunksNeedingQuestionVectorBackfill();
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        embeddingPipeline.shutdownNow();
+    }
+
+    private List<VectorBackfillRow> fetchPage(TaskType target, long afterId) {
+        return switch (target) {
+            case BACKFILL_CONTENT_VECTORS -> contentChunkRepository.findContentVectorBackfillPage(afterId, PAGE_SIZE);
+            case BACKFILL_NOTE_VECTORS -> studyNoteRepository.findNoteVectorBackfillPage(afterId, PAGE_SIZE);
+            default -> contentChunkRepository.findQuestionVectorBackfillPage(afterId, PAGE_SIZE);
+        };
+    }
+
+    private CompletableFuture<EmbeddedPage> embedAsync(List<VectorBackfillRow> rows) {
+        List<String> texts = rows.stream().map(VectorBackfillRow::getText).toList();
+        return CompletableFuture.supplyAsync(
+                () -> new EmbeddedPage(rows, bulkEmbeddingExecutor.embedAll(texts)), embeddingPipeline);
+    }
+}
@@ -1,166 +1,375 @@
 package br.com.fereformada.api.service;
 
 import br.com.fereformada.api.dto.ChunkImportDTO;
-import br.com.fereformada.api.model.ContentChunk;
 import br.com.fereformada.api.model.ImportTask;
-import br.com.fereformada.api.model.Topic;
-import br.com.fereformada.api.model.Work;
 import br.com.fereformada.api.model.enums.TaskStatus;
-import br.com.fereformada.api.repository.ContentChunkRepository;
+import br.com.fereformada.api.model.enums.TaskType;
 import br.com.fereformada.api.repository.ImportTaskRepository;
 import br.com.fereformada.api.repository.TopicRepository;
 import br.com.fereformada.api.repository.WorkRepository;
-import com.pgvector.PGvector;
+import br.com.fereformada.api.util.EmbeddingTexts;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
+/**
+ * Importação de chunks (tarefa IMPORT_CHUNKS da {@link JobQueue}) SEM uma transação gigante e com memória constante:
+ * - itens lidos em janelas da entrada persistida da tarefa ({@link ImportPayloadStore}, uma página por vez);
+ * - obras e tópicos resolvidos por janela, com cache em memória durante a tarefa;
+ * - conteúdo e pergunta de cada janela vetorizados numa única chamada em lote, fora de qualquer transação
+ *   (a janela N+1 é vetorizada enquanto a N é gravada);
+ * - cada janela é gravada em sua própria transação via COPY ({@link PgCopyBulkLoader}; batch JDBC no H2),
+ *   junto com o checkpoint (índice do próximo item): uma retomada em outra instância não duplica nem pula itens;
+ * - falhas reportadas item a item (índice no arquivo enviado);
+ * - progresso (contagem, taxa, falhas) só em memória no {@link TaskProgress}; o registro grava periodicamente.
+ */
 @Service
-public class AsyncImportService {
+public class AsyncImportService implements JobHandler {
 
     private final ImportTaskRepository importTaskRepository;
     private final WorkRepository workRepository;
     private final TopicRepository topicRepository;
-    private final ContentChunkRepository contentChunkRepository;
-    private final GeminiApiClient geminiApiClient;
+    private final BulkEmbeddingExecutor bulkEmbeddingExecutor;
+    private final ChunkBatchWriter chunkBatchWriter;
+    private final PgCopyBulkLoader bulkLoader;
+    private final RetrievalCache retrievalCache;
+    private final ImportPayloadStore payloadStore;
+    private final JobQueue jobQueue;
+    private final TransactionTemplate transactionTemplate;
 
-    private static final int EMBEDDING_BATCH_SIZE = 10;
+    private final ExecutorService embeddingPipeline = Executors.newVirtualThreadPerTaskExecutor();
+
+    private static final int COMMIT_SIZE = 200;
     private static final Logger logger = LoggerFactory.getLogger(AsyncImportService.class);
 
+    /**
+     * Item validado: índice original no arquivo + ids já resolvidos.
+     */
+    private record PendingChunk(int index, ChunkImportDTO dto, Long workId, Set<Long> topicIds) {
+    }
+
+    /**
+     * Janela pronta para gravar. As falhas de resolução só contam quando a janela é commitada,
+     * junto com o checkpoint que as cobre.
+     */
+    private record EmbeddedWindow(List<PendingChunk> items, List<String> failures, List<float[]> contentVectors,
+                                  List<float[]> questionVectors, int missingVectors, int endIndex) {
+    }
+
+    /**
+     * Cache de acrônimo/nome -> id durante uma tarefa (ausentes ficam registrados como null).
+     */
+    private record Lookup(Map<String, Long> workIds, Map<String, Long> topicIds) {
+    }
+
     public AsyncImportService(ImportTaskRepository importTaskRepository,
                               WorkRepository workRepository,
                               TopicRepository topicRepository,
-                              ContentChunkRepository contentChunkRepository,
-                              GeminiApiClient geminiApiClient) {
+                              BulkEmbeddingExecutor bulkEmbeddingExecutor,
+                              ChunkBatchWriter chunkBatchWriter,
+                              PgCopyBulkLoader bulkLoader,
+                              RetrievalCache retrievalCache,
+                              ImportPayloadStore payloadStore,
+                              JobQueue jobQueue,
+                              TransactionTemplate transactionTemplate) {
         this.importTaskRepository = importTaskRepository;
         this.workRepository = workRepository;
         this.topicRepository = topicRepository;
-        this.contentChunkRepository = contentChunkRepository;
-        this.geminiApiClient = geminiApiClient;
+        this.bulkEmbeddingExecutor = bulkEmbeddingExecutor;
+        this.chunkBatchWriter = chunkBatchWriter;
+        this.bulkLoader = bulkLoader;
+        this.retrievalCache = retrievalCache;
+        this.payloadStore = payloadStore;
+        this.jobQueue = jobQueue;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public boolean supports(TaskType taskType) {
+        return taskType == TaskType.IMPORT_CHUNKS;
     }
 
     /**
-     * Este é o método de trabalho assíncrono.
-     * O Spring o executará em uma thread separada.
+     * Executa (ou retoma) a importação a partir do checkpoint da tarefa. Não é @Transactional de propósito:
+     * cada janela gravada faz seu próprio commit.
      */
-    @Async
-    @Transactional
-    public void processImport(Long taskId, List<ChunkImportDTO> dtoList) {
-        // 1. Buscar a tarefa (ou falhar)
-        ImportTask task = importTaskRepository.findById(taskId)
-                .orElseThrow(() -> new RuntimeException("Tarefa não encontrada: " + taskId));
-
-        try {
-            // 2. Marcar a tarefa como "Em Processamento"
-            task.setStatus(TaskStatus.PROCESSING);
-            task.setCurrentLog("Iniciando pré-processamento...");
-            importTaskRepository.save(task);
-
-            // --- Lógica copiada do ContentAdminService ---
-            List<String> textsToEmbed = new ArrayList<>();
-            List<ContentChunk> chunksToSave = new ArrayList<>();
-
-            for (ChunkImportDTO dto : dtoList) {
-                Work work = workRepository.findByAcronym(dto.workAcronym())
-                        .orElseThrow(() -> new IllegalArgumentException("Acrônimo não encontrado: " + dto.workAcronym()));
-                Set<Topic> topics = (dto.topics() != null && !dto.topics().isEmpty()) ?
-                        topicRepository.findByNameIn(dto.topics()) : new HashSet<>();
-
-                textsToEmbed.add(buildTextToEmbed(dto));
-                chunksToSave.add(createChunkEntity(dto, work, topics));
-            }
-
-            // --- ETAPA 2: Vetorização em Lotes (com log de progresso) ---
-            int totalChunks = chunksToSave.size();
-            for (int i = 0; i < totalChunks; i += EMBEDDING_BATCH_SIZE) {
-                int end = Math.min(i + EMBEDDING_BATCH_SIZE, totalChunks);
-
-                // 2.1 Atualizar o Log da Tarefa
-                int batchNum = (i / EMBEDDING_BATCH_SIZE) + 1;
-                int totalBatches = (int) Math.ceil((double) totalChunks / EMBEDDING_BATCH_SIZE);
-                String logMessage = "Processando lote " + batchNum + " de " + totalBatches + "...";
+    @Override
+    public void execute(ImportTask task, TaskProgress progress) {
+        int firstIndex = task.getLastProcessedId() != null ? task.getLastProcessedId().intValue() : 0;
+        if (!payloadStore.hasPayload(task.getId())) {
+            // Tarefa criada antes da fila durável: a entrada só existia na memória da instância que caiu
+            task.setStatus(TaskStatus.FAILED);
+            task.setErrorMessage("Entrada da importação não foi persistida; reenvie o arquivo.");
+            task.setEndTime(LocalDateTime.now());
+            jobQueue.finish(task);
+            return;
+        }
+        runImport(task, progress, ChunkImportReader.ofItems(
+                payloadStore.read(task.getId(), ChunkImportDTO.class, firstIndex), firstIndex));
+    }
 
-                logger.info(logMessage);
-                task.setCurrentLog(logMessage);
-                importTaskRepository.save(task); // Salva o progresso
+    @PreDestroy
+    public void shutdown() {
+        embeddingPipeline.shutdownNow();
+    }
 
-                // 2.2 Processar o lote
-                List<String> textBatch = textsToEmbed.subList(i, end);
-                List<ContentChunk> chunkBatch = chunksToSave.subList(i, end);
+    private void runImport(ImportTask task, TaskProgress progress, ChunkImportReader reader) {
+        Long taskId = task.getId();
+        Integer total = task.getTotalItems();
+        Lookup lookup = new Lookup(new HashMap<>(), new HashMap<>());
 
-                List<PGvector> vectorBatch = geminiApiClient.generateEmbeddingsInBatch(textBatch);
+        // Retomada: o que já foi commitado (e as falhas já reportadas) vem da própria tarefa, via TaskProgress
+        int writtenUpTo = reader.nextIndex();
+        int committed = (int) Math.max(0, progress.processed() - progress.failed());
+        int withoutVector = 0;
 
-                if (vectorBatch.size() != chunkBatch.size()) {
-                    throw new RuntimeException("Falha na vetorização: contagens de lote não correspondem.");
-                }
+        try (reader) {
+            // 2. Registrar o início (ou a retomada) da importação
+            progress.log(writtenUpTo > 0
+                    ? "Retomando importação a partir do item #" + writtenUpTo + "..." : "Iniciando importação...");
 
-                // 2.3 "Costurar" vetores e atualizar progresso
-                for (int j = 0; j < chunkBatch.size(); j++) {
-                    chunkBatch.get(j).setContentVector(vectorBatch.get(j) != null ? vectorBatch.get(j).toArray() : null);
-                }
+            // --- Pipeline: ler + resolver -> vetorizar (fora de transação) -> gravar (commit por janela) ---
+            CompletableFuture<EmbeddedWindow> inFlight = readAndEmbed(reader, lookup);
+            while (inFlight != null) {
+                JobHandler.throwIfInterrupted();
+                EmbeddedWindow current = inFlight.join();
+                inFlight = readAndEmbed(reader, lookup);
 
-                task.setProcessedItems(end); // Atualiza o total processado
-                importTaskRepository.save(task);
+                committed += writeWindow(taskId, current, progress);
+                withoutVector += current.missingVectors();
+                writtenUpTo = current.endIndex();
+                progress.log(progressLog(committed, progress.failed(), total));
+                logger.info("[Import {}] {}", taskId, progress.currentLog());
             }
 
-            // --- ETAPA 3: Salvar ---
-            task.setCurrentLog("Salvando " + totalChunks + " chunks no banco de dados...");
-            importTaskRepository.save(task);
-
-            contentChunkRepository.saveAll(chunksToSave);
-
-            // --- ETAPA 4: Concluir ---
+            // --- Concluir ---
+            task = importTaskRepository.findById(taskId).orElse(task);
             task.setStatus(TaskStatus.COMPLETED);
-            task.setCurrentLog("Importação concluída com sucesso.");
+            task.setCurrentLog(completionLog(committed, progress.failed(), withoutVector));
             task.setEndTime(LocalDateTime.now());
 
         } catch (Exception e) {
-            // --- ETAPA DE FALHA ---
+            // --- ETAPA DE FALHA: o que já foi commitado fica; o resto é reportado ---
             logger.error("Falha na tarefa de importação " + taskId, e);
+            int remaining = total != null ? Math.max(1, total - writtenUpTo) : 1;
+            progress.failRange("#" + writtenUpTo + (remaining > 1 ? "..#" + (total - 1) : "")
+                    + ": não processado (importação interrompida)", remaining);
+            task = importTaskRepository.findById(taskId).orElse(task);
             task.setStatus(TaskStatus.FAILED);
+            task.setCurrentLog(committed + " chunks gravados antes da falha.");
             task.setErrorMessage(e.getMessage());
             task.setEndTime(LocalDateTime.now());
         } finally {
-            // Garantir que o estado final (COMPLETED ou FAILED) seja salvo
-            importTaskRepository.save(task);
+            // Estado final (COMPLETED ou FAILED), descartado se a tarefa já foi assumida por outra instância
+            task.setProcessedItems((int) progress.processed());
+            task.setFailedItems(progress.failedItemsText());
+            task.setLastProcessedId((long) writtenUpTo);
+            jobQueue.finish(task);
+            if (committed > 0) {
+                retrievalCache.bumpCorpusVersion("asyncImport");
+            }
+        }
+    }
+
+    // --- ETAPAS ---
+
+    /**
+     * Lê e resolve a próxima janela na thread da tarefa e dispara a vetorização em paralelo.
+     * Retorna null no fim do arquivo.
+     */
+    private CompletableFuture<EmbeddedWindow> readAndEmbed(ChunkImportReader reader, Lookup lookup) throws IOException {
+        List<ChunkImportReader.Item> window = reader.nextWindow(COMMIT_SIZE);
+        if (window.isEmpty()) {
+            return null;
+        }
+        List<String> failures = new ArrayList<>();
+        List<PendingChunk> items = resolve(window, lookup, failures);
+        int endIndex = reader.nextIndex();
+        return CompletableFuture.supplyAsync(() -> embed(items, failures, endIndex), embeddingPipeline);
+    }
+
+    /**
+     * Resolve acrônimos e tópicos da janela com no máximo duas consultas (só os ainda não vistos).
+     * Itens com obra desconhecida vão para a lista de falhas da janela.
+     */
+    private List<PendingChunk> resolve(List<ChunkImportReader.Item> window, Lookup lookup, List<String> failures) {
+        Set<String> newAcronyms = window.stream()
+                .map(item -> item.dto().workAcronym())
+                .filter(acronym -> acronym != null && !lookup.workIds().containsKey(acronym))
+                .collect(Collectors.toSet());
+        Set<String> newTopics = window.stream()
+                .filter(item -> item.dto().topics() != null)
+                .flatMap(item -> item.dto().topics().stream())
+                .filter(name -> name != null && !lookup.topicIds().containsKey(name))
+                .collect(Collectors.toSet());
+
+        if (!newAcronyms.isEmpty()) {
+            newAcronyms.forEach(acronym -> lookup.workIds().put(acronym, null));
+            workRepository.findByAcronymIn(newAcronyms)
+                    .forEach(work -> lookup.workIds().put(work.getAcronym(), work.getId()));
+        }
+        if (!newTopics.isEmpty()) {
+            newTopics.forEach(name -> lookup.topicIds().put(name, null));
+            topicRepository.findByNameIn(newTopics)
+                    .forEach(topic -> lookup.topicIds().put(topic.getName(), topic.getId()));
+        }
+
+        List<PendingChunk> pending = new ArrayList<>(window.size());
+        for (ChunkImportReader.Item item : window) {
+            ChunkImportDTO dto = item.dto();
+            Long workId = dto.workAcronym() != null ? lookup.workIds().get(dto.workAcronym()) : null;
+            if (workId == null) {
+                failures.add(failureLine(item.index(), "Acrônimo não encontrado: " + dto.workAcronym()));
+                continue;
+            }
+            // Tópicos desconhecidos são ignorados, como no findByNameIn de antes
+            Set<Long> chunkTopicIds = dto.topics() == null ? Set.of() : dto.topics().stream()
+                    .map(name -> name != null ? lookup.topicIds().get(name) : null)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+            pending.add(new PendingChunk(item.index(), dto, workId, chunkTopicIds));
         }
+        return pending;
     }
 
-    // --- Métodos Helper (Copiados do ContentAdminService) ---
-
-    private ContentChunk createChunkEntity(ChunkImportDTO dto, Work work, Set<Topic> topics) {
-        ContentChunk chunk = new ContentChunk();
-        chunk.setWork(work);
-        chunk.setChapterTitle(dto.chapterTitle());
-        chunk.setChapterNumber(dto.chapterNumber());
-        chunk.setSectionTitle(dto.sectionTitle());
-        chunk.setSectionNumber(dto.sectionNumber());
-        chunk.setSubsectionTitle(dto.subsectionTitle());
-        chunk.setSubSubsectionTitle(dto.subSubsectionTitle());
-        chunk.setQuestion(dto.question());
-        chunk.setContent(dto.content());
-        chunk.setTopics(topics);
-        return chunk;
-    }
-
-    private String buildTextToEmbed(ChunkImportDTO dto) {
-        StringBuilder sb = new StringBuilder();
-        if (dto.question() != null && !dto.question().isBlank()) {
-            sb.append(dto.question()).append("\n").append(dto.content());
-        } else {
-            if (dto.chapterTitle() != null) sb.append(dto.chapterTitle()).append(". ");
-            if (dto.sectionTitle() != null) sb.append(dto.sectionTitle()).append(". ");
-            if (dto.subsectionTitle() != null) sb.append(dto.subsectionTitle()).append(". ");
-            sb.append(dto.content());
+    /**
+     * Vetoriza conteúdo e pergunta da janela numa única chamada em lote:
+     * [conteúdo de cada item..., pergunta dos itens que têm pergunta...].
+     */
+    private EmbeddedWindow embed(List<PendingChunk> items, List<String> failures, int endIndex) {
+        List<String> texts = new ArrayList<>(items.size() * 2);
+        List<Integer> questionOwners = new ArrayList<>();
+        for (PendingChunk item : items) {
+            ChunkImportDTO dto = item.dto();
+            texts.add(EmbeddingTexts.chunkForImport(dto.question(), dto.chapterTitle(), dto.sectionTitle(),
+                    dto.subsectionTitle(), dto.content()));
+        }
+        for (int i = 0; i < items.size(); i++) {
+            String question = items.get(i).dto().question();
+            if (question != null && !question.isBlank()) {
+                texts.add(question);
+                questionOwners.add(i);
+            }
+        }
+
+        BulkEmbeddingExecutor.BulkEmbeddingResult result = texts.isEmpty()
+                ? new BulkEmbeddingExecutor.BulkEmbeddingResult(List.of(), 0, 0, 0)
+                : bulkEmbeddingExecutor.embedAll(texts);
+
+        List<float[]> contentVectors = new ArrayList<>(result.vectors().subList(0, items.size()));
+        List<float[]> questionVectors = new ArrayList<>(Collections.nCopies(items.size(), (float[]) null));
+        for (int q = 0; q < questionOwners.size(); q++) {
+            questionVectors.set(questionOwners.get(q), result.vectors().get(items.size() + q));
+        }
+        return new EmbeddedWindow(items, failures, contentVectors, questionVectors, result.failedCount(), endIndex);
+    }
+
+    /**
+     * Grava a janela e o checkpoint numa transação (COPY). Se o lote falhar, regrava item a item,
+     * cada item na mesma transação que o checkpoint logo depois dele, para apontar exatamente quais itens
+     * falharam sem que uma retomada duplique os que já foram gravados.
+     * O checkpoint é a única escrita na tarefa por janela; log e relatório de falhas ficam no {@link TaskProgress}.
+     */
+    private int writeWindow(Long taskId, EmbeddedWindow window, TaskProgress progress) {
+        List<ChunkBatchWriter.ChunkInsert> rows = new ArrayList<>(window.items().size());
+        for (int i = 0; i < window.items().size(); i++) {
+            rows.add(toInsert(window.items().get(i), window.contentVectors().get(i), window.questionVectors().get(i)));
+        }
+        long checkpoint = window.endIndex();
+        long settled = progress.processed() + window.failures().size();
+        if (rows.isEmpty()) {
+            jobQueue.checkpoint(taskId, settled, checkpoint);
+            window.failures().forEach(progress::fail);
+            return 0;
+        }
+
+        try {
+            // Janela + checkpoint no mesmo commit: se o lease foi perdido, a janela é desfeita
+            transactionTemplate.executeWithoutResult(status -> {
+                bulkLoader.loadChunks(rows);
+                jobQueue.checkpoint(taskId, settled + rows.size(), checkpoint);
+            });
+            window.failures().forEach(progress::fail);
+            progress.advance(rows.size());
+            return rows.size();
+        } catch (JobQueue.LeaseLostException leaseLost) {
+            throw leaseLost;
+        } catch (Exception batchError) {
+            logger.warn("⚠️ Lote falhou ({}). Regravando item a item para isolar o problema.", batchError.getMessage());
+        }
+
+        int written = 0;
+        long itemsSettled = settled;
+        for (int i = 0; i < rows.size(); i++) {
+            ChunkBatchWriter.ChunkInsert row = rows.get(i);
+            int index = window.items().get(i).index();
+            long settledAfter = ++itemsSettled;
+            try {
+                // Item + checkpoint (próximo índice) no mesmo commit: uma retomada recomeça depois dele
+                transactionTemplate.executeWithoutResult(status -> {
+                    chunkBatchWriter.insertBatch(List.of(row));
+                    jobQueue.checkpoint(taskId, settledAfter, (long) index + 1);
+                });
+                written++;
+                progress.advance(1);
+            } catch (JobQueue.LeaseLostException leaseLost) {
+                throw leaseLost;
+            } catch (Exception e) {
+                // O item falho é coberto pelo checkpoint do próximo item (ou pelo final da janela)
+                progress.fail(failureLine(index, e.getMessage()));
+            }
+        }
+        jobQueue.checkpoint(taskId, itemsSettled, checkpoint);
+        window.failures().forEach(progress::fail);
+        return written;
+    }
+
+    // --- Métodos Helper ---
+
+    private static ChunkBatchWriter.ChunkInsert toInsert(PendingChunk item, float[] contentVector, float[] questionVector) {
+        ChunkImportDTO dto = item.dto();
+        return new ChunkBatchWriter.ChunkInsert(
+                item.workId(),
+                dto.chapterTitle(),
+                dto.chapterNumber(),
+                dto.sectionTitle(),
+                dto.sectionNumber(),
+                dto.subsectionTitle(),
+                dto.subSubsectionTitle(),
+                dto.question(),
+                dto.content(),
+                contentVector,
+                questionVector,
+                item.topicIds());
+    }
+
+    private static String failureLine(int index, String reason) {
+        return "#" + index + ": " + reason;
+    }
+
+    private static String progressLog(int committed, long failed, Integer total) {
+        return "Gravados " + committed + (total != null ? " de " + total : "") + " chunks"
+                + (failed == 0 ? "" : " (" + failed + " falhas)") + "...";
+    }
+
+    private static String completionLog(int committed, long failed, int withoutVector) {
+        StringBuilder log = new StringBuilder("Importação concluída: ").append(committed).append(" chunks gravados");
+        if (failed > 0) {
+            log.append(", ").append(failed).append(" falharam (ver failedItems)");
+        }
+        if (withoutVector > 0) {
+            log.append(", ").append(withoutVector).append(" vetores não gerados (rode os backfills de vetores)");
         }
-        return sb.toString();
+        return log.append('.').toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,375 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.exception.LlmUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor de embeddings em massa (importação, backfill, notas de estudo).
+ * <p>
+ * - Tamanho de lote adaptativo: cresce enquanto a latência fica abaixo do alvo, encolhe quando
+ * passa do alvo e cai pela metade em 429/5xx. O tamanho aprendido é reaproveitado no próximo job.
+ * <p>
+ * - Falhas parciais: erros transitórios (429/5xx, timeout) reenviam o lote com backoff; erros do
+ * conteúdo (4xx, validação) dividem o lote ao meio até isolar o texto problemático, que é marcado
+ * como falho (vetor null) sem perder o resto.
+ * <p>
+ * - Provedor fora do ar: se um lote esgota os reenvios num erro transitório, ou o circuito de
+ * embeddings abre, o job é abortado na hora: o que ainda não foi enviado volta como falho, em vez
+ * de dividir e reenviar lote por lote contra uma API que não responde.
+ * <p>
+ * - Vários lotes em voo ao mesmo tempo; o governador continua limitando a faixa BATCH.
+ */
+@Service
+public class BulkEmbeddingExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkEmbeddingExecutor.class);
+
+    /**
+     * Recebe o progresso na thread que chamou {@link #embedAll}, então é seguro salvar a tarefa aqui.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(int completed, int total, double textsPerSecond);
+    }
+
+    /**
+     * Vetores na mesma ordem dos textos; posições que falharam ficam null.
+     */
+    public record BulkEmbeddingResult(List<float[]> vectors, int failedCount, long elapsedMillis,
+                                      double textsPerSecond) {
+        public boolean hasFailures() {
+            return failedCount > 0;
+        }
+    }
+
+    private record Slice(int start, int end, int attempt, long notBeforeNanos) {
+        int size() {
+            return end - start;
+        }
+    }
+
+    private record SliceOutcome(Slice slice, List<float[]> vectors, RuntimeException error, long latencyNanos) {
+    }
+
+    private final GeminiApiClient geminiApiClient;
+    private final EmbeddingStore embeddingStore;
+    private final LlmResilience resilience;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int maxInFlight;
+    private final long targetLatencyNanos;
+    private final int maxRetries;
+    private final long backoffInitialMillis;
+    private final long backoffMaxMillis;
+
+    // Tamanho aprendido, compartilhado entre jobs
+    private final AtomicInteger learnedBatchSize;
+    private volatile double lastTextsPerSecond;
+
+    private final Counter embeddedCounter;
+    private final Counter failedCounter;
+    private final Counter retryCounter;
+    private final Counter splitCounter;
+    private final Counter abortCounter;
+    private final Timer batchLatencyTimer;
+
+    public BulkEmbeddingExecutor(GeminiApiClient geminiApiClient,
+                                 EmbeddingStore embeddingStore,
+                                 LlmResilience resilience,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${fereformada.embedding.bulk.initial-batch-size:32}") int initialBatchSize,
+                                 @Value("${fereformada.embedding.bulk.min-batch-size:1}") int minBatchSize,
+                                 @Value("${fereformada.embedding.bulk.max-batch-size:250}") int maxBatchSize,
+                                 @Value("${fereformada.embedding.bulk.max-in-flight:4}") int maxInFlight,
+                                 @Value("${fereformada.embedding.bulk.target-latency-ms:3000}") long targetLatencyMillis,
+                                 @Value("${fereformada.embedding.bulk.max-retries:4}") int maxRetries,
+                                 @Value("${fereformada.embedding.bulk.backoff-initial-ms:500}") long backoffInitialMillis,
+                                 @Value("${fereformada.embedding.bulk.backoff-max-ms:15000}") long backoffMaxMillis) {
+        this.geminiApiClient = geminiApiClient;
+        this.embeddingStore = embeddingStore;
+        this.resilience = resilience;
+        this.minBatchSize = Math.max(1, minBatchSize);
+        this.maxBatchSize = Math.max(this.minBatchSize, maxBatchSize);
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.backoffInitialMillis = backoffInitialMillis;
+        this.backoffMaxMillis = backoffMaxMillis;
+        this.learnedBatchSize = new AtomicInteger(clamp(initialBatchSize));
+
+        Gauge.builder("embedding.bulk.batch.size", learnedBatchSize, AtomicInteger::get)
+                .description("Tamanho de lote atual do executor de embeddings em massa")
+                .register(meterRegistry);
+        Gauge.builder("embedding.bulk.throughput", this, e -> e.lastTextsPerSecond)
+                .description("Textos/s do último job de embeddings em massa")
+                .register(meterRegistry);
+        this.embeddedCounter = Counter.builder("embedding.bulk.texts").tag("outcome", "embedded").register(meterRegistry);
+        this.failedCounter = Counter.builder("embedding.bulk.texts").tag("outcome", "failed").register(meterRegistry);
+        this.retryCounter = Counter.builder("embedding.bulk.retries").register(meterRegistry);
+        this.splitCounter = Counter.builder("embedding.bulk.splits").register(meterRegistry);
+        this.abortCounter = Counter.builder("embedding.bulk.aborts").register(meterRegistry);
+        this.batchLatencyTimer = Timer.builder("embedding.bulk.batch.latency").register(meterRegistry);
+    }
+
+    public BulkEmbeddingResult embedAll(List<String> texts) {
+        return embedAll(texts, null);
+    }
+
+    /**
+     * Vetoriza todos os textos, bloqueando até o fim. Nunca lança por falha de um lote:
+     * o que não puder ser vetorizado volta como null e é contado em {@code failedCount}.
+     * <p>
+     * Textos já presentes no {@link EmbeddingStore} (mesmo modelo, mesmo texto exato) não vão à API;
+     * textos repetidos na chamada são enviados uma vez só.
+     */
+    public BulkEmbeddingResult embedAll(List<String> texts, ProgressListener listener) {
+        if (texts.isEmpty()) {
+            return new BulkEmbeddingResult(List.of(), 0, 0, 0);
+        }
+        long startNanos = System.nanoTime();
+        Map<String, float[]> known = embeddingStore.findAll(texts);
+
+        // Só os textos distintos que o armazém não conhece vão à API
+        List<String> missing = texts.stream().filter(text -> !known.containsKey(text)).distinct().toList();
+        int reused = (int) texts.stream().filter(known::containsKey).count();
+
+        Map<String, float[]> computed = new HashMap<>();
+        int failedMissing = 0;
+        if (!missing.isEmpty()) {
+            ProgressListener offsetListener = listener == null ? null
+                    : (completed, total, textsPerSecond) -> listener.onProgress(
+                    reused + completed * (texts.size() - reused) / Math.max(1, total), texts.size(), textsPerSecond);
+            BulkEmbeddingResult result = embedUncached(missing, offsetListener);
+            for (int i = 0; i < missing.size(); i++) {
+                if (result.vectors().get(i) != null) {
+                    computed.put(missing.get(i), result.vectors().get(i));
+                }
+            }
+            failedMissing = result.failedCount();
+            embeddingStore.saveAll(missing, result.vectors());
+        }
+
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        int failed = 0;
+        for (String text : texts) {
+            float[] vector = known.containsKey(text) ? known.get(text) : computed.get(text);
+            if (vector == null) {
+                failed++;
+            }
+            vectors.add(vector);
+        }
+        if (reused > 0) {
+            logger.info("♻️ {} de {} textos reaproveitados do armazém de embeddings ({} enviados à API).",
+                    reused, texts.size(), missing.size() - failedMissing);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        return new BulkEmbeddingResult(vectors, failed, elapsedMillis, throughput(texts.size() - failed, startNanos));
+    }
+
+    /**
+     * Vetoriza via API com lotes adaptativos, sem consultar o armazém.
+     */
+    private BulkEmbeddingResult embedUncached(List<String> texts, ProgressListener listener) {
+        int total = texts.size();
+        float[][] vectors = new float[total][];
+        if (total == 0) {
+            return new BulkEmbeddingResult(List.of(), 0, 0, 0);
+        }
+
+        long startNanos = System.nanoTime();
+        CompletionService<SliceOutcome> completion = new ExecutorCompletionService<>(executor);
+        Deque<Slice> retries = new ArrayDeque<>();
+        int cursor = 0;
+        int inFlight = 0;
+        int completed = 0;
+        int failed = 0;
+        boolean aborted = false;
+
+        try {
+            while (cursor < total || !retries.isEmpty() || inFlight > 0) {
+                // 1. Enche a janela de lotes em voo (reenvios/divisões têm prioridade)
+                while (inFlight < maxInFlight && (!retries.isEmpty() || cursor < total)) {
+                    Slice slice = retries.pollFirst();
+                    if (slice == null) {
+                        int end = Math.min(total, cursor + learnedBatchSize.get());
+                        slice = new Slice(cursor, end, 0, 0);
+                        cursor = end;
+                    }
+                    submit(completion, texts, slice);
+                    inFlight++;
+                }
+
+                // 2. Trata o próximo lote que terminar
+                SliceOutcome outcome = completion.take().get();
+                inFlight--;
+                Slice slice = outcome.slice();
+
+                if (outcome.error() == null) {
+                    for (int i = 0; i < slice.size(); i++) {
+                        vectors[slice.start() + i] = outcome.vectors().get(i);
+                    }
+                    completed += slice.size();
+                    embeddedCounter.increment(slice.size());
+                    adaptOnSuccess(slice.size(), outcome.latencyNanos());
+                } else {
+                    // 429/5xx, timeout ou circuito aberto: o problema é o provedor, não o conteúdo
+                    boolean transientError = outcome.error() instanceof LlmUnavailableException
+                            || GeminiGovernor.isThrottlingOrServerError(outcome.error());
+                    if (transientError) {
+                        adaptOnThrottle();
+                    }
+
+                    if (aborted) {
+                        // Lote que já estava em voo quando o job foi abortado
+                        completed += slice.size();
+                        failed += slice.size();
+                        failedCounter.increment(slice.size());
+                    } else if (!transientError && slice.size() > 1) {
+                        // Erro do conteúdo: divide ao meio para isolar o texto problemático
+                        int mid = slice.start() + slice.size() / 2;
+                        retries.addLast(new Slice(slice.start(), mid, 0, 0));
+                        retries.addLast(new Slice(mid, slice.end(), 0, 0));
+                        splitCounter.increment();
+                    } else if (!transientError) {
+                        // Texto isolado que a API recusa: reenviar não adianta
+                        logger.warn("⚠️ Texto {} recusado pela API de embeddings: {}",
+                                slice.start(), outcome.error().getMessage());
+                        completed += slice.size();
+                        failed += slice.size();
+                        failedCounter.increment(slice.size());
+                    } else if (slice.attempt() < maxRetries && !isCircuitOpen()) {
+                        retries.addLast(new Slice(slice.start(), slice.end(), slice.attempt() + 1,
+                                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffFor(slice.attempt()))));
+                        retryCounter.increment();
+                    } else {
+                        // Provedor indisponível: falha este lote e tudo o que ainda não foi enviado
+                        int remaining = slice.size() + (total - cursor);
+                        for (Slice pending : retries) {
+                            remaining += pending.size();
+                        }
+                        logger.warn("⛔ Embeddings em massa abortados após {} tentativas ({}): {} textos sem vetor.",
+                                slice.attempt() + 1, outcome.error().getMessage(), remaining);
+                        aborted = true;
+                        abortCounter.increment();
+                        retries.clear();
+                        cursor = total;
+                        completed += remaining;
+                        failed += remaining;
+                        failedCounter.increment(remaining);
+                    }
+                }
+
+                if (listener != null) {
+                    listener.onProgress(completed, total, throughput(completed - failed, startNanos));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Vetorização em massa interrompida", e);
+        } catch (ExecutionException e) {
+            // submit() nunca completa com exceção; chegar aqui é bug
+            throw new IllegalStateException("Falha inesperada no executor de embeddings", e.getCause());
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        double textsPerSecond = throughput(total - failed, startNanos);
+        lastTextsPerSecond = textsPerSecond;
+        logger.info("⚡ Embeddings em massa: {} textos em {} ms ({} textos/s, lote atual {}, {} falhas).",
+                total, elapsedMillis, String.format(Locale.ROOT, "%.1f", textsPerSecond), learnedBatchSize.get(), failed);
+
+        return new BulkEmbeddingResult(Arrays.asList(vectors), failed, elapsedMillis, textsPerSecond);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batchSize", learnedBatchSize.get());
+        stats.put("maxInFlight", maxInFlight);
+        stats.put("lastTextsPerSecond", lastTextsPerSecond);
+        stats.put("embedded", (long) embeddedCounter.count());
+        stats.put("failed", (long) failedCounter.count());
+        stats.put("retries", (long) retryCounter.count());
+        stats.put("splits", (long) splitCounter.count());
+        stats.put("aborts", (long) abortCounter.count());
+        stats.put("avgBatchLatencyMs", batchLatencyTimer.mean(TimeUnit.MILLISECONDS));
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ===== EXECUÇÃO DE UM LOTE =====
+
+    private void submit(CompletionService<SliceOutcome> completion, List<String> texts, Slice slice) {
+        List<String> batch = List.copyOf(texts.subList(slice.start(), slice.end()));
+        completion.submit(() -> {
+            long wait = slice.notBeforeNanos() - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait); // backoff (thread virtual, não segura thread de plataforma)
+            }
+            long start = System.nanoTime();
+            try {
+                List<float[]> vectors = geminiApiClient.embedBatchOrThrow(batch);
+                long latency = System.nanoTime() - start;
+                batchLatencyTimer.record(latency, TimeUnit.NANOSECONDS);
+                return new SliceOutcome(slice, vectors, null, latency);
+            } catch (RuntimeException e) {
+                return new SliceOutcome(slice, null, e, System.nanoTime() - start);
+            }
+        });
+    }
+
+    private boolean isCircuitOpen() {
+        return resilience.getCircuitState(GeminiGovernor.Resource.EMBEDDING) == LlmCircuitBreaker.State.OPEN;
+    }
+
+    // ===== AJUSTE DO TAMANHO DO LOTE =====
+
+    private void adaptOnSuccess(int batchSize, long latencyNanos) {
+        // Só ajusta com base em lotes "cheios"; divisões pequenas não dizem nada sobre o limite
+        int current = learnedBatchSize.get();
+        if (batchSize < current / 2) {
+            return;
+        }
+        if (latencyNanos > targetLatencyNanos) {
+            learnedBatchSize.set(clamp(current * 3 / 4));
+        } else if (latencyNanos < targetLatencyNanos / 2) {
+            learnedBatchSize.set(clamp(current + Math.max(1, current / 4)));
+        }
+    }
+
+    private void adaptOnThrottle() {
+        learnedBatchSize.updateAndGet(current -> clamp(current / 2));
+    }
+
+    private int clamp(int size) {
+        return Math.max(minBatchSize, Math.min(maxBatchSize, size));
+    }
+
+    private long backoffFor(int attempt) {
+        long backoff = backoffInitialMillis << Math.min(attempt, 16);
+        long capped = Math.min(backoffMaxMillis, backoff);
+        // Jitter para os lotes em voo não voltarem todos juntos
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+
+    private static double throughput(int texts, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed <= 0 ? 0 : texts / (elapsed / 1_000_000_000.0);
+    }
+}
@@ -0,0 +1,186 @@
+package br.com.fereformada.api.service;
+
+import com.pgvector.PGvector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+
+/**
+ * Grava lotes de chunks (e seus tópicos) direto via JDBC, na transação do chamador (ou numa própria, se não houver):
+ * quem grava também o checkpoint da tarefa faz as duas coisas no mesmo commit.
+ * <p>
+ * No PostgreSQL os ids são pré-alocados da sequence da coluna identity, o que permite
+ * batch JDBC de verdade em content_chunks e chunk_topics (com IDENTITY o Hibernate não agrupa inserts).
+ * Em outros bancos (H2 no dev) é um batch JDBC só, lendo as chaves geradas da identity.
+ */
+@Component
+public class ChunkBatchWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkBatchWriter.class);
+
+    /**
+     * Linha pronta para inserção (work e tópicos já resolvidos para ids).
+     */
+    public record ChunkInsert(Long workId,
+                              String chapterTitle,
+                              Integer chapterNumber,
+                              String sectionTitle,
+                              Integer sectionNumber,
+                              String subsectionTitle,
+                              String subSubsectionTitle,
+                              String question,
+                              String content,
+                              float[] contentVector,
+                              float[] questionVector,
+                              Collection<Long> topicIds) {
+    }
+
+    private static final String CHUNK_COLUMNS = "work_id, chapter_title, chapter_number, section_title, section_number, " +
+            "subsection_title, sub_subsection_title, question, content, content_vector, question_vector";
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Boolean postgres;
+
+    public ChunkBatchWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Insere o lote inteiro ou nada. Retorna os ids na mesma ordem das linhas.
+     */
+    @Transactional
+    public List<Long> insertBatch(List<ChunkInsert> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = isPostgres() ? insertWithPreallocatedIds(rows) : insertInBatchWithGeneratedKeys(rows);
+        insertTopics(rows, ids);
+        return ids;
+    }
+
+    public boolean isPostgres() {
+        if (postgres == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+            postgres = product != null && product.toLowerCase(Locale.ROOT).contains("postgres");
+            logger.info("ChunkBatchWriter usando {} ({}).", postgres ? "batch JDBC com ids pré-alocados" : "batch JDBC com chaves geradas", product);
+        }
+        return postgres;
+    }
+
+    /**
+     * Reserva {@code count} ids da sequence de uma tabela (coluna identity/serial "id").
+     */
+    public List<Long> allocateIds(String table, int count) {
+        return jdbcTemplate.queryForList(
+                "SELECT nextval(pg_get_serial_sequence(?, 'id')) FROM generate_series(1, ?)",
+                Long.class, table, count);
+    }
+
+    // ===== POSTGRESQL =====
+
+    private List<Long> insertWithPreallocatedIds(List<ChunkInsert> rows) {
+        List<Long> ids = allocateIds("content_chunks", rows.size());
+
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO content_chunks (id, " + CHUNK_COLUMNS + ") " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CAST(? AS vector), CAST(? AS vector))",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, ids.get(i));
+                        bindChunk(ps, rows.get(i), 2);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows.size();
+                    }
+                });
+        return ids;
+    }
+
+    // ===== OUTROS BANCOS (H2) =====
+
+    /**
+     * Um único batch JDBC; os ids gerados pela coluna identity voltam na ordem das linhas.
+     */
+    private List<Long> insertInBatchWithGeneratedKeys(List<ChunkInsert> rows) {
+        String sql = "INSERT INTO content_chunks (" + CHUNK_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql, new String[]{"id"})) {
+                for (ChunkInsert row : rows) {
+                    bindChunk(ps, row, 1);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                List<Long> ids = new ArrayList<>(rows.size());
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.add(keys.getLong(1));
+                    }
+                }
+                if (ids.size() != rows.size()) {
+                    throw new SQLException("Batch de chunks gerou " + ids.size() + " ids para " + rows.size() + " linhas.");
+                }
+                return ids;
+            }
+        });
+    }
+
+    // ===== TÓPICOS =====
+
+    private void insertTopics(List<ChunkInsert> rows, List<Long> ids) {
+        List<long[]> links = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            Collection<Long> topicIds = rows.get(i).topicIds();
+            if (topicIds == null) {
+                continue;
+            }
+            for (Long topicId : topicIds) {
+                links.add(new long[]{ids.get(i), topicId});
+            }
+        }
+        if (links.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO chunk_topics (chunk_id, topic_id) VALUES (?, ?)",
+                links, links.size(), (ps, link) -> {
+                    ps.setLong(1, link[0]);
+                    ps.setLong(2, link[1]);
+                });
+    }
+
+    private static void bindChunk(PreparedStatement ps, ChunkInsert row, int first) throws SQLException {
+        int i = first;
+        ps.setLong(i++, row.workId());
+        ps.setString(i++, row.chapterTitle());
+        setInteger(ps, i++, row.chapterNumber());
+        ps.setString(i++, row.sectionTitle());
+        setInteger(ps, i++, row.sectionNumber());
+        ps.setString(i++, row.subsectionTitle());
+        ps.setString(i++, row.subSubsectionTitle());
+        ps.setString(i++, row.question());
+        ps.setString(i++, row.content());
+        ps.setString(i++, row.contentVector() != null ? new PGvector(row.contentVector()).toString() : null);
+        ps.setString(i, row.questionVector() != null ? new PGvector(row.questionVector()).toString() : null);
+    }
+
+    private static void setInteger(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.INTEGER);
+        } else {
+            ps.setInt(index, value);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.dto.ChunkImportDTO;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Leitura em janelas de um arquivo de importação de chunks, sem carregar o arquivo inteiro.
+ * <p>
+ * Aceita os dois formatos: um array JSON ({@code [ {...}, {...} ]}) ou NDJSON (um objeto por linha).
+ * O formato é detectado pelo primeiro token; os itens são lidos um a um com o parser de streaming do Jackson.
+ */
+public class ChunkImportReader implements Closeable {
+
+    /**
+     * Item lido + sua posição no arquivo (usada nos relatórios de falha).
+     */
+    public record Item(int index, ChunkImportDTO dto) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Path file;
+    private final Iterator<ChunkImportDTO> items;
+
+    private JsonParser parser;
+    private boolean pendingStart;
+    private boolean finished;
+    private int nextIndex;
+
+    private ChunkImportReader(ObjectMapper objectMapper, Path file, Iterator<ChunkImportDTO> items, int firstIndex) {
+        this.objectMapper = objectMapper;
+        this.file = file;
+        this.items = items;
+        this.nextIndex = firstIndex;
+    }
+
+    /**
+     * Arquivo JSON/NDJSON. O parser só é aberto na primeira leitura.
+     */
+    public static ChunkImportReader ofFile(ObjectMapper objectMapper, Path file) {
+        return new ChunkImportReader(objectMapper, file, null, 0);
+    }
+
+    /**
+     * Itens já desserializados (entrada persistida da tarefa), começando no índice {@code firstIndex}
+     * (o checkpoint de uma retomada), lidos pelas mesmas janelas.
+     */
+    public static ChunkImportReader ofItems(Iterator<ChunkImportDTO> items, int firstIndex) {
+        return new ChunkImportReader(null, null, items, firstIndex);
+    }
+
+    /**
+     * Próxima janela de até {@code maxItems} itens; lista vazia no fim do arquivo.
+     */
+    public List<Item> nextWindow(int maxItems) throws IOException {
+        List<Item> window = new ArrayList<>(maxItems);
+        while (window.size() < maxItems) {
+            ChunkImportDTO dto = readNext();
+            if (dto == null) {
+                break;
+            }
+            window.add(new Item(nextIndex++, dto));
+        }
+        return window;
+    }
+
+    /**
+     * Índice do próximo item ainda não lido.
+     */
+    public int nextIndex() {
+        return nextIndex;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (parser != null) {
+            parser.close();
+        }
+    }
+
+    private ChunkImportDTO readNext() throws IOException {
+        if (items != null) {
+            return items.hasNext() ? items.next() : null;
+        }
+        return advance() ? objectMapper.readValue(parser, ChunkImportDTO.class) : null;
+    }
+
+    /**
+     * Posiciona o parser no START_OBJECT do próximo item. Retorna false no fim.
+     */
+    private boolean advance() throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (parser == null) {
+            open();
+            if (finished) {
+                return false;
+            }
+        }
+
+        JsonToken token = pendingStart ? parser.currentToken() : parser.nextToken();
+        pendingStart = false;
+        if (token == null || token == JsonToken.END_ARRAY) {
+            finished = true;
+            return false;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("Item #" + nextIndex + " não é um objeto JSON (encontrado " + token + ").");
+        }
+        return true;
+    }
+
+    private void open() throws IOException {
+        parser = objectMapper.getFactory().createParser(file.toFile());
+        JsonToken first = parser.nextToken();
+        if (first == null) {
+            finished = true;
+        } else if (first == JsonToken.START_OBJECT) {
+            // NDJSON: o primeiro objeto já é um item
+            pendingStart = true;
+        } else if (first != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("Formato inválido: esperado um array JSON ou NDJSON (um objeto por linha).");
+        }
+    }
+}
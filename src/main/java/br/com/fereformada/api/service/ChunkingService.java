@@ -1,8 +1,15 @@
 package br.com.fereformada.api.service;
 
 import org.springframework.stereotype.Service;
+
+import java.io.Reader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -14,12 +21,30 @@ public class ChunkingService {
     public record ParsedChunk(String content, String chapterTitle, String sectionTitle, int chapterNumber, int sectionNumber) {}
     public record ParsedQuestionChunk(String question, String answer, int questionNumber) {}
 
+    // --- PADRÕES (compilados uma vez; antes eram recompilados a cada capítulo/seção) ---
+    private static final Pattern CONFESSION_CHAPTER = Pattern.compile("CAPÍTULO (\\d+):\\s*(.*)",
+            Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+    private static final Pattern INSTITUTES_CHAPTER = Pattern.compile("(?m)^LIVRO\\s+[A-Z]+|^CAPÍTULO\\s+[IVXLCDM]+");
+    private static final Pattern LARGER_CATECHISM_QUESTION = Pattern.compile("^\\s*(\\d+)\\.\\s*(.*?)\\?",
+            Pattern.MULTILINE | Pattern.DOTALL);
+    private static final Pattern SHORTER_CATECHISM_QUESTION = Pattern.compile("^\\s*Pergunta\\s*(\\d+)\\.\\s*(.*?)(?=R\\.)",
+            Pattern.MULTILINE | Pattern.DOTALL);
+
+    private static final Pattern INSTITUTES_SECTION_SPLIT = Pattern.compile("(?m)(?=\\s*\\d+\\.\\s)");
+    // Título da seção (ex: "A. TÍTULO" ou "TÍTULO EM MAIÚSCULAS") no final do bloco de cabeçalho.
+    private static final Pattern INSTITUTES_SECTION_TITLE = Pattern.compile(
+            "([A-Z]\\.\\s[^\n\r]+|[A-ZÁÉÍÓÚÀÂÊÔÃÕÇ\\s]{5,})$"
+    );
+    private static final Pattern INSTITUTES_SECTION_NUMBER = Pattern.compile("^\\s*(\\d+)\\.\\s*");
+    private static final Pattern GENERIC_SECTION = Pattern.compile("(?m)^(\\d+)\\.\\s+");
+    // Fim de frase seguido de espaço: onde um trecho longo demais pode ser cortado
+    private static final Pattern SENTENCE_END = Pattern.compile("[.!?;:][\"')\\]]*(?=\\s)");
+
 
     // --- MÉTODOS PÚBLICOS ---
 
     public List<ParsedChunk> parseWestminsterConfession(String rawText) {
-        String regex = "CAPÍTULO (\\d+):\\s*(.*)";
-        return parseByChapterAndGenericSections(rawText, regex);
+        return parseByChapterAndGenericSections(rawText, CONFESSION_CHAPTER);
     }
 
     // MÉTODO ATUALIZADO: Agora chama a nova lógica de parsing dedicada.
@@ -29,13 +54,72 @@ public class ChunkingService {
     }
 
     public List<ParsedQuestionChunk> parseWestminsterLargerCatechism(String rawText) {
-        String regex = "^\\s*(\\d+)\\.\\s*(.*?)\\?";
-        return parseQuestionsAndAnswers(rawText, regex);
+        return parseQuestionsAndAnswers(rawText, LARGER_CATECHISM_QUESTION);
     }
 
     public List<ParsedQuestionChunk> parseWestminsterShorterCatechism(String rawText) {
-        String regex = "^\\s*Pergunta\\s*(\\d+)\\.\\s*(.*?)(?=R\\.)";
-        return parseQuestionsAndAnswers(rawText, regex);
+        return parseQuestionsAndAnswers(rawText, SHORTER_CATECHISM_QUESTION);
+    }
+
+    // --- VERSÕES EM STREAMING ---
+    // Mesmos trechos e metadados dos métodos acima, mas lendo de um Reader capítulo a capítulo
+    // (ou pergunta a pergunta) e entregando os trechos sob demanda. maxChars > 0 limita o tamanho
+    // de cada trecho: o excedente vira novos trechos, cortados no último fim de frase antes do limite.
+
+    public Iterator<ParsedChunk> streamWestminsterConfession(Reader reader, int maxChars) {
+        return new BlockChunkIterator<>(new MarkerBlockReader(reader, CONFESSION_CHAPTER), block -> block.isWholeDocument()
+                ? wholeDocument(block.text(), maxChars)
+                : boundSections(genericChapterChunks(block.text(), CONFESSION_CHAPTER, block.ordinal()), maxChars));
+    }
+
+    public Iterator<ParsedChunk> streamCalvinInstitutes(Reader reader, int maxChars) {
+        return new BlockChunkIterator<>(new MarkerBlockReader(reader, INSTITUTES_CHAPTER), block -> block.isWholeDocument()
+                ? wholeDocument(block.text(), maxChars)
+                : boundSections(institutesChapterChunks(block.text(), block.ordinal()), maxChars));
+    }
+
+    public Iterator<ParsedQuestionChunk> streamWestminsterLargerCatechism(Reader reader, int maxChars) {
+        return streamQuestions(reader, LARGER_CATECHISM_QUESTION, maxChars);
+    }
+
+    public Iterator<ParsedQuestionChunk> streamWestminsterShorterCatechism(Reader reader, int maxChars) {
+        return streamQuestions(reader, SHORTER_CATECHISM_QUESTION, maxChars);
+    }
+
+    /**
+     * Limpeza aplicada a cada trecho extraído de PDF: remove linhas só com número de página,
+     * normaliza aspas curvas e espaços repetidos.
+     */
+    public String cleanChunkText(String rawChunkContent) {
+        String cleaned = rawChunkContent.replaceAll("(?m)^\\s*\\d+\\s*$", "");
+        cleaned = cleaned.replaceAll("[“”]", "\"");
+        return cleaned.replaceAll(" +", " ").trim();
+    }
+
+    /**
+     * Divide um texto em partes de no máximo {@code maxChars}, cortando no último fim de frase antes do limite
+     * (ou no último espaço, se a frase sozinha passa do limite). {@code maxChars <= 0} = sem limite.
+     */
+    public static List<String> splitBySize(String text, int maxChars) {
+        if (maxChars <= 0 || text.length() <= maxChars) {
+            return List.of(text);
+        }
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        while (text.length() - start > maxChars) {
+            int limit = start + maxChars;
+            int cut = lastBoundary(text, start, limit);
+            String part = text.substring(start, cut).trim();
+            if (!part.isEmpty()) {
+                parts.add(part);
+            }
+            start = cut;
+        }
+        String tail = text.substring(start).trim();
+        if (!tail.isEmpty()) {
+            parts.add(tail);
+        }
+        return parts;
     }
 
 
@@ -44,8 +128,7 @@ public class ChunkingService {
     private List<ParsedChunk> parseInstitutesByChapter(String rawText) {
         List<ParsedChunk> finalChunks = new ArrayList<>();
         // Regex para encontrar o início de um livro ou capítulo.
-        Pattern chapterPattern = Pattern.compile("(?m)^LIVRO\\s+[A-Z]+|^CAPÍTULO\\s+[IVXLCDM]+");
-        Matcher chapterMatcher = chapterPattern.matcher(rawText);
+        Matcher chapterMatcher = INSTITUTES_CHAPTER.matcher(rawText);
 
         // Mapeia o início de cada capítulo
         record ChapterMarker(int startIndex) {}
@@ -63,85 +146,84 @@ public class ChunkingService {
         for (int i = 0; i < markers.size(); i++) {
             int blockStart = markers.get(i).startIndex();
             int blockEnd = (i + 1 < markers.size()) ? markers.get(i + 1).startIndex() : rawText.length();
-            String chapterBlock = rawText.substring(blockStart, blockEnd);
+            finalChunks.addAll(institutesChapterChunks(rawText.substring(blockStart, blockEnd), i + 1));
+        }
+        return finalChunks;
+    }
 
-            // A chave: divide o capítulo em partes, começando por cada número de seção (ex: "1. ", "2. ").
-            // O lookahead (?=...) mantém o número na string, o que é essencial.
-            String[] parts = chapterBlock.split("(?m)(?=\\s*\\d+\\.\\s)");
-            if (parts.length < 2) continue; // Pula capítulos que não têm seções numeradas.
+    /**
+     * Seções de UM capítulo das Institutas (bloco que começa no marcador de livro/capítulo).
+     */
+    private List<ParsedChunk> institutesChapterChunks(CharSequence chapterBlock, int currentChapterNumber) {
+        List<ParsedChunk> chunks = new ArrayList<>();
+
+        // A chave: divide o capítulo em partes, começando por cada número de seção (ex: "1. ", "2. ").
+        // O lookahead (?=...) mantém o número na string, o que é essencial.
+        String[] parts = INSTITUTES_SECTION_SPLIT.split(chapterBlock);
+        if (parts.length < 2) return chunks; // Pula capítulos que não têm seções numeradas.
+
+        // --- LÓGICA DE EXTRAÇÃO DE TÍTULOS ---
+        // O primeiro item do array ('parts[0]') contém o título do capítulo e o título da primeira seção.
+        String headerBlock = parts[0].trim();
+
+        Matcher headerMatcher = INSTITUTES_SECTION_TITLE.matcher(headerBlock);
+
+        String currentChapterTitle;
+        String titleForNextSection; // Armazena o título da próxima seção a ser usada no loop
+
+        if (headerMatcher.find()) {
+            // Se encontrou, o título da seção é o que foi encontrado
+            titleForNextSection = headerMatcher.group(1).trim();
+            // O título do capítulo é tudo o que veio ANTES
+            currentChapterTitle = headerBlock.substring(0, headerMatcher.start()).trim();
+        } else {
+            // Se não encontrou um padrão de título de seção, tudo é título do capítulo.
+            currentChapterTitle = headerBlock;
+            titleForNextSection = null;
+        }
+
+        // Limpa quebras de linha do título do capítulo.
+        currentChapterTitle = currentChapterTitle.replaceAll("[\\n\\r]+", " ").trim();
 
-            // --- LÓGICA DE EXTRAÇÃO DE TÍTULOS ---
-            // O primeiro item do array ('parts[0]') contém o título do capítulo e o título da primeira seção.
-            String headerBlock = parts[0].trim();
+        // Itera sobre as partes que contêm as seções numeradas
+        for (int j = 1; j < parts.length; j++) {
+            String currentSectionBlock = parts[j];
 
-            // Regex para encontrar o título da seção (ex: "A. TÍTULO" ou "TÍTULO EM MAIÚSCULAS")
-            // no final do bloco de cabeçalho.
-            Pattern sectionTitlePattern = Pattern.compile(
-                    "([A-Z]\\.\\s[^\n\r]+|[A-ZÁÉÍÓÚÀÂÊÔÃÕÇ\\s]{5,})$"
-            );
+            // Pega o número da seção do início do bloco.
+            Matcher numberMatcher = INSTITUTES_SECTION_NUMBER.matcher(currentSectionBlock);
+            if (!numberMatcher.find()) continue;
 
-            Matcher headerMatcher = sectionTitlePattern.matcher(headerBlock);
+            int sectionNumber = Integer.parseInt(numberMatcher.group(1));
 
-            String currentChapterTitle;
-            String titleForNextSection; // Armazena o título da próxima seção a ser usada no loop
+            // O título desta seção foi encontrado no bloco anterior.
+            String currentSectionTitle = titleForNextSection;
 
-            if (headerMatcher.find()) {
-                // Se encontrou, o título da seção é o que foi encontrado
-                titleForNextSection = headerMatcher.group(1).trim();
-                // O título do capítulo é tudo o que veio ANTES
-                currentChapterTitle = headerBlock.substring(0, headerMatcher.start()).trim();
+            // O conteúdo é tudo após o número da seção.
+            String content = numberMatcher.replaceFirst("").trim();
+
+            // Agora, procuramos pelo título da *próxima* seção no final do conteúdo *atual*.
+            Matcher contentCleaner = INSTITUTES_SECTION_TITLE.matcher(content);
+            if (contentCleaner.find()) {
+                // Se encontrar, armazena para a próxima iteração do loop.
+                titleForNextSection = contentCleaner.group(1).trim();
+                // E o mais importante: remove o título do conteúdo atual.
+                content = content.substring(0, contentCleaner.start()).trim();
             } else {
-                // Se não encontrou um padrão de título de seção, tudo é título do capítulo.
-                currentChapterTitle = headerBlock;
+                // Se não encontrar, não há título para a próxima seção.
                 titleForNextSection = null;
             }
 
-            // Limpa quebras de linha do título do capítulo.
-            currentChapterTitle = currentChapterTitle.replaceAll("[\\n\\r]+", " ").trim();
-            int currentChapterNumber = i + 1;
-
-            // Itera sobre as partes que contêm as seções numeradas
-            for (int j = 1; j < parts.length; j++) {
-                String currentSectionBlock = parts[j];
-
-                // Pega o número da seção do início do bloco.
-                Pattern numberPattern = Pattern.compile("^\\s*(\\d+)\\.\\s*");
-                Matcher numberMatcher = numberPattern.matcher(currentSectionBlock);
-                if (!numberMatcher.find()) continue;
-
-                int sectionNumber = Integer.parseInt(numberMatcher.group(1));
-
-                // O título desta seção foi encontrado no bloco anterior.
-                String currentSectionTitle = titleForNextSection;
-
-                // O conteúdo é tudo após o número da seção.
-                String content = numberMatcher.replaceFirst("").trim();
-
-                // Agora, procuramos pelo título da *próxima* seção no final do conteúdo *atual*.
-                Matcher contentCleaner = sectionTitlePattern.matcher(content);
-                if (contentCleaner.find()) {
-                    // Se encontrar, armazena para a próxima iteração do loop.
-                    titleForNextSection = contentCleaner.group(1).trim();
-                    // E o mais importante: remove o título do conteúdo atual.
-                    content = content.substring(0, contentCleaner.start()).trim();
-                } else {
-                    // Se não encontrar, não há título para a próxima seção.
-                    titleForNextSection = null;
-                }
-
-                if (!content.isEmpty()) {
-                    finalChunks.add(new ParsedChunk(content, currentChapterTitle, currentSectionTitle, currentChapterNumber, sectionNumber));
-                }
+            if (!content.isEmpty()) {
+                chunks.add(new ParsedChunk(content, currentChapterTitle, currentSectionTitle, currentChapterNumber, sectionNumber));
             }
         }
-        return finalChunks;
+        return chunks;
     }
 
 
     // Renomeado para maior clareza, pois é um método mais genérico.
-    private List<ParsedChunk> parseByChapterAndGenericSections(String rawText, String chapterRegexStr) {
+    private List<ParsedChunk> parseByChapterAndGenericSections(String rawText, Pattern chapterPattern) {
         List<ParsedChunk> finalChunks = new ArrayList<>();
-        Pattern chapterPattern = Pattern.compile(chapterRegexStr, Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
         Matcher chapterMatcher = chapterPattern.matcher(rawText);
 
         record ChapterMarker(String rawNumber, int startIndex) {}
@@ -158,50 +240,55 @@ public class ChunkingService {
         for (int i = 0; i < markers.size(); i++) {
             int blockStart = markers.get(i).startIndex();
             int blockEnd = (i + 1 < markers.size()) ? markers.get(i + 1).startIndex() : rawText.length();
-            String chapterBlock = rawText.substring(blockStart, blockEnd);
+            finalChunks.addAll(genericChapterChunks(rawText.substring(blockStart, blockEnd), chapterPattern, i + 1));
+        }
+        return finalChunks;
+    }
 
-            Matcher titleMatcher = chapterPattern.matcher(chapterBlock);
-            String currentChapterTitle = "Título não encontrado";
-            if (titleMatcher.find() && titleMatcher.groupCount() > 1 && titleMatcher.group(2) != null) {
-                currentChapterTitle = titleMatcher.group(2).trim().replaceAll("[\\n\\r]+", " ");
-            }
-            int currentChapterNumber = i + 1;
+    /**
+     * Seções numeradas ("1. ...") de UM capítulo; o título vem do próprio marcador do capítulo.
+     */
+    private List<ParsedChunk> genericChapterChunks(String chapterBlock, Pattern chapterPattern, int currentChapterNumber) {
+        List<ParsedChunk> chunks = new ArrayList<>();
 
-            Pattern sectionPattern = Pattern.compile("(?m)^(\\d+)\\.\\s+");
-            Matcher sectionMatcher = sectionPattern.matcher(chapterBlock);
+        Matcher titleMatcher = chapterPattern.matcher(chapterBlock);
+        String currentChapterTitle = "Título não encontrado";
+        if (titleMatcher.find() && titleMatcher.groupCount() > 1 && titleMatcher.group(2) != null) {
+            currentChapterTitle = titleMatcher.group(2).trim().replaceAll("[\\n\\r]+", " ");
+        }
 
-            List<Integer> sectionStartIndexes = new ArrayList<>();
-            while (sectionMatcher.find()) {
-                sectionStartIndexes.add(sectionMatcher.start());
-            }
+        Matcher sectionMatcher = GENERIC_SECTION.matcher(chapterBlock);
 
-            if(sectionStartIndexes.isEmpty()){
-                finalChunks.add(new ParsedChunk(chapterBlock, currentChapterTitle, null, currentChapterNumber, 0));
-                continue;
-            }
+        List<Integer> sectionStartIndexes = new ArrayList<>();
+        while (sectionMatcher.find()) {
+            sectionStartIndexes.add(sectionMatcher.start());
+        }
 
-            for (int j = 0; j < sectionStartIndexes.size(); j++) {
-                int sectionStartInBlock = sectionStartIndexes.get(j);
-                int sectionEndInBlock = (j + 1 < sectionStartIndexes.size()) ? sectionStartIndexes.get(j + 1) : chapterBlock.length();
-                String sectionBlock = chapterBlock.substring(sectionStartInBlock, sectionEndInBlock);
-
-                Matcher currentSectionMatcher = sectionPattern.matcher(sectionBlock);
-                if (currentSectionMatcher.find()) {
-                    int sectionNumber = Integer.parseInt(currentSectionMatcher.group(1));
-                    String content = sectionBlock.substring(currentSectionMatcher.end()).trim();
-                    if (!content.isEmpty()) {
-                        // Passando 'null' para o novo campo 'sectionTitle'
-                        finalChunks.add(new ParsedChunk(content, currentChapterTitle, null, currentChapterNumber, sectionNumber));
-                    }
+        if(sectionStartIndexes.isEmpty()){
+            chunks.add(new ParsedChunk(chapterBlock, currentChapterTitle, null, currentChapterNumber, 0));
+            return chunks;
+        }
+
+        for (int j = 0; j < sectionStartIndexes.size(); j++) {
+            int sectionStartInBlock = sectionStartIndexes.get(j);
+            int sectionEndInBlock = (j + 1 < sectionStartIndexes.size()) ? sectionStartIndexes.get(j + 1) : chapterBlock.length();
+            String sectionBlock = chapterBlock.substring(sectionStartInBlock, sectionEndInBlock);
+
+            Matcher currentSectionMatcher = GENERIC_SECTION.matcher(sectionBlock);
+            if (currentSectionMatcher.find()) {
+                int sectionNumber = Integer.parseInt(currentSectionMatcher.group(1));
+                String content = sectionBlock.substring(currentSectionMatcher.end()).trim();
+                if (!content.isEmpty()) {
+                    // Passando 'null' para o novo campo 'sectionTitle'
+                    chunks.add(new ParsedChunk(content, currentChapterTitle, null, currentChapterNumber, sectionNumber));
                 }
             }
         }
-        return finalChunks;
+        return chunks;
     }
 
-    private List<ParsedQuestionChunk> parseQuestionsAndAnswers(String rawText, String questionRegexStr) {
+    private List<ParsedQuestionChunk> parseQuestionsAndAnswers(String rawText, Pattern questionPattern) {
         List<ParsedQuestionChunk> finalChunks = new ArrayList<>();
-        Pattern questionPattern = Pattern.compile(questionRegexStr, Pattern.MULTILINE | Pattern.DOTALL);
 
         Matcher questionMatcher = questionPattern.matcher(rawText);
         record QuestionMarker(String text, int number, int startIndex, int endIndex) {}
@@ -216,14 +303,107 @@ public class ChunkingService {
             QuestionMarker currentQuestion = markers.get(i);
             int answerStartIndex = currentQuestion.endIndex();
             int answerEndIndex = (i + 1 < markers.size()) ? markers.get(i + 1).startIndex() : rawText.length();
-            String answer = rawText.substring(answerStartIndex, answerEndIndex).trim();
-            answer = answer.replaceAll("^R\\.\\s*", "");
-            answer = answer.replaceAll("(?m)^Ref.*$", "").trim();
-            answer = answer.replaceAll("(?m)^Referências.*$", "").trim();
-            if (!answer.isEmpty()) {
-                finalChunks.add(new ParsedQuestionChunk(currentQuestion.text(), answer, currentQuestion.number()));
+            ParsedQuestionChunk chunk = questionChunk(currentQuestion.text(), currentQuestion.number(),
+                    rawText.substring(answerStartIndex, answerEndIndex));
+            if (chunk != null) {
+                finalChunks.add(chunk);
             }
         }
         return finalChunks;
     }
-}
\ No newline at end of file
+
+    /**
+     * Pergunta + resposta limpa; null se a resposta ficar vazia.
+     */
+    private static ParsedQuestionChunk questionChunk(String question, int number, String rawAnswer) {
+        String answer = rawAnswer.trim();
+        answer = answer.replaceAll("^R\\.\\s*", "");
+        answer = answer.replaceAll("(?m)^Ref.*$", "").trim();
+        answer = answer.replaceAll("(?m)^Referências.*$", "").trim();
+        return answer.isEmpty() ? null : new ParsedQuestionChunk(question, answer, number);
+    }
+
+    private Iterator<ParsedQuestionChunk> streamQuestions(Reader reader, Pattern questionPattern, int maxChars) {
+        return new BlockChunkIterator<>(new MarkerBlockReader(reader, questionPattern), block -> {
+            if (block.isWholeDocument()) {
+                return List.of();
+            }
+            ParsedQuestionChunk chunk = questionChunk(block.groups()[1].trim(), Integer.parseInt(block.groups()[0]),
+                    block.text().substring(block.markerEnd()));
+            if (chunk == null) {
+                return List.of();
+            }
+            return splitBySize(chunk.answer(), maxChars).stream()
+                    .map(answer -> new ParsedQuestionChunk(chunk.question(), answer, chunk.questionNumber()))
+                    .toList();
+        });
+    }
+
+    private static List<ParsedChunk> wholeDocument(String text, int maxChars) {
+        return text.isBlank() ? List.of()
+                : boundSections(List.of(new ParsedChunk(text, "Documento Completo", null, 0, 0)), maxChars);
+    }
+
+    /**
+     * Aplica o limite de tamanho: cada parte herda capítulo, seção e títulos do trecho original.
+     */
+    private static List<ParsedChunk> boundSections(List<ParsedChunk> chunks, int maxChars) {
+        if (maxChars <= 0) {
+            return chunks;
+        }
+        List<ParsedChunk> bounded = new ArrayList<>(chunks.size());
+        for (ParsedChunk chunk : chunks) {
+            for (String part : splitBySize(chunk.content(), maxChars)) {
+                bounded.add(new ParsedChunk(part, chunk.chapterTitle(), chunk.sectionTitle(),
+                        chunk.chapterNumber(), chunk.sectionNumber()));
+            }
+        }
+        return bounded;
+    }
+
+    private static int lastBoundary(String text, int start, int limit) {
+        Matcher sentence = SENTENCE_END.matcher(text).region(start, limit);
+        sentence.useTransparentBounds(true);
+        int cut = -1;
+        while (sentence.find()) {
+            cut = sentence.end();
+        }
+        if (cut > start) {
+            return cut;
+        }
+        // Frase maior que o limite: corta no último espaço; sem espaço, no próprio limite
+        int space = text.lastIndexOf(' ', limit - 1);
+        return space > start ? space : limit;
+    }
+
+    /**
+     * Achata os blocos do {@link MarkerBlockReader} nos trechos de cada um, lendo o próximo bloco só quando
+     * os trechos do atual acabam.
+     */
+    private static final class BlockChunkIterator<T> implements Iterator<T> {
+        private final MarkerBlockReader blocks;
+        private final Function<MarkerBlockReader.Block, List<T>> toChunks;
+        private final Deque<T> pending = new ArrayDeque<>();
+
+        private BlockChunkIterator(MarkerBlockReader blocks, Function<MarkerBlockReader.Block, List<T>> toChunks) {
+            this.blocks = blocks;
+            this.toChunks = toChunks;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (pending.isEmpty() && blocks.hasNext()) {
+                pending.addAll(toChunks.apply(blocks.next()));
+            }
+            return !pending.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return pending.poll();
+        }
+    }
+}
@@ -2,10 +2,11 @@ package br.com.fereformada.api.service;
 
 import br.com.fereformada.api.dto.*;
 import br.com.fereformada.api.model.*;
+import br.com.fereformada.api.model.enums.TaskType;
+import br.com.fereformada.api.model.enums.VectorTarget;
 import br.com.fereformada.api.repository.*;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.pgvector.PGvector;
 import jakarta.persistence.EntityNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,7 +20,9 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.io.InputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -31,11 +34,13 @@ public class ContentAdminService {
     private final WorkRepository workRepository;
     private final AuthorRepository authorRepository;
     private final TopicRepository topicRepository;
-    private final GeminiApiClient geminiApiClient;
+    private final EmbeddingOutbox embeddingOutbox;
     private final ImportTaskRepository importTaskRepository;
+    private final ImportPayloadStore importPayloadStore;
     private final AsyncImportService asyncImportService;
     private final TheologicalSynonymRepository synonymRepository;
     private final CacheManager cacheManager;
+    private final RetrievalCache retrievalCache;
 
     private static final int EMBEDDING_BATCH_SIZE = 50;
 
@@ -45,18 +50,21 @@ public class ContentAdminService {
                                WorkRepository workRepository,
                                AuthorRepository authorRepository,
                                TopicRepository topicRepository,
-                               GeminiApiClient geminiApiClient, ObjectMapper objectMapper, ImportTaskRepository importTaskRepository, AsyncImportService asyncImportService, TheologicalSynonymRepository synonymRepository, CacheManager cacheManager) {
+                               EmbeddingOutbox embeddingOutbox, ObjectMapper objectMapper, ImportTaskRepository importTaskRepository, AsyncImportService asyncImportService, TheologicalSynonymRepository synonymRepository, CacheManager cacheManager,
+                               RetrievalCache retrievalCache, ImportPayloadStore importPayloadStore) {
 
         this.contentChunkRepository = contentChunkRepository;
         this.workRepository = workRepository;
         this.authorRepository = authorRepository;
         this.topicRepository = topicRepository;
-        this.geminiApiClient = geminiApiClient;
+        this.embeddingOutbox = embeddingOutbox;
         this.objectMapper = objectMapper;
         this.importTaskRepository = importTaskRepository;
         this.asyncImportService = asyncImportService;
         this.synonymRepository = synonymRepository;
         this.cacheManager = cacheManager;
+        this.retrievalCache = retrievalCache;
+        this.importPayloadStore = importPayloadStore;
     }
 
     // --- Métodos de Obras (Works) ---
@@ -90,6 +98,7 @@ public class ContentAdminService {
         work.setAuthor(author);
         work.setBoostPriority(dto.boostPriority());
         Work updatedWork = workRepository.save(work);
+        retrievalCache.bumpCorpusVersion("updateWork");
         return new WorkResponseDTO(updatedWork);
     }
 
@@ -112,6 +121,7 @@ public class ContentAdminService {
 
         // 4. Finalmente, deleta a obra
         workRepository.deleteById(workId);
+        retrievalCache.bumpCorpusVersion("deleteWork");
     }
 
     // --- Métodos de Autores (Authors) ---
@@ -266,21 +276,13 @@ public class ContentAdminService {
             chunk.setTopics(topics);
         }
 
-        // ======================================================
-        // 🚀 LÓGICA DE VETORIZAÇÃO SUBSTITUÍDA
-        // ======================================================
-        // vectorizeChunk(chunk); // <-- REMOVER ISSO
-
-        // Gerar embedding para o CONTEÚDO
-        PGvector contentVec = geminiApiClient.generateEmbedding(dto.content());
-        chunk.setContentVector(contentVec != null ? contentVec.toArray() : null);
-
-        // Gerar embedding para a PERGUNTA
-        PGvector questionVec = geminiApiClient.generateEmbedding(dto.question());
-        chunk.setQuestionVector(questionVec != null ? questionVec.toArray() : null);
-        // ======================================================
+        // Vetores ficam NULL e são calculados pelo outbox (nenhuma chamada de rede dentro da transação)
+        chunk.setContentVector(null);
+        chunk.setQuestionVector(null);
 
         ContentChunk savedChunk = contentChunkRepository.save(chunk);
+        enqueueChunkVectors(savedChunk.getId(), dto.question());
+        retrievalCache.bumpCorpusVersion("createChunk");
         return new ChunkResponseDTO(savedChunk);
     }
 
@@ -295,31 +297,22 @@ public class ContentAdminService {
                 !Objects.equals(oldProjection.question(), dto.question());
 
         if (contentChanged) {
-            // 3. CAMINHO A: O conteúdo mudou. Re-vetorizar e atualizar tudo.
-            logger.info("Conteúdo do Chunk {} mudou. Re-vetorizando...", chunkId);
-
-            // ======================================================
-            // 🚀 LÓGICA DE VETORIZAÇÃO ATUALIZADA
-            // ======================================================
-            // 3a. Gera os novos vetores
-            PGvector contentVec = geminiApiClient.generateEmbedding(dto.content());
-            PGvector questionVec = geminiApiClient.generateEmbedding(dto.question());
-
-            String contentVecStr = (contentVec != null) ? contentVec.toString() : null;
-            String questionVecStr = (questionVec != null) ? questionVec.toString() : null;
-            // ======================================================
-
+            // 3. CAMINHO A: O conteúdo mudou. Vetores antigos são descartados e recalculados pelo outbox.
+            logger.info("Conteúdo do Chunk {} mudou. Vetorização enfileirada no outbox.", chunkId);
 
-            // 3b. Chama a query de update COM vetor (agora com 2 vetores)
+            // 3a. Update COM vetor: NULL até o despachante gravar os novos (o chunk fica só na busca FTS)
             contentChunkRepository.updateChunkWithVector(
                     chunkId,
                     dto.content(), dto.question(),
                     dto.sectionTitle(), dto.chapterTitle(),
                     dto.chapterNumber(), dto.sectionNumber(),
                     dto.subsectionTitle(), dto.subSubsectionTitle(),
-                    contentVecStr,   // Vetor de conteúdo
-                    questionVecStr   // 🚀 Vetor de pergunta
+                    null,   // Vetor de conteúdo (pendente)
+                    null    // Vetor de pergunta (pendente)
             );
+
+            // 3b. Pedido de vetorização na MESMA transação do texto
+            enqueueChunkVectors(chunkId, dto.question());
         } else {
             // 4. CAMINHO B: O conteúdo NÃO mudou. Atualizar só metadados.
             logger.info("Conteúdo do Chunk {} não mudou. Atualizando apenas metadados...", chunkId);
@@ -347,6 +340,8 @@ public class ContentAdminService {
             }
         }
 
+        retrievalCache.bumpCorpusVersion("updateChunk");
+
         // 6. Retorna a projeção atualizada (Seguro)
         return findChunkById(chunkId);
     }
@@ -386,22 +381,14 @@ public class ContentAdminService {
 
         // 2. Deleta o chunk
         contentChunkRepository.deleteChunkById(chunkId);
+        retrievalCache.bumpCorpusVersion("deleteChunk");
     }
 
     // --- Lógica Central de Vetorização ---
-    // (Permanece a mesma)
-    private void vectorizeChunk(ContentChunk chunk) {
-        String textToEmbed = (chunk.getQuestion() != null ? chunk.getQuestion() + "\n" : "") +
-                (chunk.getContent() != null ? chunk.getContent() : "");
-        if (textToEmbed.isBlank()) {
-            chunk.setContentVector(null);
-            return;
-        }
-        try {
-            PGvector vector = geminiApiClient.generateEmbedding(textToEmbed);
-            chunk.setContentVector(vector.toArray());
-        } catch (Exception e) {
-            System.err.println("Falha ao vetorizar chunk " + chunk.getId() + ": " + e.getMessage());
+    private void enqueueChunkVectors(Long chunkId, String question) {
+        embeddingOutbox.enqueue(VectorTarget.CHUNK_CONTENT, chunkId);
+        if (question != null && !question.isBlank()) {
+            embeddingOutbox.enqueue(VectorTarget.CHUNK_QUESTION, chunkId);
         }
     }
 
@@ -412,80 +399,53 @@ public class ContentAdminService {
         return new WorkResponseDTO(work); // Converte para o DTO seguro
     }
 
-    @Transactional
-    public String bulkImportChunksFromJson(MultipartFile file) throws Exception {
-        if (!"application/json".equals(file.getContentType())) {
-            throw new IllegalArgumentException("Formato de arquivo inválido. Apenas .json é permitido.");
-        }
-
-        List<ChunkImportDTO> dtoList;
-        try (InputStream inputStream = file.getInputStream()) {
-            dtoList = objectMapper.readValue(inputStream, new TypeReference<List<ChunkImportDTO>>() {
-            });
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Erro ao processar o JSON: " + e.getMessage());
-        }
-
-        if (dtoList == null || dtoList.isEmpty()) {
-            throw new IllegalArgumentException("O arquivo JSON está vazio ou mal formatado.");
-        }
-
-        int processedCount = 0;
-        for (ChunkImportDTO dto : dtoList) {
-            // 1. Encontrar a Obra (Work) pelo acrônimo
-            Work work = workRepository.findByAcronym(dto.workAcronym())
-                    .orElseThrow(() -> new IllegalArgumentException("Acrônimo de Obra não encontrado: " + dto.workAcronym()));
-
-            // 2. Encontrar os Tópicos (Topics)
-            Set<Topic> topics = topicRepository.findByNameIn(dto.topics());
-
-            // 3. Montar o texto para vetorização
-            String textToEmbed = buildTextToEmbed(dto);
-
-            // 4. Gerar os embeddings (SEPARADAMENTE)
-            PGvector contentVec = geminiApiClient.generateEmbedding(dto.content());
-            PGvector questionVec = geminiApiClient.generateEmbedding(dto.question());
-
-            float[] contentVector = (contentVec != null) ? contentVec.toArray() : null;
-            float[] questionVector = (questionVec != null) ? questionVec.toArray() : null;
-
-            // 5. Criar a entidade ContentChunk
-            ContentChunk chunk = new ContentChunk();
-            chunk.setWork(work);
-            chunk.setChapterTitle(dto.chapterTitle());
-            chunk.setChapterNumber(dto.chapterNumber());
-            chunk.setSectionTitle(dto.sectionTitle());
-            chunk.setSectionNumber(dto.sectionNumber());
-            chunk.setSubsectionTitle(dto.subsectionTitle());
-            chunk.setSubSubsectionTitle(dto.subSubsectionTitle());
-            chunk.setQuestion(dto.question());
-            chunk.setContent(dto.content());
-            chunk.setTopics(topics);
-            chunk.setContentVector(contentVector); // 🚀 Salva vetor 1
-            chunk.setQuestionVector(questionVector); // 🚀 Salva vetor 2
-
-            // 6. Salvar
-            contentChunkRepository.save(chunk);
-            processedCount++;
+    /**
+     * Salva o upload (JSON array ou NDJSON) num arquivo temporário para ser lido em streaming
+     * na criação da tarefa — nada do conteúdo fica em memória na requisição.
+     */
+    public Path stageImportFile(MultipartFile file) throws IOException {
+        String name = file.getOriginalFilename() != null ? file.getOriginalFilename().toLowerCase(Locale.ROOT) : "";
+        String contentType = file.getContentType() != null ? file.getContentType() : "";
+        boolean accepted = name.endsWith(".json") || name.endsWith(".ndjson") || name.endsWith(".jsonl")
+                || contentType.contains("json");
+        if (!accepted) {
+            throw new IllegalArgumentException("Formato de arquivo inválido. Envie .json (array) ou .ndjson.");
         }
 
-        return "Importação concluída com sucesso. " + processedCount + " chunks processados e salvos.";
+        Path staged = Files.createTempFile("chunk-import-", ".json");
+        file.transferTo(staged);
+        return staged;
     }
 
     /**
-     * Helper para construir o texto que será enviado ao Gemini para vetorização.
+     * Cria a tarefa de importação de um arquivo já salvo, copiando os itens (lidos em streaming)
+     * para a entrada persistida da tarefa na mesma transação. Depois do commit o arquivo pode ser apagado:
+     * qualquer instância executa a tarefa.
      */
-    private String buildTextToEmbed(ChunkImportDTO dto) {
-        StringBuilder sb = new StringBuilder();
-        if (dto.question() != null && !dto.question().isBlank()) {
-            sb.append(dto.question()).append("\n").append(dto.content());
-        } else {
-            if (dto.chapterTitle() != null) sb.append(dto.chapterTitle()).append(". ");
-            if (dto.sectionTitle() != null) sb.append(dto.sectionTitle()).append(". ");
-            if (dto.subsectionTitle() != null) sb.append(dto.subsectionTitle()).append(". ");
-            sb.append(dto.content());
+    @Transactional
+    public ImportTaskDTO createFileImportTask(Path stagedFile) throws IOException {
+        ImportTask task = new ImportTask();
+        task.setTaskType(TaskType.IMPORT_CHUNKS);
+        task.setTotalItems(0);
+        task = importTaskRepository.save(task);
+
+        ImportPayloadStore.Appender payload = importPayloadStore.appender(task.getId());
+        try (ChunkImportReader reader = ChunkImportReader.ofFile(objectMapper, stagedFile)) {
+            List<ChunkImportReader.Item> window;
+            while (!(window = reader.nextWindow(500)).isEmpty()) {
+                for (ChunkImportReader.Item item : window) {
+                    payload.add(item.dto());
+                }
+            }
         }
-        return sb.toString();
+        int total = payload.finish();
+        if (total == 0) {
+            throw new IllegalArgumentException("O arquivo está vazio.");
+        }
+
+        task.setTotalItems(total);
+        task.setCurrentLog("Arquivo recebido (" + total + " chunks), aguardando início...");
+        return new ImportTaskDTO(task);
     }
 
     @Transactional
@@ -496,12 +456,22 @@ public class ContentAdminService {
 
         // 1. Criar a "Tarefa" (o recibo)
         ImportTask task = new ImportTask();
+        task.setTaskType(TaskType.IMPORT_CHUNKS);
         task.setTotalItems(dtoList.size());
         task.setCurrentLog("Tarefa enfileirada, aguardando início...");
         ImportTask savedTask = importTaskRepository.save(task);
 
-        // 2. REMOVEMOS a chamada ao 'asyncImportService.processImport' daqui.
-        // A transação fará o commit assim que este método retornar.
+        // 2. Persistir a entrada junto com a tarefa: qualquer instância pode executá-la (ou retomá-la).
+        // A transação fará o commit assim que este método retornar; o JobQueueWorker reserva a tarefa.
+        ImportPayloadStore.Appender payload = importPayloadStore.appender(savedTask.getId());
+        try {
+            for (ChunkImportDTO dto : dtoList) {
+                payload.add(dto);
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Chunk inválido na importação: " + e.getOriginalMessage(), e);
+        }
+        payload.finish();
 
         // 3. Retornar o DTO da tarefa
         return new ImportTaskDTO(savedTask);
@@ -526,6 +496,7 @@ public class ContentAdminService {
 
         // 2. Deleta os chunks (Nós também já temos este método!)
         contentChunkRepository.deleteChunksByIds(chunkIds);
+        retrievalCache.bumpCorpusVersion("bulkDeleteChunks");
     }
 
     /**
@@ -606,6 +577,8 @@ public class ContentAdminService {
     }
 
     private void clearSynonymCache() {
+        // Sinônimos alteram a query FTS, então os resultados de recuperação também ficam obsoletos
+        retrievalCache.bumpCorpusVersion("synonyms");
         try {
             cacheManager.getCache("synonyms").clear();
             logger.info("Cache 'synonyms' limpo com sucesso.");
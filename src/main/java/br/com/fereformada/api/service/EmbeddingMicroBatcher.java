@@ -0,0 +1,213 @@
+package br.com.fereformada.api.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Micro-batcher de embeddings em tempo de consulta.
+ * <p>
+ * Threads concorrentes que pedem o embedding de UMA pergunta entram numa fila; um despachante
+ * junta os pedidos por uma janela curta (ou até N textos) e faz UMA chamada em lote ao modelo.
+ * Textos idênticos na mesma janela são enviados uma única vez.
+ * <p>
+ * A chamada em lote passa pelo mesmo caminho das demais ({@link LlmResilience}, que inclui o governador),
+ * na faixa de quem pediu: cada pedido guarda a faixa da thread chamadora e a janela vira uma chamada
+ * por faixa, para que embeddings de seeding/importação não furem a fila na faixa INTERACTIVE.
+ */
+@Component
+public class EmbeddingMicroBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingMicroBatcher.class);
+
+    private record PendingEmbedding(String text, GeminiGovernor.Lane lane, long enqueuedAtNanos,
+                                    CompletableFuture<float[]> result) {
+    }
+
+    private final EmbeddingModel embeddingModel;
+    private final LlmResilience resilience;
+
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    private final BlockingQueue<PendingEmbedding> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService callExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile Thread dispatcher;
+    private volatile boolean running;
+
+    private final DistributionSummary batchSizeSummary;
+    private final DistributionSummary fillRateSummary;
+    private final Timer queueDelayTimer;
+    private final Counter dedupedCounter;
+
+    public EmbeddingMicroBatcher(MeterRegistry meterRegistry,
+                                 EmbeddingModel embeddingModel,
+                                 LlmResilience resilience,
+                                 @Value("${fereformada.embedding.micro-batch.enabled:true}") boolean enabled,
+                                 @Value("${fereformada.embedding.micro-batch.window-ms:15}") long windowMillis,
+                                 @Value("${fereformada.embedding.micro-batch.max-size:16}") int maxBatchSize) {
+        this.embeddingModel = embeddingModel;
+        this.resilience = resilience;
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMillis));
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+
+        this.batchSizeSummary = DistributionSummary.builder("embedding.microbatch.size")
+                .description("Textos distintos por chamada em lote")
+                .register(meterRegistry);
+        this.fillRateSummary = DistributionSummary.builder("embedding.microbatch.fill")
+                .description("Ocupação do lote (pedidos / tamanho máximo)")
+                .register(meterRegistry);
+        this.queueDelayTimer = Timer.builder("embedding.microbatch.queue.delay")
+                .description("Atraso adicionado pela espera na janela do micro-batcher")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.dedupedCounter = Counter.builder("embedding.microbatch.deduped")
+                .description("Pedidos atendidos por um texto idêntico na mesma janela")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        dispatcher = Thread.ofPlatform().daemon().name("embedding-micro-batcher").start(this::dispatchLoop);
+        logger.info("🧺 Micro-batcher de embeddings ativo (janela {} ms, até {} textos).",
+                TimeUnit.NANOSECONDS.toMillis(windowNanos), maxBatchSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        callExecutor.shutdownNow();
+        PendingEmbedding pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result().completeExceptionally(new IllegalStateException("Micro-batcher encerrado"));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled && running;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("windowMs", TimeUnit.NANOSECONDS.toMillis(windowNanos));
+        stats.put("maxBatchSize", maxBatchSize);
+        stats.put("queued", queue.size());
+        stats.put("batches", batchSizeSummary.count());
+        stats.put("avgBatchSize", batchSizeSummary.mean());
+        stats.put("avgFillRate", fillRateSummary.mean());
+        stats.put("avgQueueDelayMs", queueDelayTimer.mean(TimeUnit.MILLISECONDS));
+        stats.put("maxQueueDelayMs", queueDelayTimer.max(TimeUnit.MILLISECONDS));
+        stats.put("deduped", (long) dedupedCounter.count());
+        return stats;
+    }
+
+    /**
+     * Enfileira o texto e bloqueia até o vetor do seu lote ficar pronto (na faixa da thread atual).
+     */
+    public float[] embed(String text) {
+        PendingEmbedding pending = new PendingEmbedding(text, GeminiGovernor.currentLane(), System.nanoTime(),
+                new CompletableFuture<>());
+        queue.add(pending);
+        try {
+            return pending.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    // ===== DESPACHANTE =====
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                PendingEmbedding first = queue.take();
+                List<PendingEmbedding> batch = new ArrayList<>(maxBatchSize);
+                batch.add(first);
+
+                long deadline = first.enqueuedAtNanos() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingEmbedding next = remaining > 0
+                            ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                            : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                // Uma chamada por faixa; roda fora do despachante para que a próxima janela já comece a encher
+                Map<GeminiGovernor.Lane, List<PendingEmbedding>> byLane = new EnumMap<>(GeminiGovernor.Lane.class);
+                for (PendingEmbedding pending : batch) {
+                    byLane.computeIfAbsent(pending.lane(), l -> new ArrayList<>()).add(pending);
+                }
+                byLane.forEach((lane, laneBatch) -> callExecutor.execute(() -> embedBatch(lane, laneBatch)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Erro inesperado no micro-batcher de embeddings", e);
+            }
+        }
+    }
+
+    private void embedBatch(GeminiGovernor.Lane lane, List<PendingEmbedding> batch) {
+        long dispatchedAt = System.nanoTime();
+        for (PendingEmbedding pending : batch) {
+            queueDelayTimer.record(dispatchedAt - pending.enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        // Deduplica textos idênticos dentro da janela
+        Map<String, List<PendingEmbedding>> byText = new LinkedHashMap<>();
+        for (PendingEmbedding pending : batch) {
+            byText.computeIfAbsent(pending.text(), t -> new ArrayList<>()).add(pending);
+        }
+        List<String> texts = new ArrayList<>(byText.keySet());
+
+        batchSizeSummary.record(texts.size());
+        fillRateSummary.record((double) batch.size() / maxBatchSize);
+        if (batch.size() > texts.size()) {
+            dedupedCounter.increment(batch.size() - texts.size());
+        }
+
+        try {
+            List<float[]> vectors = GeminiGovernor.runInLane(lane,
+                    () -> resilience.call(GeminiGovernor.Resource.EMBEDDING, () -> embeddingModel.embed(texts)));
+
+            if (vectors.size() != texts.size()) {
+                throw new IllegalStateException("Lote de embeddings retornou " + vectors.size()
+                        + " vetores para " + texts.size() + " textos.");
+            }
+            for (int i = 0; i < texts.size(); i++) {
+                float[] vector = vectors.get(i);
+                byText.get(texts.get(i)).forEach(p -> p.result().complete(vector));
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(p -> p.result().completeExceptionally(e));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.model.enums.OutboxStatus;
+import br.com.fereformada.api.model.enums.VectorTarget;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Outbox de embeddings (tabela embedding_outbox).
+ * <p>
+ * {@link #enqueue} roda na transação de quem chama (o save do admin): o texto e o pedido de
+ * vetorização são commitados juntos, sem nenhuma chamada de rede. O {@link EmbeddingOutboxDispatcher}
+ * reserva os pedidos em lote ({@link #claim}), vetoriza e marca como feitos.
+ */
+@Component
+public class EmbeddingOutbox {
+
+    /**
+     * Pedido reservado por um despachante.
+     */
+    public record OutboxItem(long id, VectorTarget target, long targetId, int attempts) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChunkBatchWriter chunkBatchWriter;
+
+    public EmbeddingOutbox(JdbcTemplate jdbcTemplate, ChunkBatchWriter chunkBatchWriter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkBatchWriter = chunkBatchWriter;
+    }
+
+    /**
+     * Registra que o vetor do alvo precisa ser (re)calculado. Não duplica um pedido ainda pendente.
+     * Deve ser chamado dentro da transação que gravou o texto.
+     */
+    public void enqueue(VectorTarget target, Long targetId) {
+        jdbcTemplate.update("INSERT INTO embedding_outbox (target, target_id, status, attempts, created_at) " +
+                        "SELECT ?, ?, 'PENDING', 0, ? WHERE NOT EXISTS (" +
+                        "SELECT 1 FROM embedding_outbox WHERE target = ? AND target_id = ? AND status = 'PENDING')",
+                target.name(), targetId, Timestamp.valueOf(LocalDateTime.now()), target.name(), targetId);
+    }
+
+    /**
+     * Reserva até {@code limit} pedidos pendentes (ou reservas expiradas de um despachante que morreu).
+     * No PostgreSQL usa FOR UPDATE SKIP LOCKED, então várias instâncias não disputam os mesmos itens.
+     */
+    @Transactional
+    public List<OutboxItem> claim(int limit, long leaseSeconds) {
+        LocalDateTime now = LocalDateTime.now();
+        String lock = chunkBatchWriter.isPostgres() ? " FOR UPDATE SKIP LOCKED" : "";
+        List<OutboxItem> items = jdbcTemplate.query(
+                "SELECT id, target, target_id, attempts FROM embedding_outbox " +
+                        "WHERE status = 'PENDING' OR (status = 'PROCESSING' AND claimed_at < ?) " +
+                        "ORDER BY id LIMIT ?" + lock,
+                (rs, rowNum) -> new OutboxItem(rs.getLong("id"), VectorTarget.valueOf(rs.getString("target")),
+                        rs.getLong("target_id"), rs.getInt("attempts") + 1),
+                Timestamp.valueOf(now.minusSeconds(leaseSeconds)), limit);
+        if (items.isEmpty()) {
+            return items;
+        }
+
+        List<Object> args = new ArrayList<>(items.size() + 1);
+        args.add(Timestamp.valueOf(now));
+        items.forEach(item -> args.add(item.id()));
+        jdbcTemplate.update("UPDATE embedding_outbox SET status = 'PROCESSING', attempts = attempts + 1, claimed_at = ? " +
+                "WHERE id IN (" + placeholders(items.size()) + ")", args.toArray());
+        return items;
+    }
+
+    public void markDone(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Object> args = new ArrayList<>(ids.size() + 1);
+        args.add(Timestamp.valueOf(LocalDateTime.now()));
+        args.addAll(ids);
+        jdbcTemplate.update("UPDATE embedding_outbox SET status = 'DONE', processed_at = ?, last_error = NULL " +
+                "WHERE id IN (" + placeholders(ids.size()) + ")", args.toArray());
+    }
+
+    /**
+     * Devolve o pedido para a fila, ou marca FAILED se já esgotou as tentativas.
+     */
+    public void markFailed(OutboxItem item, String error, int maxAttempts) {
+        OutboxStatus status = item.attempts() >= maxAttempts ? OutboxStatus.FAILED : OutboxStatus.PENDING;
+        String message = error == null ? null : error.substring(0, Math.min(error.length(), 500));
+        jdbcTemplate.update("UPDATE embedding_outbox SET status = ?, last_error = ?, claimed_at = NULL WHERE id = ?",
+                status.name(), message, item.id());
+    }
+
+    /**
+     * Remove pedidos concluídos há mais de {@code days} dias.
+     */
+    public int purgeDone(int days) {
+        return jdbcTemplate.update("DELETE FROM embedding_outbox WHERE status = 'DONE' AND processed_at < ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(days)));
+    }
+
+    public Map<String, Long> countByStatus() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (OutboxStatus status : OutboxStatus.values()) {
+            counts.put(status.name(), 0L);
+        }
+        jdbcTemplate.query("SELECT status, COUNT(*) FROM embedding_outbox GROUP BY status",
+                rs -> {
+                    counts.put(rs.getString(1), rs.getLong(2));
+                });
+        return counts;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
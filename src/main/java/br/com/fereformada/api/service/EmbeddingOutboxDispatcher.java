@@ -0,0 +1,225 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.model.enums.VectorTarget;
+import br.com.fereformada.api.repository.ContentChunkRepository;
+import br.com.fereformada.api.repository.StudyNoteRepository;
+import br.com.fereformada.api.repository.VectorBackfillRow;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Esvazia o {@link EmbeddingOutbox} em segundo plano: reserva um lote, lê o texto ATUAL de cada alvo,
+ * vetoriza tudo numa chamada em lote ({@link BulkEmbeddingExecutor}, que também usa o armazém de embeddings),
+ * grava com um UPDATE por alvo ({@link VectorBackfillWriter}) e marca os pedidos como feitos.
+ * O cache de recuperação é invalidado uma vez por ciclo de drenagem que gravou vetores.
+ * <p>
+ * A drenagem roda numa thread própria ("embedding-outbox"), não no scheduler do Spring: um ciclo longo
+ * (API lenta, reenvios do executor em massa) não atrasa heartbeat, reaper e os demais @Scheduled.
+ * Um ciclo só começa depois que o anterior terminou.
+ * <p>
+ * Enquanto o pedido está pendente o vetor do alvo fica NULL: ele some da busca vetorial
+ * e continua encontrável pela busca FTS.
+ */
+@Component
+public class EmbeddingOutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingOutboxDispatcher.class);
+
+    private final EmbeddingOutbox outbox;
+    private final ContentChunkRepository contentChunkRepository;
+    private final StudyNoteRepository studyNoteRepository;
+    private final BulkEmbeddingExecutor bulkEmbeddingExecutor;
+    private final VectorBackfillWriter vectorWriter;
+    private final RetrievalCache retrievalCache;
+
+    private final boolean enabled;
+    private final long pollMs;
+    private final long initialDelayMs;
+    private final int batchSize;
+    private final long leaseSeconds;
+    private final int maxAttempts;
+    private final int doneRetentionDays;
+
+    private final Counter doneCounter;
+    private final Counter failedCounter;
+    private volatile String lastError;
+    private ScheduledExecutorService drainer;
+
+    public EmbeddingOutboxDispatcher(EmbeddingOutbox outbox,
+                                     ContentChunkRepository contentChunkRepository,
+                                     StudyNoteRepository studyNoteRepository,
+                                     BulkEmbeddingExecutor bulkEmbeddingExecutor,
+                                     VectorBackfillWriter vectorWriter,
+                                     RetrievalCache retrievalCache,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${fereformada.embedding.outbox.enabled:true}") boolean enabled,
+                                     @Value("${fereformada.embedding.outbox.poll-ms:1000}") long pollMs,
+                                     @Value("${fereformada.embedding.outbox.initial-delay-ms:10000}") long initialDelayMs,
+                                     @Value("${fereformada.embedding.outbox.batch-size:100}") int batchSize,
+                                     @Value("${fereformada.embedding.outbox.lease-seconds:300}") long leaseSeconds,
+                                     @Value("${fereformada.embedding.outbox.max-attempts:5}") int maxAttempts,
+                                     @Value("${fereformada.embedding.outbox.done-retention-days:7}") int doneRetentionDays) {
+        this.outbox = outbox;
+        this.contentChunkRepository = contentChunkRepository;
+        this.studyNoteRepository = studyNoteRepository;
+        this.bulkEmbeddingExecutor = bulkEmbeddingExecutor;
+        this.vectorWriter = vectorWriter;
+        this.retrievalCache = retrievalCache;
+        this.enabled = enabled;
+        this.pollMs = Math.max(1, pollMs);
+        this.initialDelayMs = Math.max(0, initialDelayMs);
+        this.batchSize = Math.max(1, batchSize);
+        this.leaseSeconds = Math.max(30, leaseSeconds);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.doneRetentionDays = Math.max(1, doneRetentionDays);
+
+        this.doneCounter = Counter.builder("embedding.outbox.items").tag("outcome", "done").register(meterRegistry);
+        this.failedCounter = Counter.builder("embedding.outbox.items").tag("outcome", "failed").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled || drainer != null) {
+            return;
+        }
+        drainer = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().daemon().name("embedding-outbox").factory());
+        // Atraso fixo: o próximo ciclo só é agendado quando o atual termina (sem sobreposição)
+        drainer.scheduleWithFixedDelay(this::dispatch, initialDelayMs, pollMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (drainer != null) {
+            drainer.shutdownNow();
+        }
+    }
+
+    /**
+     * Drena a fila em lotes enquanto houver lotes cheios.
+     */
+    public void dispatch() {
+        if (!enabled) {
+            return;
+        }
+        int vectorsWritten = 0;
+        try {
+            List<EmbeddingOutbox.OutboxItem> items;
+            do {
+                items = outbox.claim(batchSize, leaseSeconds);
+                if (!items.isEmpty()) {
+                    vectorsWritten += process(items);
+                }
+            } while (items.size() == batchSize);
+        } catch (RuntimeException e) {
+            // Reservas ficam expiradas e são retomadas no próximo ciclo
+            lastError = e.getMessage();
+            logger.error("Falha no despachante do outbox de embeddings", e);
+        } finally {
+            if (vectorsWritten > 0) {
+                // Novos vetores mudam o resultado da busca vetorial
+                retrievalCache.bumpCorpusVersion("embeddingOutbox");
+            }
+        }
+    }
+
+    @Scheduled(cron = "${fereformada.embedding.outbox.purge-cron:0 45 3 * * *}")
+    public void purge() {
+        int removed = outbox.purgeDone(doneRetentionDays);
+        if (removed > 0) {
+            logger.info("🧹 Outbox de embeddings: {} pedidos concluídos removidos.", removed);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("byStatus", outbox.countByStatus());
+        stats.put("done", (long) doneCounter.count());
+        stats.put("failedAttempts", (long) failedCounter.count());
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    /**
+     * @return quantos vetores foram gravados
+     */
+    private int process(List<EmbeddingOutbox.OutboxItem> items) {
+        Map<VectorTarget, List<EmbeddingOutbox.OutboxItem>> byTarget = items.stream()
+                .collect(Collectors.groupingBy(EmbeddingOutbox.OutboxItem::target,
+                        () -> new EnumMap<>(VectorTarget.class), Collectors.toList()));
+
+        int written = 0;
+        for (Map.Entry<VectorTarget, List<EmbeddingOutbox.OutboxItem>> entry : byTarget.entrySet()) {
+            VectorTarget target = entry.getKey();
+            List<EmbeddingOutbox.OutboxItem> group = entry.getValue();
+            try {
+                written += processTarget(target, group);
+            } catch (RuntimeException e) {
+                lastError = e.getMessage();
+                logger.warn("⚠️ Outbox ({}): lote de {} pedidos falhou: {}", target, group.size(), e.getMessage());
+                group.forEach(item -> outbox.markFailed(item, e.getMessage(), maxAttempts));
+                failedCounter.increment(group.size());
+            }
+        }
+        return written;
+    }
+
+    private int processTarget(VectorTarget target, List<EmbeddingOutbox.OutboxItem> group) {
+        Set<Long> targetIds = group.stream().map(EmbeddingOutbox.OutboxItem::targetId).collect(Collectors.toSet());
+        Map<Long, String> textById = new HashMap<>();
+        for (VectorBackfillRow row : fetchTexts(target, targetIds)) {
+            if (row.getText() != null && !row.getText().isBlank()) {
+                textById.put(row.getId(), row.getText());
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(textById.keySet());
+        List<float[]> vectors = ids.isEmpty() ? List.of()
+                : bulkEmbeddingExecutor.embedAll(ids.stream().map(textById::get).toList()).vectors();
+        int written = vectorWriter.writeVectors(target, ids, vectors);
+
+        Set<Long> failedTargets = new HashSet<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (vectors.get(i) == null) {
+                failedTargets.add(ids.get(i));
+            }
+        }
+
+        // Alvo apagado ou sem texto: não há o que vetorizar, o pedido está resolvido
+        List<Long> done = new ArrayList<>();
+        for (EmbeddingOutbox.OutboxItem item : group) {
+            if (failedTargets.contains(item.targetId())) {
+                outbox.markFailed(item, "Vetorização falhou", maxAttempts);
+                failedCounter.increment();
+            } else {
+                done.add(item.id());
+            }
+        }
+        outbox.markDone(done);
+        doneCounter.increment(done.size());
+        logger.info("🧾 Outbox ({}): {} pedidos concluídos, {} a repetir.", target, done.size(), failedTargets.size());
+        return written;
+    }
+
+    private List<VectorBackfillRow> fetchTexts(VectorTarget target, Collection<Long> ids) {
+        return switch (target) {
+            case CHUNK_CONTENT -> contentChunkRepository.findContentTextsByIds(ids);
+            case CHUNK_QUESTION -> contentChunkRepository.findQuestionTextsByIds(ids);
+            case STUDY_NOTE -> studyNoteRepository.findNoteTextsByIds(ids);
+        };
+    }
+}
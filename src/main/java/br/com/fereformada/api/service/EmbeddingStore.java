@@ -0,0 +1,254 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.util.EmbeddingTexts;
+import com.pgvector.PGvector;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Armazém persistente de embeddings, chaveado por (modelo, SHA-256 do texto exato enviado ao modelo).
+ * <p>
+ * Todos os caminhos de vetorização de documentos (importação, backfill, outbox da criação/edição no admin,
+ * importação de notas) consultam aqui antes de chamar a API: texto idêntico = vetor idêntico,
+ * então reimportações, edições que não mudam o texto e perguntas de catecismo repetidas entre
+ * obras não custam uma nova chamada. Consultas de usuários NÃO passam por aqui.
+ * <p>
+ * Falhas do armazém nunca quebram a vetorização: viram "miss". Só ativo no PostgreSQL.
+ */
+@Component
+public class EmbeddingStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingStore.class);
+
+    private static final int LOOKUP_CHUNK_SIZE = 500;
+    private static final int GC_BATCH_SIZE = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChunkBatchWriter chunkBatchWriter;
+    private final boolean enabled;
+    private final String modelId;
+    private final int retentionDays;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter storedCounter;
+    private volatile int lastGcDeleted = -1;
+    private volatile int lastGcRefreshed = -1;
+    private volatile LocalDateTime lastGcAt;
+
+    public EmbeddingStore(JdbcTemplate jdbcTemplate,
+                          ChunkBatchWriter chunkBatchWriter,
+                          MeterRegistry meterRegistry,
+                          @Value("${fereformada.embedding.store.enabled:true}") boolean enabled,
+                          @Value("${fereformada.embedding.store.model-id:text-embedding-004}") String modelId,
+                          @Value("${fereformada.embedding.store.retention-days:90}") int retentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkBatchWriter = chunkBatchWriter;
+        this.enabled = enabled;
+        this.modelId = modelId;
+        this.retentionDays = Math.max(1, retentionDays);
+
+        this.hitCounter = Counter.builder("embedding.store.lookups").tag("result", "hit").register(meterRegistry);
+        this.missCounter = Counter.builder("embedding.store.lookups").tag("result", "miss").register(meterRegistry);
+        this.storedCounter = Counter.builder("embedding.store.stored").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled && chunkBatchWriter.isPostgres();
+    }
+
+    /**
+     * Vetores já conhecidos para os textos (apenas os encontrados). Marca os encontrados como usados.
+     */
+    public Map<String, float[]> findAll(Collection<String> texts) {
+        Set<String> distinct = new LinkedHashSet<>(texts);
+        if (distinct.isEmpty() || !isEnabled()) {
+            return Map.of();
+        }
+
+        Map<String, String> textByHash = new HashMap<>();
+        for (String text : distinct) {
+            textByHash.put(hash(text), text);
+        }
+
+        Map<String, float[]> found = new HashMap<>();
+        try {
+            List<String> hashes = new ArrayList<>(textByHash.keySet());
+            for (int start = 0; start < hashes.size(); start += LOOKUP_CHUNK_SIZE) {
+                List<String> slice = hashes.subList(start, Math.min(hashes.size(), start + LOOKUP_CHUNK_SIZE));
+                String placeholders = String.join(", ", Collections.nCopies(slice.size(), "?"));
+
+                List<Object> args = new ArrayList<>(slice.size() + 1);
+                args.add(modelId);
+                args.addAll(slice);
+                jdbcTemplate.query("SELECT text_hash, CAST(embedding AS text) FROM embedding_store " +
+                                "WHERE model_id = ? AND text_hash IN (" + placeholders + ")",
+                        rs -> {
+                            found.put(textByHash.get(rs.getString(1)), parseVector(rs.getString(2)));
+                        }, args.toArray());
+
+                touch(slice);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("⚠️ Armazém de embeddings indisponível na leitura ({}). Seguindo sem ele.", e.getMessage());
+            missCounter.increment(distinct.size());
+            return Map.of();
+        }
+
+        hitCounter.increment(found.size());
+        missCounter.increment(distinct.size() - found.size());
+        return found;
+    }
+
+    /**
+     * Guarda os vetores calculados (posições null são ignoradas). Conflitos são ignorados:
+     * outro job pode ter gravado o mesmo texto no meio tempo.
+     */
+    public void saveAll(List<String> texts, List<float[]> vectors) {
+        if (texts.isEmpty() || !isEnabled()) {
+            return;
+        }
+        Map<String, float[]> byHash = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            if (vectors.get(i) != null) {
+                byHash.putIfAbsent(hash(texts.get(i)), vectors.get(i));
+            }
+        }
+        if (byHash.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<String, float[]>> rows = new ArrayList<>(byHash.entrySet());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            jdbcTemplate.batchUpdate("INSERT INTO embedding_store (model_id, text_hash, embedding, created_at, last_used_at) " +
+                            "VALUES (?, ?, CAST(? AS vector), ?, ?) ON CONFLICT (model_id, text_hash) DO NOTHING",
+                    rows, rows.size(), (ps, row) -> {
+                        ps.setString(1, modelId);
+                        ps.setString(2, row.getKey());
+                        ps.setString(3, new PGvector(row.getValue()).toString());
+                        ps.setTimestamp(4, now);
+                        ps.setTimestamp(5, now);
+                    });
+            storedCounter.increment(rows.size());
+        } catch (RuntimeException e) {
+            logger.warn("⚠️ Não foi possível gravar {} vetores no armazém de embeddings: {}", rows.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * GC: remove vetores que nenhum chunk ou nota usa mais e que não foram reaproveitados há mais de
+     * {@code retention-days}. Antes da varredura, os vetores dos textos ainda presentes em
+     * content_chunks/study_notes têm o last_used_at renovado: um texto vivo que ninguém reimportou
+     * no período não vira "órfão" por idade.
+     */
+    @Scheduled(cron = "${fereformada.embedding.store.gc-cron:0 30 3 * * *}")
+    public void collectGarbage() {
+        if (!isEnabled()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp cutoff = Timestamp.valueOf(now.minusDays(retentionDays));
+        int refreshed;
+        try {
+            refreshed = refreshLiveTexts(Timestamp.valueOf(now), cutoff);
+        } catch (RuntimeException e) {
+            // Sem saber o que está vivo, apagar por idade removeria vetores em uso
+            logger.warn("⚠️ GC do armazém de embeddings adiado: não foi possível marcar os textos vivos ({}).",
+                    e.getMessage());
+            return;
+        }
+
+        int total = 0;
+        int deleted;
+        do {
+            // Em lotes, para não segurar um lock longo sobre a tabela
+            deleted = jdbcTemplate.update("DELETE FROM embedding_store WHERE id IN (" +
+                    "SELECT id FROM embedding_store WHERE last_used_at < ? LIMIT ?)", cutoff, GC_BATCH_SIZE);
+            total += deleted;
+        } while (deleted == GC_BATCH_SIZE);
+
+        lastGcDeleted = total;
+        lastGcRefreshed = refreshed;
+        lastGcAt = LocalDateTime.now();
+        logger.info("🧹 GC do armazém de embeddings: {} vetores órfãos sem uso há mais de {} dias removidos " +
+                "({} vetores de textos vivos renovados).", total, retentionDays, refreshed);
+    }
+
+    public Map<String, Object> getStats() {
+        long hits = (long) hitCounter.count();
+        long misses = (long) missCounter.count();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("modelId", modelId);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("stored", (long) storedCounter.count());
+        stats.put("retentionDays", retentionDays);
+        stats.put("lastGcAt", lastGcAt);
+        stats.put("lastGcDeleted", lastGcDeleted);
+        stats.put("lastGcRefreshed", lastGcRefreshed);
+        return stats;
+    }
+
+    // ===== HELPERS =====
+
+    /**
+     * Atualiza last_used_at no máximo uma vez por dia por vetor (evita um UPDATE por leitura).
+     */
+    private void touch(List<String> hashes) {
+        String placeholders = String.join(", ", Collections.nCopies(hashes.size(), "?"));
+        List<Object> args = new ArrayList<>(hashes.size() + 3);
+        LocalDateTime now = LocalDateTime.now();
+        args.add(Timestamp.valueOf(now));
+        args.add(modelId);
+        args.addAll(hashes);
+        args.add(Timestamp.valueOf(now.minusDays(1)));
+        jdbcTemplate.update("UPDATE embedding_store SET last_used_at = ? " +
+                "WHERE model_id = ? AND text_hash IN (" + placeholders + ") AND last_used_at < ?", args.toArray());
+    }
+
+    /**
+     * Renova last_used_at dos vetores (prestes a expirar) cujo hash bate com algum texto vivo.
+     * Os textos vêm de {@link EmbeddingTexts#LIVE_TEXTS_SQL}, espelho SQL dos builders usados na vetorização;
+     * o hash é o mesmo de {@link #hash(String)}: SHA-256 em hex do texto em UTF-8.
+     */
+    private int refreshLiveTexts(Timestamp now, Timestamp cutoff) {
+        return jdbcTemplate.update("UPDATE embedding_store SET last_used_at = ? " +
+                "WHERE model_id = ? AND last_used_at < ? AND text_hash IN (" +
+                "SELECT encode(sha256(convert_to(live.text, 'UTF8')), 'hex') " +
+                "FROM (" + EmbeddingTexts.LIVE_TEXTS_SQL + ") AS live(text) WHERE live.text IS NOT NULL)", now, modelId, cutoff);
+    }
+
+    private static float[] parseVector(String text) {
+        try {
+            return new PGvector(text).toArray();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Vetor inválido no armazém de embeddings", e);
+        }
+    }
+
+    static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package br.com.fereformada.api.service;
 
+import br.com.fereformada.api.exception.LlmUnavailableException;
 import br.com.fereformada.api.model.Mensagem;
 import com.pgvector.PGvector;
 import org.slf4j.Logger;
@@ -17,6 +18,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,11 +28,18 @@ public class GeminiApiClient {
 
     private final ChatModel chatModel; // Você está injetando o Model
     private final EmbeddingModel embeddingModel;
+    private final LlmResilience resilience;
+    private final EmbeddingMicroBatcher microBatcher;
+    private final LlmUsageTracker usageTracker;
 
     @Autowired
-    public GeminiApiClient(ChatModel chatModel, EmbeddingModel embeddingModel) {
+    public GeminiApiClient(ChatModel chatModel, EmbeddingModel embeddingModel, LlmResilience resilience,
+                           EmbeddingMicroBatcher microBatcher, LlmUsageTracker usageTracker) {
         this.chatModel = chatModel;
         this.embeddingModel = embeddingModel;
+        this.resilience = resilience;
+        this.microBatcher = microBatcher;
+        this.usageTracker = usageTracker;
     }
 
     public String generateContent(String systemPrompt, List<Mensagem> chatHistory, String userQuestion) {
@@ -38,6 +47,7 @@ public class GeminiApiClient {
         logger.info("Enviando prompt de sistema e histórico de {} mensagens para o modelo.", chatHistory.size());
 
         List<Message> messages = new ArrayList<>();
+        int promptChars = systemPrompt.length();
 
         // 1. Adicionar o "System Prompt" (nosso prompt de RAG e regras)
         messages.add(new SystemPromptTemplate(systemPrompt).createMessage());
@@ -46,8 +56,10 @@ public class GeminiApiClient {
         for (Mensagem historyMsg : chatHistory) {
             if (historyMsg.getRole().equals("user")) {
                 messages.add(new UserMessage(historyMsg.getContent()));
+                promptChars += historyMsg.getContent().length();
             } else if (historyMsg.getRole().equals("assistant")) {
                 messages.add(new AssistantMessage(historyMsg.getContent()));
+                promptChars += historyMsg.getContent().length();
             }
         }
 
@@ -60,6 +72,7 @@ public class GeminiApiClient {
 
         if (!userQuestionInHistory) {
             messages.add(new UserMessage(userQuestion));
+            promptChars += userQuestion.length();
         }
 
         // 4. Criar o Prompt final com a conversa completa
@@ -67,11 +80,18 @@ public class GeminiApiClient {
 
         try {
             // 5. Chamar a API com a conversa completa
-            ChatResponse response = chatModel.call(prompt);
+            ChatResponse response = guardedCall(GeminiGovernor.Resource.CHAT, () -> chatModel.call(prompt));
+            usageTracker.recordChat(response, promptChars, "success");
             return response.getResult().getOutput().getContent();
 
+        } catch (LlmUnavailableException e) {
+            // Fila saturada, timeout ou circuito aberto: o chamador decide como degradar
+            logger.warn("⏳ Gemini indisponível: {}", e.getMessage());
+            usageTracker.recordChat(null, promptChars, "unavailable");
+            throw e;
         } catch (Exception e) {
             logger.error("Erro ao chamar a API para gerar conteúdo.", e);
+            usageTracker.recordChat(null, promptChars, "error");
             throw new RuntimeException("Falha ao gerar conteúdo: " + e.getMessage(), e);
         }
     }
@@ -83,9 +103,12 @@ public class GeminiApiClient {
 
         logger.debug("Gerando embedding para o texto: '{}...'", text.substring(0, Math.min(text.length(), 100)));
         try {
+            usageTracker.recordEmbedding(1);
 
-            // O método embed(String) é o correto.
-            float[] embeddingArray = embeddingModel.embed(text);
+            // Chamadas concorrentes são agrupadas pelo micro-batcher em uma única requisição em lote
+            float[] embeddingArray = microBatcher.isEnabled()
+                    ? microBatcher.embed(text)
+                    : guardedCall(GeminiGovernor.Resource.EMBEDDING, () -> embeddingModel.embed(text));
 
             return new PGvector(embeddingArray);
 
@@ -102,7 +125,7 @@ public class GeminiApiClient {
         logger.info("Gerando embeddings em lote para {} textos...", texts.size());
         try {
 
-            List<float[]> batchEmbeddings = embeddingModel.embed(texts);
+            List<float[]> batchEmbeddings = embedBatchOrThrow(texts);
 
             // Convertemos cada float[] em um objeto PGvector
             return batchEmbeddings.stream()
@@ -113,4 +136,30 @@ public class GeminiApiClient {
             return List.of();
         }
     }
+
+    /**
+     * Embeddings em lote SEM engolir erros: a exceção chega ao chamador, que decide se
+     * reenvia, divide o lote ou desiste (ver {@link BulkEmbeddingExecutor}).
+     * Sempre na faixa BATCH do governador (importação, backfill, seeding).
+     */
+    public List<float[]> embedBatchOrThrow(List<String> texts) {
+        if (texts.isEmpty()) {
+            return List.of();
+        }
+        usageTracker.recordEmbedding(texts.size());
+        List<float[]> vectors = GeminiGovernor.runInBatchLane(
+                () -> guardedCall(GeminiGovernor.Resource.EMBEDDING, () -> embeddingModel.embed(texts)));
+        if (vectors.size() != texts.size()) {
+            throw new IllegalStateException("Lote de embeddings retornou " + vectors.size()
+                    + " vetores para " + texts.size() + " textos.");
+        }
+        return vectors;
+    }
+
+    /**
+     * Toda chamada ao modelo passa por: circuit breaker -> governador -> timeout/hedging -> modelo.
+     */
+    private <T> T guardedCall(GeminiGovernor.Resource resource, Supplier<T> modelCall) {
+        return resilience.call(resource, modelCall);
+    }
 }
\ No newline at end of file
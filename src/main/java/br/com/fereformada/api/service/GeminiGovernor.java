@@ -0,0 +1,405 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.exception.LlmUnavailableException;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import io.grpc.Status;
+import io.grpc.StatusException;
+import io.grpc.StatusRuntimeException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Governador central das chamadas ao Gemini (chat e embeddings).
+ * <p>
+ * - Limite GLOBAL de concorrência e de requisições/segundo por recurso (CHAT, EMBEDDING);
+ * - Duas faixas de prioridade: INTERACTIVE (chat do usuário) passa na frente de BATCH
+ * (importação, backfill, seeding), e BATCH nunca ocupa todos os slots;
+ * - Backoff adaptativo: 429/5xx reduzem concorrência e taxa (AIMD) e pausam o recurso;
+ * sucessos recuperam o limite aos poucos;
+ * - Métricas por faixa: profundidade da fila e tempo de espera.
+ * <p>
+ * A faixa é lida de um ThreadLocal (padrão INTERACTIVE). Jobs em lote usam
+ * {@link #runInBatchLane(Supplier)} ou chamam métodos que já são de lote por natureza.
+ */
+@Component
+public class GeminiGovernor {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeminiGovernor.class);
+
+    public enum Resource {CHAT, EMBEDDING}
+
+    public enum Lane {INTERACTIVE, BATCH}
+
+    private static final ThreadLocal<Lane> CURRENT_LANE = new ThreadLocal<>();
+
+    // Quota esgotada, servidor indisponível/com erro interno e prazo estourado: vale esperar e repetir
+    private static final Set<StatusCode.Code> TRANSIENT_API_CODES = EnumSet.of(StatusCode.Code.RESOURCE_EXHAUSTED,
+            StatusCode.Code.UNAVAILABLE, StatusCode.Code.INTERNAL, StatusCode.Code.DEADLINE_EXCEEDED);
+    private static final Set<Status.Code> TRANSIENT_GRPC_CODES = EnumSet.of(Status.Code.RESOURCE_EXHAUSTED,
+            Status.Code.UNAVAILABLE, Status.Code.INTERNAL, Status.Code.DEADLINE_EXCEEDED);
+
+    private final Map<Resource, AdaptiveLimiter> limiters = new EnumMap<>(Resource.class);
+    private final long interactiveMaxWaitMillis;
+
+    public GeminiGovernor(MeterRegistry meterRegistry,
+                          @Value("${fereformada.gemini.chat.max-concurrency:8}") int chatMaxConcurrency,
+                          @Value("${fereformada.gemini.chat.requests-per-second:5}") double chatRps,
+                          @Value("${fereformada.gemini.embedding.max-concurrency:4}") int embeddingMaxConcurrency,
+                          @Value("${fereformada.gemini.embedding.requests-per-second:10}") double embeddingRps,
+                          @Value("${fereformada.gemini.batch-max-share:0.5}") double batchMaxShare,
+                          @Value("${fereformada.gemini.interactive-max-wait-ms:30000}") long interactiveMaxWaitMillis,
+                          @Value("${fereformada.gemini.backoff.initial-ms:1000}") long backoffInitialMillis,
+                          @Value("${fereformada.gemini.backoff.max-ms:30000}") long backoffMaxMillis) {
+        this.interactiveMaxWaitMillis = interactiveMaxWaitMillis;
+        limiters.put(Resource.CHAT, new AdaptiveLimiter(Resource.CHAT, chatMaxConcurrency, chatRps,
+                batchMaxShare, backoffInitialMillis, backoffMaxMillis, meterRegistry));
+        limiters.put(Resource.EMBEDDING, new AdaptiveLimiter(Resource.EMBEDDING, embeddingMaxConcurrency, embeddingRps,
+                batchMaxShare, backoffInitialMillis, backoffMaxMillis, meterRegistry));
+    }
+
+    // ===== FAIXA (LANE) DA THREAD ATUAL =====
+
+    public static Lane currentLane() {
+        Lane lane = CURRENT_LANE.get();
+        return lane != null ? lane : Lane.INTERACTIVE;
+    }
+
+    /**
+     * Executa o bloco com todas as chamadas ao Gemini na faixa BATCH.
+     */
+    public static <T> T runInBatchLane(Supplier<T> block) {
+        return runInLane(Lane.BATCH, block);
+    }
+
+    public static void runInBatchLane(Runnable block) {
+        runInLane(Lane.BATCH, () -> {
+            block.run();
+            return null;
+        });
+    }
+
+    public static <T> T runInLane(Lane lane, Supplier<T> block) {
+        Lane previous = CURRENT_LANE.get();
+        CURRENT_LANE.set(lane);
+        try {
+            return block.get();
+        } finally {
+            if (previous == null) {
+                CURRENT_LANE.remove();
+            } else {
+                CURRENT_LANE.set(previous);
+            }
+        }
+    }
+
+    // ===== EXECUÇÃO GOVERNADA =====
+
+    public <T> T execute(Resource resource, Supplier<T> call) {
+        return execute(resource, currentLane(), call);
+    }
+
+    public <T> T execute(Resource resource, Lane lane, Supplier<T> call) {
+        AdaptiveLimiter limiter = limiters.get(resource);
+        long maxWaitMillis = lane == Lane.INTERACTIVE ? interactiveMaxWaitMillis : Long.MAX_VALUE;
+
+        limiter.acquire(lane, maxWaitMillis);
+        try {
+            T result = call.get();
+            limiter.onSuccess();
+            return result;
+        } catch (RuntimeException e) {
+            if (isThrottlingOrServerError(e)) {
+                limiter.onThrottled(e);
+            }
+            throw e;
+        } finally {
+            limiter.release();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        limiters.forEach((resource, limiter) -> stats.put(resource.name().toLowerCase(Locale.ROOT), limiter.snapshot()));
+        return stats;
+    }
+
+    /**
+     * Detecta 429 (quota) e 5xx do Vertex AI pelo código de status da primeira exceção da cadeia de causas
+     * que traz um: ApiException do gax, StatusRuntimeException/StatusException do gRPC ou resposta HTTP do Spring.
+     * A mensagem nunca é olhada: um 400 cujo texto contém "503" continua sendo erro do conteúdo.
+     */
+    public static boolean isThrottlingOrServerError(Throwable error) {
+        Throwable current = error;
+        int depth = 0;
+        while (current != null && depth++ < 10) {
+            if (current instanceof ApiException api) {
+                return TRANSIENT_API_CODES.contains(api.getStatusCode().getCode());
+            }
+            if (current instanceof StatusRuntimeException grpc) {
+                return TRANSIENT_GRPC_CODES.contains(grpc.getStatus().getCode());
+            }
+            if (current instanceof StatusException grpc) {
+                return TRANSIENT_GRPC_CODES.contains(grpc.getStatus().getCode());
+            }
+            if (current instanceof RestClientResponseException http) {
+                int status = http.getStatusCode().value();
+                return status == 429 || status >= 500;
+            }
+            current = current.getCause();
+        }
+        return false;
+    }
+
+    // ===== LIMITADOR ADAPTATIVO POR RECURSO =====
+
+    private static final class AdaptiveLimiter {
+
+        private static final long MAX_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+        private static final int SUCCESSES_TO_GROW = 20;
+
+        private final Resource resource;
+        private final int maxConcurrency;
+        private final double maxRatePerSecond;
+        private final double batchMaxShare;
+        private final long backoffInitialMillis;
+        private final long backoffMaxMillis;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+
+        // Estado protegido por 'lock'
+        private double concurrencyLimit;
+        private double rateFactor = 1.0;
+        private int inFlight;
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+        private long pausedUntilNanos;
+        private long currentBackoffMillis;
+        private int successesSinceGrow;
+        private final int[] waiting = new int[Lane.values().length];
+
+        private final Map<Lane, Timer> waitTimers = new EnumMap<>(Lane.class);
+        private final Counter throttledCounter;
+        private final Counter rejectedCounter;
+
+        AdaptiveLimiter(Resource resource, int maxConcurrency, double maxRatePerSecond, double batchMaxShare,
+                        long backoffInitialMillis, long backoffMaxMillis, MeterRegistry meterRegistry) {
+            this.resource = resource;
+            this.maxConcurrency = Math.max(1, maxConcurrency);
+            this.maxRatePerSecond = Math.max(0.1, maxRatePerSecond);
+            this.batchMaxShare = Math.min(1.0, Math.max(0.1, batchMaxShare));
+            this.backoffInitialMillis = backoffInitialMillis;
+            this.backoffMaxMillis = backoffMaxMillis;
+            this.concurrencyLimit = this.maxConcurrency;
+            this.tokens = this.maxRatePerSecond;
+            this.currentBackoffMillis = backoffInitialMillis;
+
+            String resourceTag = resource.name().toLowerCase(Locale.ROOT);
+            for (Lane lane : Lane.values()) {
+                String laneTag = lane.name().toLowerCase(Locale.ROOT);
+                waitTimers.put(lane, Timer.builder("gemini.governor.wait")
+                        .description("Tempo de espera na fila do governador antes da chamada ao Gemini")
+                        .tag("resource", resourceTag)
+                        .tag("lane", laneTag)
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .register(meterRegistry));
+                Gauge.builder("gemini.governor.queue.depth", this, l -> l.waitingCount(lane))
+                        .description("Chamadas aguardando permissão do governador")
+                        .tag("resource", resourceTag)
+                        .tag("lane", laneTag)
+                        .register(meterRegistry);
+            }
+            Gauge.builder("gemini.governor.concurrency.limit", this, l -> l.currentLimit())
+                    .tag("resource", resourceTag)
+                    .register(meterRegistry);
+            Gauge.builder("gemini.governor.inflight", this, l -> l.inFlightCount())
+                    .tag("resource", resourceTag)
+                    .register(meterRegistry);
+            this.throttledCounter = Counter.builder("gemini.governor.throttled")
+                    .description("Respostas 429/5xx que provocaram backoff")
+                    .tag("resource", resourceTag)
+                    .register(meterRegistry);
+            this.rejectedCounter = Counter.builder("gemini.governor.rejected")
+                    .description("Chamadas interativas que excederam o tempo máximo de espera")
+                    .tag("resource", resourceTag)
+                    .register(meterRegistry);
+        }
+
+        void acquire(Lane lane, long maxWaitMillis) {
+            long start = System.nanoTime();
+            long deadline = maxWaitMillis == Long.MAX_VALUE ? Long.MAX_VALUE
+                    : start + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+
+            lock.lock();
+            try {
+                waiting[lane.ordinal()]++;
+                try {
+                    while (true) {
+                        long now = System.nanoTime();
+                        long waitNanos = nanosUntilAdmitted(lane, now);
+                        if (waitNanos == 0) {
+                            inFlight++;
+                            tokens -= 1.0;
+                            break;
+                        }
+                        if (now >= deadline) {
+                            rejectedCounter.increment();
+                            throw new LlmUnavailableException("Fila do Gemini (" + resource + ") saturada. Tente novamente.");
+                        }
+                        long sleep = Math.min(Math.min(waitNanos, MAX_POLL_NANOS), deadline - now);
+                        changed.awaitNanos(sleep);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new LlmUnavailableException("Interrompido aguardando o governador do Gemini", e);
+                } finally {
+                    waiting[lane.ordinal()]--;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            waitTimers.get(lane).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Retorna 0 se a chamada pode prosseguir agora; caso contrário, quanto esperar (aprox.).
+         */
+        private long nanosUntilAdmitted(Lane lane, long now) {
+            if (now < pausedUntilNanos) {
+                return pausedUntilNanos - now;
+            }
+
+            // Prioridade: BATCH espera enquanto houver INTERACTIVE na fila
+            if (lane == Lane.BATCH && waiting[Lane.INTERACTIVE.ordinal()] > 0) {
+                return MAX_POLL_NANOS;
+            }
+
+            int limit = (int) Math.max(1, Math.floor(concurrencyLimit));
+            int laneLimit = lane == Lane.BATCH && limit > 1
+                    ? (int) Math.max(1, Math.min(limit - 1, Math.floor(limit * batchMaxShare)))
+                    : limit;
+            if (inFlight >= laneLimit) {
+                return MAX_POLL_NANOS;
+            }
+
+            refillTokens(now);
+            if (tokens < 1.0) {
+                double ratePerNano = (maxRatePerSecond * rateFactor) / 1_000_000_000d;
+                return Math.max(1, (long) ((1.0 - tokens) / ratePerNano));
+            }
+            return 0;
+        }
+
+        private void refillTokens(long now) {
+            double rate = maxRatePerSecond * rateFactor;
+            double elapsedSeconds = (now - lastRefillNanos) / 1_000_000_000d;
+            tokens = Math.min(rate, tokens + elapsedSeconds * rate);
+            lastRefillNanos = now;
+        }
+
+        void release() {
+            lock.lock();
+            try {
+                inFlight--;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void onSuccess() {
+            lock.lock();
+            try {
+                currentBackoffMillis = backoffInitialMillis;
+                if (++successesSinceGrow >= SUCCESSES_TO_GROW) {
+                    successesSinceGrow = 0;
+                    concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1);
+                    rateFactor = Math.min(1.0, rateFactor + 0.1);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void onThrottled(Throwable error) {
+            throttledCounter.increment();
+            lock.lock();
+            try {
+                concurrencyLimit = Math.max(1, concurrencyLimit / 2);
+                rateFactor = Math.max(0.1, rateFactor / 2);
+                successesSinceGrow = 0;
+                pausedUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(currentBackoffMillis);
+                logger.warn("⏳ Gemini {} sinalizou limite/erro ({}). Pausando {} ms; concorrência={}, taxa={}%",
+                        resource, error.getMessage(), currentBackoffMillis, (int) concurrencyLimit, (int) (rateFactor * 100));
+                currentBackoffMillis = Math.min(backoffMaxMillis, currentBackoffMillis * 2);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        double waitingCount(Lane lane) {
+            lock.lock();
+            try {
+                return waiting[lane.ordinal()];
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        double currentLimit() {
+            lock.lock();
+            try {
+                return concurrencyLimit;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        double inFlightCount() {
+            lock.lock();
+            try {
+                return inFlight;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Map<String, Object> snapshot() {
+            lock.lock();
+            try {
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("concurrencyLimit", (int) concurrencyLimit);
+                stats.put("maxConcurrency", maxConcurrency);
+                stats.put("ratePerSecond", maxRatePerSecond * rateFactor);
+                stats.put("inFlight", inFlight);
+                stats.put("waitingInteractive", waiting[Lane.INTERACTIVE.ordinal()]);
+                stats.put("waitingBatch", waiting[Lane.BATCH.ordinal()]);
+                stats.put("throttled", (long) throttledCounter.count());
+                stats.put("rejected", (long) rejectedCounter.count());
+                return stats;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
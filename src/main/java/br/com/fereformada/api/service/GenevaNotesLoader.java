@@ -0,0 +1,439 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.model.StudyNote;
+import br.com.fereformada.api.repository.StudyNoteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Carga das notas da Bíblia de Genebra (66 arquivos, um por livro), extraída do DatabaseSeeder.
+ * <p>
+ * Cada livro é uma unidade independente, processada em paralelo: leitura + parse, vetores pelo
+ * {@link BulkEmbeddingExecutor} (lotes adaptativos, governados, com cache por hash) e gravação do livro
+ * inteiro num único commit pelo {@link StudyNoteBatchService}. A retomada continua por livro:
+ * notas cujo capítulo:versículo já está no banco são puladas, então rodar de novo só completa o que falta.
+ */
+@Service
+public class GenevaNotesLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(GenevaNotesLoader.class);
+
+    public static final String SOURCE_NAME = "Bíblia de Genebra";
+
+    private static final Set<String> SINGLE_CHAPTER_BOOKS = Set.of(
+            "Obadias", "Filemom", "2 João", "3 João", "Judas"
+    );
+
+    private static final List<String> OT_BOOKS = List.of(
+            "Gênesis", "Êxodo", "Levítico", "Números", "Deuteronômio", "Josué", "Juízes", "Rute",
+            "1_Samuel", "2_Samuel", "1_Reis", "2_Reis", "1_Crônicas", "2_Crônicas", "Esdras",
+            "Neemias", "Ester", "Jó", "Salmos", "Provérbios", "Eclesiastes", "Cantares_de_salomão",
+            "Isaías", "Jeremias", "Lamentações_de_jeremias", "Ezequiel", "Daniel", "Oséias",
+            "Joel", "Amós", "Obadias", "Jonas", "Miquéias", "Naum", "Habacuque", "Sofonias",
+            "Ageu", "Zacarias", "Malaquias"
+    );
+
+    private static final List<String> NT_BOOKS = List.of(
+            "Mateus", "Marcos", "Lucas", "João", "Atos", "Romanos", "1_Coríntios", "2_Coríntios",
+            "Gálatas", "Efésios", "Filipenses", "Colossenses", "1_Tessalonicenses",
+            "2_Tessalonicenses", "1_Timóteo", "2_Timóteo", "Tito", "Filemom", "Hebreus",
+            "Tiago", "1_Pedro", "2_Pedro", "1_João", "2_João", "3_João", "Judas", "Apocalipse"
+    );
+
+    private static final Pattern NOTE_SPLIT = Pattern.compile("\\*\\s+(?=[\\d])");
+    // Aceita: "1.1", "1:1", "1.1-3", "1:1-3", "1", "1-3", etc.
+    private static final Pattern NOTE_BLOCK = Pattern.compile("^([\\d]+[.:,]?[\\d]*[\\-—]?[\\d]*[.:,]?[\\d]*)\\s+(.*)", Pattern.DOTALL);
+
+    /**
+     * Resultado de um livro: notas novas gravadas, já existentes puladas, blocos sem formato reconhecido,
+     * notas gravadas sem vetor (ficam para o backfill de note_vector).
+     */
+    public record BookResult(String book, int loaded, int skipped, int unparsed, int withoutVector, long elapsedMillis) {
+    }
+
+    private final StudyNoteRepository studyNoteRepository;
+    private final StudyNoteBatchService studyNoteBatchService;
+    private final BulkEmbeddingExecutor bulkEmbeddingExecutor;
+    private final ChunkingService chunkingService;
+    private final ResourceLoader resourceLoader;
+    private final int threads;
+    private final Path logDir;
+
+    public GenevaNotesLoader(StudyNoteRepository studyNoteRepository,
+                             StudyNoteBatchService studyNoteBatchService,
+                             BulkEmbeddingExecutor bulkEmbeddingExecutor,
+                             ChunkingService chunkingService,
+                             ResourceLoader resourceLoader,
+                             @Value("${fereformada.notes.load-threads:0}") int threads,
+                             @Value("${fereformada.notes.log-dir:.}") String logDir) {
+        this.studyNoteRepository = studyNoteRepository;
+        this.studyNoteBatchService = studyNoteBatchService;
+        this.bulkEmbeddingExecutor = bulkEmbeddingExecutor;
+        this.chunkingService = chunkingService;
+        this.resourceLoader = resourceLoader;
+        // 0 = um por núcleo; a API de embeddings continua limitada pelo governador
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.logDir = Path.of(logDir);
+    }
+
+    /**
+     * Carrega (ou completa) as notas de todos os livros. Falha de um livro não interrompe os outros:
+     * vai para o log e o livro é retomado na próxima execução.
+     */
+    public Map<String, Object> loadAll() {
+        long startNanos = System.nanoTime();
+        logger.info("Verificando e carregando notas da '{}' ({} livros, {} threads)...",
+                SOURCE_NAME, OT_BOOKS.size() + NT_BOOKS.size(), threads);
+
+        Map<String, String> files = new LinkedHashMap<>();
+        OT_BOOKS.forEach(book -> files.put(book, "classpath:data-content/bible-notes/ot/" + book + ".txt"));
+        NT_BOOKS.forEach(book -> files.put(book, "classpath:data-content/bible-notes/nt/" + book + ".txt"));
+
+        List<BookResult> results = new ArrayList<>();
+        int failedBooks = 0;
+
+        try (NotesLog notesLog = NotesLog.open(logDir)) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                Map<String, Future<BookResult>> futures = new LinkedHashMap<>();
+                files.forEach((bookFileName, filePath) -> futures.put(bookFileName,
+                        pool.submit(() -> loadBook(filePath, bookFileName.replace('_', ' '), notesLog))));
+
+                for (Map.Entry<String, Future<BookResult>> entry : futures.entrySet()) {
+                    try {
+                        results.add(entry.getValue().get());
+                    } catch (ExecutionException e) {
+                        failedBooks++;
+                        logger.error("❌ Falha ao carregar as notas de '{}': {}", entry.getKey(), e.getCause().getMessage(), e.getCause());
+                        notesLog.append(List.of("\n--- LIVRO: " + entry.getKey() + " ---",
+                                "ERRO: " + e.getCause().getMessage()));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Carga das notas interrompida.");
+            } finally {
+                pool.shutdownNow();
+            }
+
+            int loaded = results.stream().mapToInt(BookResult::loaded).sum();
+            int skipped = results.stream().mapToInt(BookResult::skipped).sum();
+            int withoutVector = results.stream().mapToInt(BookResult::withoutVector).sum();
+            notesLog.append(List.of(
+                    "\n=== RESUMO FINAL ===",
+                    "Total de notas processadas: " + loaded,
+                    "Total de notas puladas: " + skipped,
+                    "Total de notas sem vetor: " + withoutVector,
+                    "Total de livros com falha: " + failedBooks,
+                    "Finalizado em: " + LocalDateTime.now()));
+
+            long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+            logger.info("Carregamento das notas finalizado em {} ms. {} notas carregadas, {} puladas, {} sem vetor, {} livros com falha.",
+                    elapsedMillis, loaded, skipped, withoutVector, failedBooks);
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("books", results.size());
+            summary.put("failedBooks", failedBooks);
+            summary.put("loaded", loaded);
+            summary.put("skipped", skipped);
+            summary.put("withoutVector", withoutVector);
+            summary.put("threads", threads);
+            summary.put("elapsedMillis", elapsedMillis);
+            return summary;
+        }
+    }
+
+    // --- POR LIVRO ---
+
+    private BookResult loadBook(String filePath, String bookName, NotesLog notesLog) {
+        long startNanos = System.nanoTime();
+        // Linhas do livro acumuladas aqui e gravadas de uma vez: livros em paralelo não se misturam no arquivo
+        List<String> logLines = new ArrayList<>();
+        logLines.add("\n--- LIVRO: " + bookName + " ---");
+        logLines.add("Arquivo: " + filePath);
+
+        Set<String> existingKeys = studyNoteRepository.findExistingNoteKeysByBook(bookName);
+        if (!existingKeys.isEmpty()) {
+            logger.info("Retomando processamento de '{}'. {} notas já existem e serão puladas.", bookName, existingKeys.size());
+        }
+
+        String rawText;
+        try {
+            rawText = readText(filePath);
+        } catch (IOException e) {
+            logger.error("ERRO: Não foi possível ler o arquivo '{}'. Verifique se ele existe. Pulando.", filePath);
+            logLines.add("ERRO: Arquivo não encontrado!");
+            notesLog.append(logLines);
+            return new BookResult(bookName, 0, existingKeys.size(), 0, 0, elapsedMillis(startNanos));
+        }
+
+        String cleanedText = rawText.trim();
+        if (cleanedText.startsWith(bookName)) {
+            cleanedText = cleanedText.substring(bookName.length()).trim();
+        }
+
+        List<StudyNote> notes = new ArrayList<>();
+        int unparsed = 0;
+        for (String block : NOTE_SPLIT.split(cleanedText)) {
+            if (block.trim().isEmpty()) {
+                continue;
+            }
+            StudyNote note = parseNoteBlock(block.trim(), bookName);
+            if (note == null) {
+                unparsed++;
+                logLines.add("  [PULADA] " + bookName + ": " + preview(block));
+                continue;
+            }
+            if (!existingKeys.contains(note.getStartChapter() + ":" + note.getStartVerse())) {
+                notes.add(note);
+            }
+        }
+
+        int withoutVector = 0;
+        if (!notes.isEmpty()) {
+            BulkEmbeddingExecutor.BulkEmbeddingResult result = bulkEmbeddingExecutor.embedAll(
+                    notes.stream().map(StudyNote::getNoteContent).toList());
+            for (int i = 0; i < notes.size(); i++) {
+                notes.get(i).setNoteVector(result.vectors().get(i));
+            }
+            withoutVector = result.failedCount();
+
+            // O livro inteiro num commit: ou entra tudo, ou é refeito na próxima carga
+            studyNoteBatchService.saveBatch(notes);
+        }
+
+        logLines.add("Notas gravadas: " + notes.size() + " | já existentes: " + existingKeys.size()
+                + " | sem formato: " + unparsed + " | sem vetor: " + withoutVector);
+        notesLog.append(logLines);
+
+        BookResult result = new BookResult(bookName, notes.size(), existingKeys.size(), unparsed, withoutVector,
+                elapsedMillis(startNanos));
+        logger.info("✔ '{}': {} notas novas, {} já existentes, {} sem vetor ({} ms).",
+                bookName, result.loaded(), result.skipped(), result.withoutVector(), result.elapsedMillis());
+        return result;
+    }
+
+    // --- PARSE ---
+
+    private StudyNote parseNoteBlock(String block, String bookName) {
+        Matcher matcher = NOTE_BLOCK.matcher(block);
+
+        if (!matcher.find()) {
+            logger.warn("Formato de nota não reconhecido para {}: {}", bookName,
+                    block.substring(0, Math.min(50, block.length())));
+            return null;
+        }
+
+        String reference = matcher.group(1).trim();
+        String noteContent = matcher.group(2).trim();
+
+        // Se o conteúdo da nota estiver vazio ou muito curto, pular
+        if (noteContent.length() < 10) {
+            logger.debug("Nota muito curta ou vazia para {}: {}", bookName, reference);
+            return null;
+        }
+
+        StudyNote note = new StudyNote();
+        note.setSource(SOURCE_NAME);
+        note.setBook(bookName);
+        note.setNoteContent(chunkingService.cleanChunkText(noteContent));
+
+        int[] parsedRef = parseReference(reference, bookName);
+        note.setStartChapter(parsedRef[0]);
+        note.setStartVerse(parsedRef[1]);
+        note.setEndChapter(parsedRef[2]);
+        note.setEndVerse(parsedRef[3]);
+        return note;
+    }
+
+    private static int[] parseReference(String reference, String bookName) {
+        int startChapter = 1, startVerse = 1;
+        int endChapter = 1, endVerse = 1;
+
+        try {
+            // Remover espaços e caracteres não numéricos exceto . : , -
+            String cleanRef = reference.replaceAll("\\s+", "")
+                    .replace("—", "-")  // hífen longo
+                    .replace("–", "-"); // hífen médio
+
+            // Detectar se a referência usa formato capítulo.versículo ou capítulo:versículo
+            if (cleanRef.contains(".") || cleanRef.contains(":")) {
+                // Formato com capítulo e versículo: "5.21", "5:21", "5.21-23", etc.
+                String[] parts;
+                if (cleanRef.contains("-")) {
+                    // Range: "5.21-23" ou "5.21-6.1"
+                    parts = cleanRef.split("-");
+                    String startRef = parts[0];
+                    String endRef = parts.length > 1 ? parts[1] : startRef;
+
+                    String[] startParts = startRef.split("[.:]");
+                    startChapter = Integer.parseInt(startParts[0]);
+                    startVerse = startParts.length > 1 ? Integer.parseInt(startParts[1]) : 1;
+
+                    if (endRef.contains(".") || endRef.contains(":")) {
+                        String[] endParts = endRef.split("[.:]");
+                        endChapter = Integer.parseInt(endParts[0]);
+                        endVerse = endParts.length > 1 ? Integer.parseInt(endParts[1]) : 1;
+                    } else {
+                        // Se o fim é apenas um número, assumir que é versículo do mesmo capítulo
+                        endChapter = startChapter;
+                        endVerse = Integer.parseInt(endRef);
+                    }
+                } else if (cleanRef.contains(",")) {
+                    // Lista: "5.21,22" - tratar como range
+                    parts = cleanRef.split(",");
+                    String[] startParts = parts[0].split("[.:]");
+                    startChapter = Integer.parseInt(startParts[0]);
+                    startVerse = startParts.length > 1 ? Integer.parseInt(startParts[1]) : 1;
+
+                    String lastRef = parts[parts.length - 1];
+                    if (lastRef.contains(".") || lastRef.contains(":")) {
+                        String[] endParts = lastRef.split("[.:]");
+                        endChapter = Integer.parseInt(endParts[0]);
+                        endVerse = endParts.length > 1 ? Integer.parseInt(endParts[1]) : 1;
+                    } else {
+                        endChapter = startChapter;
+                        endVerse = Integer.parseInt(lastRef);
+                    }
+                } else {
+                    // Versículo único: "5.21" ou "5:21"
+                    parts = cleanRef.split("[.:]");
+                    startChapter = Integer.parseInt(parts[0]);
+                    startVerse = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+                    endChapter = startChapter;
+                    endVerse = startVerse;
+                }
+            } else {
+                // Formato sem capítulo (para livros de capítulo único ou referências só de versículo)
+                if (SINGLE_CHAPTER_BOOKS.contains(bookName)) {
+                    startChapter = 1;
+                    endChapter = 1;
+
+                    if (cleanRef.contains("-")) {
+                        // Range: "1-3", "7-11"
+                        String[] parts = cleanRef.split("-");
+                        startVerse = Integer.parseInt(parts[0]);
+                        endVerse = parts.length > 1 && !parts[1].isEmpty() ?
+                                Integer.parseInt(parts[1]) : startVerse;
+                    } else if (cleanRef.contains(",")) {
+                        // Lista: "12,13"
+                        String[] parts = cleanRef.split(",");
+                        startVerse = Integer.parseInt(parts[0]);
+                        endVerse = Integer.parseInt(parts[parts.length - 1]);
+                    } else {
+                        // Versículo único: "1", "7"
+                        startVerse = Integer.parseInt(cleanRef);
+                        endVerse = startVerse;
+                    }
+                } else {
+                    // Para outros livros, número sozinho pode ser capítulo
+                    startChapter = Integer.parseInt(cleanRef.replaceAll("[^\\d]", ""));
+                    endChapter = startChapter;
+                    startVerse = 1;
+                    endVerse = 999; // Indicador de "capítulo inteiro"
+                }
+            }
+
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            logger.debug("Usando valores padrão para referência complexa: {}", reference);
+            // Valores padrão já definidos no início
+        }
+
+        return new int[]{startChapter, startVerse, endChapter, endVerse};
+    }
+
+    // --- Métodos Helper ---
+
+    private String readText(String resourcePath) throws IOException {
+        Resource resource = resourceLoader.getResource(resourcePath);
+        try (InputStream is = resource.getInputStream()) {
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String preview(String block) {
+        String preview = block.substring(0, Math.min(100, block.length()));
+        if (block.length() > 100) preview += "...";
+        return preview.replaceAll("\\s+", " ");
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Arquivo de log da carga (notes_processing_log_*.txt), compartilhado pelas threads dos livros.
+     * Cada chamada a {@link #append} grava um bloco inteiro sob o lock; se o arquivo não puder ser criado,
+     * a carga segue só com o log da aplicação.
+     */
+    private static final class NotesLog implements AutoCloseable {
+        private final BufferedWriter writer;
+
+        private NotesLog(BufferedWriter writer) {
+            this.writer = writer;
+        }
+
+        static NotesLog open(Path dir) {
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+            String logFileName = "notes_processing_log_" + timestamp + ".txt";
+            try {
+                BufferedWriter writer = Files.newBufferedWriter(dir.resolve(logFileName), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                NotesLog notesLog = new NotesLog(writer);
+                notesLog.append(List.of(
+                        "=== LOG DE PROCESSAMENTO DE NOTAS BÍBLICAS ===",
+                        "Iniciado em: " + LocalDateTime.now(),
+                        "================================================"));
+                logger.info("📝 Arquivo de log criado: {}", logFileName);
+                return notesLog;
+            } catch (IOException e) {
+                logger.error("Erro ao criar arquivo de log: {}", e.getMessage());
+                return new NotesLog(null);
+            }
+        }
+
+        synchronized void append(List<String> lines) {
+            if (writer == null) {
+                return;
+            }
+            try {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+                writer.flush();
+            } catch (IOException e) {
+                logger.warn("Falha ao gravar no log de notas: {}", e.getMessage());
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    logger.warn("Falha ao fechar o log de notas: {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
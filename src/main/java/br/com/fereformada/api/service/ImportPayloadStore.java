@@ -0,0 +1,153 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.model.ImportTaskPayload;
+import br.com.fereformada.api.repository.ImportTaskPayloadRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Entrada persistida das tarefas da fila (tabela import_task_payloads), em páginas NDJSON.
+ * <p>
+ * Gravada na mesma transação que cria a tarefa ({@link #appender}); lida de forma preguiçosa,
+ * uma página por vez, por quem executa a tarefa ({@link #read}), pulando o que já foi commitado.
+ */
+@Component
+public class ImportPayloadStore {
+
+    private static final int PAGE_SIZE = 500;
+
+    private final ImportTaskPayloadRepository repository;
+    private final ObjectMapper objectMapper;
+
+    public ImportPayloadStore(ImportTaskPayloadRepository repository, ObjectMapper objectMapper) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Gravador de páginas da tarefa. Deve ser usado dentro da transação que criou a tarefa.
+     */
+    public Appender appender(Long taskId) {
+        return new Appender(taskId);
+    }
+
+    /**
+     * Itens da tarefa a partir do índice {@code skipItems} (checkpoint), carregando uma página por vez.
+     * Páginas inteiramente antes do checkpoint nem são lidas.
+     */
+    public <T> Iterator<T> read(Long taskId, Class<T> type, int skipItems) {
+        List<Integer> counts = repository.findItemCounts(taskId);
+        int page = 0;
+        int toSkip = Math.max(0, skipItems);
+        while (page < counts.size() && toSkip >= counts.get(page)) {
+            toSkip -= counts.get(page);
+            page++;
+        }
+        return new PageIterator<>(taskId, type, counts.size(), page, toSkip);
+    }
+
+    public boolean hasPayload(Long taskId) {
+        return !repository.findItemCounts(taskId).isEmpty();
+    }
+
+    public void delete(Long taskId) {
+        repository.deleteByTaskId(taskId);
+    }
+
+    public final class Appender {
+
+        private final Long taskId;
+        private final StringBuilder page = new StringBuilder();
+        private int pageItems;
+        private int seq;
+        private int total;
+
+        private Appender(Long taskId) {
+            this.taskId = taskId;
+        }
+
+        public void add(Object item) throws JsonProcessingException {
+            page.append(objectMapper.writeValueAsString(item)).append('\n');
+            pageItems++;
+            total++;
+            if (pageItems >= PAGE_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * Grava a última página e devolve o total de itens.
+         */
+        public int finish() {
+            flush();
+            return total;
+        }
+
+        private void flush() {
+            if (pageItems == 0) {
+                return;
+            }
+            repository.save(new ImportTaskPayload(taskId, seq++, pageItems, page.toString()));
+            page.setLength(0);
+            pageItems = 0;
+        }
+    }
+
+    private final class PageIterator<T> implements Iterator<T> {
+
+        private final Long taskId;
+        private final Class<T> type;
+        private final int pageCount;
+        private int nextPage;
+        private int skipInPage;
+        private MappingIterator<T> current;
+
+        private PageIterator(Long taskId, Class<T> type, int pageCount, int firstPage, int skipInPage) {
+            this.taskId = taskId;
+            this.type = type;
+            this.pageCount = pageCount;
+            this.nextPage = firstPage;
+            this.skipInPage = skipInPage;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+                if (nextPage >= pageCount) {
+                    return false;
+                }
+                current = openPage(nextPage++);
+                for (; skipInPage > 0 && current.hasNext(); skipInPage--) {
+                    current.next();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        private MappingIterator<T> openPage(int seq) {
+            String body = repository.findBody(taskId, seq)
+                    .orElseThrow(() -> new IllegalStateException("Página " + seq + " da tarefa " + taskId + " não encontrada."));
+            try {
+                return objectMapper.readerFor(type).readValues(body);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Página " + seq + " da tarefa " + taskId + " ilegível", e);
+            }
+        }
+    }
+}
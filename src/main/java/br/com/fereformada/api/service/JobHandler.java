@@ -0,0 +1,29 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.model.ImportTask;
+import br.com.fereformada.api.model.enums.TaskType;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Executor de um tipo de tarefa da fila ({@link JobQueue}). Roda na thread do {@link JobQueueWorker}
+ * da instância que reservou a tarefa.
+ * <p>
+ * Regras para o trabalho poder ser retomado por outra instância:
+ * - o progresso vivo vai para o {@link TaskProgress} (memória, sem escrita no banco por item);
+ * - o checkpoint é gravado com {@link JobQueue#checkpoint}, que falha se o lease foi perdido;
+ * - o estado final é gravado com {@link JobQueue#finish} (ignorado se a tarefa já não é desta instância);
+ * - entre janelas/páginas, {@link #throwIfInterrupted()} (o worker interrompe a thread ao perder o lease ou no shutdown).
+ */
+public interface JobHandler {
+
+    boolean supports(TaskType taskType);
+
+    void execute(ImportTask task, TaskProgress progress);
+
+    static void throwIfInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Tarefa interrompida (lease perdido ou aplicação encerrando).");
+        }
+    }
+}
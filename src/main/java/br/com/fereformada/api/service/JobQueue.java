@@ -0,0 +1,237 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.model.ImportTask;
+import br.com.fereformada.api.model.enums.TaskStatus;
+import br.com.fereformada.api.repository.ImportTaskRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Fila durável de tarefas em segundo plano sobre a própria tabela import_tasks.
+ * <p>
+ * Uma tarefa PENDING é reservada por UMA instância ({@link #claim}, com FOR UPDATE SKIP LOCKED no PostgreSQL),
+ * que recebe um lease renovado por heartbeat. Se a instância morre, o lease expira e o {@link #reapExpiredLeases}
+ * devolve a tarefa para a fila (até {@code max-attempts}); quem a pegar continua do checkpoint.
+ * Toda escrita de progresso/estado final confere o dono do lease, então uma instância que perdeu
+ * a tarefa (pausa longa, rede) não sobrescreve o trabalho da nova dona.
+ */
+@Component
+public class JobQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobQueue.class);
+
+    /**
+     * Resultado de uma passada do reaper.
+     */
+    public record ReapResult(int requeued, int failed) {
+    }
+
+    /**
+     * A tarefa foi assumida por outra instância (lease expirado e reaproveitado).
+     */
+    public static class LeaseLostException extends IllegalStateException {
+        public LeaseLostException(String message) {
+            super(message);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChunkBatchWriter chunkBatchWriter;
+    private final ImportTaskRepository importTaskRepository;
+    private final ImportPayloadStore payloadStore;
+
+    private final String nodeId;
+    private final long leaseSeconds;
+    private final int maxAttempts;
+
+    public JobQueue(JdbcTemplate jdbcTemplate,
+                    ChunkBatchWriter chunkBatchWriter,
+                    ImportTaskRepository importTaskRepository,
+                    ImportPayloadStore payloadStore,
+                    @Value("${fereformada.jobs.node-id:}") String nodeId,
+                    @Value("${fereformada.jobs.lease-seconds:120}") long leaseSeconds,
+                    @Value("${fereformada.jobs.max-attempts:3}") int maxAttempts) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkBatchWriter = chunkBatchWriter;
+        this.importTaskRepository = importTaskRepository;
+        this.payloadStore = payloadStore;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? defaultNodeId() : nodeId;
+        this.leaseSeconds = Math.max(10, leaseSeconds);
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    public long leaseSeconds() {
+        return leaseSeconds;
+    }
+
+    /**
+     * Reserva a tarefa PENDING mais antiga para esta instância. Vazio se não houver nenhuma livre.
+     */
+    @Transactional
+    public Optional<ImportTask> claim() {
+        String lock = chunkBatchWriter.isPostgres() ? " FOR UPDATE SKIP LOCKED" : "";
+        Long id = jdbcTemplate.query(
+                "SELECT id FROM import_tasks WHERE status = 'PENDING' AND task_type IS NOT NULL ORDER BY id LIMIT 1" + lock,
+                rs -> rs.next() ? rs.getLong(1) : null);
+        if (id == null) {
+            return Optional.empty();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int updated = jdbcTemplate.update("UPDATE import_tasks SET status = 'PROCESSING', lease_owner = ?, " +
+                        "lease_expires_at = ?, heartbeat_at = ?, attempts = COALESCE(attempts, 0) + 1 " +
+                        "WHERE id = ? AND status = 'PENDING'",
+                nodeId, Timestamp.valueOf(now.plusSeconds(leaseSeconds)), Timestamp.valueOf(now), id);
+        if (updated == 0) {
+            // Sem SKIP LOCKED (H2) outra instância pode ter levado a mesma tarefa
+            return Optional.empty();
+        }
+        return importTaskRepository.findById(id);
+    }
+
+    /**
+     * Renova o lease. false = a tarefa já não é desta instância (o reaper a devolveu à fila).
+     */
+    public boolean heartbeat(Long taskId) {
+        LocalDateTime now = LocalDateTime.now();
+        return jdbcTemplate.update("UPDATE import_tasks SET lease_expires_at = ?, heartbeat_at = ? " +
+                        "WHERE id = ? AND lease_owner = ? AND status = 'PROCESSING'",
+                Timestamp.valueOf(now.plusSeconds(leaseSeconds)), Timestamp.valueOf(now), taskId, nodeId) > 0;
+    }
+
+    /**
+     * Grava o checkpoint (e a contagem de itens processados até ele), só se a tarefa ainda é desta instância.
+     * Chamado na mesma transação da escrita da janela: se o lease foi perdido, a janela também é desfeita.
+     */
+    public void checkpoint(Long taskId, long processedItems, Long lastProcessedId) {
+        int updated = jdbcTemplate.update("UPDATE import_tasks SET processed_items = ?, last_processed_id = ? " +
+                        "WHERE id = ? AND lease_owner = ? AND status = 'PROCESSING'",
+                processedItems, lastProcessedId, taskId, nodeId);
+        requireLease(taskId, updated);
+    }
+
+    /**
+     * Grava o progresso informativo (log curto + relatório de falhas), usado pelo flush periódico do
+     * {@link TaskProgressRegistry}. Não lança: false se a tarefa já não é desta instância.
+     */
+    public boolean flushProgress(Long taskId, long processedItems, String currentLog, String failedItems) {
+        return jdbcTemplate.update("UPDATE import_tasks SET processed_items = GREATEST(COALESCE(processed_items, 0), ?), " +
+                        "current_log = ?, failed_items = ? WHERE id = ? AND lease_owner = ? AND status = 'PROCESSING'",
+                processedItems, truncate(currentLog, 255), failedItems, taskId, nodeId) > 0;
+    }
+
+    /**
+     * Grava o estado final (COMPLETED/FAILED) calculado pelo executor e apaga a entrada persistida.
+     * Ignorado (false) se a tarefa já não é desta instância.
+     */
+    @Transactional
+    public boolean finish(ImportTask result) {
+        ImportTask task = importTaskRepository.findByIdForUpdate(result.getId()).orElse(null);
+        if (task == null || task.getStatus() != TaskStatus.PROCESSING || !nodeId.equals(task.getLeaseOwner())) {
+            logger.warn("⚠️ Tarefa {} não pertence mais a {}; estado final ({}) descartado.",
+                    result.getId(), nodeId, result.getStatus());
+            return false;
+        }
+        task.setStatus(result.getStatus());
+        task.setCurrentLog(truncate(result.getCurrentLog(), 255));
+        task.setErrorMessage(result.getErrorMessage());
+        task.setEndTime(result.getEndTime() != null ? result.getEndTime() : LocalDateTime.now());
+        task.setProcessedItems(result.getProcessedItems());
+        if (result.getTotalItems() != null) {
+            task.setTotalItems(result.getTotalItems());
+        }
+        task.setFailedItems(result.getFailedItems());
+        task.setLastProcessedId(result.getLastProcessedId());
+        task.setLeaseOwner(null);
+        task.setLeaseExpiresAt(null);
+        payloadStore.delete(task.getId());
+        return true;
+    }
+
+    /**
+     * Falha sem executor (tipo sem handler, erro inesperado fora do executor).
+     */
+    @Transactional
+    public void fail(Long taskId, String errorMessage) {
+        int updated = jdbcTemplate.update("UPDATE import_tasks SET status = 'FAILED', error_message = ?, end_time = ?, " +
+                        "lease_owner = NULL, lease_expires_at = NULL WHERE id = ? AND lease_owner = ? AND status = 'PROCESSING'",
+                errorMessage, Timestamp.valueOf(LocalDateTime.now()), taskId, nodeId);
+        if (updated > 0) {
+            payloadStore.delete(taskId);
+        }
+    }
+
+    /**
+     * Devolve a tarefa à fila no shutdown, sem gastar uma tentativa: outra instância continua do checkpoint.
+     */
+    public boolean release(Long taskId) {
+        return jdbcTemplate.update("UPDATE import_tasks SET status = 'PENDING', lease_owner = NULL, lease_expires_at = NULL, " +
+                        "attempts = CASE WHEN attempts > 0 THEN attempts - 1 ELSE 0 END, current_log = ? " +
+                        "WHERE id = ? AND lease_owner = ? AND status = 'PROCESSING'",
+                "Instância encerrada; tarefa devolvida à fila.", taskId, nodeId) > 0;
+    }
+
+    /**
+     * Devolve à fila as tarefas cujo lease expirou (instância morta) ou marca FAILED as que esgotaram as tentativas.
+     * Tarefas PROCESSING sem lease são de antes da fila: as tipadas são retomadas, as antigas sem tipo falham.
+     */
+    @Transactional
+    public ReapResult reapExpiredLeases() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int failed = jdbcTemplate.update("UPDATE import_tasks SET status = 'FAILED', lease_owner = NULL, lease_expires_at = NULL, " +
+                        "end_time = ?, error_message = ? WHERE status = 'PROCESSING' " +
+                        "AND (lease_expires_at IS NULL OR lease_expires_at < ?) " +
+                        "AND (task_type IS NULL OR COALESCE(attempts, 0) >= ?)",
+                now, "Tarefa abandonada: lease expirou após " + maxAttempts + " tentativas.", now, maxAttempts);
+        int requeued = jdbcTemplate.update("UPDATE import_tasks SET status = 'PENDING', lease_owner = NULL, lease_expires_at = NULL, " +
+                        "current_log = ? WHERE status = 'PROCESSING' AND task_type IS NOT NULL " +
+                        "AND (lease_expires_at IS NULL OR lease_expires_at < ?) AND COALESCE(attempts, 0) < ?",
+                "Lease expirado; tarefa devolvida à fila.", now, maxAttempts);
+        return new ReapResult(requeued, failed);
+    }
+
+    public Map<String, Long> countByStatus() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (TaskStatus status : TaskStatus.values()) {
+            counts.put(status.name(), 0L);
+        }
+        jdbcTemplate.query("SELECT status, COUNT(*) FROM import_tasks GROUP BY status",
+                rs -> {
+                    counts.put(rs.getString(1), rs.getLong(2));
+                });
+        return counts;
+    }
+
+    // ===== HELPERS =====
+
+    private void requireLease(Long taskId, int updated) {
+        if (updated == 0) {
+            throw new LeaseLostException("Lease da tarefa " + taskId + " perdido por " + nodeId + ".");
+        }
+    }
+
+    private static String truncate(String text, int max) {
+        return text == null || text.length() <= max ? text : text.substring(0, max);
+    }
+
+    private static String defaultNodeId() {
+        // "pid@host" da JVM + sufixo aleatório (duas réplicas no mesmo host/pid de container não colidem)
+        return ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,217 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.model.ImportTask;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker da {@link JobQueue}, ativo em TODAS as instâncias: reserva tarefas pendentes até o limite local
+ * de concorrência, executa cada uma numa virtual thread com o {@link JobHandler} do seu tipo,
+ * renova os leases por heartbeat e roda o reaper de leases expirados.
+ * <p>
+ * O heartbeat tem um scheduler só dele ("job-heartbeat"): se dependesse do scheduler do Spring,
+ * um @Scheduled lento (ex: GC do armazém de embeddings) atrasaria a renovação até o lease expirar
+ * e outra instância assumir uma tarefa que está rodando normalmente.
+ */
+@Component
+public class JobQueueWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobQueueWorker.class);
+
+    private final JobQueue jobQueue;
+    private final TaskProgressRegistry progressRegistry;
+    private final List<JobHandler> handlers;
+    private final boolean enabled;
+    private final int maxConcurrent;
+    private final long heartbeatMs;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<Long, FutureTask<Void>> running = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("job-heartbeat").factory());
+    private volatile boolean shuttingDown;
+
+    private final Counter finishedCounter;
+    private final Counter failedCounter;
+    private final Counter lostLeaseCounter;
+    private final Counter requeuedCounter;
+    private volatile String lastError;
+
+    public JobQueueWorker(JobQueue jobQueue,
+                          TaskProgressRegistry progressRegistry,
+                          List<JobHandler> handlers,
+                          MeterRegistry meterRegistry,
+                          @Value("${fereformada.jobs.worker.enabled:true}") boolean enabled,
+                          @Value("${fereformada.jobs.worker.max-concurrent:2}") int maxConcurrent,
+                          @Value("${fereformada.jobs.worker.heartbeat-ms:30000}") long heartbeatMs) {
+        this.jobQueue = jobQueue;
+        this.progressRegistry = progressRegistry;
+        this.handlers = handlers;
+        this.enabled = enabled;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.heartbeatMs = Math.max(1, heartbeatMs);
+
+        this.finishedCounter = Counter.builder("jobs.executed").tag("outcome", "finished").register(meterRegistry);
+        this.failedCounter = Counter.builder("jobs.executed").tag("outcome", "failed").register(meterRegistry);
+        this.lostLeaseCounter = Counter.builder("jobs.lease.lost").register(meterRegistry);
+        this.requeuedCounter = Counter.builder("jobs.lease.requeued").register(meterRegistry);
+    }
+
+    /**
+     * Reserva tarefas enquanto houver vaga local e tarefa livre.
+     */
+    @Scheduled(fixedDelayString = "${fereformada.jobs.worker.poll-ms:2000}",
+            initialDelayString = "${fereformada.jobs.worker.initial-delay-ms:5000}")
+    public void poll() {
+        if (!enabled || shuttingDown) {
+            return;
+        }
+        try {
+            while (running.size() < maxConcurrent && !shuttingDown) {
+                Optional<ImportTask> claimed = jobQueue.claim();
+                if (claimed.isEmpty()) {
+                    break;
+                }
+                start(claimed.get());
+            }
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+            logger.error("Falha ao reservar tarefas da fila", e);
+        }
+    }
+
+    @PostConstruct
+    public void startHeartbeat() {
+        heartbeatScheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Renova o lease das tarefas em execução. Lease perdido = outra instância assumiu: interrompe a local.
+     */
+    public void heartbeat() {
+        running.forEach((taskId, future) -> {
+            try {
+                if (!jobQueue.heartbeat(taskId)) {
+                    lostLeaseCounter.increment();
+                    logger.warn("⚠️ Lease da tarefa {} perdido; interrompendo a execução local.", taskId);
+                    future.cancel(true);
+                }
+            } catch (RuntimeException e) {
+                // Banco indisponível: tenta de novo no próximo ciclo (o lease ainda tem folga)
+                lastError = e.getMessage();
+                logger.warn("Heartbeat da tarefa {} falhou: {}", taskId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Devolve à fila as tarefas de instâncias que morreram. Idempotente: pode rodar em todas as réplicas.
+     */
+    @Scheduled(fixedDelayString = "${fereformada.jobs.reaper-ms:30000}",
+            initialDelayString = "${fereformada.jobs.worker.initial-delay-ms:5000}")
+    public void reap() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            JobQueue.ReapResult result = jobQueue.reapExpiredLeases();
+            if (result.requeued() > 0 || result.failed() > 0) {
+                requeuedCounter.increment(result.requeued());
+                logger.info("🔁 Reaper: {} tarefas devolvidas à fila, {} marcadas como FAILED.",
+                        result.requeued(), result.failed());
+            }
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+            logger.warn("Reaper da fila de tarefas falhou: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Shutdown gracioso: devolve as tarefas à fila ANTES de interromper, para a escrita final
+     * da execução interrompida ser descartada e outra instância retomar do checkpoint.
+     */
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        heartbeatScheduler.shutdownNow();
+        running.forEach((taskId, future) -> {
+            try {
+                if (jobQueue.release(taskId)) {
+                    logger.info("⏸️ Tarefa {} devolvida à fila no shutdown.", taskId);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Não foi possível devolver a tarefa {} (o reaper a recupera): {}", taskId, e.getMessage());
+            }
+            future.cancel(true);
+        });
+        executor.shutdownNow();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("nodeId", jobQueue.nodeId());
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("running", new ArrayList<>(running.keySet()));
+        stats.put("liveProgress", progressRegistry.activeCount());
+        stats.put("byStatus", jobQueue.countByStatus());
+        stats.put("finished", (long) finishedCounter.count());
+        stats.put("failed", (long) failedCounter.count());
+        stats.put("leasesLost", (long) lostLeaseCounter.count());
+        stats.put("requeuedByReaper", (long) requeuedCounter.count());
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    private void start(ImportTask task) {
+        JobHandler handler = handlers.stream()
+                .filter(candidate -> candidate.supports(task.getTaskType()))
+                .findFirst()
+                .orElse(null);
+        if (handler == null) {
+            jobQueue.fail(task.getId(), "Nenhum executor para o tipo " + task.getTaskType());
+            failedCounter.increment();
+            return;
+        }
+
+        logger.info("▶️ Tarefa {} ({}) reservada por {} (tentativa {}).",
+                task.getId(), task.getTaskType(), jobQueue.nodeId(), task.getAttempts());
+        // Registrada antes de submeter: o heartbeat já enxerga a tarefa e o finally sempre a encontra
+        TaskProgress progress = progressRegistry.start(task);
+        FutureTask<Void> future = new FutureTask<>(() -> run(handler, task, progress), null);
+        running.put(task.getId(), future);
+        executor.execute(future);
+    }
+
+    private void run(JobHandler handler, ImportTask task, TaskProgress progress) {
+        try {
+            handler.execute(task, progress);
+            finishedCounter.increment();
+        } catch (RuntimeException e) {
+            // Os executores tratam as próprias falhas; isto é só a rede de segurança
+            failedCounter.increment();
+            lastError = e.getMessage();
+            logger.error("Tarefa " + task.getId() + " terminou com erro inesperado", e);
+            jobQueue.fail(task.getId(), e.getMessage());
+        } finally {
+            running.remove(task.getId());
+            // O estado final já está no banco (JobQueue.finish); o stream passa a lê-lo de lá
+            progressRegistry.remove(task.getId());
+        }
+    }
+}
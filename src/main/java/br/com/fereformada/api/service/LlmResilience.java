@@ -0,0 +1,272 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.exception.LlmUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Resiliência das chamadas ao Gemini: timeout por chamada, "hedging" opcional
+ * (segunda tentativa se a primeira demorar) e circuit breaker por recurso.
+ * <p>
+ * Cada tentativa passa pelo {@link GeminiGovernor}; o prazo só começa a contar depois que
+ * o governador admite a chamada, então a espera na fila não vira timeout do provedor.
+ * O circuito só conta falhas do provedor (timeout, 429 e 5xx): rejeição do governador,
+ * erros 4xx e de validação não abrem o circuito.
+ * <p>
+ * Quando o circuito está aberto ou a chamada estoura o prazo, lança
+ * {@link LlmUnavailableException} para que o chamador possa degradar
+ * (ex: resposta extrativa no QueryService).
+ */
+@Component
+public class LlmResilience {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmResilience.class);
+
+    private final GeminiGovernor governor;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<GeminiGovernor.Resource, LlmCircuitBreaker> breakers = new EnumMap<>(GeminiGovernor.Resource.class);
+
+    private final long chatTimeoutMillis;
+    private final long embeddingTimeoutMillis;
+    private final long batchTimeoutMillis;
+    private final boolean hedgingEnabled;
+    private final long hedgeDelayMillis;
+
+    private final Counter timeoutCounter;
+    private final Counter shortCircuitCounter;
+    private final Counter hedgeCounter;
+    private final Counter hedgeWinCounter;
+
+    public LlmResilience(MeterRegistry meterRegistry,
+                         GeminiGovernor governor,
+                         @Value("${fereformada.llm.timeout.chat-ms:20000}") long chatTimeoutMillis,
+                         @Value("${fereformada.llm.timeout.embedding-ms:8000}") long embeddingTimeoutMillis,
+                         @Value("${fereformada.llm.timeout.batch-ms:60000}") long batchTimeoutMillis,
+                         @Value("${fereformada.llm.hedging.enabled:false}") boolean hedgingEnabled,
+                         @Value("${fereformada.llm.hedging.delay-ms:4000}") long hedgeDelayMillis,
+                         @Value("${fereformada.llm.circuit.window-size:20}") int windowSize,
+                         @Value("${fereformada.llm.circuit.min-calls:5}") int minCalls,
+                         @Value("${fereformada.llm.circuit.failure-rate:0.5}") double failureRate,
+                         @Value("${fereformada.llm.circuit.open-ms:30000}") long openMillis) {
+        this.governor = governor;
+        this.chatTimeoutMillis = chatTimeoutMillis;
+        this.embeddingTimeoutMillis = embeddingTimeoutMillis;
+        this.batchTimeoutMillis = batchTimeoutMillis;
+        this.hedgingEnabled = hedgingEnabled;
+        this.hedgeDelayMillis = hedgeDelayMillis;
+
+        for (GeminiGovernor.Resource resource : GeminiGovernor.Resource.values()) {
+            LlmCircuitBreaker breaker = new LlmCircuitBreaker(resource.name(), windowSize, minCalls, failureRate, openMillis);
+            breakers.put(resource, breaker);
+            Gauge.builder("llm.circuit.open", breaker, b -> b.getState() == LlmCircuitBreaker.State.CLOSED ? 0 : 1)
+                    .description("1 se o circuito do recurso está aberto/meio-aberto")
+                    .tag("resource", resource.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+        }
+
+        this.timeoutCounter = Counter.builder("llm.resilience.timeouts").register(meterRegistry);
+        this.shortCircuitCounter = Counter.builder("llm.resilience.short-circuited").register(meterRegistry);
+        this.hedgeCounter = Counter.builder("llm.resilience.hedges").register(meterRegistry);
+        this.hedgeWinCounter = Counter.builder("llm.resilience.hedge.wins").register(meterRegistry);
+    }
+
+    /**
+     * Executa a chamada ao modelo pelo governador, com prazo, hedging (apenas faixa INTERACTIVE)
+     * e circuit breaker. A faixa da thread chamadora é propagada para as threads de execução.
+     */
+    public <T> T call(GeminiGovernor.Resource resource, Supplier<T> modelCall) {
+        GeminiGovernor.Lane lane = GeminiGovernor.currentLane();
+        LlmCircuitBreaker breaker = breakers.get(resource);
+
+        if (!breaker.tryAcquirePermission()) {
+            shortCircuitCounter.increment();
+            throw new LlmUnavailableException("Circuito do Gemini (" + resource + ") aberto. Chamada não realizada.");
+        }
+
+        long timeoutMillis = lane == GeminiGovernor.Lane.BATCH ? batchTimeoutMillis
+                : resource == GeminiGovernor.Resource.CHAT ? chatTimeoutMillis : embeddingTimeoutMillis;
+        boolean hedge = hedgingEnabled && lane == GeminiGovernor.Lane.INTERACTIVE && hedgeDelayMillis < timeoutMillis;
+
+        Call<T> call = new Call<>(resource, lane, modelCall);
+        try {
+            T result = hedge ? callHedged(call, timeoutMillis) : callWithTimeout(call, timeoutMillis);
+            breaker.onSuccess();
+            return result;
+        } catch (RuntimeException e) {
+            if (!isProviderFailure(e)) {
+                // Fila saturada, 4xx, validação: o provedor não está doente
+                breaker.onIgnored();
+                throw e;
+            }
+            breaker.onFailure();
+            if (breaker.getState() == LlmCircuitBreaker.State.OPEN) {
+                logger.warn("⚡ Circuito do Gemini ({}) ABERTO após falhas consecutivas.", resource);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Falhas que contam para o circuito: timeout do provedor (depois da admissão) e 429/5xx.
+     * A rejeição do governador também é uma {@link LlmUnavailableException}, mas sem causa de timeout.
+     */
+    static boolean isProviderFailure(Throwable error) {
+        if (error instanceof LlmUnavailableException) {
+            return error.getCause() instanceof TimeoutException;
+        }
+        return GeminiGovernor.isThrottlingOrServerError(error);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        breakers.forEach((resource, breaker) -> stats.put(resource.name().toLowerCase(Locale.ROOT), breaker.snapshot()));
+        stats.put("timeouts", (long) timeoutCounter.count());
+        stats.put("shortCircuited", (long) shortCircuitCounter.count());
+        stats.put("hedges", (long) hedgeCounter.count());
+        stats.put("hedgeWins", (long) hedgeWinCounter.count());
+        return stats;
+    }
+
+    public LlmCircuitBreaker.State getCircuitState(GeminiGovernor.Resource resource) {
+        return breakers.get(resource).getState();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ===== EXECUÇÃO =====
+
+    private <T> T callWithTimeout(Call<T> call, long timeoutMillis) {
+        Attempt<T> primary = submit(call);
+        try {
+            awaitAdmission(primary);
+            return primary.result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeoutCounter.increment();
+            throw new LlmUnavailableException("Gemini não respondeu em " + timeoutMillis + " ms", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LlmUnavailableException("Interrompido aguardando o Gemini", e);
+        } finally {
+            primary.cancel();
+        }
+    }
+
+    private <T> T callHedged(Call<T> call, long timeoutMillis) {
+        Attempt<T> primary = submit(call);
+        Attempt<T> secondary = null;
+        try {
+            awaitAdmission(primary);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            try {
+                return primary.result.get(hedgeDelayMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException slow) {
+                // A primeira tentativa está lenta: dispara a segunda e fica com a que terminar primeiro
+                hedgeCounter.increment();
+                secondary = submit(call);
+            }
+
+            CompletableFuture<T> firstSuccess = firstSuccessOf(primary.result, secondary.result);
+            long remaining = deadline - System.nanoTime();
+            T result = firstSuccess.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            if (secondary.result.isDone() && !secondary.result.isCompletedExceptionally()
+                    && secondary.result.getNow(null) == result) {
+                hedgeWinCounter.increment();
+            }
+            return result;
+        } catch (TimeoutException e) {
+            timeoutCounter.increment();
+            throw new LlmUnavailableException("Gemini não respondeu em " + timeoutMillis + " ms (com hedging)", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LlmUnavailableException("Interrompido aguardando o Gemini", e);
+        } finally {
+            primary.cancel();
+            if (secondary != null) {
+                secondary.cancel();
+            }
+        }
+    }
+
+    /**
+     * Completa com o primeiro sucesso; só falha se ambas as tentativas falharem.
+     */
+    private static <T> CompletableFuture<T> firstSuccessOf(CompletableFuture<T> a, CompletableFuture<T> b) {
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        a.thenAccept(winner::complete);
+        b.thenAccept(winner::complete);
+        CompletableFuture.allOf(a, b).whenComplete((ignored, error) -> {
+            if (!winner.isDone()) {
+                // Ambas falharam: propaga a falha da tentativa original
+                a.whenComplete((value, primaryError) -> winner.completeExceptionally(
+                        primaryError != null ? primaryError : error));
+            }
+        });
+        return winner;
+    }
+
+    /**
+     * Espera o governador admitir a tentativa (ou rejeitá-la). O limite dessa espera é do governador:
+     * interactive-max-wait na faixa INTERACTIVE, sem limite na faixa BATCH.
+     */
+    private static <T> void awaitAdmission(Attempt<T> attempt) throws InterruptedException, ExecutionException {
+        CompletableFuture.anyOf(attempt.admitted, attempt.result).get();
+    }
+
+    private <T> Attempt<T> submit(Call<T> call) {
+        CompletableFuture<Void> admitted = new CompletableFuture<>();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                result.complete(governor.execute(call.resource(), call.lane(), () -> {
+                    admitted.complete(null);
+                    return call.modelCall().get();
+                }));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return new Attempt<>(admitted, result, task);
+    }
+
+    private record Call<T>(GeminiGovernor.Resource resource, GeminiGovernor.Lane lane, Supplier<T> modelCall) {
+    }
+
+    private record Attempt<T>(CompletableFuture<Void> admitted, CompletableFuture<T> result, Future<?> task) {
+        void cancel() {
+            if (!result.isDone()) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        return new RuntimeException(cause != null ? cause.getMessage() : e.getMessage(), cause);
+    }
+}
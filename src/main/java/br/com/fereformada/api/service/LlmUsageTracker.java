@@ -0,0 +1,272 @@
+package br.com.fereformada.api.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contabilidade de uso do Gemini: chamadas de chat, tokens de prompt/resposta e embeddings, por requisição
+ * (no {@link QueryTrace} da thread), por endpoint e por usuário, mais o orçamento por requisição.
+ * <p>
+ * Um turno de chat pode chamar o modelo até quatro vezes (roteador, analisador, Hy-DE e resposta) e rotas
+ * complexas somam um embedding por sub-query. O orçamento ({@code fereformada.llm.budget.*}, 0 = sem limite)
+ * vale só para as etapas opcionais: antes de cada uma o QueryService pergunta {@link #allowOptional}, que
+ * reserva espaço para a chamada da resposta final; se não couber, a etapa é pulada e o pipeline usa o
+ * fallback que já tinha para falhas (rota simples, filtro vazio, pergunta original).
+ * <p>
+ * Tokens vêm do {@link Usage} da resposta; quando o modelo não informa, estimamos ~4 caracteres por token.
+ * Usuário não vira tag de métrica (cardinalidade): os totais por usuário ficam em memória, limitados.
+ */
+@Component
+public class LlmUsageTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmUsageTracker.class);
+
+    public static final String BACKGROUND = "background";
+    private static final String NO_STAGE = "none";
+    private static final int CHARS_PER_TOKEN = 4;
+
+    /**
+     * Totais acumulados (por endpoint ou por usuário).
+     */
+    private static final class Totals {
+        final LongAdder llmCalls = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder completionTokens = new LongAdder();
+        final LongAdder embeddingCalls = new LongAdder();
+        final LongAdder skippedSteps = new LongAdder();
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("llmCalls", llmCalls.sum());
+            map.put("promptTokens", promptTokens.sum());
+            map.put("completionTokens", completionTokens.sum());
+            map.put("embeddingCalls", embeddingCalls.sum());
+            map.put("skippedSteps", skippedSteps.sum());
+            return map;
+        }
+
+        long totalTokens() {
+            return promptTokens.sum() + completionTokens.sum();
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final QueryTracer queryTracer;
+    private final int maxCalls;
+    private final long maxTokens;
+    private final int maxEmbeddings;
+    private final long answerReserveTokens;
+    private final int maxTrackedUsers;
+
+    private final Totals global = new Totals();
+    private final Map<String, Totals> byEndpoint = new ConcurrentHashMap<>();
+    private final Map<String, Totals> byUser = new ConcurrentHashMap<>();
+
+    public LlmUsageTracker(MeterRegistry meterRegistry, QueryTracer queryTracer,
+                           @Value("${fereformada.llm.budget.max-calls:0}") int maxCalls,
+                           @Value("${fereformada.llm.budget.max-tokens:0}") long maxTokens,
+                           @Value("${fereformada.llm.budget.max-embeddings:0}") int maxEmbeddings,
+                           @Value("${fereformada.llm.budget.answer-reserve-tokens:3000}") long answerReserveTokens,
+                           @Value("${fereformada.llm.usage.max-tracked-users:1000}") int maxTrackedUsers) {
+        this.meterRegistry = meterRegistry;
+        this.queryTracer = queryTracer;
+        this.maxCalls = Math.max(0, maxCalls);
+        this.maxTokens = Math.max(0, maxTokens);
+        this.maxEmbeddings = Math.max(0, maxEmbeddings);
+        this.answerReserveTokens = Math.max(0, answerReserveTokens);
+        this.maxTrackedUsers = Math.max(0, maxTrackedUsers);
+    }
+
+    // ===== REGISTRO =====
+
+    /**
+     * Registra uma chamada de chat (sucesso ou falha). {@code response} é null quando a chamada falhou.
+     */
+    public void recordChat(ChatResponse response, int promptChars, String outcome) {
+        long promptTokens = 0;
+        long completionTokens = 0;
+        Usage usage = response != null && response.getMetadata() != null ? response.getMetadata().getUsage() : null;
+        if (usage != null) {
+            promptTokens = orZero(usage.getPromptTokens());
+            completionTokens = orZero(usage.getGenerationTokens());
+        }
+        if (promptTokens <= 0) {
+            promptTokens = estimateTokens(promptChars);
+        }
+        if (completionTokens <= 0 && response != null && response.getResult() != null
+                && response.getResult().getOutput() != null) {
+            String content = response.getResult().getOutput().getContent();
+            completionTokens = content != null ? estimateTokens(content.length()) : 0;
+        }
+
+        Optional<QueryTrace> trace = queryTracer.current();
+        String endpoint = trace.map(QueryTrace::getEndpoint).orElse(BACKGROUND);
+        String stage = trace.map(QueryTrace::getCurrentStage).orElse(NO_STAGE);
+        if (trace.isPresent()) {
+            trace.get().addLlmCall(promptTokens, completionTokens);
+        }
+
+        Counter.builder("llm.calls")
+                .description("Chamadas de chat ao LLM")
+                .tags("endpoint", endpoint, "stage", stage, "outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+        tokenCounter(endpoint, stage, "prompt").increment(promptTokens);
+        tokenCounter(endpoint, stage, "completion").increment(completionTokens);
+
+        for (Totals totals : totalsFor(endpoint, trace)) {
+            totals.llmCalls.increment();
+            totals.promptTokens.add(promptTokens);
+            totals.completionTokens.add(completionTokens);
+        }
+    }
+
+    /**
+     * Registra um pedido de embedding (um texto no caminho interativo, ou um lote inteiro).
+     */
+    public void recordEmbedding(int texts) {
+        Optional<QueryTrace> trace = queryTracer.current();
+        String endpoint = trace.map(QueryTrace::getEndpoint).orElse(BACKGROUND);
+        trace.ifPresent(QueryTrace::addEmbeddingCall);
+
+        Counter.builder("llm.embedding.calls")
+                .description("Pedidos de embedding")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry)
+                .increment();
+        Counter.builder("llm.embedding.texts")
+                .description("Textos enviados para embedding")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry)
+                .increment(texts);
+
+        for (Totals totals : totalsFor(endpoint, trace)) {
+            totals.embeddingCalls.increment();
+        }
+    }
+
+    // ===== ORÇAMENTO POR REQUISIÇÃO =====
+
+    /**
+     * Pode rodar a etapa opcional {@code step} (uma chamada de chat com ~{@code promptChars} de prompt e
+     * ~{@code expectedCompletionTokens} de resposta) sem estourar o orçamento, contando a chamada da resposta
+     * final que ainda vem? Fora de uma requisição (jobs, importação) sempre pode.
+     */
+    public boolean allowOptional(String step, int promptChars, long expectedCompletionTokens) {
+        Optional<QueryTrace> trace = queryTracer.current();
+        if (trace.isEmpty()) {
+            return true;
+        }
+        QueryTrace.LlmUsage usage = trace.get().getLlmUsage();
+        // +1 desta etapa, +1 da resposta final
+        if (maxCalls > 0 && usage.llmCalls() + 2 > maxCalls) {
+            return skip(step, trace.get(), "chamadas " + usage.llmCalls() + "/" + maxCalls);
+        }
+        long projected = usage.totalTokens() + estimateTokens(promptChars) + expectedCompletionTokens + answerReserveTokens;
+        if (maxTokens > 0 && projected > maxTokens) {
+            return skip(step, trace.get(), "tokens projetados " + projected + "/" + maxTokens);
+        }
+        return true;
+    }
+
+    /**
+     * Pode pedir mais um embedding nesta requisição? Usado nas sub-queries de perguntas complexas.
+     */
+    public boolean allowEmbedding(String step) {
+        Optional<QueryTrace> trace = queryTracer.current();
+        if (trace.isEmpty() || maxEmbeddings <= 0) {
+            return true;
+        }
+        int used = trace.get().getLlmUsage().embeddingCalls();
+        if (used + 1 > maxEmbeddings) {
+            return skip(step, trace.get(), "embeddings " + used + "/" + maxEmbeddings);
+        }
+        return true;
+    }
+
+    private boolean skip(String step, QueryTrace trace, String reason) {
+        logger.info("💸 Orçamento da requisição {}: pulando '{}' ({})", trace.getId(), step, reason);
+        Counter.builder("llm.budget.skipped")
+                .description("Etapas opcionais puladas por orçamento de LLM")
+                .tags("endpoint", trace.getEndpoint(), "step", step)
+                .register(meterRegistry)
+                .increment();
+        for (Totals totals : totalsFor(trace.getEndpoint(), Optional.of(trace))) {
+            totals.skippedSteps.increment();
+        }
+        return false;
+    }
+
+    // ===== STATS =====
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("total", global.snapshot());
+
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        byEndpoint.forEach((endpoint, totals) -> endpoints.put(endpoint, totals.snapshot()));
+        stats.put("byEndpoint", endpoints);
+
+        Map<String, Object> topUsers = new LinkedHashMap<>();
+        byUser.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, Totals> e) -> e.getValue().totalTokens()).reversed())
+                .limit(20)
+                .forEach(e -> topUsers.put(e.getKey(), e.getValue().snapshot()));
+        stats.put("topUsersByTokens", topUsers);
+        stats.put("trackedUsers", byUser.size());
+
+        Map<String, Object> budget = new LinkedHashMap<>();
+        budget.put("maxCalls", maxCalls);
+        budget.put("maxTokens", maxTokens);
+        budget.put("maxEmbeddings", maxEmbeddings);
+        budget.put("answerReserveTokens", answerReserveTokens);
+        stats.put("budget", budget);
+        return stats;
+    }
+
+    // ===== Métodos Helper =====
+
+    static long estimateTokens(int chars) {
+        return chars <= 0 ? 0 : (chars + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    private static long orZero(Long value) {
+        return value != null ? value : 0;
+    }
+
+    private Counter tokenCounter(String endpoint, String stage, String type) {
+        return Counter.builder("llm.tokens")
+                .description("Tokens consumidos no LLM (prompt/resposta)")
+                .tags("endpoint", endpoint, "stage", stage, "type", type)
+                .register(meterRegistry);
+    }
+
+    private List<Totals> totalsFor(String endpoint, Optional<QueryTrace> trace) {
+        Totals endpointTotals = byEndpoint.computeIfAbsent(endpoint, key -> new Totals());
+        String userId = trace.map(QueryTrace::getUserId).orElse(null);
+        if (userId == null) {
+            return List.of(global, endpointTotals);
+        }
+        Totals userTotals = byUser.get(userId);
+        if (userTotals == null && byUser.size() < maxTrackedUsers) {
+            userTotals = byUser.computeIfAbsent(userId, key -> new Totals());
+        }
+        return userTotals != null
+                ? List.of(global, endpointTotals, userTotals)
+                : List.of(global, endpointTotals);
+    }
+}
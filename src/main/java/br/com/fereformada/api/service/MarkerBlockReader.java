@@ -0,0 +1,127 @@
+package br.com.fereformada.api.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Divide um texto lido de um {@link Reader} em blocos que começam em cada ocorrência de um marcador
+ * (capítulo, pergunta...) e vão até o próximo, sem carregar o documento inteiro: só o bloco atual fica no buffer.
+ * <p>
+ * Os blocos são os mesmos de rodar {@code find()} sobre o texto completo: um marcador só é aceito quando o
+ * regex não encostou no fim do buffer ({@link Matcher#hitEnd()}), ou seja, quando mais texto não mudaria o match.
+ * O texto antes do primeiro marcador é descartado, como nos parsers sobre String.
+ */
+final class MarkerBlockReader implements Iterator<MarkerBlockReader.Block> {
+
+    private static final int READ_SIZE = 16 * 1024;
+
+    /**
+     * Bloco de um marcador. {@code markerEnd} é o fim do match dentro de {@code text};
+     * {@code ordinal} conta os marcadores a partir de 1. Documento sem nenhum marcador = um único bloco
+     * com {@code ordinal} 0 e {@code groups} vazio.
+     */
+    record Block(String text, int ordinal, int markerEnd, String[] groups) {
+        boolean isWholeDocument() {
+            return ordinal == 0;
+        }
+    }
+
+    private final Reader reader;
+    private final Pattern marker;
+    private final StringBuilder buffer = new StringBuilder();
+    private final char[] readBuffer = new char[READ_SIZE];
+
+    private boolean eof;
+    private boolean finished;
+    private boolean inBlock;
+    private int ordinal;
+    private int markerEnd;
+    private String[] groups;
+    private Block next;
+
+    MarkerBlockReader(Reader reader, Pattern marker) {
+        this.reader = reader;
+        this.marker = marker;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            next = advance();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Block next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Block block = next;
+        next = null;
+        return block;
+    }
+
+    private Block advance() {
+        while (true) {
+            Matcher matcher = marker.matcher(buffer);
+            // O bloco atual (se houver) começa em 0; o próximo marcador só pode vir depois do fim do atual
+            if (matcher.find(inBlock ? markerEnd : 0) && (eof || !matcher.hitEnd())) {
+                Block done = inBlock ? block(matcher.start()) : null;
+                int shift = matcher.start();
+                String[] markerGroups = groups(matcher);
+                int end = matcher.end();
+                buffer.delete(0, shift);
+
+                inBlock = true;
+                ordinal++;
+                markerEnd = end - shift;
+                groups = markerGroups;
+                if (done != null) {
+                    return done;
+                }
+                continue;
+            }
+
+            if (eof) {
+                finished = true;
+                if (inBlock) {
+                    return block(buffer.length());
+                }
+                // Nenhum marcador no documento inteiro: quem chama decide o que fazer com o texto todo
+                return new Block(buffer.toString(), 0, 0, new String[0]);
+            }
+            fill();
+        }
+    }
+
+    private Block block(int end) {
+        return new Block(buffer.substring(0, end), ordinal, markerEnd, groups);
+    }
+
+    private void fill() {
+        try {
+            int read = reader.read(readBuffer);
+            if (read < 0) {
+                eof = true;
+            } else {
+                buffer.append(readBuffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao ler o texto para o chunker", e);
+        }
+    }
+
+    private static String[] groups(Matcher matcher) {
+        String[] values = new String[matcher.groupCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = matcher.group(i + 1);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,579 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.model.Author;
+import br.com.fereformada.api.model.ImportTask;
+import br.com.fereformada.api.model.Topic;
+import br.com.fereformada.api.model.Work;
+import br.com.fereformada.api.model.enums.PdfSource;
+import br.com.fereformada.api.model.enums.TaskStatus;
+import br.com.fereformada.api.model.enums.TaskType;
+import br.com.fereformada.api.repository.AuthorRepository;
+import br.com.fereformada.api.repository.ContentChunkRepository;
+import br.com.fereformada.api.repository.ImportTaskRepository;
+import br.com.fereformada.api.repository.TopicRepository;
+import br.com.fereformada.api.repository.WorkRepository;
+import br.com.fereformada.api.util.EmbeddingTexts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Ingestão de um PDF embutido (tarefa IMPORT_PDF da {@link JobQueue}), em estágios ligados por filas limitadas:
+ * <pre>
+ * extração (faixas de páginas em paralelo, texto em cache por hash) -> parse -> tags -> vetores (em lote) -> gravação (COPY)
+ * </pre>
+ * Cada estágio roda na sua thread; a fila cheia segura o estágio anterior, então a memória não depende do
+ * tamanho do livro. A gravação (thread da tarefa) commita cada janela junto com o checkpoint (índice do
+ * próximo trecho), e a retomada em outra instância pula o que já foi gravado. A vazão de cada estágio
+ * (itens/s de tempo ocupado, sem a espera nas filas) vai para o log final da tarefa e para {@link #getStats}.
+ */
+@Service
+public class PdfIngestionPipeline implements JobHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfIngestionPipeline.class);
+    private static final long POLL_MS = 100;
+
+    /**
+     * Trecho do PDF já limpo (e dividido, se grande demais); {@code index} é a posição na saída do parse (base do checkpoint).
+     */
+    private record ParsedItem(int index, String chapterTitle, Integer chapterNumber, String sectionTitle,
+                              Integer sectionNumber, String question, String content) {
+    }
+
+    private record TaggedItem(ParsedItem item, Set<Long> topicIds) {
+    }
+
+    private record EmbeddedWindow(List<TaggedItem> items, List<float[]> contentVectors,
+                                  List<float[]> questionVectors, int missingVectors) {
+        int nextIndex() {
+            return items.get(items.size() - 1).item().index() + 1;
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageBody {
+        void run() throws Exception;
+    }
+
+    private final ImportTaskRepository importTaskRepository;
+    private final WorkRepository workRepository;
+    private final AuthorRepository authorRepository;
+    private final TopicRepository topicRepository;
+    private final ContentChunkRepository contentChunkRepository;
+    private final PdfTextExtractor textExtractor;
+    private final ChunkingService chunkingService;
+    private final TaggingService taggingService;
+    private final BulkEmbeddingExecutor bulkEmbeddingExecutor;
+    private final PgCopyBulkLoader bulkLoader;
+    private final RetrievalCache retrievalCache;
+    private final ImportPayloadStore payloadStore;
+    private final JobQueue jobQueue;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int queueCapacity;
+    private final int embedWindow;
+    private final int maxChunkChars;
+
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    public PdfIngestionPipeline(ImportTaskRepository importTaskRepository,
+                                WorkRepository workRepository,
+                                AuthorRepository authorRepository,
+                                TopicRepository topicRepository,
+                                ContentChunkRepository contentChunkRepository,
+                                PdfTextExtractor textExtractor,
+                                ChunkingService chunkingService,
+                                TaggingService taggingService,
+                                BulkEmbeddingExecutor bulkEmbeddingExecutor,
+                                PgCopyBulkLoader bulkLoader,
+                                RetrievalCache retrievalCache,
+                                ImportPayloadStore payloadStore,
+                                JobQueue jobQueue,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${fereformada.pdf.queue-capacity:256}") int queueCapacity,
+                                @Value("${fereformada.pdf.embed-window:100}") int embedWindow,
+                                @Value("${fereformada.chunking.max-chars:4000}") int maxChunkChars) {
+        this.importTaskRepository = importTaskRepository;
+        this.workRepository = workRepository;
+        this.authorRepository = authorRepository;
+        this.topicRepository = topicRepository;
+        this.contentChunkRepository = contentChunkRepository;
+        this.textExtractor = textExtractor;
+        this.chunkingService = chunkingService;
+        this.taggingService = taggingService;
+        this.bulkEmbeddingExecutor = bulkEmbeddingExecutor;
+        this.bulkLoader = bulkLoader;
+        this.retrievalCache = retrievalCache;
+        this.payloadStore = payloadStore;
+        this.jobQueue = jobQueue;
+        this.transactionTemplate = transactionTemplate;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.embedWindow = Math.max(1, embedWindow);
+        this.maxChunkChars = maxChunkChars;
+    }
+
+    @Override
+    public boolean supports(TaskType taskType) {
+        return taskType == TaskType.IMPORT_PDF;
+    }
+
+    /**
+     * Executa (ou retoma do checkpoint) a ingestão do PDF indicado na entrada da tarefa.
+     */
+    @Override
+    public void execute(ImportTask task, TaskProgress progress) {
+        Long taskId = task.getId();
+        int firstIndex = task.getLastProcessedId() != null ? task.getLastProcessedId().intValue() : 0;
+        int nextIndex = firstIndex;
+        int written = 0;
+        int withoutVector = 0;
+        long startNanos = System.nanoTime();
+
+        StageMeter extractMeter = new StageMeter("extração");
+        StageMeter parseMeter = new StageMeter("parse");
+        StageMeter tagMeter = new StageMeter("tags");
+        StageMeter embedMeter = new StageMeter("vetores");
+        StageMeter writeMeter = new StageMeter("gravação");
+        List<StageMeter> meters = List.of(extractMeter, parseMeter, tagMeter, embedMeter, writeMeter);
+        PdfSource source = null;
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Future<?>> stages = new ArrayList<>();
+        ExecutorService stageExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            source = readSource(taskId);
+            if (firstIndex == 0 && contentChunkRepository.countByWorkTitle(source.workTitle()) > 0) {
+                throw new IllegalStateException("'" + source.workTitle() + "' já tem chunks; apague-os antes de reingerir.");
+            }
+            Work work = findOrCreateWork(source);
+            if (!taggingService.hasRules()) {
+                taggingService.initializeRules(topicRepository.findAll());
+            }
+
+            // 1. Extração (paralela por faixa de páginas, ou do cache)
+            progress.log("Extraindo texto de '" + source.workTitle() + "'...");
+            PdfTextExtractor.Extraction extraction =
+                    textExtractor.extract(source.resourcePath(), source.startPage(), source.endPage());
+            extractMeter.add(extraction.pages(), TimeUnit.MILLISECONDS.toNanos(extraction.elapsedMillis()));
+            extractMeter.cached = extraction.cached();
+
+            // 2. Estágios ligados por filas limitadas
+            Pipe<ParsedItem> parsed = new Pipe<>(queueCapacity, failure);
+            Pipe<TaggedItem> tagged = new Pipe<>(queueCapacity, failure);
+            Pipe<EmbeddedWindow> embedded = new Pipe<>(Math.max(2, queueCapacity / embedWindow), failure);
+            PdfSource current = source;
+            stages.add(startStage(stageExecutor, failure,
+                    () -> parse(current, extraction.textFile(), firstIndex, parsed, progress, parseMeter)));
+            stages.add(startStage(stageExecutor, failure, () -> tag(current, parsed, tagged, tagMeter)));
+            stages.add(startStage(stageExecutor, failure, () -> embed(tagged, embedded, embedMeter)));
+
+            // 3. Gravação na thread da tarefa: janela + checkpoint no mesmo commit
+            progress.log("Processando '" + source.workTitle() + "'...");
+            try {
+                EmbeddedWindow window;
+                while ((window = embedded.take()) != null) {
+                    JobHandler.throwIfInterrupted();
+                    nextIndex = write(taskId, work.getId(), window, progress, writeMeter);
+                    written += window.items().size();
+                    withoutVector += window.missingVectors();
+                    progress.log("Gravados " + written + " trechos de '" + source.workTitle() + "'...");
+                }
+            } catch (CancellationException e) {
+                // Fila abortada: a causa real é a falha do estágio que parou
+                Throwable cause = failure.get();
+                throw cause instanceof Exception stageError ? stageError : e;
+            }
+
+            task = importTaskRepository.findById(taskId).orElse(task);
+            task.setStatus(TaskStatus.COMPLETED);
+            task.setCurrentLog("'" + source.workTitle() + "': " + written + " trechos gravados"
+                    + (withoutVector > 0 ? " (" + withoutVector + " sem vetor)" : "") + ". " + summary(meters));
+
+        } catch (Exception e) {
+            failure.compareAndSet(null, e);
+            logger.error("Falha na ingestão de PDF da tarefa " + taskId, e);
+            task = importTaskRepository.findById(taskId).orElse(task);
+            task.setStatus(TaskStatus.FAILED);
+            task.setCurrentLog(written + " trechos gravados antes da falha. " + summary(meters));
+            task.setErrorMessage(e.getMessage());
+        } finally {
+            stages.forEach(stage -> stage.cancel(true));
+            stageExecutor.shutdownNow();
+
+            task.setProcessedItems((int) progress.processed());
+            task.setLastProcessedId((long) nextIndex);
+            task.setEndTime(LocalDateTime.now());
+            jobQueue.finish(task);
+            if (written > 0) {
+                retrievalCache.bumpCorpusVersion("pdfIngestion");
+            }
+            lastRun = runStats(source, written, withoutVector, System.nanoTime() - startNanos, meters);
+            logger.info("🏁 [PDF {}] {} — {}", taskId, task.getStatus(), summary(meters));
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("embedWindow", embedWindow);
+        stats.put("maxChunkChars", maxChunkChars);
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+
+    // --- ESTÁGIOS ---
+
+    private void parse(PdfSource source, Path textFile, int firstIndex, Pipe<ParsedItem> out,
+                       TaskProgress progress, StageMeter meter) throws Exception {
+        // O texto é lido aos poucos: só o capítulo (ou pergunta) atual fica em memória
+        try (Reader reader = Files.newBufferedReader(textFile, StandardCharsets.UTF_8)) {
+            Iterator<ParsedItem> items = parsedItems(source, reader);
+            int count = 0;
+            while (true) {
+                long startNanos = System.nanoTime();
+                if (!items.hasNext()) {
+                    meter.add(0, System.nanoTime() - startNanos);
+                    break;
+                }
+                ParsedItem item = items.next();
+                meter.add(1, System.nanoTime() - startNanos);
+                count++;
+                if (item.index() >= firstIndex) {
+                    out.put(item);
+                }
+            }
+            progress.setTotal(count);
+        }
+        out.close();
+    }
+
+    private void tag(PdfSource source, Pipe<ParsedItem> in, Pipe<TaggedItem> out, StageMeter meter) throws Exception {
+        ParsedItem item;
+        while ((item = in.take()) != null) {
+            long startNanos = System.nanoTime();
+            Set<Long> topicIds = taggingService.getTagsFor(taggingTexts(source, item)).stream()
+                    .map(Topic::getId)
+                    .collect(Collectors.toSet());
+            meter.add(1, System.nanoTime() - startNanos);
+            out.put(new TaggedItem(item, topicIds));
+        }
+        out.close();
+    }
+
+    private void embed(Pipe<TaggedItem> in, Pipe<EmbeddedWindow> out, StageMeter meter) throws Exception {
+        List<TaggedItem> window = new ArrayList<>(embedWindow);
+        TaggedItem item;
+        while ((item = in.take()) != null) {
+            window.add(item);
+            if (window.size() >= embedWindow) {
+                out.put(embedWindow(window, meter));
+                window = new ArrayList<>(embedWindow);
+            }
+        }
+        if (!window.isEmpty()) {
+            out.put(embedWindow(window, meter));
+        }
+        out.close();
+    }
+
+    /**
+     * Conteúdo e pergunta da janela numa única chamada em lote (mesmo formato da importação de chunks).
+     */
+    private EmbeddedWindow embedWindow(List<TaggedItem> items, StageMeter meter) {
+        long startNanos = System.nanoTime();
+        List<String> texts = new ArrayList<>(items.size() * 2);
+        List<Integer> questionOwners = new ArrayList<>();
+        for (TaggedItem item : items) {
+            ParsedItem parsed = item.item();
+            texts.add(parsed.question() != null
+                    ? EmbeddingTexts.chunkWithQuestion(parsed.question(), parsed.content())
+                    : parsed.content());
+        }
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).item().question() != null) {
+                texts.add(items.get(i).item().question());
+                questionOwners.add(i);
+            }
+        }
+
+        BulkEmbeddingExecutor.BulkEmbeddingResult result = bulkEmbeddingExecutor.embedAll(texts);
+        List<float[]> contentVectors = new ArrayList<>(result.vectors().subList(0, items.size()));
+        List<float[]> questionVectors = new ArrayList<>(Collections.nCopies(items.size(), (float[]) null));
+        for (int q = 0; q < questionOwners.size(); q++) {
+            questionVectors.set(questionOwners.get(q), result.vectors().get(items.size() + q));
+        }
+        meter.add(items.size(), System.nanoTime() - startNanos);
+        return new EmbeddedWindow(items, contentVectors, questionVectors, result.failedCount());
+    }
+
+    private int write(Long taskId, Long workId, EmbeddedWindow window, TaskProgress progress, StageMeter meter) {
+        long startNanos = System.nanoTime();
+        List<ChunkBatchWriter.ChunkInsert> rows = new ArrayList<>(window.items().size());
+        for (int i = 0; i < window.items().size(); i++) {
+            TaggedItem tagged = window.items().get(i);
+            ParsedItem item = tagged.item();
+            rows.add(new ChunkBatchWriter.ChunkInsert(workId, item.chapterTitle(), item.chapterNumber(),
+                    item.sectionTitle(), item.sectionNumber(), null, null, item.question(), item.content(),
+                    window.contentVectors().get(i), window.questionVectors().get(i), tagged.topicIds()));
+        }
+
+        int nextIndex = window.nextIndex();
+        long processed = progress.processed() + rows.size();
+        // Se o lease foi perdido, o checkpoint lança e a janela é desfeita
+        transactionTemplate.executeWithoutResult(status -> {
+            bulkLoader.loadChunks(rows);
+            jobQueue.checkpoint(taskId, processed, (long) nextIndex);
+        });
+        progress.advance(rows.size());
+        meter.add(rows.size(), System.nanoTime() - startNanos);
+        return nextIndex;
+    }
+
+    // --- Métodos Helper ---
+
+    /**
+     * Saída do parser da obra, limpa e sem os trechos curtos demais (mesmos critérios do DatabaseSeeder).
+     * Trechos maiores que {@code fereformada.chunking.max-chars} (medidos após a limpeza) são divididos
+     * em fins de frase, repetindo capítulo/seção/pergunta em cada parte.
+     */
+    private Iterator<ParsedItem> parsedItems(PdfSource source, Reader reader) {
+        Iterator<List<ParsedItem>> groups = switch (source) {
+            case CONFESSION, INSTITUTES -> {
+                Iterator<ChunkingService.ParsedChunk> chunks = source == PdfSource.CONFESSION
+                        ? chunkingService.streamWestminsterConfession(reader, 0)
+                        : chunkingService.streamCalvinInstitutes(reader, 0);
+                yield map(chunks, chunk -> {
+                    String content = chunkingService.cleanChunkText(chunk.content());
+                    if (content.length() < source.minContentLength()) {
+                        return List.of();
+                    }
+                    return ChunkingService.splitBySize(content, maxChunkChars).stream()
+                            .map(part -> new ParsedItem(0, chunk.chapterTitle(), chunk.chapterNumber(),
+                                    chunk.sectionTitle(), chunk.sectionNumber(), null, part))
+                            .toList();
+                });
+            }
+            case LARGER_CATECHISM, SHORTER_CATECHISM -> {
+                Iterator<ChunkingService.ParsedQuestionChunk> chunks = source == PdfSource.LARGER_CATECHISM
+                        ? chunkingService.streamWestminsterLargerCatechism(reader, 0)
+                        : chunkingService.streamWestminsterShorterCatechism(reader, 0);
+                String chapterTitle = source == PdfSource.LARGER_CATECHISM ? "Catecismo Maior" : "Breve Catecismo";
+                yield map(chunks, chunk -> {
+                    String answer = chunkingService.cleanChunkText(chunk.answer());
+                    if (answer.length() < source.minContentLength()) {
+                        return List.of();
+                    }
+                    return ChunkingService.splitBySize(answer, maxChunkChars).stream()
+                            .map(part -> new ParsedItem(0, chapterTitle, null, null, chunk.questionNumber(),
+                                    chunk.question(), part))
+                            .toList();
+                });
+            }
+        };
+
+        // Numera os itens na ordem de saída (mesma ordem a cada execução: é o que o checkpoint guarda)
+        return new Iterator<>() {
+            private final Deque<ParsedItem> pending = new ArrayDeque<>();
+            private int nextIndex;
+
+            @Override
+            public boolean hasNext() {
+                while (pending.isEmpty() && groups.hasNext()) {
+                    pending.addAll(groups.next());
+                }
+                return !pending.isEmpty();
+            }
+
+            @Override
+            public ParsedItem next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ParsedItem item = pending.poll();
+                return new ParsedItem(nextIndex++, item.chapterTitle(), item.chapterNumber(), item.sectionTitle(),
+                        item.sectionNumber(), item.question(), item.content());
+            }
+        };
+    }
+
+    private static <T, R> Iterator<R> map(Iterator<T> source, Function<T, R> mapper) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public R next() {
+                return mapper.apply(source.next());
+            }
+        };
+    }
+
+    private static String[] taggingTexts(PdfSource source, ParsedItem item) {
+        if (source.isCatechism()) {
+            return new String[]{item.question(), item.content()};
+        }
+        if (source == PdfSource.INSTITUTES) {
+            return new String[]{item.chapterTitle() + " " +
+                    (item.sectionTitle() != null ? item.sectionTitle() : "") + " " + item.content(), ""};
+        }
+        return new String[]{item.chapterTitle(), item.content()};
+    }
+
+    private PdfSource readSource(Long taskId) {
+        Iterator<PdfSource> payload = payloadStore.read(taskId, PdfSource.class, 0);
+        if (!payload.hasNext()) {
+            throw new IllegalStateException("Tarefa " + taskId + " sem o PDF de origem.");
+        }
+        return payload.next();
+    }
+
+    private Work findOrCreateWork(PdfSource source) {
+        return workRepository.findByTitle(source.workTitle()).orElseGet(() -> {
+            Author author = authorRepository.findByName(source.authorName())
+                    .orElseThrow(() -> new IllegalStateException("Autor '" + source.authorName() + "' não cadastrado."));
+            Work work = new Work();
+            work.setTitle(source.workTitle());
+            work.setAuthor(author);
+            work.setPublicationYear(source.publicationYear());
+            work.setType(source.workType());
+            work.setAcronym(source.acronym());
+            logger.info("Criando obra '{}' para a ingestão de PDF.", source.workTitle());
+            return workRepository.save(work);
+        });
+    }
+
+    private static Future<?> startStage(ExecutorService executor, AtomicReference<Throwable> failure, StageBody body) {
+        return executor.submit(() -> {
+            try {
+                body.run();
+            } catch (Throwable e) {
+                // A primeira falha vence; as filas dos outros estágios abortam ao vê-la
+                failure.compareAndSet(null, e instanceof InterruptedException ? new CancellationException("Estágio interrompido") : e);
+            }
+        });
+    }
+
+    private static String summary(List<StageMeter> meters) {
+        return meters.stream()
+                .filter(meter -> meter.items > 0 || meter.cached)
+                .map(StageMeter::toString)
+                .collect(Collectors.joining(" | "));
+    }
+
+    private static Map<String, Object> runStats(PdfSource source, int written, int withoutVector,
+                                                long elapsedNanos, List<StageMeter> meters) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("source", source);
+        stats.put("written", written);
+        stats.put("withoutVector", withoutVector);
+        stats.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        Map<String, Object> stages = new LinkedHashMap<>();
+        for (StageMeter meter : meters) {
+            Map<String, Object> stage = new LinkedHashMap<>();
+            stage.put("items", meter.items);
+            stage.put("busyMs", TimeUnit.NANOSECONDS.toMillis(meter.busyNanos));
+            stage.put("perSecond", Math.round(meter.perSecond() * 10) / 10.0);
+            if (meter.cached) {
+                stage.put("cached", true);
+            }
+            stages.put(meter.name, stage);
+        }
+        stats.put("stages", stages);
+        return stats;
+    }
+
+    /**
+     * Vazão de um estágio. Escrito só pela thread do estágio e lido depois que a tarefa termina.
+     */
+    private static final class StageMeter {
+        private final String name;
+        private volatile long items;
+        private volatile long busyNanos;
+        private volatile boolean cached;
+
+        private StageMeter(String name) {
+            this.name = name;
+        }
+
+        void add(long count, long nanos) {
+            items += count;
+            busyNanos += nanos;
+        }
+
+        double perSecond() {
+            return busyNanos > 0 ? items * 1_000_000_000.0 / busyNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return cached ? name + " (cache)" : name + " " + Math.round(perSecond()) + "/s";
+        }
+    }
+
+    /**
+     * Fila limitada entre dois estágios. Espera em fatias curtas para abortar assim que outro estágio falha.
+     */
+    private static final class Pipe<T> {
+        private static final Object END = new Object();
+
+        private final BlockingQueue<Object> queue;
+        private final AtomicReference<Throwable> failure;
+
+        private Pipe(int capacity, AtomicReference<Throwable> failure) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.failure = failure;
+        }
+
+        void put(T item) throws InterruptedException {
+            offer(item);
+        }
+
+        void close() throws InterruptedException {
+            offer(END);
+        }
+
+        /**
+         * Próximo item, ou null quando o estágio anterior terminou.
+         */
+        @SuppressWarnings("unchecked")
+        T take() throws InterruptedException {
+            while (true) {
+                Object next = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (next == END) {
+                    return null;
+                }
+                if (next != null) {
+                    return (T) next;
+                }
+                abortIfFailed();
+            }
+        }
+
+        private void offer(Object item) throws InterruptedException {
+            while (!queue.offer(item, POLL_MS, TimeUnit.MILLISECONDS)) {
+                abortIfFailed();
+            }
+        }
+
+        private void abortIfFailed() {
+            if (failure.get() != null) {
+                throw new CancellationException("Pipeline abortado por falha em outro estágio");
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package br.com.fereformada.api.service;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Extração de texto de PDF em paralelo, com cache em disco.
+ * <p>
+ * O intervalo de páginas é dividido em faixas extraídas ao mesmo tempo (um PDDocument por faixa:
+ * o PDFBox não é thread-safe). O texto vai para um arquivo cuja chave é o SHA-256 do PDF + o intervalo,
+ * então uma nova ingestão do mesmo arquivo nem abre o PDF.
+ */
+@Component
+public class PdfTextExtractor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfTextExtractor.class);
+
+    /**
+     * Texto extraído (arquivo UTF-8 no cache) + como foi obtido.
+     */
+    public record Extraction(Path textFile, String sha256, int pages, boolean cached, long elapsedMillis) {
+        public double pagesPerSecond() {
+            return elapsedMillis > 0 ? pages * 1000.0 / elapsedMillis : 0;
+        }
+    }
+
+    private final ResourceLoader resourceLoader;
+    private final Path cacheDir;
+    private final int pagesPerRange;
+    private final int threads;
+
+    public PdfTextExtractor(ResourceLoader resourceLoader,
+                            @Value("${fereformada.pdf.cache-dir:${java.io.tmpdir}/fereformada-pdf-cache}") String cacheDir,
+                            @Value("${fereformada.pdf.pages-per-range:24}") int pagesPerRange,
+                            @Value("${fereformada.pdf.extract-threads:0}") int threads) {
+        this.resourceLoader = resourceLoader;
+        this.cacheDir = Path.of(cacheDir);
+        this.pagesPerRange = Math.max(1, pagesPerRange);
+        // 0 = um por núcleo (extração é CPU pura)
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Extrai (ou reaproveita do cache) o texto das páginas {@code startPage..endPage} (1-based, inclusivas;
+     * {@code endPage} além do fim = até a última página).
+     */
+    public Extraction extract(String resourcePath, int startPage, int endPage) throws IOException {
+        long startNanos = System.nanoTime();
+        byte[] pdfBytes = readResource(resourcePath);
+        String sha256 = sha256(pdfBytes);
+        Path cached = cacheDir.resolve(sha256 + "-p" + startPage + "-" + (endPage == Integer.MAX_VALUE ? "end" : endPage) + ".txt");
+
+        if (Files.exists(cached)) {
+            logger.info("📄 Texto de {} reaproveitado do cache ({}).", resourcePath, cached.getFileName());
+            return new Extraction(cached, sha256, 0, true, elapsedMillis(startNanos));
+        }
+
+        int lastPage;
+        try (PDDocument document = Loader.loadPDF(pdfBytes)) {
+            lastPage = Math.min(endPage, document.getNumberOfPages());
+        }
+        int firstPage = Math.max(1, startPage);
+        if (lastPage < firstPage) {
+            throw new IllegalArgumentException("Intervalo de páginas vazio para " + resourcePath
+                    + ": " + startPage + ".." + endPage);
+        }
+
+        List<String> ranges = extractRanges(pdfBytes, firstPage, lastPage);
+
+        // Grava num temporário e move: leitores concorrentes nunca veem um arquivo pela metade
+        Files.createDirectories(cacheDir);
+        Path tmp = Files.createTempFile(cacheDir, sha256, ".part");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (String text : ranges) {
+                writer.write(text);
+            }
+        }
+        Files.move(tmp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        int pages = lastPage - firstPage + 1;
+        Extraction extraction = new Extraction(cached, sha256, pages, false, elapsedMillis(startNanos));
+        logger.info("📄 {} páginas de {} extraídas em {} ms ({} faixas, {} threads, {} pág/s).",
+                pages, resourcePath, extraction.elapsedMillis(), ranges.size(), threads,
+                Math.round(extraction.pagesPerSecond()));
+        return extraction;
+    }
+
+    // ===== HELPERS =====
+
+    private List<String> extractRanges(byte[] pdfBytes, int firstPage, int lastPage) throws IOException {
+        List<Future<String>> futures = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, (lastPage - firstPage) / pagesPerRange + 1));
+        try {
+            for (int from = firstPage; from <= lastPage; from += pagesPerRange) {
+                int rangeStart = from;
+                int rangeEnd = Math.min(lastPage, from + pagesPerRange - 1);
+                futures.add(pool.submit(() -> extractRange(pdfBytes, rangeStart, rangeEnd)));
+            }
+            List<String> texts = new ArrayList<>(futures.size());
+            for (Future<String> future : futures) {
+                texts.add(future.get());
+            }
+            return texts;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Extração interrompida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Falha ao extrair texto do PDF", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static String extractRange(byte[] pdfBytes, int startPage, int endPage) throws IOException {
+        try (PDDocument document = Loader.loadPDF(pdfBytes)) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            stripper.setStartPage(startPage);
+            stripper.setEndPage(endPage);
+            return stripper.getText(document);
+        }
+    }
+
+    private byte[] readResource(String resourcePath) throws IOException {
+        Resource resource = resourceLoader.getResource(resourcePath);
+        try (InputStream is = resource.getInputStream()) {
+            return is.readAllBytes();
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
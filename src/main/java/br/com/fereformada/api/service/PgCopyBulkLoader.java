@@ -0,0 +1,377 @@
+package br.com.fereformada.api.service;
+
+import com.pgvector.PGvector;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Carga em massa via COPY binário do PostgreSQL (CopyManager).
+ * <p>
+ * As linhas (com vetores em formato binário do pgvector, sem passar por texto) são copiadas
+ * para tabelas temporárias de staging e depois mescladas nas tabelas reais com um INSERT ... SELECT,
+ * tudo na mesma transação. Os ids de content_chunks são pré-alocados da sequence, então
+ * chunk_topics também pode ir por COPY.
+ * <p>
+ * Fora do PostgreSQL (H2 no dev) cai para batch JDBC: os chunks vão pelo {@link ChunkBatchWriter#insertBatch}
+ * (um único batch com chaves geradas, ids na ordem das linhas) e as notas por um batchUpdate.
+ */
+@Component
+public class PgCopyBulkLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(PgCopyBulkLoader.class);
+
+    /**
+     * Linha de nota de estudo pronta para carga.
+     */
+    public record NoteInsert(String source,
+                             String book,
+                             Integer startChapter,
+                             Integer startVerse,
+                             Integer endChapter,
+                             Integer endVerse,
+                             String noteContent,
+                             float[] noteVector) {
+    }
+
+    /**
+     * Resultado de uma carga: quantas linhas, em quanto tempo e por qual caminho.
+     */
+    public record LoadReport(String table, int rows, long elapsedMillis, double rowsPerSecond, String mode,
+                             List<Long> ids) {
+    }
+
+    private static final String CHUNK_COLUMNS = "id, work_id, chapter_title, chapter_number, section_title, section_number, " +
+            "subsection_title, sub_subsection_title, question, content, content_vector, question_vector";
+    private static final String NOTE_COLUMNS = "source, book, start_chapter, start_verse, end_chapter, end_verse, " +
+            "note_content, note_vector";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChunkBatchWriter chunkBatchWriter;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, LoadReport> lastReports = new ConcurrentHashMap<>();
+
+    public PgCopyBulkLoader(JdbcTemplate jdbcTemplate, ChunkBatchWriter chunkBatchWriter, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkBatchWriter = chunkBatchWriter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Carrega chunks (e seus tópicos) numa única transação. Retorna os ids na ordem das linhas.
+     */
+    @Transactional
+    public LoadReport loadChunks(List<ChunkBatchWriter.ChunkInsert> rows) {
+        if (rows.isEmpty()) {
+            return new LoadReport("content_chunks", 0, 0, 0, "none", List.of());
+        }
+        long start = System.nanoTime();
+
+        if (!chunkBatchWriter.isPostgres()) {
+            // H2: um batch JDBC só, com os ids gerados devolvidos pelo driver
+            List<Long> ids = chunkBatchWriter.insertBatch(rows);
+            return report("content_chunks", rows.size(), start, "batch", ids);
+        }
+
+        List<Long> ids = chunkBatchWriter.allocateIds("content_chunks", rows.size());
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            prepareStaging(connection, "staging_content_chunks", "content_chunks");
+            prepareStaging(connection, "staging_chunk_topics", "chunk_topics");
+
+            copyIn(connection, "COPY staging_content_chunks (" + CHUNK_COLUMNS + ") FROM STDIN (FORMAT binary)", out -> {
+                for (int i = 0; i < rows.size(); i++) {
+                    ChunkBatchWriter.ChunkInsert row = rows.get(i);
+                    out.beginRow(12);
+                    out.writeLong(ids.get(i));
+                    out.writeLong(row.workId());
+                    out.writeText(row.chapterTitle());
+                    out.writeInt(row.chapterNumber());
+                    out.writeText(row.sectionTitle());
+                    out.writeInt(row.sectionNumber());
+                    out.writeText(row.subsectionTitle());
+                    out.writeText(row.subSubsectionTitle());
+                    out.writeText(row.question());
+                    out.writeText(row.content());
+                    out.writeVector(row.contentVector());
+                    out.writeVector(row.questionVector());
+                }
+            });
+
+            copyIn(connection, "COPY staging_chunk_topics (chunk_id, topic_id) FROM STDIN (FORMAT binary)", out -> {
+                for (int i = 0; i < rows.size(); i++) {
+                    Collection<Long> topicIds = rows.get(i).topicIds();
+                    if (topicIds == null) {
+                        continue;
+                    }
+                    for (Long topicId : topicIds) {
+                        out.beginRow(2);
+                        out.writeLong(ids.get(i));
+                        out.writeLong(topicId);
+                    }
+                }
+            });
+
+            try (var statement = connection.createStatement()) {
+                statement.executeUpdate("INSERT INTO content_chunks (" + CHUNK_COLUMNS + ") " +
+                        "SELECT " + CHUNK_COLUMNS + " FROM staging_content_chunks");
+                statement.executeUpdate("INSERT INTO chunk_topics (chunk_id, topic_id) " +
+                        "SELECT chunk_id, topic_id FROM staging_chunk_topics");
+            }
+            return null;
+        });
+
+        return report("content_chunks", rows.size(), start, "copy", ids);
+    }
+
+    /**
+     * Carrega notas de estudo numa única transação.
+     */
+    @Transactional
+    public LoadReport loadNotes(List<NoteInsert> rows) {
+        if (rows.isEmpty()) {
+            return new LoadReport("study_notes", 0, 0, 0, "none", List.of());
+        }
+        long start = System.nanoTime();
+
+        if (!chunkBatchWriter.isPostgres()) {
+            insertNotesInBatch(rows);
+            return report("study_notes", rows.size(), start, "batch", List.of());
+        }
+
+        // A staging (LIKE) não herda a identity: os ids vêm da sequence da tabela real
+        List<Long> ids = chunkBatchWriter.allocateIds("study_notes", rows.size());
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            prepareStaging(connection, "staging_study_notes", "study_notes");
+
+            copyIn(connection, "COPY staging_study_notes (id, " + NOTE_COLUMNS + ") FROM STDIN (FORMAT binary)", out -> {
+                for (int i = 0; i < rows.size(); i++) {
+                    NoteInsert row = rows.get(i);
+                    out.beginRow(9);
+                    out.writeLong(ids.get(i));
+                    out.writeText(row.source());
+                    out.writeText(row.book());
+                    out.writeInt(row.startChapter());
+                    out.writeInt(row.startVerse());
+                    out.writeInt(row.endChapter());
+                    out.writeInt(row.endVerse());
+                    out.writeText(row.noteContent());
+                    out.writeVector(row.noteVector());
+                }
+            });
+
+            try (var statement = connection.createStatement()) {
+                statement.executeUpdate("INSERT INTO study_notes (id, " + NOTE_COLUMNS + ") " +
+                        "SELECT id, " + NOTE_COLUMNS + " FROM staging_study_notes");
+            }
+            return null;
+        });
+
+        return report("study_notes", rows.size(), start, "copy", ids);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lastReports.forEach((table, report) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("rows", report.rows());
+            entry.put("elapsedMs", report.elapsedMillis());
+            entry.put("rowsPerSecond", report.rowsPerSecond());
+            entry.put("mode", report.mode());
+            stats.put(table, entry);
+        });
+        return stats;
+    }
+
+    // ===== STAGING / COPY =====
+
+    /**
+     * Tabela temporária com a mesma estrutura (tipos, inclusive vector) da tabela real,
+     * descartada no commit. Se já existir nesta transação, é esvaziada.
+     */
+    private static void prepareStaging(Connection connection, String staging, String liveTable) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute("CREATE TEMP TABLE IF NOT EXISTS " + staging +
+                    " (LIKE " + liveTable + " INCLUDING DEFAULTS) ON COMMIT DROP");
+            statement.execute("TRUNCATE " + staging);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(BinaryCopyWriter out) throws IOException;
+    }
+
+    private static void copyIn(Connection connection, String sql, RowWriter rows) throws SQLException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+        try {
+            BinaryCopyWriter out = new BinaryCopyWriter(copyIn);
+            rows.write(out);
+            out.finish();
+            copyIn.endCopy();
+        } catch (IOException | SQLException | RuntimeException e) {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+            throw e instanceof SQLException sqlError ? sqlError : new SQLException("Falha no COPY: " + e.getMessage(), e);
+        }
+    }
+
+    // ===== FALLBACK (H2) =====
+
+    private void insertNotesInBatch(List<NoteInsert> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO study_notes (" + NOTE_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        NoteInsert row = rows.get(i);
+                        ps.setString(1, row.source());
+                        ps.setString(2, row.book());
+                        setInteger(ps, 3, row.startChapter());
+                        setInteger(ps, 4, row.startVerse());
+                        setInteger(ps, 5, row.endChapter());
+                        setInteger(ps, 6, row.endVerse());
+                        ps.setString(7, row.noteContent());
+                        if (row.noteVector() == null) {
+                            ps.setNull(8, Types.VARCHAR);
+                        } else {
+                            ps.setString(8, new PGvector(row.noteVector()).toString());
+                        }
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows.size();
+                    }
+                });
+    }
+
+    private static void setInteger(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.INTEGER);
+        } else {
+            ps.setInt(index, value);
+        }
+    }
+
+    private LoadReport report(String table, int rows, long startNanos, String mode, List<Long> ids) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        double rowsPerSecond = elapsedNanos <= 0 ? 0 : rows / (elapsedNanos / 1_000_000_000.0);
+        LoadReport report = new LoadReport(table, rows, elapsedNanos / 1_000_000, rowsPerSecond, mode, ids);
+        lastReports.put(table, report);
+        Counter.builder("bulkload.rows").tag("table", table).tag("mode", mode).register(meterRegistry).increment(rows);
+        logger.info("📦 Carga em massa ({}) em {}: {} linhas em {} ms ({} linhas/s).", mode, table, rows,
+                report.elapsedMillis(), String.format(Locale.ROOT, "%.0f", rowsPerSecond));
+        return report;
+    }
+
+    /**
+     * Codificador do formato binário do COPY (cabeçalho PGCOPY, tuplas, trailer),
+     * com buffer que descarrega no CopyIn a cada 64 KB.
+     */
+    static final class BinaryCopyWriter {
+
+        private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+        private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+        private final CopyIn copyIn;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(FLUSH_THRESHOLD * 2);
+        private final DataOutputStream data = new DataOutputStream(buffer);
+
+        BinaryCopyWriter(CopyIn copyIn) throws IOException {
+            this.copyIn = copyIn;
+            data.write(SIGNATURE);
+            data.writeInt(0); // flags
+            data.writeInt(0); // tamanho da extensão do cabeçalho
+        }
+
+        void beginRow(int fieldCount) throws IOException {
+            flushIfNeeded();
+            data.writeShort(fieldCount);
+        }
+
+        void writeLong(Long value) throws IOException {
+            if (value == null) {
+                data.writeInt(-1);
+                return;
+            }
+            data.writeInt(8);
+            data.writeLong(value);
+        }
+
+        void writeInt(Integer value) throws IOException {
+            if (value == null) {
+                data.writeInt(-1);
+                return;
+            }
+            data.writeInt(4);
+            data.writeInt(value);
+        }
+
+        void writeText(String value) throws IOException {
+            if (value == null) {
+                data.writeInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+
+        /**
+         * Formato binário do pgvector (vector_recv): int16 dimensões, int16 reservado, float4[].
+         */
+        void writeVector(float[] vector) throws IOException {
+            if (vector == null) {
+                data.writeInt(-1);
+                return;
+            }
+            data.writeInt(4 + 4 * vector.length);
+            data.writeShort(vector.length);
+            data.writeShort(0);
+            for (float v : vector) {
+                data.writeFloat(v);
+            }
+        }
+
+        void finish() throws IOException, SQLException {
+            data.writeShort(-1); // trailer
+            flush();
+        }
+
+        private void flushIfNeeded() throws IOException {
+            if (buffer.size() >= FLUSH_THRESHOLD) {
+                try {
+                    flush();
+                } catch (SQLException e) {
+                    throw new IOException(e);
+                }
+            }
+        }
+
+        private void flush() throws SQLException {
+            if (buffer.size() > 0) {
+                copyIn.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+                buffer.reset();
+            }
+        }
+    }
+}
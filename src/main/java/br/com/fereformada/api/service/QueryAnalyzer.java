@@ -15,6 +15,7 @@ public class QueryAnalyzer {
     private static final Logger logger = LoggerFactory.getLogger(QueryAnalyzer.class);
     private final GeminiApiClient geminiClient;
     private final ObjectMapper objectMapper;
+    private final LlmUsageTracker usageTracker;
 
     // Prompt de sistema otimizado para o seu modelo de dados
     private static final String SYSTEM_PROMPT = """
@@ -52,9 +53,10 @@ public class QueryAnalyzer {
             - Resposta: {{}}
             """;
 
-    public QueryAnalyzer(GeminiApiClient geminiClient, ObjectMapper objectMapper) {
+    public QueryAnalyzer(GeminiApiClient geminiClient, ObjectMapper objectMapper, LlmUsageTracker usageTracker) {
         this.geminiClient = geminiClient;
         this.objectMapper = objectMapper;
+        this.usageTracker = usageTracker;
     }
 
     /**
@@ -62,9 +64,14 @@ public class QueryAnalyzer {
      *
      * @param userQuery   A pergunta do usuário (ex: "O que diz na CFW Cap 1?")
      * @param chatHistory O histórico do chat (para contexto)
-     * @return um objeto MetadataFilter preenchido.
+     * @return um objeto MetadataFilter preenchido (vazio em caso de falha ou sem orçamento de LLM).
      */
     public MetadataFilter extractFilters(String userQuery, List<br.com.fereformada.api.model.Mensagem> chatHistory) {
+        int promptChars = SYSTEM_PROMPT.length() + userQuery.length()
+                + chatHistory.stream().mapToInt(m -> m.getContent().length()).sum();
+        if (!usageTracker.allowOptional("analyzer", promptChars, 50)) {
+            return new MetadataFilter(null, null, null, null);
+        }
         try {
             // Usar o método generateContent que você já tem
             // NOTA: Talvez você precise criar um método no GeminiApiClient
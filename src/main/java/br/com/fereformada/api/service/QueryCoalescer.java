@@ -0,0 +1,129 @@
+package br.com.fereformada.api.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * "Single-flight" para o pipeline RAG: quando várias requisições idênticas chegam ao mesmo tempo,
+ * apenas a primeira (líder) executa o trabalho caro; as demais aguardam e reutilizam o resultado.
+ * <p>
+ * O resultado compartilhado nunca deve conter estado por usuário (ex: messageId) — cada chamador
+ * persiste a sua própria mensagem depois.
+ * <p>
+ * A espera dos seguidores é limitada ({@code fereformada.query.coalescing.wait-timeout-ms}): se o líder
+ * travar, cada seguidor desiste do resultado compartilhado e executa a consulta por conta própria.
+ */
+@Component
+public class QueryCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryCoalescer.class);
+
+    /**
+     * @param leader true quando esta chamada executou o supplier (como líder ou depois de desistir de esperar)
+     */
+    public record Outcome<T>(T value, boolean leader) {
+    }
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter leaderCounter;
+    private final Counter coalescedCounter;
+    private final Counter failedCounter;
+    private final Counter timeoutCounter;
+    private final long waitTimeoutMs;
+
+    public QueryCoalescer(MeterRegistry meterRegistry,
+                          @Value("${fereformada.query.coalescing.wait-timeout-ms:30000}") long waitTimeoutMs) {
+        this.waitTimeoutMs = Math.max(1, waitTimeoutMs);
+        this.leaderCounter = Counter.builder("rag.query.coalescing")
+                .description("Requisições que executaram o pipeline RAG (líderes)")
+                .tag("role", "leader")
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("rag.query.coalescing")
+                .description("Requisições que reaproveitaram o resultado de um líder em andamento")
+                .tag("role", "coalesced")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("rag.query.coalescing.failures")
+                .description("Execuções de líder que terminaram com exceção")
+                .register(meterRegistry);
+        this.timeoutCounter = Counter.builder("rag.query.coalescing.timeouts")
+                .description("Seguidores que desistiram de esperar o líder e executaram a consulta sozinhos")
+                .register(meterRegistry);
+        meterRegistry.gaugeMapSize("rag.query.coalescing.inflight", Tags.empty(), inFlight);
+    }
+
+    /**
+     * Executa o supplier uma única vez por chave entre as chamadas concorrentes.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Outcome<T> execute(String key, Supplier<T> supplier) {
+        CompletableFuture<Object> myFuture = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, myFuture);
+
+        if (existing != null) {
+            coalescedCounter.increment();
+            logger.info("🔗 Requisição idêntica em andamento. Aguardando resultado compartilhado...");
+            try {
+                return new Outcome<>((T) existing.get(waitTimeoutMs, TimeUnit.MILLISECONDS), false);
+            } catch (ExecutionException e) {
+                throw unwrap(e.getCause());
+            } catch (TimeoutException e) {
+                timeoutCounter.increment();
+                logger.warn("⏱️ Líder não terminou em {} ms. Executando a consulta de forma independente.", waitTimeoutMs);
+                return new Outcome<>(supplier.get(), true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Espera pelo resultado compartilhado interrompida", e);
+            }
+        }
+
+        leaderCounter.increment();
+        try {
+            T value = supplier.get();
+            myFuture.complete(value);
+            return new Outcome<>(value, true);
+        } catch (RuntimeException | Error e) {
+            failedCounter.increment();
+            myFuture.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, myFuture);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("leaders", (long) leaderCounter.count());
+        stats.put("coalesced", (long) coalescedCounter.count());
+        stats.put("failures", (long) failedCounter.count());
+        stats.put("waitTimeouts", (long) timeoutCounter.count());
+        stats.put("waitTimeoutMs", waitTimeoutMs);
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+
+    private RuntimeException unwrap(Throwable cause) {
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new CompletionException(cause);
+    }
+}
@@ -0,0 +1,137 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.dto.ContextItem;
+import br.com.fereformada.api.dto.MetadataFilter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detalhe da recuperação de uma requisição amostrada (ou de um replay do endpoint de explain):
+ * sub-queries do roteador, filtro, e para cada busca híbrida a ragQuery, os candidatos de cada ramo
+ * (vetor/FTS) com score, os boosts aplicados no reranking e a ordem final.
+ * <p>
+ * Só existe quando o {@link QueryTrace} foi amostrado: fora disso o QueryService não monta nada.
+ */
+public final class QueryExplain {
+
+    public record Candidate(String key, Long id, String type, String label, double score) {
+        static Candidate of(ContextItem item) {
+            return new Candidate(item.sourceType() + ":" + item.originalId(), item.originalId(), item.sourceType(),
+                    item.referenceLabel(), item.similarityScore());
+        }
+    }
+
+    /**
+     * Score antes e depois do {@code applySmartBoosts}, com os boosts que valeram.
+     */
+    public record Boost(String key, String label, double baseScore, double finalScore, List<String> applied) {
+    }
+
+    /**
+     * Uma busca híbrida (uma por pergunta simples; uma por sub-query nas complexas).
+     */
+    public static final class Search {
+        private final String ragQuery;
+        private final MetadataFilter filter;
+        private final Map<String, List<Candidate>> branches = new LinkedHashMap<>();
+        private final List<Boost> boosts = new ArrayList<>();
+        private List<Candidate> ranked = List.of();
+        private boolean fromCache;
+
+        Search(String ragQuery, MetadataFilter filter) {
+            this.ragQuery = ragQuery;
+            this.filter = filter;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("ragQuery", ragQuery);
+            map.put("filter", filter);
+            map.put("fromCache", fromCache);
+            map.put("branches", branches);
+            map.put("boosts", boosts);
+            map.put("ranked", ranked);
+            return map;
+        }
+    }
+
+    private String question;
+    private List<String> subQueries = List.of();
+    private MetadataFilter filter;
+    private String filterSource;
+    private String ragQuery;
+    private final List<Search> searches = new ArrayList<>();
+    private List<Candidate> finalOrder = List.of();
+
+    public synchronized String getQuestion() {
+        return question;
+    }
+
+    public synchronized void question(String question) {
+        this.question = question;
+    }
+
+    public synchronized void subQueries(List<String> queries) {
+        this.subQueries = new ArrayList<>(queries);
+    }
+
+    /**
+     * @param source de onde veio o filtro: {@code regex} (busca rápida de acrônimo) ou {@code llm} (QueryAnalyzer)
+     */
+    public synchronized void filter(MetadataFilter filter, String source) {
+        this.filter = filter;
+        this.filterSource = source;
+    }
+
+    public synchronized void ragQuery(String ragQuery) {
+        this.ragQuery = ragQuery;
+    }
+
+    public synchronized void beginSearch(String ragQuery, MetadataFilter filter) {
+        searches.add(new Search(ragQuery, filter));
+    }
+
+    public synchronized void searchFromCache() {
+        currentSearch().fromCache = true;
+    }
+
+    public synchronized void branch(String name, List<ContextItem> items) {
+        List<Candidate> candidates = currentSearch().branches.computeIfAbsent(name, key -> new ArrayList<>());
+        items.forEach(item -> candidates.add(Candidate.of(item)));
+    }
+
+    public synchronized void boost(ContextItem before, ContextItem after, List<String> applied) {
+        currentSearch().boosts.add(new Boost(before.sourceType() + ":" + before.originalId(), before.referenceLabel(),
+                before.similarityScore(), after.similarityScore(), applied));
+    }
+
+    public synchronized void ranked(List<ContextItem> items) {
+        currentSearch().ranked = items.stream().map(Candidate::of).toList();
+    }
+
+    public synchronized void finalOrder(List<ContextItem> items) {
+        this.finalOrder = items.stream().map(Candidate::of).toList();
+    }
+
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("question", question);
+        map.put("subQueries", subQueries);
+        map.put("filter", filter);
+        map.put("filterSource", filterSource);
+        map.put("ragQuery", ragQuery);
+        map.put("searches", searches.stream().map(Search::toMap).toList());
+        map.put("finalOrder", finalOrder);
+        return map;
+    }
+
+    private Search currentSearch() {
+        if (searches.isEmpty()) {
+            searches.add(new Search(ragQuery, filter));
+        }
+        return searches.get(searches.size() - 1);
+    }
+}
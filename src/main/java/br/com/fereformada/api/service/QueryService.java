@@ -1,6 +1,7 @@
 package br.com.fereformada.api.service;
 
 import br.com.fereformada.api.dto.*;
+import br.com.fereformada.api.exception.LlmUnavailableException;
 import br.com.fereformada.api.model.*;
 import br.com.fereformada.api.repository.*;
 import br.com.fereformada.api.repository.MensagemRepository;
@@ -10,6 +11,7 @@ import com.pgvector.PGvector;
 import jakarta.persistence.EntityNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -34,6 +36,15 @@ public class QueryService {
     private final Map<String, PGvector> embeddingCache = new ConcurrentHashMap<>();
     private static final int MAX_CACHE_SIZE = 100;
     private static final int MAX_EMBEDDING_CACHE_SIZE = 500;
+    private static final int EXTRACTIVE_ANSWER_MAX_ITEMS = 3;
+
+    /**
+     * Obras conhecidas: regex de referência direta ("CFW 1.2"), grupo do regex -> sigla e nome/título -> sigla
+     * (mais longo primeiro).
+     */
+    private record WorkCatalog(Pattern confessionalPattern, Map<Integer, String> regexGroupToAcronymMap,
+                               Map<String, String> workLookupMap) {
+    }
 
 
     // ===== STOP WORDS EM PORTUGUÊS =====
@@ -54,11 +65,15 @@ public class QueryService {
     private final QueryAnalyzer queryAnalyzer;
     private final ObjectMapper objectMapper;
     private final TheologicalSynonymRepository synonymRepository;
-    private final Pattern confessionalPattern;
-    private final Map<Integer, String> regexGroupToAcronymMap;
-    private final Map<String, String> workLookupMap;
+    // Catálogo de obras + regex de busca direta: montado no warm-up (StartupWarmup), não no construtor
+    private volatile WorkCatalog workCatalog;
     private final ParameterNamesModule parameterNamesModule;
     private final ConversaRepository conversaRepository;
+    private final RetrievalCache retrievalCache;
+    private final QueryCoalescer queryCoalescer;
+    private final boolean coalescingEnabled;
+    private final QueryTracer queryTracer;
+    private final LlmUsageTracker usageTracker;
 
     public QueryService(ContentChunkRepository contentChunkRepository,
                         StudyNoteRepository studyNoteRepository,
@@ -67,7 +82,10 @@ public class QueryService {
                         MensagemRepository mensagemRepository,
                         QueryAnalyzer queryAnalyzer,
                         ObjectMapper objectMapper,
-                        TheologicalSynonymRepository synonymRepository, ParameterNamesModule parameterNamesModule, ConversaRepository conversaRepository) {
+                        TheologicalSynonymRepository synonymRepository, ParameterNamesModule parameterNamesModule, ConversaRepository conversaRepository,
+                        RetrievalCache retrievalCache, QueryCoalescer queryCoalescer,
+                        @Value("${fereformada.query.coalescing.enabled:true}") boolean coalescingEnabled,
+                        QueryTracer queryTracer, LlmUsageTracker usageTracker) {
 
         this.contentChunkRepository = contentChunkRepository;
         this.studyNoteRepository = studyNoteRepository;
@@ -78,11 +96,41 @@ public class QueryService {
         this.objectMapper = objectMapper;
         this.synonymRepository = synonymRepository;
         this.conversaRepository = conversaRepository;
+        this.retrievalCache = retrievalCache;
+        this.queryCoalescer = queryCoalescer;
+        this.coalescingEnabled = coalescingEnabled;
+        this.queryTracer = queryTracer;
+        this.usageTracker = usageTracker;
+        this.parameterNamesModule = parameterNamesModule;
+    }
 
+    /**
+     * Monta o catálogo de obras e o regex de busca direta (uma leitura de works). Chamado pelo warm-up
+     * depois que a aplicação sobe; se uma consulta chegar antes, ela mesma monta (uma vez só).
+     */
+    public void warmUp() {
+        catalog();
+    }
+
+    private WorkCatalog catalog() {
+        WorkCatalog catalog = workCatalog;
+        if (catalog == null) {
+            synchronized (this) {
+                catalog = workCatalog;
+                if (catalog == null) {
+                    catalog = buildWorkCatalog();
+                    workCatalog = catalog;
+                }
+            }
+        }
+        return catalog;
+    }
+
+    private WorkCatalog buildWorkCatalog() {
         // INÍCIO DA LÓGICA DE CONSTRUÇÃO DO REGEX DINÂMICO
         List<Work> allWorks = workRepository.findAll();
         StringBuilder regexBuilder = new StringBuilder("\\b(?:");
-        this.regexGroupToAcronymMap = new HashMap<>();
+        Map<Integer, String> regexGroupToAcronymMap = new HashMap<>();
 
         // ======================================================
         // 🚀 1. LÓGICA DO MAPA DE BUSCA (Existente)
@@ -120,7 +168,7 @@ public class QueryService {
             // --- Lógica existente do Regex (Perfeita!) ---
             String regexFragment = Pattern.quote(acronym);
             // ... (resto da lógica de 'regexBuilder.append') ...
-            this.regexGroupToAcronymMap.put(groupIndex, acronym);
+            regexGroupToAcronymMap.put(groupIndex, acronym);
             groupIndex++;
         }
 
@@ -129,7 +177,7 @@ public class QueryService {
         // ======================================================
         // A sua lógica de ordenação (pelo mais longo primeiro) é crucial
         // e já resolve o resto do problema.
-        this.workLookupMap = tempLookupMap.entrySet().stream()
+        Map<String, String> workLookupMap = tempLookupMap.entrySet().stream()
                 .sorted(Map.Entry.comparingByKey(Comparator.comparingInt(String::length).reversed()))
                 .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue,
                         (e1, e2) -> e1, LinkedHashMap::new));
@@ -143,24 +191,72 @@ public class QueryService {
         regexBuilder.append("(\\d+)"); // Grupo N+1 (Capítulo)
         regexBuilder.append("(?:[:.](\\d+))?"); // Grupo N+2 (Seção)
 
-        this.confessionalPattern = Pattern.compile(regexBuilder.toString(), Pattern.CASE_INSENSITIVE);
+        Pattern confessionalPattern = Pattern.compile(regexBuilder.toString(), Pattern.CASE_INSENSITIVE);
 
-        logger.info("Regex de busca direta 100% dinâmico construído com {} obras.", this.regexGroupToAcronymMap.size());
+        logger.info("Regex de busca direta 100% dinâmico construído com {} obras.", regexGroupToAcronymMap.size());
         // FIM DA LÓGICA DE CONSTRUÇÃO DO REGEX
-        this.parameterNamesModule = parameterNamesModule;
+        return new WorkCatalog(confessionalPattern, regexGroupToAcronymMap, workLookupMap);
     }
 
 
     public QueryServiceResult query(ChatRequest request) {
+        return query(request, request.chatId() == null);
+    }
+
+    /**
+     * @param freshConversation a conversa não tem histórico além da pergunta atual (o ChatController acabou de
+     *                          criá-la); só assim a pergunta pode ser coalescida com a de outros usuários
+     */
+    public QueryServiceResult query(ChatRequest request, boolean freshConversation) {
+        UUID chatId = request.chatId();
+
+        if (!coalescingEnabled || !freshConversation || queryTracer.isReplay()) {
+            return executeQuery(request);
+        }
+
+        // ======================================================
+        // SINGLE-FLIGHT: perguntas idênticas e concorrentes, sem histórico,
+        // compartilham uma única execução do pipeline (rodado sem chatId).
+        // Cada chamador salva a sua própria mensagem e recebe o seu messageId.
+        // ======================================================
+        long waitStart = System.nanoTime();
+        QueryCoalescer.Outcome<QueryServiceResult> outcome = queryCoalescer.execute(
+                normalizeQuestion(request.question()),
+                () -> executeQuery(new ChatRequest(request.question(), null)));
+        if (!outcome.leader()) {
+            // As etapas rodaram no trace do líder; aqui só existe a espera
+            queryTracer.cache("coalesced");
+            queryTracer.record("coalesced.wait", System.nanoTime() - waitStart);
+        }
+
+        QueryServiceResult shared = outcome.value();
+        if (chatId == null) {
+            return shared;
+        }
+
+        UUID messageId = saveAiMessage(chatId, shared.answer(), shared.references());
+        return new QueryServiceResult(shared.answer(), shared.references(), messageId);
+    }
+
+    private QueryServiceResult executeQuery(ChatRequest request) {
 
         String userQuestion = request.question();
         UUID chatId = request.chatId();
         logger.info("Nova pergunta recebida: '{}' (ChatID: {})", userQuestion, chatId);
+        // Detalhe da recuperação, só em requisições amostradas para o log de traces (senão null)
+        QueryExplain explain = queryTracer.explain().orElse(null);
+        if (explain != null) {
+            explain.question(userQuestion);
+        }
 
         // ======================================================
         // TAREFA 2.3: ROTEAMENTO
         // ======================================================
-        QueryRouterResponse route = routeQuery(userQuestion);
+        QueryRouterResponse route = queryTracer.stage("routing", () -> routeQuery(userQuestion));
+        queryTracer.route(route.type());
+        if (explain != null && route.queries() != null) {
+            explain.subQueries(route.queries());
+        }
 
         List<ContextItem> results; // Lista final de fontes
         String ragQuery; // A string de busca efetiva
@@ -174,8 +270,12 @@ public class QueryService {
 
             List<ContextItem> allComplexResults = new ArrayList<>();
 
-            // 1. Executa uma busca híbrida para CADA sub-query
-            for (String subQuery : route.queries()) {
+            // 1. Executa uma busca híbrida para CADA sub-query (a primeira sempre; as demais dentro do orçamento de embeddings)
+            for (int i = 0; i < route.queries().size(); i++) {
+                String subQuery = route.queries().get(i);
+                if (i > 0 && !usageTracker.allowEmbedding("subquery")) {
+                    break;
+                }
                 logger.info("  -> Executando sub-query: '{}'", subQuery);
                 allComplexResults.addAll(performHybridSearch(subQuery, new MetadataFilter(null, null, null, null)));
             }
@@ -193,6 +293,9 @@ public class QueryService {
                     .collect(Collectors.toList());
 
             ragQuery = String.join(" | ", route.queries());
+            if (explain != null) {
+                explain.ragQuery(ragQuery);
+            }
 
         } else {
             // --- CAMINHO B: Pergunta SIMPLES ---
@@ -200,14 +303,17 @@ public class QueryService {
 
             // --- 1. Verificação de Referência Direta (FAST-PATH 1) ---
             // 🚨 ATUALIZAÇÃO: Passamos o chatId para salvar a mensagem imediatamente se encontrar
-            Optional<QueryServiceResult> directResponse = handleDirectReferenceQuery(userQuestion, chatId);
+            Optional<QueryServiceResult> directResponse = queryTracer.stage("direct.reference",
+                    () -> handleDirectReferenceQuery(userQuestion, chatId));
             if (directResponse.isPresent()) {
+                queryTracer.route(QueryTrace.ROUTE_DIRECT);
                 logger.info("✅ Resposta gerada via busca direta por referência (Regex).");
                 return directResponse.get(); // O resultado já contém o messageId
             }
 
             // --- 2. Verificação de Cache (FAST-PATH 2) ---
-            if (responseCache.containsKey(cacheKey)) {
+            if (!queryTracer.isReplay() && responseCache.containsKey(cacheKey)) {
+                queryTracer.cache("response");
                 logger.info("✅ Cache hit para: '{}'", userQuestion);
                 // Nota: Se quiser que o feedback funcione em cache hits, precisaria salvar uma nova mensagem
                 // duplicando o conteúdo do cache. Por simplicidade, retornamos direto.
@@ -216,17 +322,18 @@ public class QueryService {
 
             // --- 3. Carregar Histórico ---
             if (chatId != null) {
-                chatHistory = mensagemRepository.findByConversaIdOrderByCreatedAtAsc(chatId);
+                chatHistory = queryTracer.stage("history", () -> mensagemRepository.findByConversaIdOrderByCreatedAtAsc(chatId));
                 logger.info("Carregado {} mensagens do histórico do chat {}", chatHistory.size(), chatId);
             }
 
             // --- 4. Análise de Pergunta (Híbrida: Regex + LLM) ---
+            long filterStart = System.nanoTime();
             MetadataFilter filter = null;
             String foundAcronym = null;
             String userQuestionLower = userQuestion.toLowerCase();
             String lookupKeyUsed = null;
 
-            for (Map.Entry<String, String> entry : this.workLookupMap.entrySet()) {
+            for (Map.Entry<String, String> entry : catalog().workLookupMap().entrySet()) {
                 String lookupKey = entry.getKey();
                 if (userQuestionLower.contains(lookupKey)) {
                     foundAcronym = entry.getValue();
@@ -242,7 +349,11 @@ public class QueryService {
 
             if (filter == null) {
                 logger.info("Nenhum acrônimo rápido encontrado. Usando QueryAnalyzer (LLM)...");
-                filter = queryAnalyzer.extractFilters(userQuestion, Collections.emptyList());
+                filter = queryTracer.stage("analyzer", () -> queryAnalyzer.extractFilters(userQuestion, Collections.emptyList()));
+            }
+            queryTracer.record("filter", System.nanoTime() - filterStart);
+            if (explain != null) {
+                explain.filter(filter, foundAcronym != null ? "regex" : "llm");
             }
 
             // --- 5. Lógica de Hy-DE e Limpeza de Query ---
@@ -258,7 +369,7 @@ public class QueryService {
                 }
             } else {
                 logger.info("Buscando por (busca semântica pura): '{}'. Aplicando Hy-DE...", userQuestion);
-                ragQuery = generateHypotheticalDocument(userQuestion);
+                ragQuery = queryTracer.stage("hyde", () -> generateHypotheticalDocument(userQuestion));
                 if (ragQuery == null || ragQuery.isBlank()) {
                     logger.warn("⚠️ Falha ao gerar documento hipotético (Hy-DE). Usando a pergunta original.");
                     ragQuery = userQuestion;
@@ -293,8 +404,14 @@ public class QueryService {
             }
 
             // --- 7. Busca Híbrida (Simples) ---
+            if (explain != null) {
+                explain.ragQuery(ragQuery);
+            }
             results = performHybridSearch(ragQuery, filter);
         }
+        if (explain != null) {
+            explain.finalOrder(results);
+        }
 
         // ======================================================
         // FIM DO ROTEAMENTO
@@ -323,13 +440,22 @@ public class QueryService {
                 results.size(), String.format("%.2f", avgScore));
 
         // --- 10. Construção do Prompt e Chamada da IA ---
-        String prompt = buildOptimizedPrompt(userQuestion, results, chatHistory);
+        List<ContextItem> promptItems = results;
+        List<Mensagem> promptHistory = chatHistory;
+        String prompt = queryTracer.stage("prompt", () -> buildOptimizedPrompt(userQuestion, promptItems, promptHistory));
         String aiAnswer;
+        boolean degradedAnswer = false;
         try {
-            aiAnswer = geminiApiClient.generateContent(prompt, chatHistory, userQuestion);
+            aiAnswer = queryTracer.stage("llm", () -> geminiApiClient.generateContent(prompt, promptHistory, userQuestion));
             if (aiAnswer == null || aiAnswer.trim().isEmpty()) {
                 aiAnswer = "Desculpe, não consegui gerar uma resposta. Tente novamente.";
             }
+        } catch (LlmUnavailableException e) {
+            // Circuito aberto / timeout: respondemos de forma extrativa com as melhores fontes
+            logger.warn("⚡ IA indisponível ({}). Respondendo de forma extrativa com {} fontes.",
+                    e.getMessage(), results.size());
+            aiAnswer = buildExtractiveAnswer(results, EXTRACTIVE_ANSWER_MAX_ITEMS);
+            degradedAnswer = true;
         } catch (Exception e) {
             logger.error("❌ Erro API Gemini: {}", e.getMessage());
             String erroMsg = "Desculpe, ocorreu um erro ao tentar processar sua pergunta com a IA. Por favor, tente novamente mais tarde.";
@@ -372,14 +498,41 @@ public class QueryService {
         // --- 12. Construção da Resposta (COM MESSAGE ID) ---
         QueryServiceResult response = new QueryServiceResult(aiAnswer, references, savedMessageId);
 
-        // Cache (opcional)
-        if ("simple".equals(route.type()) && responseCache.size() < MAX_CACHE_SIZE) {
+        // Cache (opcional) - respostas degradadas nunca são cacheadas
+        if (!degradedAnswer && "simple".equals(route.type()) && responseCache.size() < MAX_CACHE_SIZE) {
             responseCache.put(cacheKey, response);
         }
 
         return response;
     }
 
+    /**
+     * Resposta de contingência (sem LLM): apresenta os trechos mais relevantes já recuperados,
+     * na ordem do ranking, sem repetir a mesma fonte.
+     */
+    static String buildExtractiveAnswer(List<ContextItem> items, int maxItems) {
+        StringBuilder answer = new StringBuilder(
+                "O assistente de IA está temporariamente indisponível. Enquanto isso, estes são os trechos " +
+                        "mais relevantes encontrados nas fontes catalogadas:\n\n");
+
+        Set<String> usedSources = new HashSet<>();
+        int added = 0;
+        for (ContextItem item : items) {
+            if (added >= maxItems) break;
+            if (item.content() == null || item.content().isBlank() || !usedSources.add(item.source())) {
+                continue;
+            }
+            String excerpt = item.content().length() > 600 ? item.content().substring(0, 600) + "..." : item.content();
+            answer.append("**").append(item.source()).append("**\n");
+            if (item.hasQuestion()) {
+                answer.append("_").append(item.question()).append("_\n");
+            }
+            answer.append(excerpt.trim()).append("\n\n");
+            added++;
+        }
+        return answer.toString().trim();
+    }
+
     /**
      * TAREFA 2.2 (Hy-DE): Gera uma "resposta hipotética" para perguntas vagas
      * para melhorar a qualidade da busca vetorial.
@@ -393,6 +546,9 @@ public class QueryService {
                 Comece a resposta diretamente, sem introduções.
                 """, userQuestion);
 
+        if (!usageTracker.allowOptional("hyde", hydePrompt.length() + userQuestion.length(), 250)) {
+            return null;
+        }
         try {
             // Chamamos o Gemini com um prompt simples, sem histórico
             return geminiApiClient.generateContent(hydePrompt, Collections.emptyList(), userQuestion);
@@ -440,7 +596,7 @@ public class QueryService {
                 mentionsBiblicalBooks || hasSpecificNames || isShortQuery;
     }
 
-    private Set<String> extractImportantKeywords(String question, Map<String, List<String>> synonymMap) {
+    Set<String> extractImportantKeywords(String question, Map<String, List<String>> synonymMap) {
         Set<String> keywords = new HashSet<>();
         String[] words = question.toLowerCase()
                 .replaceAll("[?!.,;:'\"]", "") // 🚀 CORREÇÃO 1: Remove aspas aqui diretamente
@@ -573,7 +729,7 @@ public class QueryService {
         return item.source() + "_" + item.content().substring(0, Math.min(50, item.content().length()));
     }
 
-    private ContextItem applySmartBoosts(ContextItem item, String question) {
+    ContextItem applySmartBoosts(ContextItem item, String question) {
 
         logger.debug("  Boosting item: '{}' (Score Original: {})",
                 item.source(),
@@ -582,6 +738,9 @@ public class QueryService {
         double finalScore = item.similarityScore();
         double additiveBoost = 0.0; // Boosts secundários
         String questionLower = question.toLowerCase();
+        // Boosts aplicados, anotados só quando a requisição foi amostrada para o log de traces
+        QueryExplain explain = queryTracer.explain().orElse(null);
+        List<String> applied = explain != null ? new ArrayList<>() : null;
 
         // --- 1. LÓGICA DE BOOST PRINCIPAL (Refatorada) ---
 
@@ -590,6 +749,7 @@ public class QueryService {
             // É uma Nota de Estudo (Bíblia), aplicar boost máximo fixo.
             finalScore *= 1.30; // Boost de 30%
             logger.debug("    -> BOOST Bíblia (Fixo) aplicado");
+            if (applied != null) applied.add("biblia x1.30");
 
             // --- COMENTÁRIO PARA IMPLEMENTAÇÃO FUTURA (Como solicitado) ---
             // Se um dia você quiser que as Notas de Estudo tenham prioridades dinâmicas:
@@ -609,14 +769,17 @@ public class QueryService {
                     case 3: // 3 = Nível Bíblia (se você definir)
                         finalScore *= 1.30;
                         logger.debug("    -> BOOST Dinâmico (Nível 3) aplicado");
+                        if (applied != null) applied.add("prioridade3 x1.30");
                         break;
                     case 2: // 2 = Essencial (CFW, Catecismos)
                         finalScore *= 1.20; // Boost de 20%
                         logger.debug("    -> BOOST Dinâmico (Nível 2) aplicado");
+                        if (applied != null) applied.add("prioridade2 x1.20");
                         break;
                     case 1: // 1 = Prioritário (Institutas, Teologia)
                         finalScore *= 1.10; // Boost de 10%
                         logger.debug("    -> BOOST Dinâmico (Nível 1) aplicado");
+                        if (applied != null) applied.add("prioridade1 x1.10");
                         break;
                     case 0: // 0 = Normal (Padrão)
                     default:
@@ -634,6 +797,7 @@ public class QueryService {
 
                 finalScore *= 1.2; // Boost extra de 20% por citação de tipo
                 logger.debug("    -> SUPER BOOST (Tipo de Obra) aplicado");
+                if (applied != null) applied.add("tipoObra x1.20");
             }
         }
 
@@ -643,9 +807,11 @@ public class QueryService {
         if (item.hasQuestion()) { // Usando o método helper do ContextItem
             additiveBoost += 0.03;
             logger.debug("    -> ADD Boost P/R");
+            if (applied != null) applied.add("perguntaResposta +0.03");
             if (calculateSimilarity(item.question().toLowerCase(), questionLower) > 0.7) {
                 additiveBoost += 0.07;
                 logger.debug("    -> ADD Boost P/R Match");
+                if (applied != null) applied.add("perguntaRespostaMatch +0.07");
             }
         }
 
@@ -654,6 +820,7 @@ public class QueryService {
         if (biblicalReferences > 1) {
             additiveBoost += Math.min(biblicalReferences * 0.02, 0.1);
             logger.debug("    -> ADD Boost Refs Bíblicas ({})", biblicalReferences);
+            if (applied != null) applied.add("refsBiblicas(" + biblicalReferences + ") +" + Math.min(biblicalReferences * 0.02, 0.1));
         }
 
         // --- 3. Penalidade (Multiplicativa) (Lógica mantida do seu original) ---
@@ -664,6 +831,7 @@ public class QueryService {
         if (isShort && !isImmuneToPenalty) { // <--- Adicione esta verificação
             finalScore *= 0.9;
             logger.debug("    -> PENALTY Conteúdo Curto");
+            if (applied != null) applied.add("conteudoCurto x0.90");
         }
 
         // --- 4. Aplica Boost Aditivo e Garante Limites (Lógica mantida do seu original) ---
@@ -673,7 +841,11 @@ public class QueryService {
 
         logger.debug("    -> Score Final: {}", String.format("%.3f", finalScore));
 
-        return item.withAdjustedScore(finalScore);
+        ContextItem boosted = item.withAdjustedScore(finalScore);
+        if (explain != null) {
+            explain.boost(item, boosted, applied);
+        }
+        return boosted;
     }
 
     // ===== NOVOS MÉTODOS AUXILIARES =====
@@ -690,13 +862,13 @@ public class QueryService {
                 .anyMatch(question::contains);
     }
 
-    private int countBiblicalReferences(String content) {
+    int countBiblicalReferences(String content) {
         // Contar referências bíblicas no formato "Livro X:Y" ou "X:Y"
         String pattern = "\\b\\d+[:\\.]\\d+(-\\d+)?\\b";
         return (int) content.split(pattern).length - 1;
     }
 
-    private double calculateSimilarity(String text1, String text2) {
+    double calculateSimilarity(String text1, String text2) {
         // Similaridade simples baseada em palavras comuns
         Set<String> words1 = new HashSet<>(Arrays.asList(text1.split("\\s+")));
         Set<String> words2 = new HashSet<>(Arrays.asList(text2.split("\\s+")));
@@ -740,7 +912,7 @@ public class QueryService {
     // ===== BUSCA VETORIAL OTIMIZADA =====
     private List<ContextItem> performVectorSearch(String userQuestion, MetadataFilter filter) {
         // Usar cache de embeddings
-        PGvector questionVector = getOrComputeEmbedding(userQuestion);
+        PGvector questionVector = queryTracer.stage("embedding", () -> getOrComputeEmbedding(userQuestion));
 
         if (questionVector == null) {
             logger.warn("⚠️ Não foi possível gerar embedding para a pergunta");
@@ -752,35 +924,42 @@ public class QueryService {
         // ======================================================
 
         // 1. Buscar Chunks por CONTENT vector
-        List<Object[]> rawContentResults = contentChunkRepository.findSimilarChunksRaw(
+        List<Object[]> rawContentResults = queryTracer.stage("vector.content", () -> contentChunkRepository.findSimilarChunksRaw(
                 questionVector.toString(),
                 5, // Aumente para 10 se quiser mais candidatos
                 filter.obraAcronimo(),
                 filter.capitulo(),
                 filter.secaoOuVersiculo()
-        );
+        ));
         List<ContextItem> contentItems = convertRawChunkResultsToContextItems(rawContentResults);
 
         // 2. Buscar Chunks por QUESTION vector (Nova query)
-        List<Object[]> rawQuestionResults = contentChunkRepository.findSimilarChunksByQuestionVector(
+        List<Object[]> rawQuestionResults = queryTracer.stage("vector.question", () -> contentChunkRepository.findSimilarChunksByQuestionVector(
                 questionVector.toString(),
                 5, // Aumente para 10 se quiser mais candidatos
                 filter.obraAcronimo(),
                 filter.capitulo(),
                 filter.secaoOuVersiculo()
-        );
+        ));
         List<ContextItem> questionItems = convertRawChunkResultsToContextItems(rawQuestionResults);
 
         // 3. Buscar Notas (Lógica existente)
-        List<Object[]> rawNoteResults = studyNoteRepository.findSimilarNotesRaw(
+        List<Object[]> rawNoteResults = queryTracer.stage("vector.notes", () -> studyNoteRepository.findSimilarNotesRaw(
                 questionVector.toString(),
                 5, // Aumente para 10
                 filter.livroBiblico(),
                 filter.capitulo(),
                 filter.secaoOuVersiculo()
-        );
+        ));
         List<ContextItem> noteItems = convertRawNoteResultsToContextItems(rawNoteResults);
 
+        QueryExplain explain = queryTracer.explain().orElse(null);
+        if (explain != null) {
+            explain.branch("vector.content", contentItems);
+            explain.branch("vector.question", questionItems);
+            explain.branch("vector.notes", noteItems);
+        }
+
         // 4. Combinar e retornar todos
         List<ContextItem> combinedItems = new ArrayList<>();
         combinedItems.addAll(contentItems);   // Resultados do Vetor 1
@@ -844,7 +1023,7 @@ public class QueryService {
                 .trim();
     }
 
-    private String buildOptimizedPrompt(String question, List<ContextItem> items, List<Mensagem> chatHistory) {
+    String buildOptimizedPrompt(String question, List<ContextItem> items, List<Mensagem> chatHistory) {
         StringBuilder context = new StringBuilder();
 
         // Set apenas para garantir que não enviamos texto duplicado para a IA ler
@@ -972,6 +1151,7 @@ public class QueryService {
     public void clearCache() {
         responseCache.clear();
         embeddingCache.clear();
+        retrievalCache.clear();
         logger.info("🧹 Cache limpo manualmente");
     }
 
@@ -979,10 +1159,11 @@ public class QueryService {
         Map<String, Integer> stats = new HashMap<>();
         stats.put("responseCacheSize", responseCache.size());
         stats.put("embeddingCacheSize", embeddingCache.size());
+        stats.put("retrievalCacheSize", ((Number) retrievalCache.getStats().get("entries")).intValue());
         return stats;
     }
 
-    private double calculateEnhancedKeywordScore(String content, Set<String> allKeywords, String triggerKeyword) {
+    double calculateEnhancedKeywordScore(String content, Set<String> allKeywords, String triggerKeyword) {
         if (content == null || content.isEmpty()) {
             return 0.0;
         }
@@ -1032,6 +1213,37 @@ public class QueryService {
 
     // ===== NOVO: HYBRID SEARCH COM FTS =====
     private List<ContextItem> performHybridSearch(String userQuestion, MetadataFilter filter) {
+        QueryExplain explain = queryTracer.explain().orElse(null);
+        if (explain != null) {
+            explain.beginSearch(userQuestion, filter);
+        }
+
+        // 0. Cache de recuperação (ragQuery + filtro + versão do corpus); o replay do explain sempre refaz a busca
+        Optional<List<RetrievalCache.CachedHit>> cachedHits = queryTracer.isReplay()
+                ? Optional.empty()
+                : retrievalCache.get(userQuestion, filter);
+        if (cachedHits.isPresent()) {
+            List<ContextItem> rehydrated = queryTracer.stage("retrieval.cache", () -> rehydrateCachedHits(cachedHits.get()));
+            if (rehydrated.size() == cachedHits.get().size()) {
+                queryTracer.cache("retrieval");
+                logger.info("✅ Cache de recuperação hit ({} fontes)", rehydrated.size());
+                if (explain != null) {
+                    explain.searchFromCache();
+                    explain.ranked(rehydrated);
+                }
+                return rehydrated;
+            }
+            logger.warn("⚠️ Cache de recuperação incompleto ({} de {} itens). Refazendo a busca.",
+                    rehydrated.size(), cachedHits.get().size());
+        }
+
+        long corpusVersionAtStart = retrievalCache.currentCorpusVersion();
+        List<ContextItem> results = performUncachedHybridSearch(userQuestion, filter);
+        retrievalCache.put(userQuestion, filter, corpusVersionAtStart, results);
+        return results;
+    }
+
+    private List<ContextItem> performUncachedHybridSearch(String userQuestion, MetadataFilter filter) {
         // 1. Busca vetorial (peso 60%) - AGORA PASSA O FILTRO
         List<ContextItem> vectorResults = performVectorSearch(userQuestion, filter);
 
@@ -1042,7 +1254,51 @@ public class QueryService {
         List<ContextItem> jpqlResults = Collections.emptyList();
 
         // 4. Combinar Vector + FTS (perfeito!)
-        return combineTwoResults(vectorResults, ftsResults, userQuestion);
+        return queryTracer.stage("rerank", () -> combineTwoResults(vectorResults, ftsResults, userQuestion));
+    }
+
+    /**
+     * Reconstrói os ContextItems de um hit do RetrievalCache, preservando ordem e score final.
+     * Itens ausentes da memória são buscados em lote (uma query por tipo).
+     */
+    private List<ContextItem> rehydrateCachedHits(List<RetrievalCache.CachedHit> hits) {
+        Map<String, ContextItem> resolved = new HashMap<>();
+        Set<Long> missingChunkIds = new LinkedHashSet<>();
+        Set<Long> missingNoteIds = new LinkedHashSet<>();
+
+        for (RetrievalCache.CachedHit hit : hits) {
+            ContextItem item = retrievalCache.findItem(hit);
+            if (item != null) {
+                resolved.put(hit.itemKey(), item);
+            } else if ("NOTE".equals(hit.sourceType())) {
+                missingNoteIds.add(hit.originalId());
+            } else {
+                missingChunkIds.add(hit.originalId());
+            }
+        }
+
+        List<ContextItem> fromDatabase = new ArrayList<>();
+        if (!missingChunkIds.isEmpty()) {
+            fromDatabase.addAll(convertRawChunkResultsToContextItems(
+                    contentChunkRepository.findChunkRowsByIds(missingChunkIds)));
+        }
+        if (!missingNoteIds.isEmpty()) {
+            fromDatabase.addAll(convertRawNoteResultsToContextItems(
+                    studyNoteRepository.findNoteRowsByIds(missingNoteIds)));
+        }
+        for (ContextItem item : fromDatabase) {
+            retrievalCache.rememberRehydrated(item);
+            resolved.put(item.sourceType() + ":" + item.originalId(), item);
+        }
+
+        List<ContextItem> results = new ArrayList<>(hits.size());
+        for (RetrievalCache.CachedHit hit : hits) {
+            ContextItem item = resolved.get(hit.itemKey());
+            if (item != null) {
+                results.add(item.withAdjustedScore(hit.score()));
+            }
+        }
+        return results;
     }
 
     /**
@@ -1053,7 +1309,7 @@ public class QueryService {
      * @param allRankedResults Lista de todos os resultados, já com boosts aplicados e ordenada.
      * @return Uma lista final com no máximo 5 itens, balanceada.
      */
-    private List<ContextItem> ensureBalancedSources(List<ContextItem> allRankedResults) {
+    List<ContextItem> ensureBalancedSources(List<ContextItem> allRankedResults) {
         // 1. Separar os resultados por tipo
         // ======================================================
         // MUDANÇA PRINCIPAL AQUI
@@ -1104,7 +1360,7 @@ public class QueryService {
     }
 
     // ✅ Método simplificado para 2 tipos de busca
-    private List<ContextItem> combineTwoResults(
+    List<ContextItem> combineTwoResults(
             List<ContextItem> vectorResults,
             List<ContextItem> ftsResults,
             String userQuestion) {
@@ -1135,6 +1391,7 @@ public class QueryService {
 
         // 2. CHAMA O NOVO 'ensureBalancedSources'
         List<ContextItem> finalResults = ensureBalancedSources(allRankedResults); // <-- Chamada 2 (Corrigida)
+        queryTracer.explain().ifPresent(explain -> explain.ranked(finalResults));
 
         // ... (Sua lógica de Logs) ...
         logger.info("🔍 Resultados da busca híbrida:");
@@ -1375,27 +1632,35 @@ public class QueryService {
             logger.debug("🔍 Executando FTS com query: '{}' E FILTRO: {}", tsquery, filter);
 
             // Buscar com FTS - APLICANDO FILTROS
-            List<Object[]> chunkResults = contentChunkRepository.searchByKeywordsFTS(
+            List<Object[]> chunkResults = queryTracer.stage("fts.chunks", () -> contentChunkRepository.searchByKeywordsFTS(
                     tsquery,
                     5,
                     filter.obraAcronimo(),      // NOVO
                     filter.capitulo(),        // NOVO
                     filter.secaoOuVersiculo() // NOVO
-            );
-            List<Object[]> noteResults = studyNoteRepository.searchByKeywordsFTS(
+            ));
+            List<Object[]> noteResults = queryTracer.stage("fts.notes", () -> studyNoteRepository.searchByKeywordsFTS(
                     tsquery,
                     5,
                     filter.livroBiblico(),    // NOVO
                     filter.capitulo(),        // NOVO
                     filter.secaoOuVersiculo() // NOVO
-            );
+            ));
 
             logger.debug("  📄 FTS Chunks encontrados: {}", chunkResults.size());
             logger.debug("  📖 FTS Notes encontradas: {}", noteResults.size());
 
             // Converter resultados
-            results.addAll(convertFTSChunkResults(chunkResults, keywords));
-            results.addAll(convertFTSNoteResults(noteResults, keywords));
+            List<ContextItem> chunkItems = convertFTSChunkResults(chunkResults, keywords);
+            List<ContextItem> noteItems = convertFTSNoteResults(noteResults, keywords);
+            results.addAll(chunkItems);
+            results.addAll(noteItems);
+
+            QueryExplain explain = queryTracer.explain().orElse(null);
+            if (explain != null) {
+                explain.branch("fts.chunks", chunkItems);
+                explain.branch("fts.notes", noteItems);
+            }
 
             logger.debug("✅ FTS encontrou {} resultados únicos", results.size());
 
@@ -1408,23 +1673,29 @@ public class QueryService {
 
                 logger.info("🔄 Tentando FTS com termo principal: '{}' E FILTRO: {}", mainTerm, filter);
 
-                List<Object[]> fallbackChunks = contentChunkRepository.searchByKeywordsFTS(
+                List<Object[]> fallbackChunks = queryTracer.stage("fts.chunks", () -> contentChunkRepository.searchByKeywordsFTS(
                         mainTerm,
                         3,
                         filter.obraAcronimo(),      // NOVO
                         filter.capitulo(),        // NOVO
                         filter.secaoOuVersiculo() // NOVO
-                );
-                List<Object[]> fallbackNotes = studyNoteRepository.searchByKeywordsFTS(
+                ));
+                List<Object[]> fallbackNotes = queryTracer.stage("fts.notes", () -> studyNoteRepository.searchByKeywordsFTS(
                         mainTerm,
                         3,
                         filter.livroBiblico(),    // NOVO
                         filter.capitulo(),        // NOVO
                         filter.secaoOuVersiculo() // NOVO
-                );
+                ));
 
-                results.addAll(convertFTSChunkResults(fallbackChunks, keywords));
-                results.addAll(convertFTSNoteResults(fallbackNotes, keywords));
+                List<ContextItem> fallbackChunkItems = convertFTSChunkResults(fallbackChunks, keywords);
+                List<ContextItem> fallbackNoteItems = convertFTSNoteResults(fallbackNotes, keywords);
+                results.addAll(fallbackChunkItems);
+                results.addAll(fallbackNoteItems);
+                if (explain != null) {
+                    explain.branch("fts.chunks.fallback", fallbackChunkItems);
+                    explain.branch("fts.notes.fallback", fallbackNoteItems);
+                }
 
                 logger.debug("✅ Fallback FTS encontrou {} resultados", results.size());
             }
@@ -1474,7 +1745,8 @@ public class QueryService {
 
     private Optional<QueryServiceResult> handleDirectReferenceQuery(String userQuestion, UUID chatId) { // <--- RECEBE CHAT ID
 
-        Matcher confessionalMatcher = this.confessionalPattern.matcher(userQuestion);
+        WorkCatalog catalog = catalog();
+        Matcher confessionalMatcher = catalog.confessionalPattern().matcher(userQuestion);
 
         // Pattern bíblico mantido
         Pattern biblicalPattern = Pattern.compile(
@@ -1490,16 +1762,16 @@ public class QueryService {
         // --- BLOCO 1: Busca Confessional ---
         if (confessionalMatcher.find()) {
             String acronym = null;
-            for (int i = 1; i <= this.regexGroupToAcronymMap.size(); i++) {
+            for (int i = 1; i <= catalog.regexGroupToAcronymMap().size(); i++) {
                 if (i <= confessionalMatcher.groupCount() && confessionalMatcher.group(i) != null) {
-                    acronym = this.regexGroupToAcronymMap.get(i);
+                    acronym = catalog.regexGroupToAcronymMap().get(i);
                     break;
                 }
             }
             if (acronym == null) return Optional.empty();
 
-            int chapterGroupIndex = this.regexGroupToAcronymMap.size() + 1;
-            int sectionGroupIndex = this.regexGroupToAcronymMap.size() + 2;
+            int chapterGroupIndex = catalog.regexGroupToAcronymMap().size() + 1;
+            int sectionGroupIndex = catalog.regexGroupToAcronymMap().size() + 2;
 
             if (confessionalMatcher.groupCount() < chapterGroupIndex) {
                 return Optional.empty();
@@ -1782,6 +2054,9 @@ public class QueryService {
                 JSON:
                 """.formatted(userQuestion);
 
+        if (!usageTracker.allowOptional("routing", routerPrompt.length() + userQuestion.length(), 100)) {
+            return new QueryRouterResponse("simple", List.of(userQuestion));
+        }
         try {
             String jsonResponse = geminiApiClient.generateContent(
                     routerPrompt,
@@ -1808,7 +2083,10 @@ public class QueryService {
 
     private UUID saveAiMessage(UUID chatId, String answer, List<SourceReference> references) {
         if (chatId == null) return null;
+        return queryTracer.stage("persistence", () -> persistAiMessage(chatId, answer, references));
+    }
 
+    private UUID persistAiMessage(UUID chatId, String answer, List<SourceReference> references) {
         try {
             Conversa conversation = conversaRepository.findById(chatId)
                     .orElseThrow(() -> new EntityNotFoundException("Conversa não encontrada para ID: " + chatId));
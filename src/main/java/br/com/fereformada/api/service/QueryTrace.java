@@ -0,0 +1,205 @@
+package br.com.fereformada.api.service;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trace de uma requisição ao pipeline RAG: rota, resultado de cache, tempo gasto em cada etapa e
+ * uso do LLM (chamadas, tokens, embeddings — ver {@link LlmUsageTracker}).
+ * <p>
+ * Etapas repetidas (ex: busca vetorial em cada sub-query de uma pergunta complexa) são somadas:
+ * a métrica registrada é o tempo da etapa na requisição inteira.
+ */
+public final class QueryTrace {
+
+    public static final String ROUTE_SIMPLE = "simple";
+    public static final String ROUTE_COMPLEX = "complex";
+    public static final String ROUTE_DIRECT = "direct";
+    public static final String ROUTE_UNKNOWN = "unknown";
+    public static final String CACHE_MISS = "miss";
+
+    /**
+     * Tempo total e número de execuções de uma etapa.
+     */
+    public record Stage(long nanos, int count) {
+        public long millis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+    }
+
+    /**
+     * Uso do LLM acumulado na requisição.
+     */
+    public record LlmUsage(int llmCalls, long promptTokens, long completionTokens, int embeddingCalls) {
+        public long totalTokens() {
+            return promptTokens + completionTokens;
+        }
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String endpoint;
+    private final String userId;
+    private final Instant startedAt = Instant.now();
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+
+    private volatile String route = ROUTE_UNKNOWN;
+    private volatile String cache = CACHE_MISS;
+    private volatile long totalNanos = -1;
+    private volatile String currentStage;
+    private volatile QueryExplain explain;
+    private volatile boolean replay;
+
+    private int llmCalls;
+    private long promptTokens;
+    private long completionTokens;
+    private int embeddingCalls;
+
+    QueryTrace(String endpoint, String userId) {
+        this.endpoint = endpoint;
+        this.userId = userId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public String getCache() {
+        return cache;
+    }
+
+    void setRoute(String route) {
+        this.route = route;
+    }
+
+    void setCache(String cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Etapa em execução (a mais interna), usada para atribuir as chamadas ao LLM; null fora de etapas.
+     */
+    public String getCurrentStage() {
+        return currentStage;
+    }
+
+    String enterStage(String stage) {
+        String previous = currentStage;
+        currentStage = stage;
+        return previous;
+    }
+
+    void exitStage(String previous) {
+        currentStage = previous;
+    }
+
+    /**
+     * Detalhe da recuperação; null quando a requisição não foi amostrada para o log de traces.
+     */
+    public QueryExplain getExplain() {
+        return explain;
+    }
+
+    /**
+     * Replay do endpoint de explain: o pipeline ignora caches e single-flight para refazer a busca.
+     */
+    public boolean isReplay() {
+        return replay;
+    }
+
+    void captureExplain(boolean replay) {
+        this.explain = new QueryExplain();
+        this.replay = replay;
+    }
+
+    synchronized void addLlmCall(long promptTokens, long completionTokens) {
+        llmCalls++;
+        this.promptTokens += promptTokens;
+        this.completionTokens += completionTokens;
+    }
+
+    synchronized void addEmbeddingCall() {
+        embeddingCalls++;
+    }
+
+    public synchronized LlmUsage getLlmUsage() {
+        return new LlmUsage(llmCalls, promptTokens, completionTokens, embeddingCalls);
+    }
+
+    synchronized void record(String stage, long nanos) {
+        stages.merge(stage, new Stage(nanos, 1), (a, b) -> new Stage(a.nanos() + b.nanos(), a.count() + b.count()));
+    }
+
+    public synchronized Map<String, Stage> getStages() {
+        return new LinkedHashMap<>(stages);
+    }
+
+    void finish() {
+        totalNanos = System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Duração total; enquanto a requisição não terminou, o tempo decorrido até agora.
+     */
+    public long getTotalNanos() {
+        return totalNanos >= 0 ? totalNanos : System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Formato compacto para o header de debug:
+     * {@code id=...; route=simple; cache=miss; total=812; llmCalls=3; ...; routing=340; ...} (tempos em ms).
+     */
+    public String toHeaderValue() {
+        StringBuilder value = new StringBuilder()
+                .append("id=").append(id)
+                .append("; route=").append(route)
+                .append("; cache=").append(cache)
+                .append("; total=").append(TimeUnit.NANOSECONDS.toMillis(getTotalNanos()));
+        LlmUsage usage = getLlmUsage();
+        value.append("; llmCalls=").append(usage.llmCalls())
+                .append("; promptTokens=").append(usage.promptTokens())
+                .append("; completionTokens=").append(usage.completionTokens())
+                .append("; embeddings=").append(usage.embeddingCalls());
+        getStages().forEach((name, stage) -> value.append("; ").append(name).append('=').append(stage.millis()));
+        return value.toString();
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", id);
+        map.put("endpoint", endpoint);
+        map.put("startedAt", startedAt.toString());
+        map.put("route", route);
+        map.put("cache", cache);
+        map.put("totalMs", TimeUnit.NANOSECONDS.toMillis(getTotalNanos()));
+        map.put("llmUsage", getLlmUsage());
+        Map<String, Object> stageMillis = new LinkedHashMap<>();
+        getStages().forEach((name, stage) -> stageMillis.put(name, stage.count() > 1
+                ? Map.of("ms", stage.millis(), "count", stage.count())
+                : stage.millis()));
+        map.put("stagesMs", stageMillis);
+        if (explain != null) {
+            map.put("explain", explain.toMap());
+        }
+        return map;
+    }
+}
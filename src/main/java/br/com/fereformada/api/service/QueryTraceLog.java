@@ -0,0 +1,218 @@
+package br.com.fereformada.api.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log persistente dos traces de consulta amostrados (tabela {@code query_trace_log}): rota, filtro, ragQuery,
+ * candidatos e scores de cada ramo, boosts, ordem final, tempos por etapa e uso do LLM.
+ * <p>
+ * O caminho da requisição só faz um {@code offer} num buffer circular em memória — sem I/O, sem lock de banco
+ * e sem serializar JSON; se o buffer encher, o trace mais antigo é descartado (nunca bloqueia o chat).
+ * Um {@code @Scheduled} drena o buffer em lotes e grava via JDBC; falhas de escrita descartam o lote.
+ */
+@Component
+public class QueryTraceLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryTraceLog.class);
+
+    private static final int MAX_QUESTION_CHARS = 2000;
+    private static final int GC_BATCH_SIZE = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final double sampleRate;
+    private final int batchSize;
+    private final int retentionDays;
+    private final ArrayBlockingQueue<QueryTrace> buffer;
+
+    private final Counter writtenCounter;
+    private final Counter droppedCounter;
+    private final Counter failedCounter;
+    private volatile LocalDateTime lastFlushAt;
+
+    public QueryTraceLog(JdbcTemplate jdbcTemplate,
+                         ObjectMapper objectMapper,
+                         MeterRegistry meterRegistry,
+                         @Value("${fereformada.query.trace.log.sample-rate:0.05}") double sampleRate,
+                         @Value("${fereformada.query.trace.log.buffer-size:1000}") int bufferSize,
+                         @Value("${fereformada.query.trace.log.batch-size:200}") int batchSize,
+                         @Value("${fereformada.query.trace.log.retention-days:14}") int retentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.sampleRate = Math.max(0, Math.min(1, sampleRate));
+        this.batchSize = Math.max(1, batchSize);
+        this.retentionDays = Math.max(1, retentionDays);
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferSize));
+
+        this.writtenCounter = Counter.builder("rag.trace.log.written").register(meterRegistry);
+        this.droppedCounter = Counter.builder("rag.trace.log.dropped")
+                .description("Traces descartados com o buffer cheio ou por falha de escrita")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("rag.trace.log.failed-batches").register(meterRegistry);
+        Gauge.builder("rag.trace.log.buffered", buffer, ArrayBlockingQueue::size).register(meterRegistry);
+    }
+
+    /**
+     * Sorteio da amostragem, feito no início da requisição (o detalhe só é montado se amostrado).
+     */
+    public boolean sample() {
+        return sampleRate > 0 && (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Enfileira um trace já encerrado. Nunca bloqueia: com o buffer cheio, descarta o mais antigo.
+     */
+    public void offer(QueryTrace trace) {
+        while (!buffer.offer(trace)) {
+            if (buffer.poll() != null) {
+                droppedCounter.increment();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${fereformada.query.trace.log.flush-ms:2000}")
+    public void flush() {
+        List<QueryTrace> batch = new ArrayList<>(batchSize);
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+        lastFlushAt = LocalDateTime.now();
+    }
+
+    @Scheduled(cron = "${fereformada.query.trace.log.gc-cron:0 45 3 * * *}")
+    public void collectGarbage() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minusDays(retentionDays));
+        int total = 0;
+        int deleted;
+        try {
+            do {
+                deleted = jdbcTemplate.update("DELETE FROM query_trace_log WHERE id IN (" +
+                        "SELECT id FROM query_trace_log WHERE created_at < ? LIMIT ?)", cutoff, GC_BATCH_SIZE);
+                total += deleted;
+            } while (deleted == GC_BATCH_SIZE);
+        } catch (RuntimeException e) {
+            logger.warn("⚠️ GC do log de traces falhou: {}", e.getMessage());
+            return;
+        }
+        logger.info("🧹 GC do log de traces: {} registros com mais de {} dias removidos.", total, retentionDays);
+    }
+
+    /**
+     * Últimos traces gravados (mais recentes primeiro), com o detalhe em JSON.
+     */
+    public List<Map<String, Object>> findRecent(int limit) {
+        return jdbcTemplate.query("SELECT trace_id, created_at, endpoint, user_id, route, cache_outcome, total_ms, " +
+                        "llm_calls, total_tokens, question, details FROM query_trace_log ORDER BY id DESC LIMIT ?",
+                (rs, rowNum) -> {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("traceId", rs.getString("trace_id"));
+                    row.put("createdAt", rs.getTimestamp("created_at").toLocalDateTime());
+                    row.put("endpoint", rs.getString("endpoint"));
+                    row.put("userId", rs.getString("user_id"));
+                    row.put("route", rs.getString("route"));
+                    row.put("cache", rs.getString("cache_outcome"));
+                    row.put("totalMs", rs.getLong("total_ms"));
+                    row.put("llmCalls", rs.getInt("llm_calls"));
+                    row.put("totalTokens", rs.getLong("total_tokens"));
+                    row.put("question", rs.getString("question"));
+                    row.put("details", readDetails(rs.getString("details")));
+                    return row;
+                }, Math.max(1, Math.min(500, limit)));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sampleRate", sampleRate);
+        stats.put("buffered", buffer.size());
+        stats.put("bufferCapacity", buffer.size() + buffer.remainingCapacity());
+        stats.put("written", (long) writtenCounter.count());
+        stats.put("dropped", (long) droppedCounter.count());
+        stats.put("failedBatches", (long) failedCounter.count());
+        stats.put("retentionDays", retentionDays);
+        stats.put("lastFlushAt", lastFlushAt);
+        return stats;
+    }
+
+    // ===== HELPERS =====
+
+    private void write(List<QueryTrace> batch) {
+        // JSON montado aqui, na thread do flush, e não na requisição
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (QueryTrace trace : batch) {
+            try {
+                rows.add(toRow(trace));
+            } catch (JsonProcessingException e) {
+                logger.warn("Trace {} não serializável: {}", trace.getId(), e.getMessage());
+                droppedCounter.increment();
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate("INSERT INTO query_trace_log (trace_id, created_at, endpoint, user_id, route, " +
+                    "cache_outcome, total_ms, llm_calls, total_tokens, question, details) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+            writtenCounter.increment(rows.size());
+        } catch (RuntimeException e) {
+            logger.warn("⚠️ Falha ao gravar {} traces de consulta ({}). Lote descartado.", rows.size(), e.getMessage());
+            failedCounter.increment();
+            droppedCounter.increment(rows.size());
+        }
+    }
+
+    private Object[] toRow(QueryTrace trace) throws JsonProcessingException {
+        QueryExplain explain = trace.getExplain();
+        QueryTrace.LlmUsage usage = trace.getLlmUsage();
+        String question = explain.getQuestion();
+        if (question != null && question.length() > MAX_QUESTION_CHARS) {
+            question = question.substring(0, MAX_QUESTION_CHARS);
+        }
+        return new Object[]{
+                trace.getId(),
+                Timestamp.valueOf(LocalDateTime.ofInstant(trace.getStartedAt(), ZoneId.systemDefault())),
+                trace.getEndpoint(),
+                trace.getUserId(),
+                trace.getRoute(),
+                trace.getCache(),
+                TimeUnit.NANOSECONDS.toMillis(trace.getTotalNanos()),
+                usage.llmCalls(),
+                usage.totalTokens(),
+                question,
+                objectMapper.writeValueAsString(trace.toMap())
+        };
+    }
+
+    private Object readDetails(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, Map.class);
+        } catch (JsonProcessingException e) {
+            return json;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package br.com.fereformada.api.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Instrumentação por etapa do pipeline RAG (roteamento, filtros, Hy-DE, embedding, cada busca vetorial/FTS,
+ * reranking, prompt, LLM, persistência).
+ * <p>
+ * O controller abre um {@link QueryTrace} por requisição ({@link #begin}); o QueryService marca as etapas com
+ * {@link #stage}, que usa o trace ligado à thread atual (o pipeline roda inteiro na thread da requisição).
+ * No {@link #end} cada etapa vira uma amostra do timer {@code rag.stage} com as tags {@code stage}, {@code route}
+ * e {@code cache} — só conhecidas no fim, por isso as métricas não são gravadas durante a execução — e o total
+ * vai para {@code rag.request}. Os últimos traces ficam em memória para o endpoint {@code ragtrace} do actuator.
+ * <p>
+ * Requisições amostradas pelo {@link QueryTraceLog} carregam também um {@link QueryExplain} (candidatos, boosts,
+ * ordem final) e, ao terminar, são entregues ao log persistente.
+ */
+@Component
+public class QueryTracer {
+
+    public static final String STAGE_METRIC = "rag.stage";
+    public static final String REQUEST_METRIC = "rag.request";
+    public static final String DEBUG_HEADER = "X-Query-Trace";
+
+    private static final Set<String> KNOWN_ROUTES =
+            Set.of(QueryTrace.ROUTE_SIMPLE, QueryTrace.ROUTE_COMPLEX, QueryTrace.ROUTE_DIRECT);
+
+    private static final ThreadLocal<QueryTrace> CURRENT = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final QueryTraceLog traceLog;
+    private final boolean debugHeaderEnabled;
+    private final int recentSize;
+    private final Deque<QueryTrace> recent = new ArrayDeque<>();
+
+    public QueryTracer(MeterRegistry meterRegistry, QueryTraceLog traceLog,
+                       @Value("${fereformada.query.trace.debug-header:true}") boolean debugHeaderEnabled,
+                       @Value("${fereformada.query.trace.recent-size:50}") int recentSize) {
+        this.meterRegistry = meterRegistry;
+        this.traceLog = traceLog;
+        this.debugHeaderEnabled = debugHeaderEnabled;
+        this.recentSize = Math.max(0, recentSize);
+    }
+
+    /**
+     * Abre o trace da requisição e liga à thread atual. Sempre fechar com {@link #end} (finally).
+     */
+    public QueryTrace begin(String endpoint, String userId) {
+        QueryTrace trace = new QueryTrace(endpoint, userId);
+        if (traceLog.sample()) {
+            trace.captureExplain(false);
+        }
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    /**
+     * Como {@link #begin}, mas sempre com o detalhe da recuperação e em modo replay (sem caches).
+     */
+    public QueryTrace beginReplay(String endpoint, String userId) {
+        QueryTrace trace = new QueryTrace(endpoint, userId);
+        trace.captureExplain(true);
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    public void end(QueryTrace trace) {
+        if (CURRENT.get() == trace) {
+            CURRENT.remove();
+        }
+        trace.finish();
+
+        String route = trace.getRoute();
+        String cache = trace.getCache();
+        trace.getStages().forEach((name, stage) -> stageTimer(name, route, cache).record(stage.nanos(), TimeUnit.NANOSECONDS));
+        Timer.builder(REQUEST_METRIC)
+                .description("Duração total da requisição ao pipeline RAG")
+                .tags("endpoint", trace.getEndpoint(), "route", route, "cache", cache)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(trace.getTotalNanos(), TimeUnit.NANOSECONDS);
+
+        QueryTrace.LlmUsage usage = trace.getLlmUsage();
+        DistributionSummary.builder("rag.request.llm.calls")
+                .description("Chamadas ao LLM (chat) por requisição")
+                .tag("endpoint", trace.getEndpoint())
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(usage.llmCalls());
+        DistributionSummary.builder("rag.request.llm.tokens")
+                .description("Tokens (prompt + resposta) por requisição")
+                .tag("endpoint", trace.getEndpoint())
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(usage.totalTokens());
+
+        if (trace.getExplain() != null) {
+            traceLog.offer(trace);
+        }
+
+        if (recentSize > 0) {
+            synchronized (recent) {
+                recent.addFirst(trace);
+                while (recent.size() > recentSize) {
+                    recent.removeLast();
+                }
+            }
+        }
+    }
+
+    public Optional<QueryTrace> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    /**
+     * Devolve o trace no header {@value #DEBUG_HEADER} quando o cliente pede ({@code X-Query-Trace: true}).
+     * Chamar depois do {@link #end} e antes de o corpo da resposta ser escrito.
+     */
+    public void writeDebugHeader(QueryTrace trace, String requested, HttpServletResponse response) {
+        if (debugHeaderEnabled && "true".equalsIgnoreCase(requested)) {
+            response.setHeader(DEBUG_HEADER, trace.toHeaderValue());
+        }
+    }
+
+    public <T> T stage(String name, Supplier<T> work) {
+        QueryTrace trace = CURRENT.get();
+        if (trace == null) {
+            return work.get();
+        }
+        String previousStage = trace.enterStage(name);
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            trace.record(name, System.nanoTime() - start);
+            trace.exitStage(previousStage);
+        }
+    }
+
+    /**
+     * Registra uma etapa medida por quem chama (ex: espera por um resultado compartilhado).
+     */
+    public void record(String name, long nanos) {
+        QueryTrace trace = CURRENT.get();
+        if (trace != null) {
+            trace.record(name, nanos);
+        }
+    }
+
+    /**
+     * Detalhe da recuperação da requisição atual, se ela foi amostrada.
+     */
+    public Optional<QueryExplain> explain() {
+        QueryTrace trace = CURRENT.get();
+        return trace != null ? Optional.ofNullable(trace.getExplain()) : Optional.empty();
+    }
+
+    public boolean isReplay() {
+        QueryTrace trace = CURRENT.get();
+        return trace != null && trace.isReplay();
+    }
+
+    /**
+     * Rota da requisição atual. O valor vem do roteador (texto livre do LLM) e vira tag dos timers, então só
+     * simple/complex/direct passam; qualquer outra coisa conta como {@value QueryTrace#ROUTE_UNKNOWN}.
+     */
+    public void route(String route) {
+        current().ifPresent(trace -> trace.setRoute(normalizeRoute(route)));
+    }
+
+    public void cache(String outcome) {
+        current().ifPresent(trace -> trace.setCache(outcome));
+    }
+
+    public List<Map<String, Object>> getRecentTraces() {
+        synchronized (recent) {
+            return recent.stream().map(QueryTrace::toMap).toList();
+        }
+    }
+
+    /**
+     * p50/p95/p99 por etapa (e por combinação de rota/cache), a partir dos timers do Micrometer.
+     */
+    public List<Map<String, Object>> getStageSummary() {
+        List<Map<String, Object>> summary = new ArrayList<>();
+        for (Timer timer : meterRegistry.find(STAGE_METRIC).timers()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("stage", timer.getId().getTag("stage"));
+            row.put("route", timer.getId().getTag("route"));
+            row.put("cache", timer.getId().getTag("cache"));
+            row.put("count", timer.count());
+            row.put("meanMs", timer.mean(TimeUnit.MILLISECONDS));
+            row.put("maxMs", timer.max(TimeUnit.MILLISECONDS));
+            for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+                row.put("p" + Math.round(percentile.percentile() * 100) + "Ms", percentile.value(TimeUnit.MILLISECONDS));
+            }
+            summary.add(row);
+        }
+        summary.sort((a, b) -> String.valueOf(a.get("stage")).compareTo(String.valueOf(b.get("stage"))));
+        return summary;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("debugHeader", debugHeaderEnabled);
+        stats.put("recentSize", recentSize);
+        stats.put("stages", getStageSummary());
+        return stats;
+    }
+
+    static String normalizeRoute(String route) {
+        return route != null && KNOWN_ROUTES.contains(route) ? route : QueryTrace.ROUTE_UNKNOWN;
+    }
+
+    private Timer stageTimer(String stage, String route, String cache) {
+        return Timer.builder(STAGE_METRIC)
+                .description("Tempo gasto em cada etapa do pipeline RAG, por requisição")
+                .tags("stage", stage, "route", route, "cache", cache)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,274 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.dto.ContextItem;
+import br.com.fereformada.api.dto.MetadataFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache do resultado da RECUPERAÇÃO (busca híbrida), e não da resposta final.
+ * <p>
+ * A chave é (hash da ragQuery normalizada, MetadataFilter, versão do corpus) e o valor
+ * guarda apenas os IDs e scores finais dos ContextItems já fundidos e balanceados.
+ * O conteúdo é reidratado a partir do {@link #itemStore} em memória ou, em caso de
+ * ausência, por um lookup em lote no banco (feito pelo QueryService).
+ * <p>
+ * Qualquer escrita no corpus (admin, importação, backfill) deve chamar
+ * {@link #bumpCorpusVersion(String)}, o que invalida todas as entradas.
+ * <p>
+ * Entradas e itens são LRU limitados por tamanho: com o limite atingido, a chave nova despeja a usada há mais
+ * tempo.
+ */
+@Component
+public class RetrievalCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetrievalCache.class);
+
+    /**
+     * Referência leve a um item recuperado: tipo + ID original + score final (pós-boost).
+     */
+    public record CachedHit(String sourceType, Long originalId, double score) {
+        public String itemKey() {
+            return sourceType + ":" + originalId;
+        }
+    }
+
+    private record Entry(List<CachedHit> hits, long corpusVersion, long createdAtMillis) {
+    }
+
+    /**
+     * LinkedHashMap em ordem de acesso que despeja a entrada mais antiga acima de {@code maxSize}.
+     * Não é thread-safe (o get reordena): todo acesso passa por {@code synchronized} no próprio mapa.
+     */
+    private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+        private final int maxSize;
+        private long evictions;
+
+        LruMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = Math.max(1, maxSize);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            if (size() > maxSize) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private final LruMap<String, Entry> entries;
+    private final LruMap<String, ContextItem> itemStore;
+    private final AtomicLong corpusVersion = new AtomicLong(1);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong itemsFromMemory = new AtomicLong();
+    private final AtomicLong itemsFromDatabase = new AtomicLong();
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final int maxItems;
+    private final long ttlMillis;
+
+    public RetrievalCache(@Value("${fereformada.retrieval-cache.enabled:true}") boolean enabled,
+                          @Value("${fereformada.retrieval-cache.max-entries:1000}") int maxEntries,
+                          @Value("${fereformada.retrieval-cache.max-items:5000}") int maxItems,
+                          @Value("${fereformada.retrieval-cache.ttl-minutes:60}") long ttlMinutes) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.maxItems = maxItems;
+        this.ttlMillis = ttlMinutes * 60_000L;
+        this.entries = new LruMap<>(maxEntries);
+        this.itemStore = new LruMap<>(maxItems);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long currentCorpusVersion() {
+        return corpusVersion.get();
+    }
+
+    /**
+     * Busca os hits em cache para a combinação (ragQuery, filtro, versão atual do corpus).
+     */
+    public Optional<List<CachedHit>> get(String ragQuery, MetadataFilter filter) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        long version = corpusVersion.get();
+        String key = buildKey(ragQuery, filter, version);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && (entry.corpusVersion() != version || isExpired(entry))) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+
+        hits.incrementAndGet();
+        return Optional.of(entry.hits());
+    }
+
+    /**
+     * Armazena o resultado final da busca híbrida.
+     *
+     * @param versionAtStart versão do corpus lida ANTES da busca; se mudou no meio, não cacheia.
+     */
+    public void put(String ragQuery, MetadataFilter filter, long versionAtStart, List<ContextItem> results) {
+        if (!enabled || results == null || results.isEmpty()) {
+            return;
+        }
+        if (versionAtStart != corpusVersion.get()) {
+            logger.debug("Corpus alterado durante a busca; resultado não será cacheado.");
+            return;
+        }
+
+        List<CachedHit> cachedHits = new ArrayList<>(results.size());
+        for (ContextItem item : results) {
+            cachedHits.add(new CachedHit(item.sourceType(), item.originalId(), item.similarityScore()));
+            rememberItem(item);
+        }
+
+        Entry entry = new Entry(List.copyOf(cachedHits), versionAtStart, System.currentTimeMillis());
+        synchronized (entries) {
+            // Revalida sob o lock: um bump concorrente já pode ter limpado o mapa
+            if (versionAtStart == corpusVersion.get()) {
+                entries.put(buildKey(ragQuery, filter, versionAtStart), entry);
+            }
+        }
+    }
+
+    /**
+     * Retorna o item guardado em memória (com score arbitrário) ou null.
+     */
+    public ContextItem findItem(CachedHit hit) {
+        ContextItem item;
+        synchronized (itemStore) {
+            item = itemStore.get(hit.itemKey());
+        }
+        if (item != null) {
+            itemsFromMemory.incrementAndGet();
+        }
+        return item;
+    }
+
+    /**
+     * Registra um item reidratado a partir do banco.
+     */
+    public void rememberRehydrated(ContextItem item) {
+        itemsFromDatabase.incrementAndGet();
+        rememberItem(item);
+    }
+
+    /**
+     * Invalida todas as entradas. Se houver uma transação ativa, invalida de novo após o commit,
+     * para que buscas concorrentes feitas antes do commit não deixem resultados antigos no cache.
+     */
+    public void bumpCorpusVersion(String reason) {
+        long newVersion = bumpNow();
+        logger.debug("🔄 Versão do corpus incrementada para {} ({})", newVersion, reason);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bumpNow();
+                }
+            });
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        synchronized (itemStore) {
+            itemStore.clear();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long totalLookups = hits.get() + misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("corpusVersion", corpusVersion.get());
+        synchronized (entries) {
+            stats.put("entries", entries.size());
+            stats.put("maxEntries", maxEntries);
+            stats.put("entryEvictions", entries.evictions);
+        }
+        synchronized (itemStore) {
+            stats.put("items", itemStore.size());
+            stats.put("maxItems", maxItems);
+            stats.put("itemEvictions", itemStore.evictions);
+        }
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("hitRate", totalLookups == 0 ? 0.0 : (double) hits.get() / totalLookups);
+        stats.put("itemsFromMemory", itemsFromMemory.get());
+        stats.put("itemsFromDatabase", itemsFromDatabase.get());
+        return stats;
+    }
+
+    // ===== HELPERS =====
+
+    private long bumpNow() {
+        long newVersion = corpusVersion.incrementAndGet();
+        clear();
+        return newVersion;
+    }
+
+    private void rememberItem(ContextItem item) {
+        if (item.originalId() == null || item.sourceType() == null) {
+            return;
+        }
+        synchronized (itemStore) {
+            itemStore.put(item.sourceType() + ":" + item.originalId(), item);
+        }
+    }
+
+    private boolean isExpired(Entry entry) {
+        return System.currentTimeMillis() - entry.createdAtMillis() > ttlMillis;
+    }
+
+    private String buildKey(String ragQuery, MetadataFilter filter, long version) {
+        String normalized = ragQuery == null ? "" : ragQuery.toLowerCase().replaceAll("\\s+", " ").trim();
+        String filterKey = filter == null ? "-" : String.join("|",
+                String.valueOf(filter.obraAcronimo()),
+                String.valueOf(filter.livroBiblico()),
+                String.valueOf(filter.capitulo()),
+                String.valueOf(filter.secaoOuVersiculo()));
+        return sha256(normalized) + "#" + filterKey + "#v" + version;
+    }
+
+    static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+}
@@ -1,41 +1,69 @@
 package br.com.fereformada.api.service;
 
+import br.com.fereformada.api.dto.ImportTaskDTO;
 import br.com.fereformada.api.dto.StudyNoteProjection;
 import br.com.fereformada.api.dto.StudyNoteRequestDTO;
 import br.com.fereformada.api.dto.StudyNoteSourceDTO;
+import br.com.fereformada.api.model.ImportTask;
 import br.com.fereformada.api.model.StudyNote;
+import br.com.fereformada.api.model.enums.TaskStatus;
+import br.com.fereformada.api.model.enums.TaskType;
+import br.com.fereformada.api.model.enums.VectorTarget;
+import br.com.fereformada.api.repository.ImportTaskRepository;
 import br.com.fereformada.api.repository.StudyNoteRepository;
-import com.pgvector.PGvector;
+import br.com.fereformada.api.util.EmbeddingTexts;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import jakarta.persistence.EntityNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 // import org.springframework.orm.jpa.JpaSystemException; // <-- Não é mais necessário
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
-public class StudyNoteAdminService {
+public class StudyNoteAdminService implements JobHandler {
 
-    private static final int BATCH_SIZE = 50;
+    // Quantas notas são vetorizadas (em lotes adaptativos) antes de cada gravação
+    private static final int WRITE_WINDOW_SIZE = 500;
 
     private final StudyNoteRepository studyNoteRepository;
-    private final GeminiApiClient geminiApiClient;
+    private final EmbeddingOutbox embeddingOutbox;
     private final StudyNoteBatchService studyNoteBatchService;
+    private final BulkEmbeddingExecutor bulkEmbeddingExecutor;
+    private final RetrievalCache retrievalCache;
+    private final ImportTaskRepository importTaskRepository;
+    private final ImportPayloadStore importPayloadStore;
+    private final JobQueue jobQueue;
+    private final TransactionTemplate transactionTemplate;
     private static final Logger logger = LoggerFactory.getLogger(StudyNoteAdminService.class);
 
     public StudyNoteAdminService(StudyNoteRepository studyNoteRepository,
-                                 GeminiApiClient geminiApiClient,
-                                 StudyNoteBatchService studyNoteBatchService) {
+                                 EmbeddingOutbox embeddingOutbox,
+                                 StudyNoteBatchService studyNoteBatchService,
+                                 BulkEmbeddingExecutor bulkEmbeddingExecutor,
+                                 RetrievalCache retrievalCache,
+                                 ImportTaskRepository importTaskRepository,
+                                 ImportPayloadStore importPayloadStore,
+                                 JobQueue jobQueue,
+                                 TransactionTemplate transactionTemplate) {
         this.studyNoteRepository = studyNoteRepository;
-        this.geminiApiClient = geminiApiClient;
+        this.embeddingOutbox = embeddingOutbox;
         this.studyNoteBatchService = studyNoteBatchService;
+        this.bulkEmbeddingExecutor = bulkEmbeddingExecutor;
+        this.retrievalCache = retrievalCache;
+        this.importTaskRepository = importTaskRepository;
+        this.importPayloadStore = importPayloadStore;
+        this.jobQueue = jobQueue;
+        this.transactionTemplate = transactionTemplate;
     }
 
     /**
@@ -88,9 +116,11 @@ public class StudyNoteAdminService {
     public StudyNoteProjection create(StudyNoteRequestDTO dto) {
         StudyNote note = new StudyNote();
         dto.toEntity(note);
-        vectorizeStudyNote(note); // Tenta vetorizar
+        note.setNoteVector(null); // Calculado pelo outbox, fora desta transação
 
         StudyNote savedNote = studyNoteRepository.save(note); // Salva
+        embeddingOutbox.enqueue(VectorTarget.STUDY_NOTE, savedNote.getId());
+        retrievalCache.bumpCorpusVersion("createStudyNote");
 
         // Retorna a projeção segura, que não inclui o vetor
         return studyNoteRepository.findProjectionById(savedNote.getId())
@@ -116,12 +146,9 @@ public class StudyNoteAdminService {
 
         if (contentChanged) {
             // 3. CAMINHO A: O conteúdo mudou.
-            logger.info("Conteúdo da nota {} mudou. (Re)vetorizando e atualizando tudo...", id);
+            logger.info("Conteúdo da nota {} mudou. Atualizando e enfileirando a vetorização...", id);
 
-            // Gera um novo vetor
-            float[] newVector = getVectorFromDto(dto); // (Helper que já criamos)
-
-            // Usa a query que atualiza TUDO (incluindo o vetor)
+            // Usa a query que atualiza TUDO; o vetor fica NULL até o outbox gravar o novo
             studyNoteRepository.updateNoteBypassingLoad(
                     id,
                     dto.book(),
@@ -131,8 +158,9 @@ public class StudyNoteAdminService {
                     dto.endVerse(),
                     dto.noteContent(),
                     dto.source(),
-                    newVector
+                    null
             );
+            embeddingOutbox.enqueue(VectorTarget.STUDY_NOTE, id);
         } else {
             // 4. CAMINHO B: O conteúdo NÃO mudou.
             logger.info("Conteúdo da nota {} não mudou. Atualizando apenas metadados...", id);
@@ -150,6 +178,8 @@ public class StudyNoteAdminService {
             );
         }
 
+        retrievalCache.bumpCorpusVersion("updateStudyNote");
+
         // 5. Busca a projeção ATUALIZADA (SEGURO) para retornar ao frontend
         return studyNoteRepository.findProjectionById(id)
                 .orElseThrow(() -> new IllegalStateException("Falha ao buscar projeção pós-update da nota: " + id));
@@ -171,130 +201,155 @@ public class StudyNoteAdminService {
 
         // Chama a query de delete customizada (assumindo que você a adicionou ao repo)
         studyNoteRepository.deleteNoteByIdBypassingLoad(id);
+        retrievalCache.bumpCorpusVersion("deleteStudyNote");
     }
 
-    // ==================================================================
-    // HELPERS DE VETORIZAÇÃO (Mantidos como estavam)
-    // ==================================================================
-
     /**
-     * Helper para o 'Caminho Triste' (catch): Vetoriza direto do DTO.
+     * Cria a tarefa de importação em lote com a entrada persistida (mesma transação).
+     * A tarefa fica PENDING na fila; o {@link JobQueueWorker} de alguma instância a executa via {@link #execute}.
      */
-    private float[] getVectorFromDto(StudyNoteRequestDTO dto) {
-        String textToEmbed = dto.book() + " " +
-                dto.startChapter() + ":" + dto.startVerse() + "\n" +
-                dto.noteContent();
+    @Transactional
+    public ImportTaskDTO createImportTask(List<StudyNoteRequestDTO> dtos) {
+        ImportTask task = new ImportTask();
+        task.setTaskType(TaskType.IMPORT_STUDY_NOTES);
+        task.setTotalItems(dtos.size());
+        task.setCurrentLog("Tarefa enfileirada, aguardando início...");
+        task = importTaskRepository.save(task);
+
+        ImportPayloadStore.Appender payload = importPayloadStore.appender(task.getId());
         try {
-            PGvector vector = geminiApiClient.generateEmbedding(textToEmbed);
-            return vector.toArray();
-        } catch (Exception e) {
-            logger.error("Falha ao vetorizar DTO para Nota de Estudo: {}", e.getMessage());
-            return null;
+            for (StudyNoteRequestDTO dto : dtos) {
+                payload.add(dto);
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Nota inválida na importação: " + e.getOriginalMessage(), e);
         }
+        payload.finish();
+        return new ImportTaskDTO(task);
     }
 
-    /**
-     * Helper de vetorização para a entidade (usado no 'create').
-     */
-    private void vectorizeStudyNote(StudyNote note) {
-        String textToEmbed = note.getBook() + " " +
-                note.getStartChapter() + ":" + note.getStartVerse() + "\n" +
-                note.getNoteContent();
-
-        try {
-            PGvector vector = geminiApiClient.generateEmbedding(textToEmbed);
-            note.setNoteVector(vector.toArray());
-        } catch (Exception e) {
-            logger.error("Falha ao vetorizar Nota de Estudo {}: {}", note.getId(), e.getMessage());
-            note.setNoteVector(null);
-        }
+    @Override
+    public boolean supports(TaskType taskType) {
+        return taskType == TaskType.IMPORT_STUDY_NOTES;
     }
 
-    @Async
-    public void importBatchAsync(List<StudyNoteRequestDTO> dtos) {
+    /**
+     * Executa (ou retoma do checkpoint = índice do próximo item) a importação em lote:
+     * vetoriza cada janela fora de transação e grava janela + checkpoint num único commit.
+     */
+    @Override
+    public void execute(ImportTask task, TaskProgress progress) {
         long startTime = System.currentTimeMillis();
-        int total = dtos.size();
-        logger.info("🚀 [ASYNC] Iniciando importação OTIMIZADA de {} notas.", total);
-
-        // Listas temporárias para montar o lote
-        List<StudyNote> notesBatch = new ArrayList<>(BATCH_SIZE);
-        List<String> textsToEmbedBatch = new ArrayList<>(BATCH_SIZE);
-
-        AtomicInteger successCount = new AtomicInteger(0);
+        Long taskId = task.getId();
+        int total = task.getTotalItems() != null ? task.getTotalItems() : 0;
+        int nextIndex = task.getLastProcessedId() != null ? task.getLastProcessedId().intValue() : 0;
+        int processed = task.getProcessedItems() != null ? task.getProcessedItems() : 0;
         AtomicInteger errorCount = new AtomicInteger(0);
+        logger.info("🚀 [JOB {}] Importação de {} notas a partir do item {}.", taskId, total, nextIndex);
 
-        for (int i = 0; i < total; i++) {
-            StudyNoteRequestDTO dto = dtos.get(i);
-
-            try {
-                // 1. Converte DTO para Entidade (rápido, memória apenas)
-                StudyNote note = new StudyNote();
-                dto.toEntity(note);
-
-                // 2. Prepara o texto para vetorização (mas NÃO chama a API ainda)
-                String textToEmbed = note.getBook() + " " +
-                        note.getStartChapter() + ":" + note.getStartVerse() + "\n" +
-                        note.getNoteContent();
-
-                notesBatch.add(note);
-                textsToEmbedBatch.add(textToEmbed);
-
-                // 3. Se o lote encheu (ou é o último item), processa
-                if (notesBatch.size() >= BATCH_SIZE || i == total - 1) {
-                    processAndSaveBatch(notesBatch, textsToEmbedBatch, successCount, errorCount);
-
-                    // Limpa os baldes para o próximo lote
-                    notesBatch.clear();
-                    textsToEmbedBatch.clear();
-
-                    logger.info("📦 [PROGRESSO] {}/{} notas processadas...", (i + 1), total);
+        try {
+            Iterator<StudyNoteRequestDTO> items = importPayloadStore.read(taskId, StudyNoteRequestDTO.class, nextIndex);
+            progress.log(nextIndex > 0
+                    ? "Retomando importação a partir do item #" + nextIndex + "..." : "Iniciando importação...");
+
+            List<StudyNote> notesBatch = new ArrayList<>(WRITE_WINDOW_SIZE);
+            List<String> textsToEmbedBatch = new ArrayList<>(WRITE_WINDOW_SIZE);
+            while (items.hasNext()) {
+                JobHandler.throwIfInterrupted();
+                int windowItems = 0;
+                while (items.hasNext() && windowItems < WRITE_WINDOW_SIZE) {
+                    StudyNoteRequestDTO dto = items.next();
+                    windowItems++;
+                    try {
+                        // 1. Converte DTO para Entidade (rápido, memória apenas)
+                        StudyNote note = new StudyNote();
+                        dto.toEntity(note);
+
+                        // 2. Prepara o texto para vetorização (mas NÃO chama a API ainda)
+                        textsToEmbedBatch.add(EmbeddingTexts.noteWithReference(note.getBook(),
+                                note.getStartChapter(), note.getStartVerse(), note.getNoteContent()));
+                        notesBatch.add(note);
+                    } catch (Exception e) {
+                        logger.error("❌ Erro estrutural ao preparar item {}: {}", nextIndex + windowItems - 1, e.getMessage());
+                        errorCount.incrementAndGet();
+                    }
                 }
 
-            } catch (Exception e) {
-                logger.error("❌ Erro estrutural ao preparar item {}: {}", i, e.getMessage());
-                errorCount.incrementAndGet();
+                // 3. Vetoriza e grava a janela; o checkpoint vai no mesmo commit
+                nextIndex += windowItems;
+                processed += windowItems;
+                processAndSaveBatch(taskId, notesBatch, textsToEmbedBatch, processed, nextIndex, errorCount);
+                progress.advance(windowItems);
+                progress.log("Processadas " + nextIndex + " de " + total + " notas...");
+                notesBatch.clear();
+                textsToEmbedBatch.clear();
+                logger.info("📦 [PROGRESSO] {}/{} notas processadas...", nextIndex, total);
             }
+
+            task.setStatus(TaskStatus.COMPLETED);
+            task.setCurrentLog(errorCount.get() > 0
+                    ? "Importação concluída com " + errorCount.get() + " notas não gravadas (ver logs)."
+                    : "Importação concluída com sucesso.");
+        } catch (Exception e) {
+            logger.error("Falha na tarefa de importação de notas " + taskId, e);
+            task.setStatus(TaskStatus.FAILED);
+            task.setErrorMessage(e.getMessage());
+        } finally {
+            // Estado final, descartado se a tarefa já foi assumida por outra instância
+            task.setProcessedItems(processed);
+            task.setLastProcessedId((long) nextIndex);
+            task.setEndTime(LocalDateTime.now());
+            jobQueue.finish(task);
         }
 
         long duration = (System.currentTimeMillis() - startTime) / 1000;
-        logger.info("🏁 [FIM] Importação concluída em {}s. Sucessos: {}, Erros: {}",
-                duration, successCount.get(), errorCount.get());
+        logger.info("🏁 [FIM] Importação {} encerrada em {}s ({}). Erros: {}",
+                taskId, duration, task.getStatus(), errorCount.get());
     }
 
     /**
      * Processa um lote: Envia todos os textos para o Gemini de uma vez,
-     * associa os vetores retornados às notas e salva no banco.
+     * associa os vetores retornados às notas e salva no banco junto com o checkpoint.
      */
-    private void processAndSaveBatch(List<StudyNote> notes,
+    private void processAndSaveBatch(Long taskId,
+                                     List<StudyNote> notes,
                                      List<String> texts,
-                                     AtomicInteger successCount,
+                                     int processed,
+                                     int nextIndex,
                                      AtomicInteger errorCount) {
+        if (notes.isEmpty()) {
+            jobQueue.checkpoint(taskId, processed, (long) nextIndex);
+            return;
+        }
         try {
-            // A. Vetorização em Lote (1 chamada de rede para N itens)
-            // IMPORTANTE: Assumindo que geminiApiClient.generateEmbeddingsInBatch existe
-            // e retorna a lista na MESMA ORDEM dos textos enviados.
-            List<PGvector> vectors = geminiApiClient.generateEmbeddingsInBatch(texts);
+            // A. Vetorização em massa (lotes adaptativos, vários em voo, na MESMA ORDEM dos textos)
+            BulkEmbeddingExecutor.BulkEmbeddingResult embeddings = bulkEmbeddingExecutor.embedAll(texts);
 
-            if (vectors.size() != notes.size()) {
-                throw new IllegalStateException("Discrepância entre notas enviadas e vetores retornados pela API.");
-            }
-
-            // B. Atribui os vetores às entidades
+            // B. Atribui os vetores às entidades (falhas isoladas são salvas sem vetor)
             for (int k = 0; k < notes.size(); k++) {
-                PGvector pgVector = vectors.get(k);
-                if (pgVector != null) {
-                    notes.get(k).setNoteVector(pgVector.toArray());
+                float[] vector = embeddings.vectors().get(k);
+                if (vector != null) {
+                    notes.get(k).setNoteVector(vector);
                 }
             }
+            if (embeddings.hasFailures()) {
+                logger.warn("⚠️ {} notas do lote serão salvas sem vetor.", embeddings.failedCount());
+            }
 
-            // C. Salva no banco (Transacional via BatchService)
-            studyNoteBatchService.saveBatch(notes);
-            successCount.addAndGet(notes.size());
+            // C. Salva no banco + checkpoint (se o lease foi perdido, o lote é desfeito)
+            transactionTemplate.executeWithoutResult(status -> {
+                studyNoteBatchService.saveBatch(notes);
+                jobQueue.checkpoint(taskId, processed, (long) nextIndex);
+            });
+            retrievalCache.bumpCorpusVersion("importStudyNotes");
 
+        } catch (JobQueue.LeaseLostException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("❌ Falha ao processar lote de vetorização/banco: {}", e.getMessage());
-            // Se falhar o lote inteiro, contamos como erro
+            // Se falhar o lote inteiro, contamos como erro e seguimos para o próximo
             errorCount.addAndGet(notes.size());
+            jobQueue.checkpoint(taskId, processed, (long) nextIndex);
         }
     }
 }
\ No newline at end of file
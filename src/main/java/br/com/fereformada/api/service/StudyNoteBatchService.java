@@ -1,7 +1,6 @@
 package br.com.fereformada.api.service;
 
 import br.com.fereformada.api.model.StudyNote;
-import br.com.fereformada.api.repository.StudyNoteRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -10,21 +9,33 @@ import java.util.List;
 @Service
 public class StudyNoteBatchService {
 
-    private final StudyNoteRepository studyNoteRepository;
+    private final PgCopyBulkLoader bulkLoader;
 
-    public StudyNoteBatchService(StudyNoteRepository studyNoteRepository) {
-        this.studyNoteRepository = studyNoteRepository;
+    public StudyNoteBatchService(PgCopyBulkLoader bulkLoader) {
+        this.bulkLoader = bulkLoader;
     }
 
     /**
      * Salva uma lista (lote) de notas de estudo.
      * A anotação @Transactional garante que esta operação seja atômica.
      * Cada chamada a este método cria e commita uma nova transação.
+     * <p>
+     * A gravação vai por COPY binário no PostgreSQL (batch JDBC no H2), não por save() de entidade.
      */
     @Transactional
     public void saveBatch(List<StudyNote> notes) {
         if (notes != null && !notes.isEmpty()) {
-            studyNoteRepository.saveAll(notes);
+            bulkLoader.loadNotes(notes.stream()
+                    .map(note -> new PgCopyBulkLoader.NoteInsert(
+                            note.getSource(),
+                            note.getBook(),
+                            note.getStartChapter(),
+                            note.getStartVerse(),
+                            note.getEndChapter(),
+                            note.getEndVerse(),
+                            note.getNoteContent(),
+                            note.getNoteVector()))
+                    .toList());
         }
     }
 
@@ -89,6 +89,13 @@ public class TaggingService {
         );
     }
 
+    /**
+     * false enquanto {@link #initializeRules} não rodou (ex: instância que subiu com os tópicos já criados).
+     */
+    public boolean hasRules() {
+        return !taggingRules.isEmpty();
+    }
+
     /**
      * Aplica uma lógica de pontuação para encontrar os tópicos mais relevantes.
      * @param texts Os textos a serem analisados (ex: título do capítulo, conteúdo da seção).
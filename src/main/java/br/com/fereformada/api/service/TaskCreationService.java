@@ -1,21 +1,30 @@
 package br.com.fereformada.api.service;
 
 import br.com.fereformada.api.model.ImportTask;
-import br.com.fereformada.api.model.enums.TaskStatus;
+import br.com.fereformada.api.model.enums.PdfSource;
+import br.com.fereformada.api.model.enums.TaskType;
 import br.com.fereformada.api.repository.ContentChunkRepository;
 import br.com.fereformada.api.repository.ImportTaskRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class TaskCreationService {
 
-    private final ContentChunkRepository contentChunkRepository;
+    private final AsyncBackfillService asyncBackfillService;
     private final ImportTaskRepository importTaskRepository;
+    private final ContentChunkRepository contentChunkRepository;
+    private final ImportPayloadStore importPayloadStore;
 
-    public TaskCreationService(ContentChunkRepository contentChunkRepository, ImportTaskRepository importTaskRepository) {
-        this.contentChunkRepository = contentChunkRepository;
+    public TaskCreationService(AsyncBackfillService asyncBackfillService,
+                               ImportTaskRepository importTaskRepository,
+                               ContentChunkRepository contentChunkRepository,
+                               ImportPayloadStore importPayloadStore) {
+        this.asyncBackfillService = asyncBackfillService;
         this.importTaskRepository = importTaskRepository;
+        this.contentChunkRepository = contentChunkRepository;
+        this.importPayloadStore = importPayloadStore;
     }
 
     /**
@@ -23,8 +32,8 @@ public class TaskCreationService {
      * assim que termina.
      */
     @Transactional
-    public ImportTask createBackfillTask() {
-        long totalItems = contentChunkRepository.countChunksNeedingQuestionVectorBackfill();
+    public ImportTask createBackfillTask(TaskType target) {
+        long totalItems = asyncBackfillService.countPending(target);
 
         if (totalItems == 0) {
             // Retorna um marcador "dummy" para o controller, não salva nada
@@ -34,11 +43,38 @@ public class TaskCreationService {
         }
 
         ImportTask task = new ImportTask();
+        task.setTaskType(target);
         task.setTotalItems((int) totalItems);
         task.setCurrentLog("Tarefa enfileirada, aguardando início...");
-        task.setStatus(TaskStatus.PROCESSING); // Status inicial correto
 
-        // Salva e faz o COMMIT (ao sair do método)
+        // Salva como PENDING e faz o COMMIT (ao sair do método); o JobQueueWorker de alguma instância a reserva
         return importTaskRepository.save(task);
     }
-}
\ No newline at end of file
+
+    /**
+     * Enfileira a ingestão de um PDF embutido. A obra de origem vai na entrada persistida da tarefa.
+     * Se a obra já tem chunks, devolve um marcador sem id (nada a fazer), como no backfill.
+     */
+    @Transactional
+    public ImportTask createPdfIngestionTask(PdfSource source) {
+        if (contentChunkRepository.countByWorkTitle(source.workTitle()) > 0) {
+            ImportTask dummyTask = new ImportTask();
+            dummyTask.setTotalItems(0);
+            return dummyTask;
+        }
+
+        ImportTask task = new ImportTask();
+        task.setTaskType(TaskType.IMPORT_PDF);
+        task.setCurrentLog("Tarefa enfileirada, aguardando início...");
+        task = importTaskRepository.save(task);
+
+        ImportPayloadStore.Appender payload = importPayloadStore.appender(task.getId());
+        try {
+            payload.add(source);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Não foi possível registrar o PDF de origem", e);
+        }
+        payload.finish();
+        return task;
+    }
+}
@@ -0,0 +1,204 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.dto.TaskProgressDTO;
+import br.com.fereformada.api.model.ImportTask;
+import br.com.fereformada.api.model.enums.TaskStatus;
+import br.com.fereformada.api.model.enums.TaskType;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Progresso vivo de uma tarefa em execução nesta instância. Atualizado sem lock pelo executor
+ * (e pelas threads do pipeline); lido pelo stream SSE e gravado no banco periodicamente
+ * pelo {@link TaskProgressRegistry}.
+ */
+public final class TaskProgress {
+
+    static final int MAX_REPORTED_FAILURES = 1000;
+    private static final String SUMMARY_PREFIX = "... e mais ";
+    // Linha de intervalo gravada por failRange: "#800..#999: ..."
+    private static final Pattern RANGE_LINE = Pattern.compile("^#(\\d+)\\.\\.#(\\d+)");
+
+    private final Long taskId;
+    private final TaskType taskType;
+    private volatile Integer totalItems;
+    private final String node;
+    private final long startNanos = System.nanoTime();
+    private final long processedAtStart;
+
+    private final AtomicLong processed;
+    private final AtomicLong failed;
+    private final ConcurrentLinkedQueue<String> failureLines = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger reportedFailures = new AtomicInteger();
+    // Itens cobertos pelas linhas do relatório (uma linha de intervalo cobre vários)
+    private final AtomicLong reportedItems = new AtomicLong();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private volatile String currentLog;
+
+    TaskProgress(ImportTask task, String node) {
+        this.taskId = task.getId();
+        this.taskType = task.getTaskType();
+        this.totalItems = task.getTotalItems();
+        this.node = node;
+        this.processedAtStart = task.getProcessedItems() != null ? task.getProcessedItems() : 0;
+        this.processed = new AtomicLong(processedAtStart);
+        this.failed = new AtomicLong();
+        this.currentLog = task.getCurrentLog();
+        seedFailures(task.getFailedItems());
+    }
+
+    public Long taskId() {
+        return taskId;
+    }
+
+    /**
+     * Itens concluídos (gravados ou com falha) desde o início da tarefa, incluindo execuções anteriores.
+     */
+    public long processed() {
+        return processed.get();
+    }
+
+    public long failed() {
+        return failed.get();
+    }
+
+    /**
+     * Total descoberto só durante a execução (ex: trechos encontrados no PDF).
+     */
+    public void setTotal(int items) {
+        this.totalItems = items;
+        dirty.set(true);
+    }
+
+    public void advance(long items) {
+        processed.addAndGet(items);
+        dirty.set(true);
+    }
+
+    public void setProcessed(long items) {
+        processed.set(items);
+        dirty.set(true);
+    }
+
+    /**
+     * Registra a falha de um item (conta como processado). Só as primeiras linhas vão para o relatório.
+     */
+    public void fail(String line) {
+        failed.incrementAndGet();
+        processed.incrementAndGet();
+        if (reportedFailures.getAndIncrement() < MAX_REPORTED_FAILURES) {
+            failureLines.add(line);
+            reportedItems.incrementAndGet();
+        }
+        dirty.set(true);
+    }
+
+    /**
+     * Falha de um intervalo inteiro (ex: "#800..#999: não processado"), que conta {@code items} itens
+     * mas ocupa uma linha só do relatório.
+     */
+    public void failRange(String line, long items) {
+        failed.addAndGet(items);
+        if (reportedFailures.getAndIncrement() < MAX_REPORTED_FAILURES) {
+            failureLines.add(line);
+            reportedItems.addAndGet(items);
+        }
+        dirty.set(true);
+    }
+
+    public void log(String message) {
+        this.currentLog = message;
+        dirty.set(true);
+    }
+
+    public String currentLog() {
+        return currentLog;
+    }
+
+    /**
+     * Relatório de falhas no formato de import_tasks.failed_items (null se não houve falhas).
+     */
+    public String failedItemsText() {
+        if (failureLines.isEmpty()) {
+            return null;
+        }
+        String report = String.join("\n", failureLines);
+        long hidden = failed.get() - reportedItems.get();
+        return hidden > 0 ? report + "\n" + SUMMARY_PREFIX + hidden + " itens." : report;
+    }
+
+    /**
+     * true se houve mudança desde a última chamada (usado pelo flush periódico).
+     */
+    boolean takeDirty() {
+        return dirty.getAndSet(false);
+    }
+
+    TaskProgressDTO snapshot() {
+        long done = processed.get();
+        Integer totalItems = this.totalItems;
+        double elapsedSeconds = Math.max(0.001, (System.nanoTime() - startNanos) / 1_000_000_000.0);
+        double rate = (done - processedAtStart) / elapsedSeconds;
+        Long eta = totalItems != null && rate > 0 ? (long) Math.ceil(Math.max(0, totalItems - done) / rate) : null;
+        return new TaskProgressDTO(taskId, taskType, TaskStatus.PROCESSING, totalItems, done, failed.get(),
+                rate, eta, currentLog, node, true, LocalDateTime.now());
+    }
+
+    /**
+     * Quantos itens um relatório failed_items representa (linhas "#...", intervalos "#a..#b"
+     * e o resumo "... e mais N itens.").
+     */
+    static long countFailures(String failedItems) {
+        if (failedItems == null) {
+            return 0;
+        }
+        return failedItems.lines().mapToLong(line -> {
+            if (line.startsWith("#")) {
+                return lineItems(line);
+            }
+            return line.startsWith(SUMMARY_PREFIX) ? summaryCount(line) : 0;
+        }).sum();
+    }
+
+    /**
+     * Itens cobertos por uma linha "#...": o intervalo inteiro em "#a..#b: ...", senão um.
+     */
+    private static long lineItems(String line) {
+        Matcher range = RANGE_LINE.matcher(line);
+        if (!range.find()) {
+            return 1;
+        }
+        return Math.max(1, Long.parseLong(range.group(2)) - Long.parseLong(range.group(1)) + 1);
+    }
+
+    private static long summaryCount(String line) {
+        String count = line.substring(SUMMARY_PREFIX.length()).replaceAll("\\D", "");
+        return count.isEmpty() ? 0 : Long.parseLong(count);
+    }
+
+    /**
+     * Retomada: as falhas já reportadas (e o resumo "... e mais N itens.") continuam valendo.
+     */
+    private void seedFailures(String failedItems) {
+        if (failedItems == null) {
+            return;
+        }
+        failedItems.lines().forEach(line -> {
+            if (line.startsWith("#")) {
+                long items = lineItems(line);
+                failed.addAndGet(items);
+                reportedFailures.incrementAndGet();
+                reportedItems.addAndGet(items);
+                failureLines.add(line);
+            } else if (line.startsWith(SUMMARY_PREFIX)) {
+                failed.addAndGet(summaryCount(line));
+            }
+        });
+    }
+}
@@ -0,0 +1,102 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.dto.TaskProgressDTO;
+import br.com.fereformada.api.model.ImportTask;
+import br.com.fereformada.api.model.enums.TaskStatus;
+import br.com.fereformada.api.repository.ImportTaskRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro em memória do progresso das tarefas que rodam NESTA instância.
+ * <p>
+ * Os executores atualizam o {@link TaskProgress} sem lock e sem tocar no banco; este registro grava o
+ * progresso informativo (contagem, log, relatório de falhas) só periodicamente, e o estado final é gravado
+ * uma vez pelo {@link JobQueue#finish}. O stream SSE lê daqui ou, para tarefas de outras instâncias, do banco.
+ */
+@Component
+public class TaskProgressRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskProgressRegistry.class);
+
+    private final JobQueue jobQueue;
+    private final ImportTaskRepository importTaskRepository;
+    private final Map<Long, TaskProgress> active = new ConcurrentHashMap<>();
+
+    public TaskProgressRegistry(JobQueue jobQueue, ImportTaskRepository importTaskRepository) {
+        this.jobQueue = jobQueue;
+        this.importTaskRepository = importTaskRepository;
+    }
+
+    public TaskProgress start(ImportTask task) {
+        TaskProgress progress = new TaskProgress(task, jobQueue.nodeId());
+        active.put(task.getId(), progress);
+        return progress;
+    }
+
+    public void remove(Long taskId) {
+        active.remove(taskId);
+    }
+
+    /**
+     * Snapshot atual: ao vivo se a tarefa roda aqui; senão o último estado gravado no banco.
+     */
+    public Optional<TaskProgressDTO> snapshot(Long taskId) {
+        TaskProgress progress = active.get(taskId);
+        if (progress != null) {
+            return Optional.of(progress.snapshot());
+        }
+        return importTaskRepository.findById(taskId).map(TaskProgressRegistry::fromTask);
+    }
+
+    /**
+     * Flush periódico do progresso das tarefas locais que mudaram desde o último flush.
+     */
+    @Scheduled(fixedDelayString = "${fereformada.jobs.progress.flush-ms:5000}")
+    public void flush() {
+        active.values().forEach(progress -> {
+            if (!progress.takeDirty()) {
+                return;
+            }
+            try {
+                jobQueue.flushProgress(progress.taskId(), progress.processed(),
+                        progress.currentLog(), progress.failedItemsText());
+            } catch (RuntimeException e) {
+                logger.warn("Flush do progresso da tarefa {} falhou: {}", progress.taskId(), e.getMessage());
+            }
+        });
+    }
+
+    public int activeCount() {
+        return active.size();
+    }
+
+    // ===== HELPERS =====
+
+    /**
+     * Snapshot a partir da linha da tarefa (taxa média desde a criação; sem ETA fora de PROCESSING).
+     */
+    static TaskProgressDTO fromTask(ImportTask task) {
+        long processed = task.getProcessedItems() != null ? task.getProcessedItems() : 0;
+        double rate = 0;
+        Long eta = null;
+        if (task.getStatus() == TaskStatus.PROCESSING && task.getStartTime() != null) {
+            double seconds = Math.max(1, Duration.between(task.getStartTime(), LocalDateTime.now()).toSeconds());
+            rate = processed / seconds;
+            if (task.getTotalItems() != null && rate > 0) {
+                eta = (long) Math.ceil(Math.max(0, task.getTotalItems() - processed) / rate);
+            }
+        }
+        return new TaskProgressDTO(task.getId(), task.getTaskType(), task.getStatus(), task.getTotalItems(),
+                processed, TaskProgress.countFailures(task.getFailedItems()), rate, eta,
+                task.getCurrentLog(), task.getLeaseOwner(), false, LocalDateTime.now());
+    }
+}
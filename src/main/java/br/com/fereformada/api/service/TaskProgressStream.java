@@ -0,0 +1,115 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.dto.TaskProgressDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Stream SSE do progresso das tarefas para o painel admin (substitui o polling de getTaskStatus).
+ * <p>
+ * Um único publicador agendado monta UM snapshot por tarefa observada e o envia a todos os inscritos:
+ * N abas abertas na mesma tarefa não multiplicam as leituras. Ao chegar em COMPLETED/FAILED o evento
+ * final é enviado e os streams são encerrados.
+ */
+@Component
+public class TaskProgressStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskProgressStream.class);
+    private static final String EVENT_NAME = "progress";
+
+    private final TaskProgressRegistry progressRegistry;
+    private final long timeoutMs;
+    private final Map<Long, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    public TaskProgressStream(TaskProgressRegistry progressRegistry,
+                              @Value("${fereformada.jobs.progress.stream-timeout-ms:1800000}") long timeoutMs) {
+        this.progressRegistry = progressRegistry;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Inscreve no progresso da tarefa; o primeiro evento sai imediatamente. Vazio se a tarefa não existe.
+     */
+    public Optional<SseEmitter> subscribe(Long taskId) {
+        return progressRegistry.snapshot(taskId).map(initial -> subscribe(taskId, initial));
+    }
+
+    private SseEmitter subscribe(Long taskId, TaskProgressDTO initial) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        if (!send(emitter, initial) || initial.isFinished()) {
+            emitter.complete();
+            return emitter;
+        }
+
+        subscribers.computeIfAbsent(taskId, id -> new CopyOnWriteArrayList<>()).add(emitter);
+        Runnable unsubscribe = () -> unsubscribe(taskId, emitter);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${fereformada.jobs.progress.publish-ms:1000}")
+    public void publish() {
+        subscribers.forEach((taskId, emitters) -> {
+            if (emitters.isEmpty()) {
+                return;
+            }
+            Optional<TaskProgressDTO> snapshot;
+            try {
+                snapshot = progressRegistry.snapshot(taskId);
+            } catch (RuntimeException e) {
+                // Banco indisponível: os inscritos recebem o próximo snapshot
+                logger.warn("Snapshot da tarefa {} indisponível: {}", taskId, e.getMessage());
+                return;
+            }
+            if (snapshot.isEmpty()) {
+                emitters.forEach(SseEmitter::complete);
+                subscribers.remove(taskId);
+                return;
+            }
+
+            for (SseEmitter emitter : emitters) {
+                if (!send(emitter, snapshot.get())) {
+                    unsubscribe(taskId, emitter);
+                }
+            }
+            if (snapshot.get().isFinished()) {
+                emitters.forEach(SseEmitter::complete);
+                subscribers.remove(taskId);
+            }
+        });
+    }
+
+    public int subscriberCount() {
+        return subscribers.values().stream().mapToInt(List::size).sum();
+    }
+
+    private boolean send(SseEmitter emitter, TaskProgressDTO snapshot) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(snapshot));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Cliente desconectou (ou o emitter já foi encerrado)
+            return false;
+        }
+    }
+
+    private void unsubscribe(Long taskId, SseEmitter emitter) {
+        subscribers.computeIfPresent(taskId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
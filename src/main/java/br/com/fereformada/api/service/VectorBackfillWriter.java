@@ -0,0 +1,52 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.model.enums.VectorTarget;
+import com.pgvector.PGvector;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Grava vetores com UM comando por página/lote (backfill e outbox de embeddings):
+ * UPDATE ... FROM (VALUES (id, vetor), ...) — em vez de um UPDATE por linha.
+ * <p>
+ * Não invalida o {@link RetrievalCache}: quem chama faz isso uma vez no fim do backfill
+ * ou do ciclo do outbox, e não a cada página.
+ */
+@Component
+public class VectorBackfillWriter {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VectorBackfillWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Grava os vetores não nulos da página. Retorna quantas linhas foram atualizadas.
+     */
+    public int writeVectors(VectorTarget target, List<Long> ids, List<float[]> vectors) {
+        StringJoiner values = new StringJoiner(", ");
+        List<Object> args = new ArrayList<>(ids.size() * 2);
+        for (int i = 0; i < ids.size(); i++) {
+            float[] vector = vectors.get(i);
+            if (vector == null) {
+                continue; // falhou na vetorização; fica para o próximo backfill
+            }
+            values.add("(CAST(? AS bigint), ?)");
+            args.add(ids.get(i));
+            args.add(new PGvector(vector).toString());
+        }
+        if (args.isEmpty()) {
+            return 0;
+        }
+
+        // Tabela/coluna vêm do enum (nunca da requisição)
+        String sql = "UPDATE " + target.table() + " AS t SET " + target.column() + " = CAST(v.vec AS vector) " +
+                "FROM (VALUES " + values + ") AS v(id, vec) WHERE t.id = v.id";
+        return jdbcTemplate.update(sql, args.toArray());
+    }
+}
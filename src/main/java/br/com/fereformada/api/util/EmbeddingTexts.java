@@ -0,0 +1,83 @@
+package br.com.fereformada.api.util;
+
+/**
+ * Formatos dos textos enviados ao modelo de embeddings para chunks e notas, cada um ao lado da sua
+ * expressão SQL equivalente.
+ * <p>
+ * O armazém de embeddings é chaveado pelo hash do texto exato, e o GC dele refaz estes textos em SQL
+ * ({@link #LIVE_TEXTS_SQL}) para saber quais vetores ainda estão em uso. Todo caminho de vetorização monta
+ * o texto por aqui, e o EmbeddingTextsTest roda cada expressão no H2 contra o builder Java: mudar um formato
+ * sem mudar o outro quebra o teste em vez de deixar o GC apagar vetores vivos.
+ * <p>
+ * Pergunta, conteúdo e conteúdo da nota também são vetorizados como estão (backfill, outbox, notas de Genebra).
+ */
+public final class EmbeddingTexts {
+
+    /**
+     * {@link #chunkWithQuestion} em SQL, sobre content_chunks {@code c}.
+     */
+    public static final String CHUNK_WITH_QUESTION_SQL = "c.question || CHR(10) || c.content";
+
+    /**
+     * {@link #chunkWithTitles} em SQL, sobre content_chunks {@code c}.
+     */
+    public static final String CHUNK_WITH_TITLES_SQL = "COALESCE(c.chapter_title || '. ', '') " +
+            "|| COALESCE(c.section_title || '. ', '') || COALESCE(c.subsection_title || '. ', '') || c.content";
+
+    /**
+     * {@link #noteWithReference} em SQL, sobre study_notes {@code n}.
+     */
+    public static final String NOTE_WITH_REFERENCE_SQL =
+            "CONCAT(n.book, ' ', n.start_chapter, ':', n.start_verse, CHR(10), n.note_content)";
+
+    /**
+     * Todos os textos que os caminhos de vetorização enviam para as linhas vivas (pode conter NULL).
+     */
+    public static final String LIVE_TEXTS_SQL =
+            "SELECT c.question FROM content_chunks c" +
+            " UNION ALL SELECT c.content FROM content_chunks c" +
+            " UNION ALL SELECT " + CHUNK_WITH_QUESTION_SQL + " FROM content_chunks c" +
+            " UNION ALL SELECT " + CHUNK_WITH_TITLES_SQL + " FROM content_chunks c" +
+            " UNION ALL SELECT n.note_content FROM study_notes n" +
+            " UNION ALL SELECT " + NOTE_WITH_REFERENCE_SQL + " FROM study_notes n";
+
+    private EmbeddingTexts() {
+    }
+
+    /**
+     * Texto de um chunk importado: "pergunta\nconteúdo" quando há pergunta, senão "títulos. conteúdo".
+     */
+    public static String chunkForImport(String question, String chapterTitle, String sectionTitle,
+                                        String subsectionTitle, String content) {
+        if (question != null && !question.isBlank()) {
+            return chunkWithQuestion(question, content);
+        }
+        return chunkWithTitles(chapterTitle, sectionTitle, subsectionTitle, content);
+    }
+
+    /**
+     * "pergunta\nconteúdo" (catecismos).
+     */
+    public static String chunkWithQuestion(String question, String content) {
+        return question + "\n" + content;
+    }
+
+    /**
+     * Títulos presentes, cada um seguido de ". ", e o conteúdo.
+     */
+    public static String chunkWithTitles(String chapterTitle, String sectionTitle, String subsectionTitle,
+                                         String content) {
+        StringBuilder sb = new StringBuilder();
+        if (chapterTitle != null) sb.append(chapterTitle).append(". ");
+        if (sectionTitle != null) sb.append(sectionTitle).append(". ");
+        if (subsectionTitle != null) sb.append(subsectionTitle).append(". ");
+        return sb.append(content).toString();
+    }
+
+    /**
+     * "Livro cap:vers\nconteúdo" (notas criadas ou importadas pelo admin, backfill e outbox de notas).
+     */
+    public static String noteWithReference(String book, Integer startChapter, Integer startVerse, String noteContent) {
+        return book + " " + startChapter + ":" + startVerse + "\n" + noteContent;
+    }
+}
@@ -0,0 +1,106 @@
+package br.com.fereformada.api.config;
+
+import br.com.fereformada.api.repository.AuthorRepository;
+import br.com.fereformada.api.repository.ContentChunkRepository;
+import br.com.fereformada.api.repository.TopicRepository;
+import br.com.fereformada.api.repository.WorkRepository;
+import br.com.fereformada.api.service.ChunkingService;
+import br.com.fereformada.api.service.GeminiApiClient;
+import br.com.fereformada.api.service.GenevaNotesLoader;
+import br.com.fereformada.api.service.TaggingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Status do conteúdo numa consulta só, contra o H2: cada obra conhecida com a sua contagem de chunks,
+ * obra ausente sem linha, e as notas de Genebra completas só com os 66 livros.
+ */
+class DatabaseSeederStatusTest {
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private DatabaseSeeder seeder;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:database-seeder-status", "sa", "", true);
+        jdbcTemplate = spy(new JdbcTemplate(dataSource));
+        jdbcTemplate.execute("CREATE TABLE works (id BIGINT PRIMARY KEY, title VARCHAR)");
+        jdbcTemplate.execute("CREATE TABLE content_chunks (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "work_id BIGINT)");
+        jdbcTemplate.execute("CREATE TABLE study_notes (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "source VARCHAR, book VARCHAR)");
+
+        seeder = new DatabaseSeeder(mock(AuthorRepository.class), mock(WorkRepository.class),
+                mock(TopicRepository.class), mock(ContentChunkRepository.class), mock(ResourceLoader.class),
+                mock(ChunkingService.class), mock(TaggingService.class), mock(GeminiApiClient.class),
+                mock(GenevaNotesLoader.class), jdbcTemplate, new StartupTimings());
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        dataSource.destroy();
+    }
+
+    @Test
+    void singleQueryReportsEachSource() {
+        work(1, "Confissão de Fé de Westminster", 3);
+        work(2, "Breve Catecismo de Westminster", 0);
+        work(3, "Obra que o seeder não conhece", 5);
+        for (int book = 0; book < 66; book++) {
+            note(GenevaNotesLoader.SOURCE_NAME, "Livro " + book);
+        }
+        note(GenevaNotesLoader.SOURCE_NAME, "Livro 0");
+        note("Outra fonte", "Livro extra");
+
+        DatabaseSeeder.DatabaseStatus status = seeder.checkDatabaseStatus();
+
+        assertTrue(status.hasConfession);
+        assertEquals(3, status.confessionChunks);
+        // Obra cadastrada sem chunks ainda conta como presente
+        assertTrue(status.hasShorterCatechism);
+        assertEquals(0, status.shorterCatechismChunks);
+        assertFalse(status.hasLargerCatechism);
+        assertFalse(status.hasInstitutes);
+        assertFalse(status.hasSystematicTheology);
+        assertTrue(status.hasGenevaNotes);
+        assertEquals(67, status.genevaNotesCount);
+        assertFalse(status.isComplete());
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    @Test
+    void genevaNotesAreIncompleteUntilEveryBookIsLoaded() {
+        note(GenevaNotesLoader.SOURCE_NAME, "Gênesis");
+        note(GenevaNotesLoader.SOURCE_NAME, "Gênesis");
+
+        DatabaseSeeder.DatabaseStatus status = seeder.checkDatabaseStatus();
+
+        assertFalse(status.hasGenevaNotes);
+        assertEquals(2, status.genevaNotesCount);
+        assertFalse(status.hasConfession);
+    }
+
+    // --- Métodos Helper ---
+
+    private void work(long id, String title, int chunks) {
+        jdbcTemplate.update("INSERT INTO works (id, title) VALUES (?, ?)", id, title);
+        for (int i = 0; i < chunks; i++) {
+            jdbcTemplate.update("INSERT INTO content_chunks (work_id) VALUES (?)", id);
+        }
+    }
+
+    private void note(String source, String book) {
+        jdbcTemplate.update("INSERT INTO study_notes (source, book) VALUES (?, ?)", source, book);
+    }
+}
@@ -0,0 +1,77 @@
+package br.com.fereformada.api.config;
+
+import br.com.fereformada.api.repository.TopicRepository;
+import br.com.fereformada.api.service.QueryService;
+import br.com.fereformada.api.service.TaggingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * O readiness fica OUT_OF_SERVICE enquanto o warm-up roda em segundo plano e vira UP quando ele termina;
+ * uma falha no warm-up também libera o tráfego.
+ */
+class StartupWarmupTest {
+
+    private final QueryService queryService = mock(QueryService.class);
+    private final TaggingService taggingService = mock(TaggingService.class);
+    private final StartupWarmup warmup = new StartupWarmup(queryService, taggingService, mock(TopicRepository.class),
+            new StartupTimings());
+
+    @Test
+    void readinessIsOutOfServiceUntilTheWarmUpCompletes() throws Exception {
+        CountDownLatch warmUpStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            warmUpStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(queryService).warmUp();
+        when(taggingService.hasRules()).thenReturn(true);
+
+        assertEquals(Status.OUT_OF_SERVICE, warmup.health().getStatus());
+        warmup.onApplicationReady(readyEvent());
+        assertTrue(warmUpStarted.await(5, TimeUnit.SECONDS));
+        assertEquals(Status.OUT_OF_SERVICE, warmup.health().getStatus());
+
+        release.countDown();
+
+        assertEquals(Status.UP, awaitStatus(Status.UP));
+        assertTrue(warmup.health().getDetails().isEmpty());
+    }
+
+    @Test
+    void failedWarmUpStillBecomesReady() throws Exception {
+        doThrow(new IllegalStateException("banco indisponível")).when(queryService).warmUp();
+
+        warmup.onApplicationReady(readyEvent());
+
+        assertEquals(Status.UP, awaitStatus(Status.UP));
+        assertEquals("banco indisponível", warmup.health().getDetails().get("warmUpError"));
+    }
+
+    // --- Métodos Helper ---
+
+    private static ApplicationReadyEvent readyEvent() {
+        ApplicationReadyEvent event = mock(ApplicationReadyEvent.class);
+        when(event.getTimeTaken()).thenReturn(Duration.ofMillis(1200));
+        return event;
+    }
+
+    private Status awaitStatus(Status expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        Status status = warmup.health().getStatus();
+        while (!status.equals(expected) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            status = warmup.health().getStatus();
+        }
+        return status;
+    }
+}
@@ -0,0 +1,211 @@
+package br.com.fereformada.api.loadtest;
+
+import br.com.fereformada.api.service.QueryTracer;
+import br.com.fereformada.api.support.StubChatModel;
+import br.com.fereformada.api.support.StubEmbeddingModel;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Harness de carga local ({@code mvn -Ploadtest test}, ver docs/loadtest.md): sobe a aplicação inteira contra
+ * um PostgreSQL local com pgvector, com ChatModel e EmbeddingModel stub (latência e falhas configuráveis),
+ * e dispara a mistura de perguntas em {@code /api/chat} e {@code /api/query}.
+ * <p>
+ * O corpus é carregado pelo DatabaseSeeder na subida (com os vetores determinísticos do stub). Os perfis de
+ * latência só valem depois do readiness, para a carga do corpus não pagar o atraso simulado. Depois do
+ * aquecimento os timers {@code rag.*} são zerados, e o relatório mede só a rodada.
+ */
+@Tag("load")
+@ActiveProfiles("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ChatLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatLoadTest.class);
+    private static final int USERS = 20;
+
+    @Autowired
+    private TestRestTemplate rest;
+
+    @Autowired
+    private StubChatModel chatModel;
+
+    @Autowired
+    private StubEmbeddingModel embeddingModel;
+
+    @Autowired
+    private QueryTracer queryTracer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Autowired
+    private Environment env;
+
+    @Value("${supabase.jwt.secret}")
+    private String jwtSecret;
+
+    @Value("${fereformada.loadtest.concurrency:8}")
+    private int concurrency;
+
+    @Value("${fereformada.loadtest.warmup-requests:20}")
+    private int warmupRequests;
+
+    @Value("${fereformada.loadtest.requests:400}")
+    private int requests;
+
+    @Value("${fereformada.loadtest.chat-share:0.5}")
+    private double chatShare;
+
+    @Value("${fereformada.loadtest.questions:classpath:loadtest/questions.tsv}")
+    private String questions;
+
+    @Value("${fereformada.loadtest.seed:42}")
+    private long seed;
+
+    @Value("${fereformada.loadtest.startup-timeout-seconds:1800}")
+    private long startupTimeoutSeconds;
+
+    @Value("${fereformada.loadtest.max-error-rate:0}")
+    private double maxErrorRate;
+
+    @Value("${fereformada.loadtest.max-p95-ms:0}")
+    private double maxP95Ms;
+
+    @Value("${fereformada.loadtest.report-dir:target/loadtest}")
+    private String reportDir;
+
+    @Test
+    void chatAndQueryUnderLoad() throws Exception {
+        waitForReadiness();
+
+        ModelProfile chatProfile = ModelProfile.from(env, "fereformada.loadtest.chat");
+        ModelProfile embeddingProfile = ModelProfile.from(env, "fereformada.loadtest.embedding");
+        chatModel.respondingWith(new PipelineResponder())
+                .withDelays(chatProfile::delayFor)
+                .withFailures(call -> chatProfile.failureFor(call, "chat"));
+        embeddingModel.withDelays(embeddingProfile::delayFor)
+                .withFailures(call -> embeddingProfile.failureFor(call, "embedding"));
+
+        QuestionMix mix = QuestionMix.load(resourceLoader.getResource(questions));
+        List<String> tokens = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            tokens.add(token(UUID.randomUUID()));
+        }
+        LoadDriver driver = new LoadDriver(rest, mix, chatShare, i -> tokens.get(i % tokens.size()));
+
+        logger.info("🔥 Aquecimento: {} requisições", warmupRequests);
+        driver.run(warmupRequests, concurrency, seed - 1);
+        resetPipelineMeters();
+        int chatCallsBefore = chatModel.getCalls();
+        int embeddingCallsBefore = embeddingModel.getCalls();
+
+        logger.info("🚀 Rodada: {} requisições, {} threads", requests, concurrency);
+        LoadDriver.Run result = driver.run(requests, concurrency, seed);
+
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("startedAt", new Date());
+        run.put("requests", requests);
+        run.put("concurrency", concurrency);
+        run.put("chatShare", chatShare);
+        run.put("questions", questions + " (" + mix.size() + ")");
+        run.put("seed", seed);
+        run.put("chatModel", chatProfile.toString());
+        run.put("embeddingModel", embeddingProfile.toString());
+        run.put("chatModelCalls", chatModel.getCalls() - chatCallsBefore);
+        run.put("embeddingCalls", embeddingModel.getCalls() - embeddingCallsBefore);
+
+        LoadReport report = new LoadReport(run, result, queryTracer.getStageSummary());
+        Path written = report.write(Path.of(reportDir), objectMapper);
+        logger.info("\n{}\n📄 Relatório em {}", report.render(), written.toAbsolutePath());
+
+        if (maxErrorRate > 0) {
+            assertTrue(report.errorRate() <= maxErrorRate,
+                    "taxa de erro " + report.errorRate() + " acima do limite " + maxErrorRate);
+        }
+        if (maxP95Ms > 0) {
+            assertTrue(report.p95Ms() <= maxP95Ms, "p95 de " + report.p95Ms() + "ms acima do limite " + maxP95Ms + "ms");
+        }
+    }
+
+    // --- Métodos Helper ---
+
+    private void waitForReadiness() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + startupTimeoutSeconds * 1000;
+        while (System.currentTimeMillis() < deadline) {
+            if (rest.getForEntity("/actuator/health/readiness", String.class).getStatusCode() == HttpStatus.OK) {
+                return;
+            }
+            Thread.sleep(500);
+        }
+        fail("readiness não ficou UP em " + startupTimeoutSeconds + "s");
+    }
+
+    /**
+     * Remove os timers do pipeline gravados no aquecimento; a rodada registra tudo de novo.
+     */
+    private void resetPipelineMeters() {
+        for (String name : List.of(QueryTracer.STAGE_METRIC, QueryTracer.REQUEST_METRIC)) {
+            for (Meter meter : meterRegistry.find(name).meters()) {
+                meterRegistry.remove(meter);
+            }
+        }
+    }
+
+    private String token(UUID userId) {
+        return Jwts.builder()
+                .setSubject(userId.toString())
+                .claim("role", "USER")
+                .setExpiration(new Date(System.currentTimeMillis() + 6 * 3_600_000L))
+                .signWith(Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8)), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    @TestConfiguration
+    static class StubModels {
+
+        @Bean
+        StubChatModel chatModel() {
+            return new StubChatModel();
+        }
+
+        @Bean
+        StubEmbeddingModel embeddingModel() {
+            return new StubEmbeddingModel();
+        }
+    }
+}
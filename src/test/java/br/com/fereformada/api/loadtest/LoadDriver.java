@@ -0,0 +1,118 @@
+package br.com.fereformada.api.loadtest;
+
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Dispara as requisições da rodada com {@code concurrency} threads, sorteando pergunta e endpoint
+ * ({@code /api/chat} ou {@code /api/query}) de forma reproduzível pela semente, e mede cada uma do lado
+ * do cliente (latência de ponta a ponta, com HTTP e serialização).
+ */
+final class LoadDriver {
+
+    static final String CHAT = "/api/chat";
+    static final String QUERY = "/api/query";
+
+    /**
+     * Resultado de uma requisição.
+     */
+    record Sample(String endpoint, long nanos, int status, String error) {
+        boolean ok() {
+            return error == null && status >= 200 && status < 300;
+        }
+    }
+
+    /**
+     * Amostras na ordem dos sorteios e a duração total da rodada.
+     */
+    record Run(List<Sample> samples, long wallNanos) {
+    }
+
+    private final TestRestTemplate rest;
+    private final QuestionMix mix;
+    private final double chatShare;
+    private final IntFunction<String> tokenForRequest;
+
+    LoadDriver(TestRestTemplate rest, QuestionMix mix, double chatShare, IntFunction<String> tokenForRequest) {
+        this.rest = rest;
+        this.mix = mix;
+        this.chatShare = Math.max(0, Math.min(1, chatShare));
+        this.tokenForRequest = tokenForRequest;
+    }
+
+    Run run(int requests, int concurrency, long seed) throws InterruptedException {
+        // Sorteios feitos antes, numa thread só: a sequência não depende do escalonamento
+        Random random = new Random(seed);
+        List<String> endpoints = new ArrayList<>(requests);
+        List<String> questions = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            endpoints.add(random.nextDouble() < chatShare ? CHAT : QUERY);
+            questions.add(mix.pick(random));
+        }
+
+        Map<Integer, Sample> samples = new ConcurrentHashMap<>();
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, concurrency));
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < Math.max(1, concurrency); t++) {
+                workers.add(executor.submit(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < requests) {
+                        samples.put(i, send(endpoints.get(i), questions.get(i), tokenForRequest.apply(i)));
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Worker do teste de carga falhou", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        long wallNanos = System.nanoTime() - start;
+
+        List<Sample> ordered = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            ordered.add(samples.get(i));
+        }
+        return new Run(ordered, wallNanos);
+    }
+
+    private Sample send(String endpoint, String question, String token) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<Map<String, Object>> request = new HttpEntity<>(Map.of("question", question), headers);
+
+        long start = System.nanoTime();
+        try {
+            ResponseEntity<String> response = rest.exchange(endpoint, HttpMethod.POST, request, String.class);
+            return new Sample(endpoint, System.nanoTime() - start, response.getStatusCode().value(), null);
+        } catch (RuntimeException e) {
+            return new Sample(endpoint, System.nanoTime() - start, 0, e.getClass().getSimpleName());
+        }
+    }
+}
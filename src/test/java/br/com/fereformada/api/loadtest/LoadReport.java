@@ -0,0 +1,135 @@
+package br.com.fereformada.api.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Relatório de uma rodada: vazão e p50/p95/p99 por endpoint (medidos no cliente, percentis exatos) e por etapa
+ * do pipeline (timers {@code rag.stage} do QueryTracer). Sai no console e em {@code report-dir} (texto e JSON).
+ */
+final class LoadReport {
+
+    private final Map<String, Object> run;
+    private final Map<String, Map<String, Object>> endpoints = new TreeMap<>();
+    private final List<Map<String, Object>> stages;
+
+    LoadReport(Map<String, Object> run, LoadDriver.Run result, List<Map<String, Object>> stages) {
+        this.run = new LinkedHashMap<>(run);
+        this.stages = stages;
+
+        double wallSeconds = result.wallNanos() / 1e9;
+        this.run.put("wallSeconds", round(wallSeconds));
+        this.run.put("throughputRps", round(result.samples().size() / wallSeconds));
+
+        Map<String, List<LoadDriver.Sample>> byEndpoint = new TreeMap<>();
+        result.samples().forEach(sample -> byEndpoint.computeIfAbsent(sample.endpoint(), key -> new ArrayList<>()).add(sample));
+        byEndpoint.put("total", result.samples());
+        byEndpoint.forEach((endpoint, samples) -> endpoints.put(endpoint, summarize(samples, wallSeconds)));
+    }
+
+    Map<String, Object> endpoint(String name) {
+        return endpoints.getOrDefault(name, Map.of());
+    }
+
+    double errorRate() {
+        return (double) endpoint("total").getOrDefault("errorRate", 0.0);
+    }
+
+    double p95Ms() {
+        return (double) endpoint("total").getOrDefault("p95Ms", 0.0);
+    }
+
+    String render() {
+        StringBuilder out = new StringBuilder();
+        out.append("=== Teste de carga ").append(run.get("startedAt")).append(" ===\n");
+        run.forEach((key, value) -> out.append(String.format("  %-22s %s%n", key, value)));
+
+        out.append(String.format("%n%-12s %8s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "reqs", "erros", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        endpoints.forEach((name, row) -> out.append(String.format("%-12s %8s %7s %9s %9s %9s %9s %9s%n",
+                name, row.get("count"), row.get("errors"), row.get("throughputRps"),
+                row.get("p50Ms"), row.get("p95Ms"), row.get("p99Ms"), row.get("maxMs"))));
+
+        out.append(String.format("%n%-28s %-10s %-10s %7s %9s %9s %9s%n",
+                "etapa", "rota", "cache", "n", "p50 ms", "p95 ms", "p99 ms"));
+        for (Map<String, Object> row : stages) {
+            out.append(String.format("%-28s %-10s %-10s %7s %9s %9s %9s%n",
+                    row.get("stage"), row.get("route"), row.get("cache"), row.get("count"),
+                    ms(row.get("p50Ms")), ms(row.get("p95Ms")), ms(row.get("p99Ms"))));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Grava {@code loadtest-<data>.txt} e {@code .json} no diretório e devolve o caminho do texto.
+     */
+    Path write(Path dir, ObjectMapper objectMapper) throws IOException {
+        Files.createDirectories(dir);
+        String name = "loadtest-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        Path text = dir.resolve(name + ".txt");
+        Files.writeString(text, render(), StandardCharsets.UTF_8);
+
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("run", run);
+        json.put("endpoints", endpoints);
+        json.put("stages", stages);
+        objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(dir.resolve(name + ".json").toFile(), json);
+        return text;
+    }
+
+    // --- Métodos Helper ---
+
+    private static Map<String, Object> summarize(List<LoadDriver.Sample> samples, double wallSeconds) {
+        long[] sorted = samples.stream().mapToLong(LoadDriver.Sample::nanos).sorted().toArray();
+        long errors = samples.stream().filter(sample -> !sample.ok()).count();
+
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("count", samples.size());
+        row.put("errors", errors);
+        row.put("errorRate", samples.isEmpty() ? 0.0 : Math.round(10_000.0 * errors / samples.size()) / 10_000.0);
+        row.put("throughputRps", round(samples.size() / wallSeconds));
+        row.put("p50Ms", percentileMs(sorted, 0.50));
+        row.put("p95Ms", percentileMs(sorted, 0.95));
+        row.put("p99Ms", percentileMs(sorted, 0.99));
+        row.put("maxMs", sorted.length == 0 ? 0.0 : round(sorted[sorted.length - 1] / 1e6));
+
+        Map<String, Long> failures = new TreeMap<>();
+        samples.stream().filter(sample -> !sample.ok())
+                .forEach(sample -> failures.merge(sample.error() != null ? sample.error() : "HTTP " + sample.status(), 1L, Long::sum));
+        row.put("failures", failures);
+        return row;
+    }
+
+    /**
+     * Percentil pelo método nearest-rank.
+     */
+    private static double percentileMs(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return round(TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(0, rank - 1)]) / 1000.0);
+    }
+
+    private static String ms(Object value) {
+        return value instanceof Number number ? String.valueOf(round(number.doubleValue())) : "-";
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
@@ -0,0 +1,48 @@
+package br.com.fereformada.api.loadtest;
+
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * Perfil de latência e falhas de um modelo stub: {@code latency-ms} + até {@code jitter-ms} de variação e uma
+ * fração {@code failure-rate} de chamadas que falham. A variação sai de um hash do número da chamada, então a
+ * mesma rodada repete os mesmos atrasos (sem depender de {@code Random} compartilhado entre threads).
+ */
+record ModelProfile(long latencyMs, long jitterMs, double failureRate) {
+
+    static ModelProfile from(Environment env, String prefix) {
+        return new ModelProfile(
+                env.getProperty(prefix + ".latency-ms", Long.class, 0L),
+                env.getProperty(prefix + ".jitter-ms", Long.class, 0L),
+                env.getProperty(prefix + ".failure-rate", Double.class, 0.0));
+    }
+
+    Duration delayFor(int call) {
+        long jitter = jitterMs > 0 ? (long) (unit(call, 0x9E3779B97F4A7C15L) * (jitterMs + 1)) : 0;
+        return Duration.ofMillis(Math.max(0, latencyMs + jitter));
+    }
+
+    RuntimeException failureFor(int call, String model) {
+        if (failureRate <= 0 || unit(call, 0xC2B2AE3D27D4EB4FL) >= failureRate) {
+            return null;
+        }
+        return new IllegalStateException("Falha simulada do " + model + " (chamada " + call + ")");
+    }
+
+    @Override
+    public String toString() {
+        return latencyMs + "ms +" + jitterMs + "ms, falhas " + Math.round(failureRate * 1000) / 10.0 + "%";
+    }
+
+    /**
+     * Valor em [0, 1) derivado só do número da chamada (mistura do SplitMix64).
+     */
+    private static double unit(int call, long salt) {
+        long z = call * salt;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) / (double) (1L << 53);
+    }
+}
@@ -0,0 +1,59 @@
+package br.com.fereformada.api.loadtest;
+
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.function.Function;
+
+/**
+ * Respostas do ChatModel stub para cada chamada do pipeline, reconhecida pelo texto do prompt: roteador
+ * (JSON simples/complexa), analisador de filtros (JSON vazio), Hy-DE (parágrafo) e resposta final.
+ * Perguntas comparativas viram rota complexa com duas sub-queries, para exercitar o caminho com várias buscas.
+ */
+final class PipelineResponder implements Function<Prompt, String> {
+
+    private static final String ROUTER_MARKER = "A pergunta a seguir é simples ou complexa?";
+    private static final String ANALYZER_MARKER = "Você é um assistente de análise de consulta";
+    private static final String HYDE_MARKER = "Gere um parágrafo curto e denso";
+
+    @Override
+    public String apply(Prompt prompt) {
+        String text = prompt.getContents();
+        if (text.contains(ROUTER_MARKER)) {
+            return route(userQuestion(text));
+        }
+        if (text.contains(ANALYZER_MARKER)) {
+            return "{}";
+        }
+        if (text.contains(HYDE_MARKER)) {
+            return "A Escritura ensina que Deus, em sua providência, sustenta e governa todas as criaturas "
+                    + "para a sua glória; a salvação é pela graça, mediante a fé, segundo os símbolos de Westminster.";
+        }
+        return "Segundo a Confissão de Fé de Westminster [1], a Escritura é a regra de fé e prática. "
+                + "O Breve Catecismo [2] resume: o fim principal do homem é glorificar a Deus e gozá-lo para sempre.";
+    }
+
+    private static String route(String question) {
+        String lower = question.toLowerCase();
+        int split = lower.indexOf(" e ");
+        if (lower.contains("diferença") && split > 0) {
+            String first = question.substring(0, split).replaceAll("[\"\\\\]", "");
+            String second = question.substring(split + 3).replaceAll("[\"\\\\]", "");
+            return "{\"type\": \"complex\", \"queries\": [\"" + first + "\", \"" + second + "\"]}";
+        }
+        return "{\"type\": \"simple\", \"queries\": [\"" + question.replaceAll("[\"\\\\]", "") + "\"]}";
+    }
+
+    /**
+     * A pergunta vem no fim do prompt do roteador: {@code Pergunta do Usuário: "..."}.
+     */
+    private static String userQuestion(String text) {
+        String marker = "Pergunta do Usuário: \"";
+        int start = text.lastIndexOf(marker);
+        if (start < 0) {
+            return "";
+        }
+        start += marker.length();
+        int end = text.indexOf('"', start);
+        return end > start ? text.substring(start, end).replace('\n', ' ') : "";
+    }
+}
@@ -0,0 +1,69 @@
+package br.com.fereformada.api.loadtest;
+
+import org.springframework.core.io.Resource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Mistura de perguntas da rodada, lida de um arquivo {@code peso<TAB>pergunta} (linhas com {@code #} são
+ * comentário). O sorteio é ponderado pelo peso.
+ */
+final class QuestionMix {
+
+    private final List<String> questions = new ArrayList<>();
+    private final List<Integer> cumulativeWeights = new ArrayList<>();
+    private int totalWeight;
+
+    static QuestionMix load(Resource resource) throws IOException {
+        QuestionMix mix = new QuestionMix();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t", 2);
+                if (parts.length == 2) {
+                    mix.add(Integer.parseInt(parts[0].strip()), parts[1].strip());
+                } else {
+                    mix.add(1, line);
+                }
+            }
+        }
+        if (mix.questions.isEmpty()) {
+            throw new IllegalStateException("Nenhuma pergunta em " + resource.getDescription());
+        }
+        return mix;
+    }
+
+    String pick(Random random) {
+        int target = random.nextInt(totalWeight);
+        for (int i = 0; i < questions.size(); i++) {
+            if (target < cumulativeWeights.get(i)) {
+                return questions.get(i);
+            }
+        }
+        return questions.get(questions.size() - 1);
+    }
+
+    int size() {
+        return questions.size();
+    }
+
+    private void add(int weight, String question) {
+        if (weight <= 0) {
+            return;
+        }
+        totalWeight += weight;
+        questions.add(question);
+        cumulativeWeights.add(totalWeight);
+    }
+}
@@ -0,0 +1,183 @@
+package br.com.fereformada.api.nativesmoke;
+
+import br.com.fereformada.api.dto.SourceReference;
+import br.com.fereformada.api.model.Conversa;
+import br.com.fereformada.api.model.Mensagem;
+import br.com.fereformada.api.repository.ConversaRepository;
+import br.com.fereformada.api.repository.MensagemRepository;
+import br.com.fereformada.api.support.StubChatModel;
+import br.com.fereformada.api.support.StubEmbeddingModel;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Smoke tests do executável nativo ({@code mvn -PnativeTest test}); na JVM rodam junto com os outros testes.
+ * <p>
+ * Sobem a aplicação inteira com H2 e modelos de IA stub e passam pelo que depende de reflexão no nativo:
+ * warm-up/readiness, JJWT no filtro de autenticação, consultas com {@code SELECT new} e a entidade
+ * {@link Mensagem} com o converter JSON das referências.
+ */
+@Tag("native-smoke")
+@ActiveProfiles("native-smoke")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class NativeSmokeTest {
+
+    @Autowired
+    private TestRestTemplate rest;
+
+    @Autowired
+    private ConversaRepository conversaRepository;
+
+    @Autowired
+    private MensagemRepository mensagemRepository;
+
+    @Value("${supabase.jwt.secret}")
+    private String jwtSecret;
+
+    @BeforeEach
+    void waitForReadiness() throws InterruptedException {
+        // O readiness só fica UP depois do warm-up, que roda em segundo plano
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline) {
+            if (rest.getForEntity("/actuator/health/readiness", String.class).getStatusCode() == HttpStatus.OK) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        fail("readiness não ficou UP em 30s");
+    }
+
+    @Test
+    void livenessAndReadinessAreUp() {
+        assertEquals(HttpStatus.OK, rest.getForEntity("/actuator/health/liveness", String.class).getStatusCode());
+        assertEquals(HttpStatus.OK, rest.getForEntity("/actuator/health/readiness", String.class).getStatusCode());
+    }
+
+    @Test
+    void requestsWithoutValidTokenAreRejected() {
+        assertTrue(rest.getForEntity("/api/leitor/biblia/Romanos/8", String.class).getStatusCode().is4xxClientError());
+
+        ResponseEntity<String> forged = get("/api/leitor/biblia/Romanos/8",
+                token("USER", "outro-segredo-com-pelo-menos-trinta-e-dois-bytes"), String.class);
+        assertTrue(forged.getStatusCode().is4xxClientError());
+    }
+
+    @Test
+    void userTokenReadsThroughConstructorProjection() {
+        ResponseEntity<List> response = get("/api/leitor/biblia/Romanos/8", token("USER", jwtSecret), List.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+    }
+
+    @Test
+    void adminEndpointsRequireAdminRole() {
+        assertEquals(HttpStatus.FORBIDDEN,
+                get("/api/admin/dashboard/stats", token("USER", jwtSecret), String.class).getStatusCode());
+
+        ResponseEntity<Map> stats = get("/api/admin/dashboard/stats", token("ADMIN", jwtSecret), Map.class);
+        assertEquals(HttpStatus.OK, stats.getStatusCode());
+        assertNotNull(stats.getBody());
+    }
+
+    @Test
+    void chatHistoryRoundTripsReferencesThroughJsonConverter() {
+        Conversa conversa = new Conversa();
+        conversa.setUserId(UUID.randomUUID());
+        conversa.setTitle("Smoke test");
+        conversa = conversaRepository.save(conversa);
+
+        Mensagem mensagem = new Mensagem();
+        mensagem.setConversa(conversa);
+        mensagem.setRole("assistant");
+        mensagem.setContent("Resposta com fontes.");
+        mensagem.setReferences(List.of(SourceReference.builder()
+                .number(1)
+                .text("Confissão de Westminster 1.1")
+                .preview("Ainda que a luz da natureza...")
+                .sourceId(42L)
+                .type("CHUNK")
+                .label("CFW 1.1")
+                .metadata(Map.of("chapter", 1, "section", 1))
+                .build()));
+        mensagemRepository.save(mensagem);
+
+        ResponseEntity<List> response = get("/api/chat/" + conversa.getId(), token("USER", jwtSecret), List.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1, response.getBody().size());
+        Map<?, ?> dto = (Map<?, ?>) response.getBody().get(0);
+        assertEquals("Resposta com fontes.", dto.get("content"));
+        List<?> references = (List<?>) dto.get("references");
+        assertEquals(1, references.size());
+        assertEquals("CFW 1.1", ((Map<?, ?>) references.get(0)).get("label"));
+    }
+
+    // --- Métodos Helper ---
+
+    private <T> ResponseEntity<T> get(String path, String token, Class<T> type) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        return rest.exchange(path, HttpMethod.GET, new HttpEntity<>(headers), type);
+    }
+
+    private static String token(String role, String secret) {
+        return Jwts.builder()
+                .setSubject(UUID.randomUUID().toString())
+                .claim("role", role)
+                .setExpiration(new Date(System.currentTimeMillis() + 600_000))
+                .signWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    @TestConfiguration
+    @ImportRuntimeHints(StubModels.SmokeHints.class)
+    static class StubModels {
+
+        @Bean
+        ChatModel chatModel() {
+            return new StubChatModel();
+        }
+
+        @Bean
+        EmbeddingModel embeddingModel() {
+            return new StubEmbeddingModel();
+        }
+
+        static class SmokeHints implements RuntimeHintsRegistrar {
+            @Override
+            public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+                hints.resources().registerPattern("native-smoke/*.sql");
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.model.ImportTask;
+import br.com.fereformada.api.model.enums.TaskStatus;
+import br.com.fereformada.api.model.enums.TaskType;
+import br.com.fereformada.api.model.enums.VectorTarget;
+import br.com.fereformada.api.repository.ContentChunkRepository;
+import br.com.fereformada.api.repository.ImportTaskRepository;
+import br.com.fereformada.api.repository.StudyNoteRepository;
+import br.com.fereformada.api.repository.VectorBackfillRow;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Cada página grava vetores e checkpoint na mesma transação; o cache de recuperação é invalidado
+ * uma vez por backfill, não por página.
+ */
+class AsyncBackfillServiceTest {
+
+    private final ImportTaskRepository importTaskRepository = mock(ImportTaskRepository.class);
+    private final ContentChunkRepository contentChunkRepository = mock(ContentChunkRepository.class);
+    private final BulkEmbeddingExecutor bulkEmbeddingExecutor = mock(BulkEmbeddingExecutor.class);
+    private final VectorBackfillWriter backfillWriter = mock(VectorBackfillWriter.class);
+    private final JobQueue jobQueue = mock(JobQueue.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final RetrievalCache retrievalCache = new RetrievalCache(true, 100, 100, 60);
+    private AsyncBackfillService service;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        when(importTaskRepository.findById(any())).thenReturn(Optional.empty());
+        when(bulkEmbeddingExecutor.embedAll(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            List<float[]> vectors = new ArrayList<>();
+            texts.forEach(text -> vectors.add(new float[]{text.length()}));
+            return new BulkEmbeddingExecutor.BulkEmbeddingResult(vectors, 0, 1, texts.size());
+        });
+        when(backfillWriter.writeVectors(any(), anyList(), anyList()))
+                .thenAnswer(invocation -> ((List<?>) invocation.getArgument(1)).size());
+
+        // Duas páginas (ids 1-500 e 501-700), depois fim
+        when(contentChunkRepository.findQuestionVectorBackfillPage(eq(0L), anyInt())).thenReturn(rows(1, 500));
+        when(contentChunkRepository.findQuestionVectorBackfillPage(eq(500L), anyInt())).thenReturn(rows(501, 700));
+        when(contentChunkRepository.findQuestionVectorBackfillPage(eq(700L), anyInt())).thenReturn(List.of());
+
+        service = new AsyncBackfillService(importTaskRepository, contentChunkRepository,
+                mock(StudyNoteRepository.class), bulkEmbeddingExecutor, backfillWriter, jobQueue,
+                new TransactionTemplate(transactionManager), retrievalCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void eachPageCommitsVectorsWithItsCheckpointAndCacheIsBumpedOnce() {
+        long versionBefore = retrievalCache.currentCorpusVersion();
+        ImportTask task = task();
+
+        service.execute(task, new TaskProgress(task, "node-test"));
+
+        InOrder inOrder = inOrder(transactionManager, backfillWriter, jobQueue);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(backfillWriter).writeVectors(eq(VectorTarget.CHUNK_QUESTION), anyList(), anyList());
+        inOrder.verify(jobQueue).checkpoint(42L, 500L, 500L);
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(backfillWriter).writeVectors(eq(VectorTarget.CHUNK_QUESTION), anyList(), anyList());
+        inOrder.verify(jobQueue).checkpoint(42L, 700L, 700L);
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(jobQueue).finish(task);
+
+        assertEquals(TaskStatus.COMPLETED, task.getStatus());
+        assertEquals(700, task.getProcessedItems());
+        assertEquals(versionBefore + 1, retrievalCache.currentCorpusVersion());
+    }
+
+    @Test
+    void lostLeaseRollsBackThePageAndFailsTheTask() {
+        doNothing().when(jobQueue).checkpoint(42L, 500L, 500L);
+        doThrow(new JobQueue.LeaseLostException("Lease da tarefa 42 perdido por node-test."))
+                .when(jobQueue).checkpoint(42L, 700L, 700L);
+        long versionBefore = retrievalCache.currentCorpusVersion();
+        ImportTask task = task();
+
+        service.execute(task, new TaskProgress(task, "node-test"));
+
+        verify(transactionManager, times(1)).commit(any());
+        verify(transactionManager, times(1)).rollback(any());
+        assertEquals(TaskStatus.FAILED, task.getStatus());
+        // A primeira página foi gravada: o cache ainda precisa ser invalidado
+        assertEquals(versionBefore + 1, retrievalCache.currentCorpusVersion());
+    }
+
+    // --- Métodos Helper ---
+
+    private static ImportTask task() {
+        ImportTask task = new ImportTask();
+        task.setId(42L);
+        task.setTaskType(TaskType.BACKFILL_QUESTION_VECTORS);
+        task.setStatus(TaskStatus.PROCESSING);
+        return task;
+    }
+
+    private static List<VectorBackfillRow> rows(long firstId, long lastId) {
+        return LongStream.rangeClosed(firstId, lastId)
+                .mapToObj(AsyncBackfillServiceTest::row)
+                .toList();
+    }
+
+    private static VectorBackfillRow row(long id) {
+        return new VectorBackfillRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getText() {
+                return "Pergunta " + id + " do Catecismo";
+            }
+        };
+    }
+}
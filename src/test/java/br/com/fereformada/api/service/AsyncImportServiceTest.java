@@ -0,0 +1,130 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.dto.ChunkImportDTO;
+import br.com.fereformada.api.model.ImportTask;
+import br.com.fereformada.api.model.Work;
+import br.com.fereformada.api.model.enums.TaskStatus;
+import br.com.fereformada.api.model.enums.TaskType;
+import br.com.fereformada.api.repository.ImportTaskRepository;
+import br.com.fereformada.api.repository.TopicRepository;
+import br.com.fereformada.api.repository.WorkRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Quando o COPY da janela falha, cada item é regravado na mesma transação que o checkpoint logo depois dele:
+ * uma retomada nunca regrava um item já commitado.
+ */
+class AsyncImportServiceTest {
+
+    private static final long TASK_ID = 42L;
+
+    private final ImportTaskRepository importTaskRepository = mock(ImportTaskRepository.class);
+    private final WorkRepository workRepository = mock(WorkRepository.class);
+    private final BulkEmbeddingExecutor bulkEmbeddingExecutor = mock(BulkEmbeddingExecutor.class);
+    private final ChunkBatchWriter chunkBatchWriter = mock(ChunkBatchWriter.class);
+    private final PgCopyBulkLoader bulkLoader = mock(PgCopyBulkLoader.class);
+    private final ImportPayloadStore payloadStore = mock(ImportPayloadStore.class);
+    private final JobQueue jobQueue = mock(JobQueue.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private AsyncImportService service;
+
+    @BeforeEach
+    void setUp() {
+        Work confession = new Work();
+        confession.setId(1L);
+        confession.setAcronym("CFW");
+        when(workRepository.findByAcronymIn(any())).thenReturn(List.of(confession));
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        when(importTaskRepository.findById(any())).thenReturn(Optional.empty());
+        when(payloadStore.hasPayload(TASK_ID)).thenReturn(true);
+        when(payloadStore.read(eq(TASK_ID), eq(ChunkImportDTO.class), anyInt())).thenReturn(List.of(
+                chunk("Deus é espírito."), chunk("inválido"), chunk("Deus é infinito.")).iterator());
+        when(bulkEmbeddingExecutor.embedAll(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            List<float[]> vectors = new ArrayList<>();
+            texts.forEach(text -> vectors.add(new float[]{text.length()}));
+            return new BulkEmbeddingExecutor.BulkEmbeddingResult(vectors, 0, 1, texts.size());
+        });
+
+        // O COPY da janela falha; na regravação, só o item #1 é recusado
+        when(bulkLoader.loadChunks(anyList())).thenThrow(new IllegalStateException("COPY falhou"));
+        when(chunkBatchWriter.insertBatch(argThat(rows -> rows.get(0).content().equals("inválido"))))
+                .thenThrow(new IllegalArgumentException("conteúdo inválido"));
+
+        service = new AsyncImportService(importTaskRepository, workRepository, mock(TopicRepository.class),
+                bulkEmbeddingExecutor, chunkBatchWriter, bulkLoader, new RetrievalCache(true, 100, 100, 60),
+                payloadStore, jobQueue, new TransactionTemplate(transactionManager));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void fallbackCommitsEachItemWithItsOwnCheckpoint() {
+        ImportTask task = task();
+
+        service.execute(task, new TaskProgress(task, "node-test"));
+
+        InOrder inOrder = inOrder(chunkBatchWriter, jobQueue, transactionManager);
+        // Item #0: gravado junto com o checkpoint 1
+        inOrder.verify(chunkBatchWriter).insertBatch(anyList());
+        inOrder.verify(jobQueue).checkpoint(TASK_ID, 1L, 1L);
+        inOrder.verify(transactionManager).commit(any());
+        // Item #1: recusado, nada gravado
+        inOrder.verify(chunkBatchWriter).insertBatch(anyList());
+        inOrder.verify(transactionManager).rollback(any());
+        // Item #2: gravado junto com o checkpoint 3 (que também cobre o #1)
+        inOrder.verify(chunkBatchWriter).insertBatch(anyList());
+        inOrder.verify(jobQueue).checkpoint(TASK_ID, 3L, 3L);
+        inOrder.verify(transactionManager).commit(any());
+
+        assertEquals(TaskStatus.COMPLETED, task.getStatus());
+        assertEquals(3, task.getProcessedItems());
+        assertEquals(3L, task.getLastProcessedId());
+        assertTrue(task.getFailedItems().contains("#1: conteúdo inválido"), task.getFailedItems());
+    }
+
+    @Test
+    void lostLeaseInTheFallbackStopsBeforeTheNextItem() {
+        doThrow(new JobQueue.LeaseLostException("Lease da tarefa 42 perdido por node-test."))
+                .when(jobQueue).checkpoint(TASK_ID, 1L, 1L);
+        ImportTask task = task();
+
+        service.execute(task, new TaskProgress(task, "node-test"));
+
+        verify(chunkBatchWriter, times(1)).insertBatch(anyList());
+        verify(transactionManager, never()).commit(any());
+        assertEquals(TaskStatus.FAILED, task.getStatus());
+    }
+
+    // --- Métodos Helper ---
+
+    private static ImportTask task() {
+        ImportTask task = new ImportTask();
+        task.setId(TASK_ID);
+        task.setTaskType(TaskType.IMPORT_CHUNKS);
+        task.setStatus(TaskStatus.PROCESSING);
+        task.setTotalItems(3);
+        return task;
+    }
+
+    private static ChunkImportDTO chunk(String content) {
+        return new ChunkImportDTO("CFW", "Das Santas Escrituras", 2, null, 1, null, null, null, content, null);
+    }
+}
@@ -0,0 +1,119 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.support.StubChatModel;
+import br.com.fereformada.api.support.StubEmbeddingModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Política de falhas dos embeddings em massa: erro do conteúdo divide o lote até isolar o texto,
+ * erro transitório reenvia o mesmo lote, e provedor fora do ar (reenvios esgotados ou circuito aberto)
+ * aborta o job sem dividir.
+ */
+class BulkEmbeddingExecutorTest {
+
+    private static final int MAX_RETRIES = 2;
+
+    private final List<BulkEmbeddingExecutor> executors = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        executors.forEach(BulkEmbeddingExecutor::shutdown);
+    }
+
+    @Test
+    void contentErrorIsIsolatedBySplitting() {
+        List<String> texts = texts(8);
+        StubEmbeddingModel model = new StubEmbeddingModel().rejecting(text -> text.equals(texts.get(5)));
+        BulkEmbeddingExecutor executor = executorFor(model, 20);
+
+        BulkEmbeddingExecutor.BulkEmbeddingResult result = executor.embedAll(texts);
+
+        assertEquals(1, result.failedCount());
+        assertNull(result.vectors().get(5));
+        for (int i = 0; i < texts.size(); i++) {
+            if (i != 5) {
+                assertArrayEquals(StubEmbeddingModel.vectorFor(texts.get(i)), result.vectors().get(i));
+            }
+        }
+        assertTrue((long) executor.getStats().get("splits") > 0);
+        assertEquals(0L, executor.getStats().get("retries"), "Erro do conteúdo não deve ser reenviado");
+    }
+
+    @Test
+    void transientErrorRetriesTheSameBatchWithoutSplitting() {
+        StubEmbeddingModel model = new StubEmbeddingModel()
+                .withFailures(call -> call <= 2 ? new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE) : null);
+        BulkEmbeddingExecutor executor = executorFor(model, 20);
+
+        BulkEmbeddingExecutor.BulkEmbeddingResult result = executor.embedAll(texts(8));
+
+        assertFalse(result.hasFailures());
+        assertEquals(3, model.getCalls());
+        assertEquals(2L, executor.getStats().get("retries"));
+        assertEquals(0L, executor.getStats().get("splits"));
+    }
+
+    @Test
+    void exhaustedRetriesAbortTheJob() {
+        StubEmbeddingModel model = new StubEmbeddingModel().failingWith(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+        BulkEmbeddingExecutor executor = executorFor(model, 20);
+
+        BulkEmbeddingExecutor.BulkEmbeddingResult result = executor.embedAll(texts(20));
+
+        assertEquals(20, result.failedCount());
+        assertTrue(result.vectors().stream().allMatch(vector -> vector == null));
+        assertEquals(MAX_RETRIES + 1, model.getCalls(), "Só o primeiro lote deveria ter ido à API");
+        assertEquals(0L, executor.getStats().get("splits"));
+        assertEquals(1L, executor.getStats().get("aborts"));
+    }
+
+    @Test
+    void openCircuitAbortsBeforeRetriesRunOut() {
+        StubEmbeddingModel model = new StubEmbeddingModel().failingWith(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+        // Janela de 2 chamadas: a 2ª falha abre o circuito
+        BulkEmbeddingExecutor executor = executorFor(model, 2);
+
+        BulkEmbeddingExecutor.BulkEmbeddingResult result = executor.embedAll(texts(20));
+
+        assertEquals(20, result.failedCount());
+        assertEquals(2, model.getCalls());
+        assertEquals(1L, executor.getStats().get("aborts"));
+    }
+
+    // --- Métodos Helper ---
+
+    private BulkEmbeddingExecutor executorFor(StubEmbeddingModel embeddingModel, int circuitWindow) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        GeminiGovernor governor = new GeminiGovernor(registry, 8, 1000, 4, 1000, 0.5, 1000, 10, 50);
+        LlmResilience resilience = new LlmResilience(registry, governor, 500, 500, 2000,
+                false, 100, circuitWindow, circuitWindow, 0.5, 30_000);
+        EmbeddingMicroBatcher microBatcher = new EmbeddingMicroBatcher(registry, embeddingModel, resilience,
+                false, 10, 16);
+        LlmUsageTracker usageTracker = new LlmUsageTracker(registry,
+                new QueryTracer(registry, new QueryTraceLog(null, null, registry, 0, 1, 1, 1), false, 0), 0, 0, 0, 0, 0);
+        GeminiApiClient client = new GeminiApiClient(new StubChatModel(), embeddingModel, resilience, microBatcher, usageTracker);
+        // Armazém desligado: tudo vai à API
+        EmbeddingStore store = new EmbeddingStore(null, null, registry, false, "text-embedding-004", 90);
+
+        BulkEmbeddingExecutor executor = new BulkEmbeddingExecutor(client, store, resilience, registry,
+                8, 1, 8, 1, 3000, MAX_RETRIES, 10, 20);
+        executors.add(executor);
+        return executor;
+    }
+
+    private static List<String> texts(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> "Trecho " + i + " da Confissão de Fé de Westminster")
+                .toList();
+    }
+}
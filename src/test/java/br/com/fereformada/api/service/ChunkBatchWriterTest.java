@@ -0,0 +1,76 @@
+package br.com.fereformada.api.service;
+
+import com.pgvector.PGvector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Caminho do H2 (perfil dev): o lote vira um batch JDBC só, e os ids gerados voltam na ordem das linhas,
+ * ligando cada chunk aos seus tópicos.
+ */
+class ChunkBatchWriterTest {
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ChunkBatchWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:chunk-batch-writer", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        // No H2 o vetor fica como texto, como no schema dos smoke tests
+        jdbcTemplate.execute("CREATE TABLE content_chunks (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "work_id BIGINT, chapter_title VARCHAR, chapter_number INT, section_title VARCHAR, section_number INT, " +
+                "subsection_title VARCHAR, sub_subsection_title VARCHAR, question VARCHAR, content VARCHAR, " +
+                "content_vector VARCHAR, question_vector VARCHAR)");
+        jdbcTemplate.execute("CREATE TABLE chunk_topics (chunk_id BIGINT, topic_id BIGINT)");
+        writer = new ChunkBatchWriter(jdbcTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        dataSource.destroy();
+    }
+
+    @Test
+    void h2BatchReturnsGeneratedIdsInRowOrder() {
+        List<Long> ids = writer.insertBatch(List.of(
+                chunk("Das Santas Escrituras", 1, Set.of(10L)),
+                chunk("De Deus e da Santíssima Trindade", 2, Set.of()),
+                chunk("Dos Eternos Decretos de Deus", 3, Set.of(10L, 20L))));
+
+        assertFalse(writer.isPostgres());
+        assertEquals(3, ids.size());
+        assertEquals(3, Set.copyOf(ids).size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i + 1, jdbcTemplate.queryForObject(
+                    "SELECT chapter_number FROM content_chunks WHERE id = ?", Integer.class, ids.get(i)));
+        }
+        assertEquals(new PGvector(new float[]{1f, 2f}).toString(), jdbcTemplate.queryForObject(
+                "SELECT content_vector FROM content_chunks WHERE id = ?", String.class, ids.get(0)));
+
+        List<Map<String, Object>> links = jdbcTemplate.queryForList(
+                "SELECT chunk_id, topic_id FROM chunk_topics ORDER BY chunk_id, topic_id");
+        assertEquals(3, links.size());
+        assertEquals(ids.get(0).longValue(), ((Number) links.get(0).get("CHUNK_ID")).longValue());
+        assertEquals(ids.get(2).longValue(), ((Number) links.get(1).get("CHUNK_ID")).longValue());
+        assertEquals(20L, ((Number) links.get(2).get("TOPIC_ID")).longValue());
+    }
+
+    // --- Métodos Helper ---
+
+    private static ChunkBatchWriter.ChunkInsert chunk(String chapterTitle, int chapterNumber, Set<Long> topicIds) {
+        return new ChunkBatchWriter.ChunkInsert(1L, chapterTitle, chapterNumber, null, 1, null, null, null,
+                "Conteúdo do capítulo " + chapterNumber, new float[]{1f, 2f}, null, topicIds);
+    }
+}
@@ -0,0 +1,134 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.dto.ChunkImportDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Leitura em janelas do arquivo de importação: array JSON e NDJSON dão os mesmos itens,
+ * as janelas não perdem nem repetem itens na fronteira, e o item inválido é apontado pela posição.
+ */
+class ChunkImportReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void jsonArrayAndNdjsonYieldTheSameItems() throws IOException {
+        Path array = write("array.json", "[\n" + item("Deus é espírito.") + ",\n" + item("Deus é infinito.") + "\n]");
+        Path ndjson = write("chunks.ndjson", item("Deus é espírito.") + "\n" + item("Deus é infinito.") + "\n");
+
+        List<ChunkImportReader.Item> fromArray = readAll(array, 10);
+        List<ChunkImportReader.Item> fromNdjson = readAll(ndjson, 10);
+
+        assertEquals(List.of("Deus é espírito.", "Deus é infinito."), contents(fromArray));
+        assertEquals(fromArray, fromNdjson);
+        assertEquals("CFW", fromNdjson.get(0).dto().workAcronym());
+        assertEquals(List.of("Deus"), fromNdjson.get(0).dto().topics());
+    }
+
+    @Test
+    void windowsCrossBoundariesWithoutLosingOrRepeatingItems() throws IOException {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            ndjson.append(item("Parágrafo " + i)).append('\n');
+        }
+        Path file = write("chunks.ndjson", ndjson.toString());
+
+        try (ChunkImportReader reader = ChunkImportReader.ofFile(objectMapper, file)) {
+            List<ChunkImportReader.Item> first = reader.nextWindow(2);
+            List<ChunkImportReader.Item> second = reader.nextWindow(2);
+            List<ChunkImportReader.Item> last = reader.nextWindow(2);
+
+            assertEquals(List.of("Parágrafo 0", "Parágrafo 1"), contents(first));
+            assertEquals(List.of("Parágrafo 2", "Parágrafo 3"), contents(second));
+            assertEquals(List.of("Parágrafo 4"), contents(last));
+            assertEquals(List.of(2, 3), second.stream().map(ChunkImportReader.Item::index).toList());
+            assertTrue(reader.nextWindow(2).isEmpty());
+            assertEquals(5, reader.nextIndex());
+        }
+    }
+
+    @Test
+    void persistedItemsResumeAtTheCheckpointIndex() throws IOException {
+        List<ChunkImportDTO> remaining = List.of(dto("Parágrafo 3"), dto("Parágrafo 4"));
+
+        try (ChunkImportReader reader = ChunkImportReader.ofItems(remaining.iterator(), 3)) {
+            List<ChunkImportReader.Item> window = reader.nextWindow(10);
+
+            assertEquals(List.of(3, 4), window.stream().map(ChunkImportReader.Item::index).toList());
+            assertEquals(5, reader.nextIndex());
+        }
+    }
+
+    @Test
+    void invalidItemIsReportedByItsPosition() throws IOException {
+        Path file = write("array.json", "[" + item("Deus é espírito.") + ", " + item("Deus é infinito.") + ", 42]");
+
+        try (ChunkImportReader reader = ChunkImportReader.ofFile(objectMapper, file)) {
+            assertEquals(2, reader.nextWindow(2).size());
+
+            IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> reader.nextWindow(2));
+            assertTrue(error.getMessage().startsWith("Item #2 "), error.getMessage());
+        }
+    }
+
+    @Test
+    void fileThatIsNeitherArrayNorNdjsonIsRejected() throws IOException {
+        Path file = write("scalar.json", "\"só um texto\"");
+
+        try (ChunkImportReader reader = ChunkImportReader.ofFile(objectMapper, file)) {
+            IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> reader.nextWindow(10));
+            assertTrue(error.getMessage().startsWith("Formato inválido"), error.getMessage());
+        }
+    }
+
+    @Test
+    void emptyFileHasNoWindows() throws IOException {
+        try (ChunkImportReader reader = ChunkImportReader.ofFile(objectMapper, write("empty.json", ""))) {
+            assertTrue(reader.nextWindow(10).isEmpty());
+            assertEquals(0, reader.nextIndex());
+        }
+    }
+
+    // --- Métodos Helper ---
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(dir.resolve(name), content, StandardCharsets.UTF_8);
+    }
+
+    private List<ChunkImportReader.Item> readAll(Path file, int windowSize) throws IOException {
+        List<ChunkImportReader.Item> all = new ArrayList<>();
+        try (ChunkImportReader reader = ChunkImportReader.ofFile(objectMapper, file)) {
+            List<ChunkImportReader.Item> window;
+            while (!(window = reader.nextWindow(windowSize)).isEmpty()) {
+                all.addAll(window);
+            }
+        }
+        return all;
+    }
+
+    private static List<String> contents(List<ChunkImportReader.Item> items) {
+        return items.stream().map(item -> item.dto().content()).toList();
+    }
+
+    private String item(String content) throws IOException {
+        return objectMapper.writeValueAsString(dto(content));
+    }
+
+    private static ChunkImportDTO dto(String content) {
+        return new ChunkImportDTO("CFW", "Das Santas Escrituras", 1, null, 1, null, null, null, content, List.of("Deus"));
+    }
+}
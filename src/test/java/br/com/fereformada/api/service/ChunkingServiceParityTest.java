@@ -0,0 +1,177 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.model.enums.PdfSource;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * O chunker em streaming tem que gerar, sem limite de tamanho, exatamente os mesmos trechos que os parsers
+ * sobre String (usados pelo DatabaseSeeder) nos PDFs embutidos — inclusive quando o Reader entrega o texto
+ * em pedaços pequenos e irregulares, que cortam os marcadores no meio.
+ */
+class ChunkingServiceParityTest {
+
+    private static final Map<PdfSource, String> texts = new EnumMap<>(PdfSource.class);
+
+    private final ChunkingService chunkingService = new ChunkingService();
+
+    @BeforeAll
+    static void extractPdfs(@TempDir Path cacheDir) throws IOException {
+        PdfTextExtractor extractor = new PdfTextExtractor(new DefaultResourceLoader(), cacheDir.toString(), 24, 0);
+        for (PdfSource source : PdfSource.values()) {
+            PdfTextExtractor.Extraction extraction = extractor.extract(source.resourcePath(), source.startPage(), source.endPage());
+            texts.put(source, Files.readString(extraction.textFile(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PdfSource.class)
+    void streamingWithoutLimitMatchesLegacyParser(PdfSource source) {
+        String text = texts.get(source);
+        List<?> legacy = legacy(source, text);
+        assertFalse(legacy.isEmpty(), "o parser não encontrou trechos em " + source);
+
+        assertEquals(legacy, toList(stream(source, new StringReader(text), 0)));
+        assertEquals(legacy, toList(stream(source, new TrickleReader(text, 997), 0)));
+    }
+
+    @ParameterizedTest
+    @EnumSource(PdfSource.class)
+    void boundedChunksKeepMetadataAndContent(PdfSource source) {
+        int maxChars = 300;
+        String text = texts.get(source);
+        List<?> legacy = legacy(source, text);
+        List<?> bounded = toList(stream(source, new TrickleReader(text, 997), maxChars));
+
+        assertTrue(bounded.size() >= legacy.size());
+        int next = 0;
+        for (Object original : legacy) {
+            // As partes de cada trecho vêm em sequência, com os mesmos metadados e o texto na ordem
+            String expected = withoutWhitespace(content(original));
+            StringBuilder joined = new StringBuilder();
+            while (joined.length() < expected.length() && next < bounded.size()) {
+                Object part = bounded.get(next++);
+                assertTrue(sameOrigin(original, part), "metadados perdidos na divisão em " + source);
+                assertTrue(content(part).length() <= maxChars, "trecho com " + content(part).length() + " caracteres em " + source);
+                joined.append(withoutWhitespace(content(part)));
+            }
+            assertEquals(expected, joined.toString());
+        }
+        assertEquals(bounded.size(), next);
+    }
+
+    @Test
+    void splitPrefersSentenceBoundaries() {
+        String text = "Primeira frase curta. Segunda frase um pouco maior! Terceira?";
+
+        assertEquals(List.of("Primeira frase curta.", "Segunda frase um pouco maior!", "Terceira?"),
+                ChunkingService.splitBySize(text, 30));
+        assertEquals(List.of(text), ChunkingService.splitBySize(text, 0));
+        assertEquals(List.of("abcdefghij", "klm"), ChunkingService.splitBySize("abcdefghijklm", 10));
+    }
+
+    @Test
+    void textWithoutMarkersIsOneWholeDocumentChunk() {
+        String text = "Texto sem nenhum capítulo.";
+
+        assertEquals(chunkingService.parseWestminsterConfession(text),
+                toList(chunkingService.streamWestminsterConfession(new StringReader(text), 0)));
+        assertEquals(List.of(), toList(chunkingService.streamWestminsterShorterCatechism(new StringReader(text), 0)));
+    }
+
+    // --- Métodos Helper ---
+
+    private List<?> legacy(PdfSource source, String text) {
+        return switch (source) {
+            case CONFESSION -> chunkingService.parseWestminsterConfession(text);
+            case INSTITUTES -> chunkingService.parseCalvinInstitutes(text);
+            case LARGER_CATECHISM -> chunkingService.parseWestminsterLargerCatechism(text);
+            case SHORTER_CATECHISM -> chunkingService.parseWestminsterShorterCatechism(text);
+        };
+    }
+
+    private Iterator<?> stream(PdfSource source, Reader reader, int maxChars) {
+        BiFunction<Reader, Integer, Iterator<?>> streamer = switch (source) {
+            case CONFESSION -> chunkingService::streamWestminsterConfession;
+            case INSTITUTES -> chunkingService::streamCalvinInstitutes;
+            case LARGER_CATECHISM -> chunkingService::streamWestminsterLargerCatechism;
+            case SHORTER_CATECHISM -> chunkingService::streamWestminsterShorterCatechism;
+        };
+        return streamer.apply(reader, maxChars);
+    }
+
+    private static boolean sameOrigin(Object original, Object part) {
+        if (original instanceof ChunkingService.ParsedChunk o && part instanceof ChunkingService.ParsedChunk p) {
+            return o.chapterNumber() == p.chapterNumber() && o.sectionNumber() == p.sectionNumber()
+                    && o.chapterTitle().equals(p.chapterTitle())
+                    && Objects.equals(o.sectionTitle(), p.sectionTitle());
+        }
+        ChunkingService.ParsedQuestionChunk o = (ChunkingService.ParsedQuestionChunk) original;
+        ChunkingService.ParsedQuestionChunk p = (ChunkingService.ParsedQuestionChunk) part;
+        return o.questionNumber() == p.questionNumber() && o.question().equals(p.question());
+    }
+
+    private static String content(Object chunk) {
+        return chunk instanceof ChunkingService.ParsedChunk c ? c.content()
+                : ((ChunkingService.ParsedQuestionChunk) chunk).answer();
+    }
+
+    private static String withoutWhitespace(String text) {
+        return text.replaceAll("\\s+", "");
+    }
+
+    private static List<Object> toList(Iterator<?> iterator) {
+        List<Object> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    /**
+     * Reader que devolve no máximo {@code step} caracteres por leitura.
+     */
+    private static final class TrickleReader extends Reader {
+        private final String text;
+        private final int step;
+        private int position;
+
+        TrickleReader(String text, int step) {
+            this.text = text;
+            this.step = step;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position >= text.length()) {
+                return -1;
+            }
+            int count = Math.min(Math.min(length, step), text.length() - position);
+            text.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.dto.ChunkImportDTO;
+import br.com.fereformada.api.dto.ImportTaskDTO;
+import br.com.fereformada.api.repository.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.CacheManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Upload de arquivo contra o H2: os itens lidos em janelas vão para a entrada persistida da tarefa,
+ * em páginas, e o total da tarefa bate com o arquivo. Arquivo vazio ou com item inválido é recusado.
+ */
+@DataJpaTest
+class ContentAdminServiceFileImportTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private ImportTaskRepository importTaskRepository;
+    @Autowired
+    private ImportTaskPayloadRepository payloadRepository;
+
+    @TempDir
+    Path dir;
+
+    private ImportPayloadStore payloadStore;
+    private ContentAdminService service;
+
+    @BeforeEach
+    void setUp() {
+        payloadStore = new ImportPayloadStore(payloadRepository, objectMapper);
+        service = new ContentAdminService(mock(ContentChunkRepository.class), mock(WorkRepository.class),
+                mock(AuthorRepository.class), mock(TopicRepository.class), mock(EmbeddingOutbox.class), objectMapper,
+                importTaskRepository, mock(AsyncImportService.class), mock(TheologicalSynonymRepository.class),
+                mock(CacheManager.class), new RetrievalCache(true, 100, 100, 60), payloadStore);
+    }
+
+    @Test
+    void fileItemsArePersistedAcrossWindowsAndPages() throws IOException {
+        // Mais de duas janelas de leitura (500) e de duas páginas da entrada persistida
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 1_201; i++) {
+            ndjson.append(objectMapper.writeValueAsString(dto("Parágrafo " + i))).append('\n');
+        }
+
+        ImportTaskDTO task = service.createFileImportTask(write("chunks.ndjson", ndjson.toString()));
+
+        assertEquals(1_201, task.totalItems());
+        assertEquals(List.of(500, 500, 201), payloadRepository.findItemCounts(task.id()));
+
+        List<String> contents = new ArrayList<>();
+        Iterator<ChunkImportDTO> items = payloadStore.read(task.id(), ChunkImportDTO.class, 499);
+        items.forEachRemaining(dto -> contents.add(dto.content()));
+        assertEquals(702, contents.size());
+        assertEquals("Parágrafo 499", contents.get(0));
+        assertEquals("Parágrafo 500", contents.get(1));
+        assertEquals("Parágrafo 1200", contents.get(contents.size() - 1));
+    }
+
+    @Test
+    void jsonArrayFileIsAccepted() throws IOException {
+        String array = objectMapper.writeValueAsString(List.of(dto("Deus é espírito."), dto("Deus é infinito.")));
+
+        ImportTaskDTO task = service.createFileImportTask(write("chunks.json", array));
+
+        assertEquals(2, task.totalItems());
+        assertEquals(List.of(2), payloadRepository.findItemCounts(task.id()));
+    }
+
+    @Test
+    void invalidItemRejectsTheUploadNamingItsPosition() throws IOException {
+        String ndjson = objectMapper.writeValueAsString(dto("Deus é espírito.")) + "\n[1, 2]\n";
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> service.createFileImportTask(write("chunks.ndjson", ndjson)));
+
+        assertTrue(error.getMessage().startsWith("Item #1 "), error.getMessage());
+    }
+
+    @Test
+    void emptyFileIsRejected() throws IOException {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> service.createFileImportTask(write("empty.json", "[]")));
+
+        assertEquals("O arquivo está vazio.", error.getMessage());
+    }
+
+    // --- Métodos Helper ---
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(dir.resolve(name), content, StandardCharsets.UTF_8);
+    }
+
+    private static ChunkImportDTO dto(String content) {
+        return new ChunkImportDTO("CFW", "Das Santas Escrituras", 1, null, 1, null, null, null, content, List.of());
+    }
+}
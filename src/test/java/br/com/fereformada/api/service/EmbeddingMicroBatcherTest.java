@@ -0,0 +1,83 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.support.StubEmbeddingModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pedidos da mesma janela viram uma chamada por faixa, com textos repetidos enviados uma vez só;
+ * pedidos feitos na faixa BATCH passam pelo governador na faixa BATCH.
+ */
+class EmbeddingMicroBatcherTest {
+
+    private static final long WINDOW_MS = 200;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final StubEmbeddingModel embeddingModel = new StubEmbeddingModel();
+    private EmbeddingMicroBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        GeminiGovernor governor = new GeminiGovernor(registry, 8, 1000, 4, 1000, 0.5, 1000, 10, 50);
+        LlmResilience resilience = new LlmResilience(registry, governor, 500, 2000, 5000,
+                false, 100, 20, 20, 0.5, 30_000);
+        batcher = new EmbeddingMicroBatcher(registry, embeddingModel, resilience, true, WINDOW_MS, 16);
+        batcher.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void sameWindowBecomesOneDeduplicatedCall() throws Exception {
+        CompletableFuture<float[]> first = CompletableFuture.supplyAsync(() -> batcher.embed("graça comum"), executor);
+        CompletableFuture<float[]> second = CompletableFuture.supplyAsync(() -> batcher.embed("graça comum"), executor);
+        CompletableFuture<float[]> third = CompletableFuture.supplyAsync(() -> batcher.embed("justificação"), executor);
+
+        assertArrayEquals(StubEmbeddingModel.vectorFor("graça comum"), first.get(5, TimeUnit.SECONDS));
+        assertArrayEquals(StubEmbeddingModel.vectorFor("graça comum"), second.get(5, TimeUnit.SECONDS));
+        assertArrayEquals(StubEmbeddingModel.vectorFor("justificação"), third.get(5, TimeUnit.SECONDS));
+
+        assertEquals(1, embeddingModel.getCalls());
+        assertEquals(2, embeddingModel.getEmbeddedTexts());
+        assertEquals(1L, batcher.getStats().get("deduped"));
+    }
+
+    @Test
+    void eachLaneGetsItsOwnCall() throws Exception {
+        CompletableFuture<float[]> interactive = CompletableFuture.supplyAsync(
+                () -> batcher.embed("pergunta do usuário"), executor);
+        CompletableFuture<float[]> seeding = CompletableFuture.supplyAsync(
+                () -> GeminiGovernor.runInBatchLane(() -> batcher.embed("trecho da confissão")), executor);
+
+        assertArrayEquals(StubEmbeddingModel.vectorFor("pergunta do usuário"), interactive.get(5, TimeUnit.SECONDS));
+        assertArrayEquals(StubEmbeddingModel.vectorFor("trecho da confissão"), seeding.get(5, TimeUnit.SECONDS));
+
+        assertEquals(2, embeddingModel.getCalls());
+        assertEquals(1, governorAdmissions("interactive"));
+        assertEquals(1, governorAdmissions("batch"));
+    }
+
+    // --- Métodos Helper ---
+
+    private long governorAdmissions(String lane) {
+        return registry.get("gemini.governor.wait")
+                .tag("resource", "embedding")
+                .tag("lane", lane)
+                .timer()
+                .count();
+    }
+}
@@ -0,0 +1,123 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.model.enums.VectorTarget;
+import br.com.fereformada.api.repository.ContentChunkRepository;
+import br.com.fereformada.api.repository.StudyNoteRepository;
+import br.com.fereformada.api.repository.VectorBackfillRow;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Um ciclo do despachante: pedidos vetorizados são concluídos, os que falharam voltam para a fila,
+ * o cache é invalidado uma vez por ciclo, e a drenagem roda na thread própria do outbox.
+ */
+class EmbeddingOutboxDispatcherTest {
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final EmbeddingOutbox outbox = mock(EmbeddingOutbox.class);
+    private final ContentChunkRepository contentChunkRepository = mock(ContentChunkRepository.class);
+    private final BulkEmbeddingExecutor bulkEmbeddingExecutor = mock(BulkEmbeddingExecutor.class);
+    private final VectorBackfillWriter vectorWriter = mock(VectorBackfillWriter.class);
+    private final RetrievalCache retrievalCache = new RetrievalCache(true, 100, 100, 60);
+    private EmbeddingOutboxDispatcher dispatcher;
+
+    private final EmbeddingOutbox.OutboxItem embedded = new EmbeddingOutbox.OutboxItem(1L, VectorTarget.CHUNK_CONTENT, 10L, 1);
+    private final EmbeddingOutbox.OutboxItem rejected = new EmbeddingOutbox.OutboxItem(2L, VectorTarget.CHUNK_CONTENT, 20L, 1);
+    private final EmbeddingOutbox.OutboxItem deleted = new EmbeddingOutbox.OutboxItem(3L, VectorTarget.CHUNK_CONTENT, 30L, 1);
+
+    @BeforeEach
+    void setUp() {
+        when(outbox.claim(anyInt(), anyLong())).thenReturn(List.of(embedded, rejected, deleted), List.of());
+        // O alvo 30 foi apagado depois do pedido: não volta texto para ele
+        when(contentChunkRepository.findContentTextsByIds(anyCollection()))
+                .thenReturn(List.of(row(10L, "Deus é espírito."), row(20L, "texto recusado")));
+        when(bulkEmbeddingExecutor.embedAll(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            List<float[]> vectors = new ArrayList<>(Arrays.asList(new float[texts.size()][]));
+            for (int i = 0; i < texts.size(); i++) {
+                if (!texts.get(i).equals("texto recusado")) {
+                    vectors.set(i, new float[]{1f});
+                }
+            }
+            return new BulkEmbeddingExecutor.BulkEmbeddingResult(vectors, 1, 1, texts.size());
+        });
+        when(vectorWriter.writeVectors(any(), anyList(), anyList())).thenReturn(1);
+
+        dispatcher = new EmbeddingOutboxDispatcher(outbox, contentChunkRepository, mock(StudyNoteRepository.class),
+                bulkEmbeddingExecutor, vectorWriter, retrievalCache, new SimpleMeterRegistry(),
+                true, 10, 0, 100, 300, MAX_ATTEMPTS, 7);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.stop();
+    }
+
+    @Test
+    void failedTargetsGoBackToTheQueueAndTheRestIsDone() {
+        long versionBefore = retrievalCache.currentCorpusVersion();
+
+        dispatcher.dispatch();
+
+        verify(outbox).markFailed(rejected, "Vetorização falhou", MAX_ATTEMPTS);
+        verify(outbox).markDone(argThat(ids -> ids.size() == 2 && ids.containsAll(List.of(1L, 3L))));
+        verify(outbox, never()).markFailed(eq(embedded), any(), anyInt());
+        assertEquals(versionBefore + 1, retrievalCache.currentCorpusVersion());
+        assertEquals(2L, dispatcher.getStats().get("done"));
+        assertEquals(1L, dispatcher.getStats().get("failedAttempts"));
+    }
+
+    @Test
+    void batchErrorReturnsTheWholeGroupToTheQueue() {
+        when(bulkEmbeddingExecutor.embedAll(anyList())).thenThrow(new IllegalStateException("503 Service Unavailable"));
+
+        dispatcher.dispatch();
+
+        verify(outbox).markFailed(embedded, "503 Service Unavailable", MAX_ATTEMPTS);
+        verify(outbox).markFailed(rejected, "503 Service Unavailable", MAX_ATTEMPTS);
+        verify(outbox).markFailed(deleted, "503 Service Unavailable", MAX_ATTEMPTS);
+        verify(outbox, never()).markDone(any());
+    }
+
+    @Test
+    void drainRunsOnItsOwnThreadNotTheCaller() throws Exception {
+        CompletableFuture<String> drainThread = new CompletableFuture<>();
+        when(outbox.claim(anyInt(), anyLong())).thenAnswer(invocation -> {
+            drainThread.complete(Thread.currentThread().getName());
+            return List.of();
+        });
+
+        dispatcher.start();
+
+        assertEquals("embedding-outbox", drainThread.get(5, TimeUnit.SECONDS));
+    }
+
+    // --- Métodos Helper ---
+
+    private static VectorBackfillRow row(Long id, String text) {
+        return new VectorBackfillRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getText() {
+                return text;
+            }
+        };
+    }
+}
@@ -0,0 +1,105 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.model.enums.VectorTarget;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Outbox de embeddings contra o H2: pedido único por alvo pendente, reserva com lease,
+ * retomada de reservas expiradas e reenvio até o limite de tentativas.
+ */
+@DataJpaTest
+class EmbeddingOutboxTest {
+
+    private static final long LEASE_SECONDS = 60;
+    private static final int MAX_ATTEMPTS = 2;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private EmbeddingOutbox outbox;
+
+    @BeforeEach
+    void setUp() {
+        outbox = new EmbeddingOutbox(jdbcTemplate, new ChunkBatchWriter(jdbcTemplate));
+    }
+
+    @Test
+    void pendingRequestIsNotDuplicated() {
+        outbox.enqueue(VectorTarget.CHUNK_CONTENT, 10L);
+        outbox.enqueue(VectorTarget.CHUNK_CONTENT, 10L);
+        outbox.enqueue(VectorTarget.CHUNK_QUESTION, 10L);
+        assertEquals(2L, outbox.countByStatus().get("PENDING"));
+
+        // Edição durante a vetorização: o texto mudou de novo, então vale um novo pedido
+        outbox.claim(10, LEASE_SECONDS);
+        outbox.enqueue(VectorTarget.CHUNK_CONTENT, 10L);
+        assertEquals(1L, outbox.countByStatus().get("PENDING"));
+        assertEquals(2L, outbox.countByStatus().get("PROCESSING"));
+    }
+
+    @Test
+    void claimLeasesOldestRequestsUntilTheLeaseExpires() {
+        outbox.enqueue(VectorTarget.CHUNK_CONTENT, 1L);
+        outbox.enqueue(VectorTarget.CHUNK_CONTENT, 2L);
+        outbox.enqueue(VectorTarget.STUDY_NOTE, 3L);
+
+        List<EmbeddingOutbox.OutboxItem> first = outbox.claim(2, LEASE_SECONDS);
+        assertEquals(List.of(1L, 2L), first.stream().map(EmbeddingOutbox.OutboxItem::targetId).toList());
+        assertTrue(first.stream().allMatch(item -> item.attempts() == 1));
+
+        List<EmbeddingOutbox.OutboxItem> second = outbox.claim(10, LEASE_SECONDS);
+        assertEquals(1, second.size());
+        assertEquals(VectorTarget.STUDY_NOTE, second.get(0).target());
+        assertTrue(outbox.claim(10, LEASE_SECONDS).isEmpty(), "Reservas com lease válido não podem ser retomadas");
+
+        // Despachante morreu: a reserva expira e outro ciclo retoma, contando a nova tentativa
+        jdbcTemplate.update("UPDATE embedding_outbox SET claimed_at = ? WHERE target_id = 1",
+                Timestamp.valueOf(LocalDateTime.now().minusSeconds(LEASE_SECONDS * 2)));
+        List<EmbeddingOutbox.OutboxItem> reclaimed = outbox.claim(10, LEASE_SECONDS);
+        assertEquals(1, reclaimed.size());
+        assertEquals(1L, reclaimed.get(0).targetId());
+        assertEquals(2, reclaimed.get(0).attempts());
+    }
+
+    @Test
+    void failedRequestIsRetriedUntilMaxAttempts() {
+        outbox.enqueue(VectorTarget.CHUNK_QUESTION, 7L);
+
+        EmbeddingOutbox.OutboxItem firstTry = outbox.claim(10, LEASE_SECONDS).get(0);
+        outbox.markFailed(firstTry, "503 Service Unavailable", MAX_ATTEMPTS);
+        assertEquals(1L, outbox.countByStatus().get("PENDING"));
+        assertEquals("503 Service Unavailable",
+                jdbcTemplate.queryForObject("SELECT last_error FROM embedding_outbox WHERE target_id = 7", String.class));
+
+        EmbeddingOutbox.OutboxItem secondTry = outbox.claim(10, LEASE_SECONDS).get(0);
+        assertEquals(2, secondTry.attempts());
+        outbox.markFailed(secondTry, "503 Service Unavailable", MAX_ATTEMPTS);
+
+        assertEquals(1L, outbox.countByStatus().get("FAILED"));
+        assertTrue(outbox.claim(10, LEASE_SECONDS).isEmpty());
+    }
+
+    @Test
+    void doneRequestsArePurgedAfterRetention() {
+        outbox.enqueue(VectorTarget.CHUNK_CONTENT, 1L);
+        outbox.enqueue(VectorTarget.CHUNK_CONTENT, 2L);
+        List<EmbeddingOutbox.OutboxItem> items = outbox.claim(10, LEASE_SECONDS);
+        outbox.markDone(items.stream().map(EmbeddingOutbox.OutboxItem::id).toList());
+        assertEquals(2L, outbox.countByStatus().get("DONE"));
+
+        jdbcTemplate.update("UPDATE embedding_outbox SET processed_at = ? WHERE target_id = 1",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(10)));
+        assertEquals(1, outbox.purgeDone(7));
+        assertEquals(1L, outbox.countByStatus().get("DONE"));
+    }
+}
@@ -0,0 +1,68 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.util.EmbeddingTexts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.and;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * O GC só apaga vetores órfãos: os textos ainda presentes em chunks/notas são renovados antes da varredura,
+ * e sem essa marcação a varredura não roda.
+ */
+class EmbeddingStoreTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ChunkBatchWriter chunkBatchWriter = mock(ChunkBatchWriter.class);
+    private EmbeddingStore store;
+
+    @BeforeEach
+    void setUp() {
+        when(chunkBatchWriter.isPostgres()).thenReturn(true);
+        store = new EmbeddingStore(jdbcTemplate, chunkBatchWriter, new SimpleMeterRegistry(), true,
+                "text-embedding-004", 90);
+    }
+
+    @Test
+    void liveTextsAreRefreshedBeforeTheSweep() {
+        when(jdbcTemplate.update(startsWith("UPDATE embedding_store"), any(Object[].class))).thenReturn(40);
+        when(jdbcTemplate.update(startsWith("DELETE FROM embedding_store"), any(Object[].class)))
+                .thenReturn(5000, 12);
+
+        store.collectGarbage();
+
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).update(
+                and(startsWith("UPDATE embedding_store"), and(contains(EmbeddingTexts.LIVE_TEXTS_SQL),
+                        contains("sha256(convert_to(live.text, 'UTF8'))"))),
+                any(Object[].class));
+        inOrder.verify(jdbcTemplate, times(2)).update(startsWith("DELETE FROM embedding_store"), any(Object[].class));
+
+        assertEquals(5012, store.getStats().get("lastGcDeleted"));
+        assertEquals(40, store.getStats().get("lastGcRefreshed"));
+    }
+
+    @Test
+    void sweepIsSkippedWhenLiveTextsCannotBeMarked() {
+        when(jdbcTemplate.update(startsWith("UPDATE embedding_store"), any(Object[].class)))
+                .thenThrow(new DataAccessResourceFailureException("function sha256(bytea) does not exist"));
+
+        store.collectGarbage();
+
+        verify(jdbcTemplate, never()).update(startsWith("DELETE FROM embedding_store"), any(Object[].class));
+        assertEquals(-1, store.getStats().get("lastGcDeleted"));
+    }
+
+    @Test
+    void hashMatchesTheSqlSideEncoding() {
+        // Mesmo valor de encode(sha256(convert_to('graça', 'UTF8')), 'hex') no PostgreSQL
+        assertEquals("f462afb0b9febb9bfefa9dfed4c80c89fb8e3b24be68659ff7fd3e8f5fa147df", EmbeddingStore.hash("graça"));
+    }
+}
@@ -0,0 +1,233 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.dto.ContextItem;
+import br.com.fereformada.api.exception.LlmUnavailableException;
+import br.com.fereformada.api.support.StubChatModel;
+import br.com.fereformada.api.support.StubEmbeddingModel;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.ApiException;
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiApiClientResilienceTest {
+
+    private static final long CHAT_TIMEOUT_MS = 500;
+    private static final long HEDGE_DELAY_MS = 100;
+    private static final long CIRCUIT_OPEN_MS = 300;
+
+    private LlmResilience resilience;
+
+    private GeminiApiClient clientFor(StubChatModel chatModel, boolean hedging) {
+        return clientFor(chatModel, hedging, 8, 1000);
+    }
+
+    private GeminiApiClient clientFor(StubChatModel chatModel, boolean hedging,
+                                      int chatMaxConcurrency, long interactiveMaxWaitMs) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        GeminiGovernor governor = new GeminiGovernor(registry, chatMaxConcurrency, 1000, 4, 1000, 0.5,
+                interactiveMaxWaitMs, 10, 50);
+        resilience = new LlmResilience(registry, governor, CHAT_TIMEOUT_MS, 500, 2000,
+                hedging, HEDGE_DELAY_MS, 4, 2, 0.5, CIRCUIT_OPEN_MS);
+        return newClient(registry, chatModel, resilience);
+    }
+
+    static GeminiApiClient newClient(SimpleMeterRegistry registry, StubChatModel chatModel, LlmResilience resilience) {
+        StubEmbeddingModel embeddingModel = new StubEmbeddingModel();
+        EmbeddingMicroBatcher microBatcher = new EmbeddingMicroBatcher(registry, embeddingModel, resilience,
+                false, 10, 16);
+        LlmUsageTracker usageTracker = new LlmUsageTracker(registry,
+                new QueryTracer(registry, new QueryTraceLog(null, null, registry, 0, 1, 1, 1), false, 0), 0, 0, 0, 0, 0);
+        return new GeminiApiClient(chatModel, embeddingModel, resilience, microBatcher, usageTracker);
+    }
+
+    private String ask(GeminiApiClient client) {
+        return client.generateContent("Sistema", Collections.emptyList(), "O que é a graça?");
+    }
+
+    @Test
+    void slowModelFailsWithLlmUnavailableAfterTimeout() {
+        StubChatModel chatModel = new StubChatModel().withDelay(Duration.ofSeconds(3));
+        GeminiApiClient client = clientFor(chatModel, false);
+
+        long start = System.nanoTime();
+        assertThrows(LlmUnavailableException.class, () -> ask(client));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMs < 2000, "A chamada deveria ser abandonada no timeout, levou " + elapsedMs + " ms");
+    }
+
+    @Test
+    void hedgedSecondAttemptWinsWhenFirstIsSlow() {
+        // 1ª chamada trava; a 2ª (hedge) responde na hora
+        StubChatModel chatModel = new StubChatModel()
+                .withDelays(call -> call == 1 ? Duration.ofSeconds(3) : Duration.ZERO)
+                .respondingWith(prompt -> "resposta rápida");
+        GeminiApiClient client = clientFor(chatModel, true);
+
+        long start = System.nanoTime();
+        String answer = ask(client);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("resposta rápida", answer);
+        assertEquals(2, chatModel.getCalls());
+        assertTrue(elapsedMs < CHAT_TIMEOUT_MS, "O hedge deveria responder antes do timeout, levou " + elapsedMs + " ms");
+    }
+
+    @Test
+    void circuitOpensAfterFailuresAndShortCircuitsFurtherCalls() {
+        StubChatModel chatModel = new StubChatModel().failingWith(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+        GeminiApiClient client = clientFor(chatModel, false);
+
+        // min-calls = 2, failure-rate = 50%: duas falhas abrem o circuito
+        assertThrows(RuntimeException.class, () -> ask(client));
+        assertThrows(RuntimeException.class, () -> ask(client));
+        int callsBeforeOpen = chatModel.getCalls();
+
+        LlmUnavailableException shortCircuited = assertThrows(LlmUnavailableException.class, () -> ask(client));
+        assertTrue(shortCircuited.getMessage().contains("aberto"));
+        assertEquals(callsBeforeOpen, chatModel.getCalls(), "Com o circuito aberto o modelo não deve ser chamado");
+    }
+
+    @Test
+    void circuitClosesAfterSuccessfulProbe() throws InterruptedException {
+        StubChatModel chatModel = new StubChatModel()
+                .withFailures(call -> call <= 2 ? new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE) : null)
+                .respondingWith(prompt -> "recuperado");
+        GeminiApiClient client = clientFor(chatModel, false);
+
+        assertThrows(RuntimeException.class, () -> ask(client));
+        assertThrows(RuntimeException.class, () -> ask(client));
+        assertThrows(LlmUnavailableException.class, () -> ask(client));
+
+        Thread.sleep(CIRCUIT_OPEN_MS + 100);
+
+        assertEquals("recuperado", ask(client)); // chamada de teste (meio-aberto)
+        assertEquals("recuperado", ask(client)); // circuito fechado de novo
+    }
+
+    @Test
+    void clientErrorsDoNotOpenCircuit() {
+        StubChatModel chatModel = new StubChatModel().failingWith(
+                new HttpClientErrorException(HttpStatus.BAD_REQUEST, "INVALID_ARGUMENT"));
+        GeminiApiClient client = clientFor(chatModel, false);
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(RuntimeException.class, () -> ask(client));
+        }
+
+        assertEquals(4, chatModel.getCalls(), "Erros 4xx não devem curto-circuitar as chamadas seguintes");
+        assertEquals(LlmCircuitBreaker.State.CLOSED, resilience.getCircuitState(GeminiGovernor.Resource.CHAT));
+    }
+
+    @Test
+    void governorRejectionDoesNotOpenCircuit() throws Exception {
+        // 1 slot de chat, espera máxima de 50 ms na fila do governador
+        StubChatModel chatModel = new StubChatModel()
+                .withDelays(call -> call == 1 ? Duration.ofMillis(400) : Duration.ZERO)
+                .respondingWith(prompt -> "ok");
+        GeminiApiClient client = clientFor(chatModel, false, 1, 50);
+
+        CompletableFuture<String> holder = CompletableFuture.supplyAsync(() -> ask(client));
+        waitForCalls(chatModel, 1);
+        for (int i = 0; i < 3; i++) {
+            LlmUnavailableException rejected = assertThrows(LlmUnavailableException.class, () -> ask(client));
+            assertTrue(rejected.getMessage().contains("saturada"));
+        }
+
+        assertEquals("ok", holder.get(5, TimeUnit.SECONDS));
+        assertEquals(LlmCircuitBreaker.State.CLOSED, resilience.getCircuitState(GeminiGovernor.Resource.CHAT));
+        assertEquals("ok", ask(client));
+    }
+
+    @Test
+    void timeoutStartsAfterGovernorAdmission() throws Exception {
+        // A 2ª chamada espera ~450 ms na fila e leva 300 ms: 750 ms no total, mas só 300 ms depois da admissão
+        StubChatModel chatModel = new StubChatModel()
+                .withDelays(call -> call == 1 ? Duration.ofMillis(450) : Duration.ofMillis(300))
+                .respondingWith(prompt -> "ok");
+        GeminiApiClient client = clientFor(chatModel, false, 1, 5_000);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> ask(client));
+        waitForCalls(chatModel, 1);
+        long start = System.nanoTime();
+        String second = ask(client);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("ok", second);
+        assertEquals("ok", first.get(5, TimeUnit.SECONDS));
+        assertTrue(elapsedMs > CHAT_TIMEOUT_MS, "A chamada deveria ter esperado na fila, levou " + elapsedMs + " ms");
+    }
+
+    @Test
+    void providerFailuresAreTheOnlyOnesCountedByTheCircuit() {
+        assertTrue(LlmResilience.isProviderFailure(new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS)));
+        assertTrue(LlmResilience.isProviderFailure(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE)));
+        assertTrue(LlmResilience.isProviderFailure(
+                new RuntimeException("falha no Vertex", Status.RESOURCE_EXHAUSTED.withDescription("Quota exceeded").asRuntimeException())));
+        assertTrue(LlmResilience.isProviderFailure(new ApiException(new RuntimeException("unavailable"),
+                GrpcStatusCode.of(Status.Code.UNAVAILABLE), true)));
+        assertTrue(LlmResilience.isProviderFailure(
+                new LlmUnavailableException("Gemini não respondeu em 500 ms", new TimeoutException())));
+
+        assertFalse(LlmResilience.isProviderFailure(new LlmUnavailableException("Fila do Gemini (CHAT) saturada. Tente novamente.")));
+        assertFalse(LlmResilience.isProviderFailure(new HttpClientErrorException(HttpStatus.BAD_REQUEST, "INVALID_ARGUMENT")));
+        assertFalse(LlmResilience.isProviderFailure(new IllegalStateException("Lote de embeddings retornou 1 vetores para 2 textos.")));
+    }
+
+    @Test
+    void statusCodeDecidesEvenWhenTheMessageMentionsTransientErrors() {
+        // Erro do conteúdo cujo texto cita "503"/"429"/"UNAVAILABLE": continua sendo 4xx
+        assertFalse(GeminiGovernor.isThrottlingOrServerError(new HttpClientErrorException(HttpStatus.BAD_REQUEST,
+                "texto recusado: \"erro 503 UNAVAILABLE, 429 vezes\"")));
+        assertFalse(GeminiGovernor.isThrottlingOrServerError(
+                Status.INVALID_ARGUMENT.withDescription("campo com 503 Service Unavailable").asRuntimeException()));
+        // Sem código de status na cadeia: não é classificado como transitório
+        assertFalse(GeminiGovernor.isThrottlingOrServerError(new IllegalStateException("503 Service Unavailable")));
+    }
+
+    @Test
+    void extractiveAnswerUsesTopDistinctSourcesWhenLlmIsUnavailable() {
+        List<ContextItem> ranked = List.of(
+                item(1L, "Confissão de Fé de Westminster - Cap. 11", "Aqueles a quem Deus chama eficazmente, também livremente justifica."),
+                item(2L, "Confissão de Fé de Westminster - Cap. 11", "Trecho repetido da mesma fonte."),
+                item(3L, "Catecismo Maior de Westminster - P. 70", "Justificação é um ato da livre graça de Deus."),
+                item(4L, "Breve Catecismo de Westminster - P. 33", "Justificação é um ato da livre graça de Deus, no qual Ele perdoa."),
+                item(5L, "Institutas - Livro III", "Não deveria aparecer: limite de 3 fontes."));
+
+        String answer = QueryService.buildExtractiveAnswer(ranked, 3);
+
+        assertTrue(answer.contains("temporariamente indisponível"));
+        assertTrue(answer.contains("livremente justifica"));
+        assertTrue(answer.contains("Catecismo Maior de Westminster - P. 70"));
+        assertTrue(answer.contains("Breve Catecismo de Westminster - P. 33"));
+        assertFalse(answer.contains("Trecho repetido"));
+        assertFalse(answer.contains("Institutas"));
+    }
+
+    private static void waitForCalls(StubChatModel chatModel, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (chatModel.getCalls() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, chatModel.getCalls());
+    }
+
+    private static ContextItem item(Long id, String source, String content) {
+        return new ContextItem(id, source, null, content, 0.8, id, "CHUNK", "REF " + id,
+                Map.of(), false, "CONFISSAO", 1);
+    }
+}
@@ -0,0 +1,176 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.exception.LlmUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Faixas de prioridade, teto da faixa BATCH, AIMD em 429 e rejeição de chamadas interativas na fila.
+ */
+class GeminiGovernorTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static GeminiGovernor governor(int chatMaxConcurrency, long interactiveMaxWaitMs) {
+        return new GeminiGovernor(new SimpleMeterRegistry(), chatMaxConcurrency, 1000, 4, 1000, 0.5,
+                interactiveMaxWaitMs, 10, 50);
+    }
+
+    @Test
+    void interactiveCallerIsAdmittedBeforeQueuedBatchCaller() throws Exception {
+        GeminiGovernor governor = governor(1, 5_000);
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        Future<?> holder = executor.submit(() -> governor.execute(GeminiGovernor.Resource.CHAT,
+                GeminiGovernor.Lane.INTERACTIVE, () -> {
+                    holding.countDown();
+                    await(release);
+                    return null;
+                }));
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+        // BATCH entra na fila primeiro, INTERACTIVE depois
+        Future<?> batch = executor.submit(() -> governor.execute(GeminiGovernor.Resource.CHAT,
+                GeminiGovernor.Lane.BATCH, () -> order.add("batch")));
+        waitForStat(governor, "waitingBatch", 1);
+        Future<?> interactive = executor.submit(() -> governor.execute(GeminiGovernor.Resource.CHAT,
+                GeminiGovernor.Lane.INTERACTIVE, () -> order.add("interactive")));
+        waitForStat(governor, "waitingInteractive", 1);
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        batch.get(5, TimeUnit.SECONDS);
+        interactive.get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("interactive", "batch"), order);
+    }
+
+    @Test
+    void batchLaneNeverTakesEverySlot() throws Exception {
+        // 4 slots, batch-max-share 0.5: no máximo 2 chamadas BATCH ao mesmo tempo
+        GeminiGovernor governor = governor(4, 5_000);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<?>> batchCalls = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            batchCalls.add(executor.submit(() -> governor.execute(GeminiGovernor.Resource.CHAT,
+                    GeminiGovernor.Lane.BATCH, () -> {
+                        await(release);
+                        return null;
+                    })));
+        }
+        waitForStat(governor, "inFlight", 2);
+        waitForStat(governor, "waitingBatch", 2);
+
+        // Sobra slot para o chat do usuário, sem esperar os lotes
+        long start = System.nanoTime();
+        assertEquals("ok", governor.execute(GeminiGovernor.Resource.CHAT, GeminiGovernor.Lane.INTERACTIVE, () -> "ok"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_000);
+        assertEquals(2, chatStats(governor).get("inFlight"));
+
+        release.countDown();
+        for (Future<?> call : batchCalls) {
+            call.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(0, chatStats(governor).get("inFlight"));
+    }
+
+    @Test
+    void throttlingHalvesLimitsAndSuccessesRecoverThem() {
+        GeminiGovernor governor = governor(8, 5_000);
+
+        assertThrows(HttpClientErrorException.class, () -> governor.execute(GeminiGovernor.Resource.CHAT,
+                GeminiGovernor.Lane.INTERACTIVE, () -> {
+                    throw new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS);
+                }));
+        assertEquals(4, chatStats(governor).get("concurrencyLimit"));
+        assertEquals(500.0, (double) chatStats(governor).get("ratePerSecond"), 0.001);
+        assertEquals(1L, chatStats(governor).get("throttled"));
+
+        // Erro que não é de quota/servidor não mexe nos limites
+        assertThrows(HttpClientErrorException.class, () -> governor.execute(GeminiGovernor.Resource.CHAT,
+                GeminiGovernor.Lane.INTERACTIVE, () -> {
+                    throw new HttpClientErrorException(HttpStatus.BAD_REQUEST, "prompt inválido com 503 no texto");
+                }));
+        assertEquals(4, chatStats(governor).get("concurrencyLimit"));
+
+        // 20 sucessos: +1 de concorrência e +10% de taxa
+        for (int i = 0; i < 20; i++) {
+            governor.execute(GeminiGovernor.Resource.CHAT, GeminiGovernor.Lane.INTERACTIVE, () -> "ok");
+        }
+        assertEquals(5, chatStats(governor).get("concurrencyLimit"));
+        assertEquals(600.0, (double) chatStats(governor).get("ratePerSecond"), 0.001);
+    }
+
+    @Test
+    void interactiveCallerIsRejectedAfterMaxWait() throws Exception {
+        GeminiGovernor governor = governor(1, 100);
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<?> holder = executor.submit(() -> governor.execute(GeminiGovernor.Resource.CHAT,
+                GeminiGovernor.Lane.INTERACTIVE, () -> {
+                    holding.countDown();
+                    await(release);
+                    return null;
+                }));
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        LlmUnavailableException rejected = assertThrows(LlmUnavailableException.class,
+                () -> governor.execute(GeminiGovernor.Resource.CHAT, GeminiGovernor.Lane.INTERACTIVE, () -> "nunca"));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(rejected.getMessage().contains("saturada"));
+        assertTrue(elapsedMs < 2_000, "rejeição levou " + elapsedMs + " ms");
+        assertEquals(1L, chatStats(governor).get("rejected"));
+        assertEquals(0, chatStats(governor).get("waitingInteractive"));
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+    }
+
+    // --- Métodos Helper ---
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> chatStats(GeminiGovernor governor) {
+        return (Map<String, Object>) governor.getStats().get("chat");
+    }
+
+    private static void waitForStat(GeminiGovernor governor, String key, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!Integer.valueOf(expected).equals(chatStats(governor).get(key)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, chatStats(governor).get(key));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
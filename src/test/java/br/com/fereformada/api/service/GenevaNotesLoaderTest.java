@@ -0,0 +1,109 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.model.StudyNote;
+import br.com.fereformada.api.repository.StudyNoteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.ResourceLoader;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Carga por livro: a retomada pula as notas cujo capítulo:versículo já está no banco,
+ * e a falha de um livro não impede a gravação dos outros.
+ */
+class GenevaNotesLoaderTest {
+
+    private static final String GENESIS = "Gênesis\n" +
+            "* 1.1 No princípio. A criação é obra do Deus trino, e não de uma matéria eterna.\n" +
+            "* 1.2 sem forma e vazia. A terra ainda não estava pronta para ser habitada.\n";
+    private static final String EXODUS = "Êxodo\n" +
+            "* 1.1 Estes são os nomes. O livro continua a história dos filhos de Jacó no Egito.\n";
+
+    private final StudyNoteRepository studyNoteRepository = mock(StudyNoteRepository.class);
+    private final StudyNoteBatchService studyNoteBatchService = mock(StudyNoteBatchService.class);
+    private final BulkEmbeddingExecutor bulkEmbeddingExecutor = mock(BulkEmbeddingExecutor.class);
+    private final ChunkingService chunkingService = mock(ChunkingService.class);
+    private final ResourceLoader resourceLoader = mock(ResourceLoader.class);
+    private GenevaNotesLoader loader;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setUp() {
+        // Só Gênesis e Êxodo têm arquivo; os outros livros são "arquivo não encontrado"
+        when(resourceLoader.getResource(anyString())).thenAnswer(invocation -> {
+            String path = invocation.getArgument(0);
+            if (path.endsWith("/Gênesis.txt")) {
+                return new ByteArrayResource(GENESIS.getBytes(StandardCharsets.UTF_8));
+            }
+            if (path.endsWith("/Êxodo.txt")) {
+                return new ByteArrayResource(EXODUS.getBytes(StandardCharsets.UTF_8));
+            }
+            return new FileSystemResource(dir.resolve("ausente.txt"));
+        });
+        when(chunkingService.cleanChunkText(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(bulkEmbeddingExecutor.embedAll(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            List<float[]> vectors = new ArrayList<>();
+            texts.forEach(text -> vectors.add(new float[]{1f}));
+            return new BulkEmbeddingExecutor.BulkEmbeddingResult(vectors, 0, 1, texts.size());
+        });
+
+        loader = new GenevaNotesLoader(studyNoteRepository, studyNoteBatchService, bulkEmbeddingExecutor,
+                chunkingService, resourceLoader, 4, dir.toString());
+    }
+
+    @Test
+    void resumeSkipsNotesAlreadyInTheDatabase() {
+        when(studyNoteRepository.findExistingNoteKeysByBook("Gênesis")).thenReturn(Set.of("1:1"));
+
+        Map<String, Object> summary = loader.loadAll();
+
+        List<StudyNote> genesis = savedNotes("Gênesis");
+        assertEquals(1, genesis.size());
+        assertEquals(2, genesis.get(0).getStartVerse());
+        assertNotNull(genesis.get(0).getNoteVector());
+        assertEquals(2, summary.get("loaded"));
+        assertEquals(1, summary.get("skipped"));
+    }
+
+    @Test
+    void failingBookDoesNotStopTheOthers() {
+        doThrow(new IllegalStateException("conexão perdida"))
+                .when(studyNoteBatchService).saveBatch(argThat(notes -> notes.get(0).getBook().equals("Êxodo")));
+
+        Map<String, Object> summary = loader.loadAll();
+
+        assertEquals(1, summary.get("failedBooks"));
+        assertEquals(65, summary.get("books"));
+        assertEquals(2, summary.get("loaded"));
+        assertEquals(2, savedNotes("Gênesis").size());
+    }
+
+    // --- Métodos Helper ---
+
+    @SuppressWarnings("unchecked")
+    private List<StudyNote> savedNotes(String book) {
+        ArgumentCaptor<List<StudyNote>> captor = ArgumentCaptor.forClass(List.class);
+        verify(studyNoteBatchService, atLeastOnce()).saveBatch(captor.capture());
+        return captor.getAllValues().stream()
+                .filter(notes -> notes.get(0).getBook().equals(book))
+                .findFirst()
+                .orElseThrow();
+    }
+}
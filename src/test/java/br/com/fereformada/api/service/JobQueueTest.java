@@ -0,0 +1,226 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.dto.StudyNoteRequestDTO;
+import br.com.fereformada.api.model.ImportTask;
+import br.com.fereformada.api.model.enums.TaskStatus;
+import br.com.fereformada.api.model.enums.TaskType;
+import br.com.fereformada.api.repository.ImportTaskPayloadRepository;
+import br.com.fereformada.api.repository.ImportTaskRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fila de tarefas contra o H2: reserva, heartbeat, cerca do lease nas escritas, reaper e entrada persistida.
+ * Duas {@link JobQueue} com node-ids diferentes simulam duas réplicas.
+ */
+@DataJpaTest
+class JobQueueTest {
+
+    private static final int MAX_ATTEMPTS = 2;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ImportTaskRepository importTaskRepository;
+    @Autowired
+    private ImportTaskPayloadRepository payloadRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private ImportPayloadStore payloadStore;
+    private JobQueue nodeA;
+    private JobQueue nodeB;
+
+    @BeforeEach
+    void setUp() {
+        ChunkBatchWriter chunkBatchWriter = new ChunkBatchWriter(jdbcTemplate);
+        payloadStore = new ImportPayloadStore(payloadRepository, new ObjectMapper());
+        nodeA = new JobQueue(jdbcTemplate, chunkBatchWriter, importTaskRepository, payloadStore, "node-a", 60, MAX_ATTEMPTS);
+        nodeB = new JobQueue(jdbcTemplate, chunkBatchWriter, importTaskRepository, payloadStore, "node-b", 60, MAX_ATTEMPTS);
+    }
+
+    @Test
+    void claimLeasesOldestPendingTaskToOneNode() {
+        Long first = pendingTask(TaskType.BACKFILL_NOTE_VECTORS);
+        Long second = pendingTask(TaskType.BACKFILL_CONTENT_VECTORS);
+
+        ImportTask claimed = nodeA.claim().orElseThrow();
+        assertEquals(first, claimed.getId());
+        assertEquals(TaskStatus.PROCESSING, claimed.getStatus());
+        assertEquals("node-a", claimed.getLeaseOwner());
+        assertEquals(1, claimed.getAttempts());
+        assertTrue(claimed.getLeaseExpiresAt().isAfter(LocalDateTime.now()));
+
+        assertEquals(second, nodeB.claim().orElseThrow().getId());
+        assertTrue(nodeA.claim().isEmpty());
+    }
+
+    @Test
+    void tasksWithoutTypeAreNeverClaimed() {
+        ImportTask legacy = new ImportTask();
+        importTaskRepository.save(legacy);
+        clear();
+
+        assertTrue(nodeA.claim().isEmpty());
+    }
+
+    @Test
+    void onlyTheLeaseOwnerCanHeartbeatCheckpointAndFinish() {
+        Long taskId = pendingTask(TaskType.IMPORT_CHUNKS);
+        nodeA.claim().orElseThrow();
+
+        assertTrue(nodeA.heartbeat(taskId));
+        assertFalse(nodeB.heartbeat(taskId));
+
+        nodeA.checkpoint(taskId, 200, 200L);
+        assertTrue(nodeA.flushProgress(taskId, 150, "Gravados 200 chunks...", null));
+        assertFalse(nodeB.flushProgress(taskId, 999, "intruso", null));
+        assertThrows(JobQueue.LeaseLostException.class, () -> nodeB.checkpoint(taskId, 999, 999L));
+
+        ImportTask result = reload(taskId);
+        assertEquals(200, result.getProcessedItems());
+        assertEquals(200L, result.getLastProcessedId());
+        // O flush periódico nunca faz a contagem voltar atrás do checkpoint
+        assertEquals("Gravados 200 chunks...", result.getCurrentLog());
+
+        result.setStatus(TaskStatus.COMPLETED);
+        clear();
+        assertFalse(nodeB.finish(result));
+        clear();
+        assertTrue(nodeA.finish(result));
+
+        ImportTask finished = reload(taskId);
+        assertEquals(TaskStatus.COMPLETED, finished.getStatus());
+        assertNull(finished.getLeaseOwner());
+        assertNotNull(finished.getEndTime());
+    }
+
+    @Test
+    void reaperRequeuesExpiredLeaseAndNewOwnerResumesFromCheckpoint() {
+        Long taskId = pendingTask(TaskType.BACKFILL_QUESTION_VECTORS);
+        nodeA.claim().orElseThrow();
+        nodeA.checkpoint(taskId, 500, 1234L);
+
+        // Reaper não mexe em lease válido
+        assertEquals(new JobQueue.ReapResult(0, 0), nodeB.reapExpiredLeases());
+
+        expireLease(taskId);
+        assertEquals(new JobQueue.ReapResult(1, 0), nodeB.reapExpiredLeases());
+        clear();
+
+        ImportTask resumed = nodeB.claim().orElseThrow();
+        assertEquals("node-b", resumed.getLeaseOwner());
+        assertEquals(2, resumed.getAttempts());
+        assertEquals(1234L, resumed.getLastProcessedId());
+        assertEquals(500, resumed.getProcessedItems());
+
+        // A instância antiga "acorda" e tenta continuar: tudo recusado
+        assertFalse(nodeA.heartbeat(taskId));
+        assertThrows(JobQueue.LeaseLostException.class, () -> nodeA.checkpoint(taskId, 600, 1500L));
+    }
+
+    @Test
+    void reaperFailsTaskAfterMaxAttempts() {
+        Long taskId = pendingTask(TaskType.BACKFILL_NOTE_VECTORS);
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            nodeA.claim().orElseThrow();
+            expireLease(taskId);
+            nodeA.reapExpiredLeases();
+            clear();
+        }
+
+        ImportTask task = reload(taskId);
+        assertEquals(TaskStatus.FAILED, task.getStatus());
+        assertNotNull(task.getErrorMessage());
+        assertTrue(nodeA.claim().isEmpty());
+    }
+
+    @Test
+    void releaseReturnsTaskWithoutSpendingAnAttempt() {
+        Long taskId = pendingTask(TaskType.IMPORT_STUDY_NOTES);
+        nodeA.claim().orElseThrow();
+
+        assertFalse(nodeB.release(taskId));
+        assertTrue(nodeA.release(taskId));
+        clear();
+
+        ImportTask again = nodeB.claim().orElseThrow();
+        assertEquals(taskId, again.getId());
+        assertEquals(1, again.getAttempts());
+    }
+
+    @Test
+    void payloadIsPagedAndReadFromCheckpoint() throws Exception {
+        Long taskId = pendingTask(TaskType.IMPORT_STUDY_NOTES);
+        ImportPayloadStore.Appender appender = payloadStore.appender(taskId);
+        for (int i = 0; i < 1200; i++) {
+            appender.add(new StudyNoteRequestDTO("Gênesis", 1, i + 1, null, null, "Nota " + i, "Genebra"));
+        }
+        assertEquals(1200, appender.finish());
+        assertEquals(List.of(500, 500, 200), payloadRepository.findItemCounts(taskId));
+
+        List<StudyNoteRequestDTO> rest = new ArrayList<>();
+        Iterator<StudyNoteRequestDTO> items = payloadStore.read(taskId, StudyNoteRequestDTO.class, 700);
+        items.forEachRemaining(rest::add);
+        assertEquals(500, rest.size());
+        assertEquals("Nota 700", rest.get(0).noteContent());
+        assertEquals("Nota 1199", rest.get(rest.size() - 1).noteContent());
+
+        // Estado final apaga a entrada persistida
+        nodeA.claim().orElseThrow();
+        ImportTask result = reload(taskId);
+        result.setStatus(TaskStatus.COMPLETED);
+        clear();
+        assertTrue(nodeA.finish(result));
+        entityManager.flush();
+        assertFalse(payloadStore.hasPayload(taskId));
+    }
+
+    // ===== HELPERS =====
+
+    private Long pendingTask(TaskType type) {
+        ImportTask task = new ImportTask();
+        task.setTaskType(type);
+        task.setTotalItems(10);
+        Long id = importTaskRepository.save(task).getId();
+        clear();
+        return id;
+    }
+
+    private void expireLease(Long taskId) {
+        jdbcTemplate.update("UPDATE import_tasks SET lease_expires_at = ? WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusMinutes(5)), taskId);
+    }
+
+    /**
+     * Estado atual da tarefa, desanexado (alterações no objeto não voltam para o banco).
+     */
+    private ImportTask reload(Long taskId) {
+        clear();
+        Optional<ImportTask> task = importTaskRepository.findById(taskId);
+        entityManager.clear();
+        return task.orElseThrow();
+    }
+
+    /**
+     * A fila escreve via JDBC: descarta o cache do contexto de persistência do teste antes de ler pela JPA.
+     */
+    private void clear() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
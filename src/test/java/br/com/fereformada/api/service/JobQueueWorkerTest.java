@@ -0,0 +1,84 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.model.ImportTask;
+import br.com.fereformada.api.model.enums.TaskStatus;
+import br.com.fereformada.api.model.enums.TaskType;
+import br.com.fereformada.api.repository.ImportTaskRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * O heartbeat roda no scheduler próprio do worker, independente do scheduler do Spring,
+ * e interrompe a execução local quando o lease foi perdido.
+ */
+class JobQueueWorkerTest {
+
+    private static final long TASK_ID = 42L;
+
+    private final JobQueue jobQueue = mock(JobQueue.class);
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+    private JobQueueWorker worker;
+
+    @AfterEach
+    void tearDown() {
+        worker.shutdown();
+    }
+
+    @Test
+    void lostLeaseInterruptsTheRunningTaskFromTheHeartbeatThread() throws Exception {
+        CompletableFuture<String> heartbeatThread = new CompletableFuture<>();
+        when(jobQueue.claim()).thenReturn(Optional.of(task()), Optional.empty());
+        when(jobQueue.heartbeat(TASK_ID)).thenAnswer(invocation -> {
+            heartbeatThread.complete(Thread.currentThread().getName());
+            return false;
+        });
+        worker = new JobQueueWorker(jobQueue, new TaskProgressRegistry(jobQueue, mock(ImportTaskRepository.class)),
+                List.of(blockingHandler()), new SimpleMeterRegistry(), true, 1, 20);
+
+        worker.poll();
+        worker.startHeartbeat();
+
+        assertEquals("job-heartbeat", heartbeatThread.get(5, TimeUnit.SECONDS));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "A tarefa local deveria ser interrompida");
+        assertTrue((long) worker.getStats().get("leasesLost") >= 1);
+    }
+
+    // --- Métodos Helper ---
+
+    private JobHandler blockingHandler() {
+        return new JobHandler() {
+            @Override
+            public boolean supports(TaskType taskType) {
+                return true;
+            }
+
+            @Override
+            public void execute(ImportTask task, TaskProgress progress) {
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        };
+    }
+
+    private static ImportTask task() {
+        ImportTask task = new ImportTask();
+        task.setId(TASK_ID);
+        task.setTaskType(TaskType.BACKFILL_NOTE_VECTORS);
+        task.setStatus(TaskStatus.PROCESSING);
+        return task;
+    }
+}
@@ -0,0 +1,157 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.model.ImportTask;
+import br.com.fereformada.api.model.Work;
+import br.com.fereformada.api.model.enums.PdfSource;
+import br.com.fereformada.api.model.enums.TaskStatus;
+import br.com.fereformada.api.model.enums.TaskType;
+import br.com.fereformada.api.repository.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pipeline de PDF com extração e parse simulados: a retomada começa no índice do checkpoint,
+ * e a falha de um estágio atravessa as filas, para o pipeline e marca a tarefa como falha.
+ */
+@Timeout(10)
+class PdfIngestionPipelineTest {
+
+    private static final long TASK_ID = 42L;
+    private static final int QUESTIONS = 5;
+
+    private final ImportTaskRepository importTaskRepository = mock(ImportTaskRepository.class);
+    private final WorkRepository workRepository = mock(WorkRepository.class);
+    private final ContentChunkRepository contentChunkRepository = mock(ContentChunkRepository.class);
+    private final PdfTextExtractor textExtractor = mock(PdfTextExtractor.class);
+    private final ChunkingService chunkingService = mock(ChunkingService.class);
+    private final TaggingService taggingService = mock(TaggingService.class);
+    private final BulkEmbeddingExecutor bulkEmbeddingExecutor = mock(BulkEmbeddingExecutor.class);
+    private final PgCopyBulkLoader bulkLoader = mock(PgCopyBulkLoader.class);
+    private final ImportPayloadStore payloadStore = mock(ImportPayloadStore.class);
+    private final JobQueue jobQueue = mock(JobQueue.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final List<String> loadedContents = new CopyOnWriteArrayList<>();
+    private PdfIngestionPipeline pipeline;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Work work = new Work();
+        work.setId(7L);
+        when(workRepository.findByTitle(PdfSource.SHORTER_CATECHISM.workTitle())).thenReturn(Optional.of(work));
+        when(importTaskRepository.findById(any())).thenReturn(Optional.empty());
+        when(payloadStore.read(TASK_ID, PdfSource.class, 0))
+                .thenAnswer(invocation -> List.of(PdfSource.SHORTER_CATECHISM).iterator());
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+
+        // O texto "extraído" só precisa existir: o parse é do ChunkingService simulado
+        Path textFile = Files.writeString(dir.resolve("breve.txt"), "texto extraído");
+        when(textExtractor.extract(anyString(), anyInt(), anyInt()))
+                .thenReturn(new PdfTextExtractor.Extraction(textFile, "abc", 3, false, 5));
+        when(chunkingService.streamWestminsterShorterCatechism(any(), eq(0))).thenAnswer(invocation -> questions());
+        when(chunkingService.cleanChunkText(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(taggingService.hasRules()).thenReturn(true);
+        when(taggingService.getTagsFor(any(String[].class))).thenReturn(Set.of());
+        when(bulkEmbeddingExecutor.embedAll(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            List<float[]> vectors = new ArrayList<>();
+            texts.forEach(text -> vectors.add(new float[]{1f}));
+            return new BulkEmbeddingExecutor.BulkEmbeddingResult(vectors, 0, 1, texts.size());
+        });
+        when(bulkLoader.loadChunks(anyList())).thenAnswer(invocation -> {
+            List<ChunkBatchWriter.ChunkInsert> rows = invocation.getArgument(0);
+            rows.forEach(row -> loadedContents.add(row.content()));
+            return new PgCopyBulkLoader.LoadReport("content_chunks", rows.size(), 1, rows.size(), "copy", List.of());
+        });
+
+        pipeline = new PdfIngestionPipeline(importTaskRepository, workRepository, mock(AuthorRepository.class),
+                mock(TopicRepository.class), contentChunkRepository, textExtractor, chunkingService, taggingService,
+                bulkEmbeddingExecutor, bulkLoader, new RetrievalCache(true, 100, 100, 60), payloadStore, jobQueue,
+                new TransactionTemplate(transactionManager), 4, 2, 4000);
+    }
+
+    @Test
+    void resumeStartsAtTheCheckpointIndex() {
+        ImportTask task = task(2);
+
+        pipeline.execute(task, new TaskProgress(task, "node-test"));
+
+        assertEquals(TaskStatus.COMPLETED, task.getStatus(), task.getErrorMessage());
+        assertEquals(List.of(answer(2), answer(3), answer(4)), loadedContents);
+        verify(jobQueue).checkpoint(TASK_ID, 4L, 4L);
+        verify(jobQueue).checkpoint(TASK_ID, 5L, 5L);
+        assertEquals(5L, task.getLastProcessedId());
+        assertEquals(5, task.getProcessedItems());
+        // Só a primeira execução confere se a obra já tem chunks
+        verify(contentChunkRepository, never()).countByWorkTitle(any());
+    }
+
+    @Test
+    void stageFailureStopsThePipelineAndFailsTheTask() {
+        when(taggingService.getTagsFor(any(String[].class))).thenAnswer(invocation -> {
+            if (invocation.getArgument(0).equals(question(1))) {
+                throw new IllegalStateException("Regra de tags inválida");
+            }
+            return Set.of();
+        });
+        ImportTask task = task(0);
+
+        pipeline.execute(task, new TaskProgress(task, "node-test"));
+
+        assertEquals(TaskStatus.FAILED, task.getStatus());
+        assertEquals("Regra de tags inválida", task.getErrorMessage());
+        // A janela do item #0 nunca fechou: nada gravado, nenhum checkpoint
+        verify(bulkLoader, never()).loadChunks(anyList());
+        verify(jobQueue, never()).checkpoint(any(), anyLong(), any());
+        verify(jobQueue).finish(task);
+    }
+
+    // --- Métodos Helper ---
+
+    private static Iterator<ChunkingService.ParsedQuestionChunk> questions() {
+        List<ChunkingService.ParsedQuestionChunk> chunks = new ArrayList<>();
+        for (int i = 0; i < QUESTIONS; i++) {
+            chunks.add(new ChunkingService.ParsedQuestionChunk(question(i), answer(i), i + 1));
+        }
+        return chunks.iterator();
+    }
+
+    private static String question(int i) {
+        return "Pergunta " + i + "?";
+    }
+
+    private static String answer(int i) {
+        return "Resposta número " + i + " do catecismo.";
+    }
+
+    private static ImportTask task(int checkpoint) {
+        ImportTask task = new ImportTask();
+        task.setId(TASK_ID);
+        task.setTaskType(TaskType.IMPORT_PDF);
+        task.setStatus(TaskStatus.PROCESSING);
+        task.setProcessedItems(checkpoint);
+        task.setLastProcessedId(checkpoint > 0 ? (long) checkpoint : null);
+        return task;
+    }
+}
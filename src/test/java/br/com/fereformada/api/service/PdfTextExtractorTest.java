@@ -0,0 +1,88 @@
+package br.com.fereformada.api.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Extração em faixas paralelas com cache em disco: a segunda extração do mesmo PDF e intervalo
+ * vem do cache, sem abrir o PDF; outro intervalo é uma entrada nova.
+ */
+class PdfTextExtractorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void secondExtractionOfTheSamePdfIsACacheHit() throws IOException {
+        Path pdf = writePdf("Primeira pagina", "Segunda pagina", "Terceira pagina");
+        // Uma página por faixa: as três faixas rodam em paralelo
+        PdfTextExtractor extractor = new PdfTextExtractor(new DefaultResourceLoader(),
+                dir.resolve("cache").toString(), 1, 3);
+        String resource = pdf.toUri().toString();
+
+        PdfTextExtractor.Extraction first = extractor.extract(resource, 1, Integer.MAX_VALUE);
+        PdfTextExtractor.Extraction second = extractor.extract(resource, 1, Integer.MAX_VALUE);
+
+        assertFalse(first.cached());
+        assertEquals(3, first.pages());
+        String text = Files.readString(first.textFile(), StandardCharsets.UTF_8);
+        assertTrue(text.indexOf("Primeira") < text.indexOf("Segunda") && text.indexOf("Segunda") < text.indexOf("Terceira"),
+                text);
+
+        assertTrue(second.cached());
+        assertEquals(first.textFile(), second.textFile());
+        assertEquals(first.sha256(), second.sha256());
+        assertEquals(0, second.pages());
+    }
+
+    @Test
+    void otherPageRangeIsExtractedAgain() throws IOException {
+        Path pdf = writePdf("Primeira pagina", "Segunda pagina", "Terceira pagina");
+        PdfTextExtractor extractor = new PdfTextExtractor(new DefaultResourceLoader(),
+                dir.resolve("cache").toString(), 1, 2);
+        String resource = pdf.toUri().toString();
+
+        extractor.extract(resource, 1, Integer.MAX_VALUE);
+        PdfTextExtractor.Extraction secondPage = extractor.extract(resource, 2, 2);
+
+        assertFalse(secondPage.cached());
+        assertEquals(1, secondPage.pages());
+        String text = Files.readString(secondPage.textFile(), StandardCharsets.UTF_8);
+        assertTrue(text.contains("Segunda"), text);
+        assertFalse(text.contains("Primeira"), text);
+    }
+
+    // --- Métodos Helper ---
+
+    private Path writePdf(String... pages) throws IOException {
+        Path pdf = dir.resolve("livro.pdf");
+        try (PDDocument document = new PDDocument()) {
+            for (String pageText : pages) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText(pageText);
+                    content.endText();
+                }
+            }
+            document.save(pdf.toFile());
+        }
+        return pdf;
+    }
+}
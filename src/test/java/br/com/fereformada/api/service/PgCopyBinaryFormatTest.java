@@ -0,0 +1,117 @@
+package br.com.fereformada.api.service;
+
+import org.junit.jupiter.api.Test;
+import org.postgresql.copy.CopyIn;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Bytes gerados para o COPY ... (FORMAT binary): cabeçalho PGCOPY, campos com tamanho (-1 = NULL),
+ * vetor no formato do vector_recv do pgvector e trailer, inclusive quando o buffer é descarregado em partes.
+ */
+class PgCopyBinaryFormatTest {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+
+    private final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+    private final List<Integer> writes = new ArrayList<>();
+
+    @Test
+    void rowIsEncodedWithHeaderLengthsVectorAndTrailer() throws Exception {
+        PgCopyBulkLoader.BinaryCopyWriter out = new PgCopyBulkLoader.BinaryCopyWriter(capturingCopyIn());
+        out.beginRow(5);
+        out.writeLong(7L);
+        out.writeInt(null);
+        out.writeText("Justificação");
+        out.writeVector(new float[]{0.25f, -1.5f, 3f});
+        out.writeVector(null);
+        out.finish();
+
+        DataInputStream in = sentBytes();
+        assertArrayEquals(SIGNATURE, in.readNBytes(SIGNATURE.length));
+        assertEquals(0, in.readInt(), "flags");
+        assertEquals(0, in.readInt(), "extensão do cabeçalho");
+
+        assertEquals(5, in.readShort());
+        assertEquals(8, in.readInt());
+        assertEquals(7L, in.readLong());
+        assertEquals(-1, in.readInt(), "Integer null vira campo NULL");
+
+        byte[] text = "Justificação".getBytes(StandardCharsets.UTF_8);
+        assertEquals(text.length, in.readInt(), "tamanho em bytes UTF-8, não em caracteres");
+        assertArrayEquals(text, in.readNBytes(text.length));
+
+        // vector_recv: int16 dimensões, int16 reservado, float4 big-endian
+        assertEquals(4 + 4 * 3, in.readInt());
+        assertEquals(3, in.readShort());
+        assertEquals(0, in.readShort());
+        assertEquals(0.25f, in.readFloat());
+        assertEquals(-1.5f, in.readFloat());
+        assertEquals(3f, in.readFloat());
+        assertEquals(-1, in.readInt(), "vetor null vira campo NULL");
+
+        assertEquals(-1, in.readShort(), "trailer");
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    void largeLoadIsFlushedInPartsWithoutLosingBytes() throws Exception {
+        int rows = 100;
+        int dimensions = 768;
+        PgCopyBulkLoader.BinaryCopyWriter out = new PgCopyBulkLoader.BinaryCopyWriter(capturingCopyIn());
+        for (int row = 0; row < rows; row++) {
+            float[] vector = new float[dimensions];
+            vector[0] = row;
+            out.beginRow(2);
+            out.writeLong((long) row);
+            out.writeVector(vector);
+        }
+        out.finish();
+
+        assertTrue(writes.size() > 1, "64 KB por descarga: esperava várias escritas no CopyIn");
+
+        DataInputStream in = sentBytes();
+        in.skipNBytes(SIGNATURE.length + 8);
+        for (int row = 0; row < rows; row++) {
+            assertEquals(2, in.readShort());
+            assertEquals(8, in.readInt());
+            assertEquals(row, in.readLong());
+            assertEquals(4 + 4 * dimensions, in.readInt());
+            assertEquals(dimensions, in.readShort());
+            assertEquals(0, in.readShort());
+            assertEquals((float) row, in.readFloat());
+            in.skipNBytes(4L * (dimensions - 1));
+        }
+        assertEquals(-1, in.readShort());
+        assertEquals(0, in.available());
+    }
+
+    // --- Métodos Helper ---
+
+    private CopyIn capturingCopyIn() throws Exception {
+        CopyIn copyIn = mock(CopyIn.class);
+        doAnswer(invocation -> {
+            byte[] bytes = invocation.getArgument(0);
+            int offset = invocation.getArgument(1);
+            int length = invocation.getArgument(2);
+            sent.write(bytes, offset, length);
+            writes.add(length);
+            return null;
+        }).when(copyIn).writeToCopy(any(byte[].class), anyInt(), anyInt());
+        return copyIn;
+    }
+
+    private DataInputStream sentBytes() throws IOException {
+        return new DataInputStream(new ByteArrayInputStream(sent.toByteArray()));
+    }
+}
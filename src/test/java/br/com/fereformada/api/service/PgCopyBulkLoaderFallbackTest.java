@@ -0,0 +1,66 @@
+package br.com.fereformada.api.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Fallback do H2: a carga de chunks passa pelo batch com chaves geradas do {@link ChunkBatchWriter},
+ * sem nenhum INSERT linha a linha.
+ */
+class PgCopyBulkLoaderFallbackTest {
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private PgCopyBulkLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:pg-copy-fallback", "sa", "", true);
+        jdbcTemplate = spy(new JdbcTemplate(dataSource));
+        jdbcTemplate.execute("CREATE TABLE content_chunks (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "work_id BIGINT, chapter_title VARCHAR, chapter_number INT, section_title VARCHAR, section_number INT, " +
+                "subsection_title VARCHAR, sub_subsection_title VARCHAR, question VARCHAR, content VARCHAR, " +
+                "content_vector VARCHAR, question_vector VARCHAR)");
+        jdbcTemplate.execute("CREATE TABLE chunk_topics (chunk_id BIGINT, topic_id BIGINT)");
+        loader = new PgCopyBulkLoader(jdbcTemplate, new ChunkBatchWriter(jdbcTemplate), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        dataSource.destroy();
+    }
+
+    @Test
+    void h2ChunkLoadGoesThroughTheBatchedWriter() {
+        PgCopyBulkLoader.LoadReport report = loader.loadChunks(List.of(
+                chunk(1, Set.of(10L)), chunk(2, Set.of()), chunk(3, Set.of(20L))));
+
+        assertEquals("batch", report.mode());
+        assertEquals(3, report.rows());
+        assertEquals(3, report.ids().size());
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM content_chunks", Integer.class));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chunk_topics", Integer.class));
+        verify(jdbcTemplate, never()).update(any(PreparedStatementCreator.class), any(KeyHolder.class));
+    }
+
+    // --- Métodos Helper ---
+
+    private static ChunkBatchWriter.ChunkInsert chunk(int chapterNumber, Set<Long> topicIds) {
+        return new ChunkBatchWriter.ChunkInsert(1L, "Capítulo " + chapterNumber, chapterNumber, null, 1, null, null, null,
+                "Conteúdo do capítulo " + chapterNumber, new float[]{1f, 2f}, null, topicIds);
+    }
+}
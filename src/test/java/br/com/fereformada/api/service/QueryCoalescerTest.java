@@ -0,0 +1,132 @@
+package br.com.fereformada.api.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Single-flight: seguidores reaproveitam o resultado (ou a exceção) do líder, a chave é liberada no fim
+ * e um líder travado não prende os seguidores além do timeout.
+ */
+class QueryCoalescerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallersShareOneExecution() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer(new SimpleMeterRegistry(), 5_000);
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<QueryCoalescer.Outcome<String>> leader = executor.submit(() -> coalescer.execute("graça", () -> {
+            executions.incrementAndGet();
+            leaderStarted.countDown();
+            await(release);
+            return "resposta";
+        }));
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+        Future<QueryCoalescer.Outcome<String>> follower = executor.submit(() -> coalescer.execute("graça", () -> {
+            executions.incrementAndGet();
+            return "outra";
+        }));
+        waitForCoalesced(coalescer, 1);
+        release.countDown();
+
+        assertEquals(new QueryCoalescer.Outcome<>("resposta", true), leader.get(5, TimeUnit.SECONDS));
+        assertEquals(new QueryCoalescer.Outcome<>("resposta", false), follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+        assertEquals(0, coalescer.getStats().get("inFlight"));
+    }
+
+    @Test
+    void followersSeeLeaderFailureAndKeyIsReleased() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer(new SimpleMeterRegistry(), 5_000);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<?> leader = executor.submit(() -> coalescer.execute("graça", () -> {
+            leaderStarted.countDown();
+            await(release);
+            throw new IllegalStateException("falhou");
+        }));
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+        Future<?> follower = executor.submit(() -> coalescer.execute("graça", () -> "nunca"));
+        waitForCoalesced(coalescer, 1);
+        release.countDown();
+
+        Exception leaderError = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, leaderError.getCause());
+        Exception followerError = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, followerError.getCause());
+
+        // A próxima chamada vira líder de novo
+        assertEquals(new QueryCoalescer.Outcome<>("nova", true), coalescer.execute("graça", () -> "nova"));
+    }
+
+    @Test
+    void stuckLeaderDoesNotBlockFollowersBeyondTimeout() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer(new SimpleMeterRegistry(), 100);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        executor.submit(() -> coalescer.execute("graça", () -> {
+            leaderStarted.countDown();
+            await(release);
+            return "lenta";
+        }));
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        QueryCoalescer.Outcome<String> outcome = coalescer.execute("graça", () -> "independente");
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(new QueryCoalescer.Outcome<>("independente", true), outcome);
+        assertTrue(elapsedMs < 5_000, "seguidor esperou " + elapsedMs + " ms");
+        assertEquals(1L, coalescer.getStats().get("waitTimeouts"));
+        release.countDown();
+    }
+
+    @Test
+    void differentKeysRunIndependently() {
+        QueryCoalescer coalescer = new QueryCoalescer(new SimpleMeterRegistry(), 5_000);
+
+        assertEquals("a", coalescer.execute("a", () -> "a").value());
+        assertEquals("b", coalescer.execute("b", () -> "b").value());
+        assertEquals(2L, coalescer.getStats().get("leaders"));
+        assertEquals(0L, coalescer.getStats().get("coalesced"));
+    }
+
+    // --- Métodos Helper ---
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitForCoalesced(QueryCoalescer coalescer, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while ((long) coalescer.getStats().get("coalesced") < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, coalescer.getStats().get("coalesced"));
+    }
+}
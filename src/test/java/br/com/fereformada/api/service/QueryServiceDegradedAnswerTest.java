@@ -0,0 +1,119 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.dto.ChatRequest;
+import br.com.fereformada.api.dto.ContextItem;
+import br.com.fereformada.api.dto.MetadataFilter;
+import br.com.fereformada.api.dto.QueryServiceResult;
+import br.com.fereformada.api.dto.SourceReference;
+import br.com.fereformada.api.repository.ContentChunkRepository;
+import br.com.fereformada.api.repository.ConversaRepository;
+import br.com.fereformada.api.repository.MensagemRepository;
+import br.com.fereformada.api.repository.StudyNoteRepository;
+import br.com.fereformada.api.repository.TheologicalSynonymRepository;
+import br.com.fereformada.api.repository.WorkRepository;
+import br.com.fereformada.api.support.StubChatModel;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Pipeline inteiro do QueryService com o LLM fora do ar na resposta final: roteador, analisador e Hy-DE
+ * respondem, a busca vem do RetrievalCache, e a resposta final estoura o prazo. O usuário recebe a
+ * resposta extrativa com as fontes, e ela não fica no cache de respostas.
+ */
+class QueryServiceDegradedAnswerTest {
+
+    private static final long CHAT_TIMEOUT_MS = 300;
+    private static final String QUESTION = "O que é a justificação?";
+    private static final String HYDE = "Justificação é um ato da livre graça de Deus, no qual Ele perdoa os pecados.";
+    private static final String LLM_ANSWER = "Segundo a Confissão [1], a justificação é pela graça.";
+
+    private final AtomicBoolean llmDown = new AtomicBoolean(true);
+
+    private final List<ContextItem> ranked = List.of(
+            item(1L, "Confissão de Fé de Westminster - Cap. 11", "Aqueles a quem Deus chama eficazmente, também livremente justifica."),
+            item(2L, "Catecismo Maior de Westminster - P. 70", "Justificação é um ato da livre graça de Deus para com os pecadores."));
+
+    @Test
+    void timeoutOnFinalAnswerFallsBackToExtractiveAnswerWithSources() {
+        QueryService service = queryService();
+
+        QueryServiceResult result = service.query(new ChatRequest(QUESTION, null));
+
+        assertTrue(result.answer().contains("temporariamente indisponível"), result.answer());
+        assertTrue(result.answer().contains("livremente justifica"));
+        assertTrue(result.answer().contains("Catecismo Maior de Westminster - P. 70"));
+        assertEquals(List.of("Confissão de Fé de Westminster - Cap. 11", "Catecismo Maior de Westminster - P. 70"),
+                result.references().stream().map(SourceReference::text).toList());
+    }
+
+    @Test
+    void degradedAnswerIsNotCached() {
+        QueryService service = queryService();
+
+        assertTrue(service.query(new ChatRequest(QUESTION, null)).answer().contains("temporariamente indisponível"));
+
+        llmDown.set(false);
+        assertEquals(LLM_ANSWER, service.query(new ChatRequest(QUESTION, null)).answer());
+    }
+
+    // --- Métodos Helper ---
+
+    private QueryService queryService() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        GeminiGovernor governor = new GeminiGovernor(registry, 8, 1000, 4, 1000, 0.5, 1000, 10, 50);
+        LlmResilience resilience = new LlmResilience(registry, governor, CHAT_TIMEOUT_MS, 500, 2000,
+                false, 100, 20, 20, 0.5, 30_000);
+        StubChatModel chatModel = new StubChatModel().respondingWith(this::respond);
+        GeminiApiClient client = GeminiApiClientResilienceTest.newClient(registry, chatModel, resilience);
+
+        QueryTracer tracer = new QueryTracer(registry, new QueryTraceLog(null, null, registry, 0, 1, 1, 1), false, 0);
+        LlmUsageTracker usageTracker = new LlmUsageTracker(registry, tracer, 0, 0, 0, 0, 0);
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        // A busca híbrida (pgvector + FTS) sai do cache de recuperação, sem banco
+        RetrievalCache retrievalCache = new RetrievalCache(true, 100, 100, 60);
+        retrievalCache.put(HYDE, new MetadataFilter(null, null, null, null), retrievalCache.currentCorpusVersion(), ranked);
+
+        return new QueryService(mock(ContentChunkRepository.class), mock(StudyNoteRepository.class),
+                mock(WorkRepository.class), client, mock(MensagemRepository.class),
+                new QueryAnalyzer(client, objectMapper, usageTracker), objectMapper,
+                mock(TheologicalSynonymRepository.class), new ParameterNamesModule(), mock(ConversaRepository.class),
+                retrievalCache, new QueryCoalescer(registry, 5_000), false, tracer, usageTracker);
+    }
+
+    private String respond(Prompt prompt) {
+        String text = prompt.getContents();
+        if (text.contains("A pergunta a seguir é simples ou complexa?")) {
+            return "{\"type\": \"simple\", \"queries\": [\"" + QUESTION + "\"]}";
+        }
+        if (text.contains("Você é um assistente de análise de consulta")) {
+            return "{}";
+        }
+        if (text.contains("Gere um parágrafo curto e denso")) {
+            return HYDE;
+        }
+        if (llmDown.get()) {
+            try {
+                Thread.sleep(CHAT_TIMEOUT_MS * 10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return LLM_ANSWER;
+    }
+
+    private static ContextItem item(Long id, String source, String content) {
+        return new ContextItem(id, source, null, content, 0.8, id, "CHUNK", "REF " + id,
+                Map.of(), false, "CONFISSAO", 1);
+    }
+}
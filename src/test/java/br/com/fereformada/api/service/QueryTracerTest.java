@@ -0,0 +1,83 @@
+package br.com.fereformada.api.service;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * No fim da requisição cada etapa vira uma amostra de {@code rag.stage} e o total vai para {@code rag.request},
+ * com as tags de rota e cache; rotas fora de simple/complex/direct viram "unknown".
+ */
+class QueryTracerTest {
+
+    private static final Set<String> ALLOWED_ROUTES = Set.of("simple", "complex", "direct", "unknown");
+
+    private SimpleMeterRegistry registry;
+    private QueryTracer tracer;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        tracer = new QueryTracer(registry, mock(QueryTraceLog.class), true, 10);
+    }
+
+    @Test
+    void stageAndRequestTimersCarryRouteAndCacheTags() {
+        QueryTrace trace = tracer.begin("query", "user-1");
+        tracer.stage("routing", () -> "complex");
+        tracer.stage("vector-search", () -> 1);
+        tracer.stage("vector-search", () -> 2);
+        tracer.route("complex");
+        tracer.cache("retrieval");
+        tracer.end(trace);
+
+        Timer routing = registry.find(QueryTracer.STAGE_METRIC)
+                .tags("stage", "routing", "route", "complex", "cache", "retrieval").timer();
+        assertNotNull(routing);
+        assertEquals(1, routing.count());
+        // Etapa repetida na requisição: uma amostra só, com o tempo somado
+        Timer vectorSearch = registry.find(QueryTracer.STAGE_METRIC)
+                .tags("stage", "vector-search", "route", "complex", "cache", "retrieval").timer();
+        assertNotNull(vectorSearch);
+        assertEquals(1, vectorSearch.count());
+
+        Timer request = registry.find(QueryTracer.REQUEST_METRIC)
+                .tags("endpoint", "query", "route", "complex", "cache", "retrieval").timer();
+        assertNotNull(request);
+        assertEquals(1, request.count());
+        assertTrue(tracer.current().isEmpty());
+    }
+
+    @Test
+    void routeOutsideTheKnownSetIsTaggedUnknown() {
+        endWithRoute("Complex");
+        endWithRoute("{\"type\": \"complex\"}");
+        endWithRoute(null);
+        endWithRoute("direct");
+
+        Timer unknown = registry.find(QueryTracer.REQUEST_METRIC).tags("route", "unknown").timer();
+        assertNotNull(unknown);
+        assertEquals(3, unknown.count());
+        assertEquals(1, registry.find(QueryTracer.REQUEST_METRIC).tags("route", "direct").timer().count());
+        for (Meter meter : registry.getMeters()) {
+            String route = meter.getId().getTag("route");
+            assertTrue(route == null || ALLOWED_ROUTES.contains(route), "Rota fora do conjunto: " + route);
+        }
+    }
+
+    // --- Métodos Helper ---
+
+    private void endWithRoute(String route) {
+        QueryTrace trace = tracer.begin("query", "user-1");
+        tracer.stage("routing", () -> route);
+        tracer.route(route);
+        tracer.end(trace);
+    }
+}
@@ -0,0 +1,122 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.dto.ContextItem;
+import br.com.fereformada.api.dto.MetadataFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cache da recuperação: LRU por tamanho (chave nova despeja a mais antiga), invalidação por versão do corpus
+ * e descarte de resultados calculados contra uma versão já superada.
+ */
+class RetrievalCacheTest {
+
+    private static final MetadataFilter CFW = new MetadataFilter("CFW", null, 1, null);
+
+    @Test
+    void fullCacheEvictsLeastRecentlyUsedInsteadOfDroppingNewKeys() {
+        RetrievalCache cache = new RetrievalCache(true, 2, 100, 60);
+        long version = cache.currentCorpusVersion();
+
+        cache.put("graça", null, version, List.of(item(1)));
+        cache.put("fé", null, version, List.of(item(2)));
+        // "graça" passa a ser a mais recente
+        assertTrue(cache.get("graça", null).isPresent());
+
+        cache.put("providência", null, version, List.of(item(3)));
+
+        assertTrue(cache.get("providência", null).isPresent(), "chave nova precisa entrar com o cache cheio");
+        assertTrue(cache.get("graça", null).isPresent());
+        assertTrue(cache.get("fé", null).isEmpty(), "a menos usada é que sai");
+        assertEquals(2, cache.getStats().get("entries"));
+        assertEquals(1L, cache.getStats().get("entryEvictions"));
+    }
+
+    @Test
+    void itemStoreIsAlsoBoundedLru() {
+        RetrievalCache cache = new RetrievalCache(true, 10, 2, 60);
+        long version = cache.currentCorpusVersion();
+
+        cache.put("a", null, version, List.of(item(1), item(2)));
+        cache.put("b", null, version, List.of(item(3)));
+
+        assertNull(cache.findItem(hit(1)));
+        assertNotNull(cache.findItem(hit(2)));
+        assertNotNull(cache.findItem(hit(3)));
+    }
+
+    @Test
+    void keyCombinesNormalizedQueryAndFilter() {
+        RetrievalCache cache = new RetrievalCache(true, 10, 10, 60);
+        cache.put("O que é  a Graça?", CFW, cache.currentCorpusVersion(), List.of(item(1)));
+
+        Optional<List<RetrievalCache.CachedHit>> hits = cache.get("o que é a graça?", CFW);
+        assertTrue(hits.isPresent());
+        assertEquals(List.of(hit(1)), hits.get());
+        assertTrue(cache.get("o que é a graça?", null).isEmpty());
+        assertTrue(cache.get("o que é a graça?", new MetadataFilter("CFW", null, 2, null)).isEmpty());
+    }
+
+    @Test
+    void corpusBumpInvalidatesEverythingAndStaleResultsAreNotStored() {
+        RetrievalCache cache = new RetrievalCache(true, 10, 10, 60);
+        long before = cache.currentCorpusVersion();
+        cache.put("graça", null, before, List.of(item(1)));
+
+        cache.bumpCorpusVersion("teste");
+
+        assertTrue(cache.get("graça", null).isEmpty());
+        assertNull(cache.findItem(hit(1)));
+
+        // Busca que começou antes do bump não pode repovoar o cache
+        cache.put("graça", null, before, List.of(item(1)));
+        assertTrue(cache.get("graça", null).isEmpty());
+
+        cache.put("graça", null, cache.currentCorpusVersion(), List.of(item(1)));
+        assertTrue(cache.get("graça", null).isPresent());
+    }
+
+    @Test
+    void expiredEntriesAreMisses() {
+        RetrievalCache cache = new RetrievalCache(true, 10, 10, 0);
+        cache.put("graça", null, cache.currentCorpusVersion(), List.of(item(1)));
+
+        busyWait();
+        assertTrue(cache.get("graça", null).isEmpty());
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(1L, stats.get("misses"));
+        assertEquals(0, stats.get("entries"));
+    }
+
+    @Test
+    void disabledCacheNeverStores() {
+        RetrievalCache cache = new RetrievalCache(false, 10, 10, 60);
+        cache.put("graça", null, cache.currentCorpusVersion(), List.of(item(1)));
+
+        assertTrue(cache.get("graça", null).isEmpty());
+        assertEquals(0, cache.getStats().get("entries"));
+    }
+
+    // --- Métodos Helper ---
+
+    private static ContextItem item(long id) {
+        return new ContextItem(id, "CFW " + id, null, "Conteúdo " + id, 0.5 + id / 100.0,
+                id, "CHUNK", "CFW " + id, Map.of(), false, "CONFISSAO", 2);
+    }
+
+    private static RetrievalCache.CachedHit hit(long id) {
+        return new RetrievalCache.CachedHit("CHUNK", id, 0.5 + id / 100.0);
+    }
+
+    private static void busyWait() {
+        long until = System.currentTimeMillis() + 5;
+        while (System.currentTimeMillis() <= until) {
+            Thread.onSpinWait();
+        }
+    }
+}
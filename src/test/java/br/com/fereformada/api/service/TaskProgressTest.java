@@ -0,0 +1,55 @@
+package br.com.fereformada.api.service;
+
+import br.com.fereformada.api.model.ImportTask;
+import br.com.fereformada.api.model.enums.TaskType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Uma linha de intervalo ("#a..#b: ...") conta todos os itens do intervalo: no relatório lido de volta,
+ * na retomada e no resumo das linhas que não couberam.
+ */
+class TaskProgressTest {
+
+    @Test
+    void rangeLineCountsEveryItemInTheRange() {
+        TaskProgress progress = new TaskProgress(task(null), "node-a");
+        progress.fail("#3: Acrônimo não encontrado: XYZ");
+        progress.failRange("#800..#999: não processado (tarefa interrompida)", 200);
+
+        assertEquals(201, progress.failed());
+        assertEquals(201, TaskProgress.countFailures(progress.failedItemsText()));
+    }
+
+    @Test
+    void resumeKeepsTheFailedCountOfRangesAndSummary() {
+        String report = "#3: Acrônimo não encontrado: XYZ\n" +
+                "#800..#999: não processado (tarefa interrompida)\n" +
+                "... e mais 50 itens.";
+
+        TaskProgress resumed = new TaskProgress(task(report), "node-b");
+
+        assertEquals(251, TaskProgress.countFailures(report));
+        assertEquals(251, resumed.failed());
+        assertEquals(251, resumed.snapshot().failedItems());
+        assertEquals(report, resumed.failedItemsText());
+    }
+
+    @Test
+    void singleItemLinesCountOneEach() {
+        assertEquals(2, TaskProgress.countFailures("#1: conteúdo inválido\n#7: conteúdo inválido"));
+        assertEquals(0, TaskProgress.countFailures(null));
+    }
+
+    // --- Métodos Helper ---
+
+    private static ImportTask task(String failedItems) {
+        ImportTask task = new ImportTask();
+        task.setId(42L);
+        task.setTaskType(TaskType.IMPORT_CHUNKS);
+        task.setTotalItems(1000);
+        task.setFailedItems(failedItems);
+        return task;
+    }
+}
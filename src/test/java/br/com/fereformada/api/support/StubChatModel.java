@@ -0,0 +1,78 @@
+package br.com.fereformada.api.support;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * ChatModel falso para testes: responde sem rede e permite simular lentidão e erros
+ * por número de chamada (1, 2, 3...).
+ */
+public class StubChatModel implements ChatModel {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private volatile IntFunction<Duration> delayForCall = call -> Duration.ZERO;
+    private volatile IntFunction<RuntimeException> failureForCall = call -> null;
+    private volatile Function<Prompt, String> responder = prompt -> "Resposta do modelo stub.";
+
+    public StubChatModel withDelay(Duration delay) {
+        this.delayForCall = call -> delay;
+        return this;
+    }
+
+    public StubChatModel withDelays(IntFunction<Duration> delayForCall) {
+        this.delayForCall = delayForCall;
+        return this;
+    }
+
+    public StubChatModel failingWith(RuntimeException error) {
+        this.failureForCall = call -> error;
+        return this;
+    }
+
+    public StubChatModel withFailures(IntFunction<RuntimeException> failureForCall) {
+        this.failureForCall = failureForCall;
+        return this;
+    }
+
+    public StubChatModel respondingWith(Function<Prompt, String> responder) {
+        this.responder = responder;
+        return this;
+    }
+
+    public int getCalls() {
+        return calls.get();
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        int call = calls.incrementAndGet();
+
+        Duration delay = delayForCall.apply(call);
+        if (delay != null && !delay.isZero()) {
+            try {
+                Thread.sleep(delay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Chamada stub interrompida", e);
+            }
+        }
+
+        RuntimeException failure = failureForCall.apply(call);
+        if (failure != null) {
+            throw failure;
+        }
+
+        String text = responder.apply(prompt);
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+}
@@ -0,0 +1,125 @@
+package br.com.fereformada.api.support;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * EmbeddingModel falso para testes: gera vetores determinísticos (a partir do hash do texto),
+ * com a mesma dimensão do text-embedding-004 usado em produção (768). Lentidão e erros podem variar
+ * por número de chamada (1, 2, 3...), como no {@link StubChatModel}; textos recusados simulam
+ * um erro do conteúdo (400), que falha qualquer lote que os contenha.
+ */
+public class StubEmbeddingModel implements EmbeddingModel {
+
+    public static final int DIMENSIONS = 768;
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger embeddedTexts = new AtomicInteger();
+    private volatile IntFunction<Duration> delayForCall = call -> Duration.ZERO;
+    private volatile IntFunction<RuntimeException> failureForCall = call -> null;
+    private volatile Predicate<String> rejectedText = text -> false;
+
+    public StubEmbeddingModel withDelay(Duration delay) {
+        this.delayForCall = call -> delay;
+        return this;
+    }
+
+    public StubEmbeddingModel withDelays(IntFunction<Duration> delayForCall) {
+        this.delayForCall = delayForCall;
+        return this;
+    }
+
+    public StubEmbeddingModel failingWith(RuntimeException failure) {
+        this.failureForCall = call -> failure;
+        return this;
+    }
+
+    public StubEmbeddingModel withFailures(IntFunction<RuntimeException> failureForCall) {
+        this.failureForCall = failureForCall;
+        return this;
+    }
+
+    public StubEmbeddingModel rejecting(Predicate<String> rejectedText) {
+        this.rejectedText = rejectedText;
+        return this;
+    }
+
+    public int getCalls() {
+        return calls.get();
+    }
+
+    public int getEmbeddedTexts() {
+        return embeddedTexts.get();
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        int call = calls.incrementAndGet();
+        Duration delay = delayForCall.apply(call);
+        if (delay != null && !delay.isZero()) {
+            try {
+                Thread.sleep(delay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Chamada stub interrompida", e);
+            }
+        }
+        RuntimeException failure = failureForCall.apply(call);
+        if (failure != null) {
+            throw failure;
+        }
+
+        List<String> texts = request.getInstructions();
+        if (texts.stream().anyMatch(rejectedText)) {
+            throw new HttpClientErrorException(HttpStatus.BAD_REQUEST, "INVALID_ARGUMENT: texto recusado pelo modelo stub");
+        }
+
+        List<Embedding> embeddings = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings.add(new Embedding(vectorFor(texts.get(i)), i));
+        }
+        embeddedTexts.addAndGet(texts.size());
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return call(new EmbeddingRequest(List.of(document.getContent()), null)).getResult().getOutput();
+    }
+
+    @Override
+    public int dimensions() {
+        return DIMENSIONS;
+    }
+
+    /**
+     * Vetor unitário pseudo-aleatório e estável para o mesmo texto.
+     */
+    public static float[] vectorFor(String text) {
+        float[] vector = new float[DIMENSIONS];
+        long seed = text == null ? 0 : text.hashCode();
+        double norm = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            vector[i] = ((seed >>> 40) / (float) (1L << 24)) - 0.5f;
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+}
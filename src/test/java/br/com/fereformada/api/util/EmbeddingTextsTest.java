@@ -0,0 +1,92 @@
+package br.com.fereformada.api.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cada builder Java produz exatamente o texto que a sua expressão SQL produz: o GC do armazém de embeddings
+ * reconhece como vivos os vetores de todos os formatos vetorizados.
+ */
+class EmbeddingTextsTest {
+
+    private static final String QUESTION = "Qual é o fim principal do homem?";
+    private static final String ANSWER = "O fim principal do homem é glorificar a Deus e gozá-lo para sempre.";
+    private static final String PARAGRAPH = "Deus, desde toda a eternidade, pelo muito sábio e santo conselho...";
+    private static final String NOTE = "No princípio. A criação é obra do Deus trino.";
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:embedding-texts", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE content_chunks (id BIGINT PRIMARY KEY, chapter_title VARCHAR, " +
+                "section_title VARCHAR, subsection_title VARCHAR, question VARCHAR, content VARCHAR)");
+        jdbcTemplate.execute("CREATE TABLE study_notes (id BIGINT PRIMARY KEY, book VARCHAR, start_chapter INT, " +
+                "start_verse INT, note_content VARCHAR)");
+        jdbcTemplate.update("INSERT INTO content_chunks VALUES (1, 'Breve Catecismo', NULL, NULL, ?, ?)", QUESTION, ANSWER);
+        // Sem pergunta e com um título faltando no meio
+        jdbcTemplate.update("INSERT INTO content_chunks VALUES (2, 'Do Eterno Decreto de Deus', NULL, 'Seção I', NULL, ?)",
+                PARAGRAPH);
+        jdbcTemplate.update("INSERT INTO study_notes VALUES (1, 'Gênesis', 1, 1, ?)", NOTE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        dataSource.destroy();
+    }
+
+    @Test
+    void chunkBuildersMatchTheirSqlExpressions() {
+        assertEquals(EmbeddingTexts.chunkWithQuestion(QUESTION, ANSWER),
+                chunkSql(EmbeddingTexts.CHUNK_WITH_QUESTION_SQL, 1));
+        assertEquals(EmbeddingTexts.chunkWithTitles("Do Eterno Decreto de Deus", null, "Seção I", PARAGRAPH),
+                chunkSql(EmbeddingTexts.CHUNK_WITH_TITLES_SQL, 2));
+        assertEquals("Do Eterno Decreto de Deus. Seção I. " + PARAGRAPH,
+                EmbeddingTexts.chunkWithTitles("Do Eterno Decreto de Deus", null, "Seção I", PARAGRAPH));
+    }
+
+    @Test
+    void noteBuilderMatchesItsSqlExpression() {
+        String sql = jdbcTemplate.queryForObject(
+                "SELECT " + EmbeddingTexts.NOTE_WITH_REFERENCE_SQL + " FROM study_notes n WHERE n.id = 1", String.class);
+
+        assertEquals(EmbeddingTexts.noteWithReference("Gênesis", 1, 1, NOTE), sql);
+        assertEquals("Gênesis 1:1\n" + NOTE, sql);
+    }
+
+    @Test
+    void liveTextsCoverEveryFormatSentToTheModel() {
+        List<String> live = jdbcTemplate.queryForList(EmbeddingTexts.LIVE_TEXTS_SQL, String.class).stream()
+                .filter(Objects::nonNull)
+                .toList();
+
+        // Importação (com e sem pergunta), PDF, backfill/outbox de chunks
+        assertTrue(live.contains(EmbeddingTexts.chunkForImport(QUESTION, "Breve Catecismo", null, null, ANSWER)));
+        assertTrue(live.contains(EmbeddingTexts.chunkForImport(null, "Do Eterno Decreto de Deus", null, "Seção I",
+                PARAGRAPH)));
+        assertTrue(live.contains(QUESTION));
+        assertTrue(live.contains(ANSWER));
+        assertTrue(live.contains(PARAGRAPH));
+        // Notas pelo admin/backfill/outbox e notas de Genebra
+        assertTrue(live.contains(EmbeddingTexts.noteWithReference("Gênesis", 1, 1, NOTE)));
+        assertTrue(live.contains(NOTE));
+    }
+
+    // --- Métodos Helper ---
+
+    private String chunkSql(String expression, long id) {
+        return jdbcTemplate.queryForObject("SELECT " + expression + " FROM content_chunks c WHERE c.id = ?",
+                String.class, id);
+    }
+}
@@ -0,0 +1,2 @@
+-- Banco do harness de carga: só a extensão; as tabelas são criadas pelo Hibernate (ddl-auto=update).
+CREATE EXTENSION IF NOT EXISTS vector;
@@ -0,0 +1,17 @@
+-- Tabelas com colunas vector(768) no PostgreSQL; no H2 o vetor fica como texto (os smoke tests não gravam vetores).
+-- As demais colunas são criadas pelo Hibernate (ddl-auto=update).
+CREATE TABLE IF NOT EXISTS content_chunks (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    content_vector VARCHAR,
+    question_vector VARCHAR
+);
+
+CREATE TABLE IF NOT EXISTS study_notes (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    note_vector VARCHAR
+);
+
+CREATE TABLE IF NOT EXISTS embedding_store (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    embedding VARCHAR NOT NULL
+);